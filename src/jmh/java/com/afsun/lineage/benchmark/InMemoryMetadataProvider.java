@@ -0,0 +1,64 @@
+package com.afsun.lineage.benchmark;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.meta.TableHandle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 基准测试用内存元数据：构建完成后只读，可在多线程间共享
+ *
+ * @author afsun
+ */
+public class InMemoryMetadataProvider implements MetadataProvider {
+
+    private final Map<String, TableHandle> tables = new HashMap<>();
+
+    /**
+     * 注册表及其列
+     */
+    public InMemoryMetadataProvider table(String database, String table, String... columns) {
+        List<ColumnRef> refs = new ArrayList<>(columns.length);
+        for (String column : columns) {
+            refs.add(ColumnRef.of(database, null, table, column.toLowerCase(Locale.ROOT),
+                    database, null, table, column));
+        }
+        TableHandle value = TableHandle.of(refs);
+        tables.put(key(database, table), value);
+        // 未限定库名的引用按表名查找
+        tables.putIfAbsent(key(null, table), value);
+        return this;
+    }
+
+    /**
+     * 注册宽表，列名为 prefix0 .. prefix(n-1)
+     */
+    public InMemoryMetadataProvider wideTable(String database, String table, String prefix, int columnCount) {
+        String[] columns = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = prefix + i;
+        }
+        return table(database, table, columns);
+    }
+
+    @Override
+    public List<ColumnRef> getColumns(String database, String schema, String table) {
+        TableHandle handle = getTable(database, schema, table);
+        return handle != null ? handle.getColumns() : Collections.emptyList();
+    }
+
+    @Override
+    public TableHandle getTable(String database, String schema, String table) {
+        return table == null ? null : tables.get(key(database, table));
+    }
+
+    private static String key(String database, String table) {
+        return (database == null ? "" : database.toLowerCase(Locale.ROOT)) + "." + table.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,68 @@
+package com.afsun.lineage.benchmark;
+
+import com.afsun.lineage.core.DefaultSqlLineageParser;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.SqlLineageParser;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.alibaba.druid.DbType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultSqlLineageParser#parse} 基准测试
+ * 运行：mvn -Pjmh test-compile exec:exec（默认附带 gc profiler 输出分配速率）
+ *
+ * @author afsun
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class LineageParserBenchmark {
+
+    @Param({"INSERT_SELECT", "DEEP_CTE", "WIDE_STAR", "BIG_UNION", "MERGE", "SCRIPT"})
+    public SqlCorpus.Case sqlCase;
+
+    @Param({"COLUMN", "TABLE_ONLY"})
+    public LineageMode mode;
+
+    private SqlLineageParser parser;
+    private MetadataProvider metadata;
+    private String sql;
+    private DbType dbType;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parser = new DefaultSqlLineageParser();
+        metadata = SqlCorpus.metadata();
+        sql = sqlCase.sql();
+        dbType = sqlCase.dbType();
+        // 语料校验：解析失败或无血缘时直接终止，避免测到异常路径
+        ParseResult result = parser.parse(sql, dbType, metadata, mode, ParseMonitor.NONE);
+        boolean empty = mode == LineageMode.TABLE_ONLY
+                ? result.getGraph().getTableEdges().isEmpty() : result.getGraph().getToEdges().isEmpty();
+        if (empty) {
+            throw new IllegalStateException("语料未产生血缘: " + sqlCase + "/" + mode + ", warnings=" + result.getWarnings());
+        }
+    }
+
+    @Benchmark
+    public ParseResult parse() {
+        return parser.parse(sql, dbType, metadata, mode, ParseMonitor.NONE);
+    }
+}
@@ -0,0 +1,134 @@
+package com.afsun.lineage.benchmark;
+
+import com.alibaba.druid.DbType;
+
+/**
+ * 基准测试语料：覆盖血缘解析的典型热点形态
+ *
+ * @author afsun
+ */
+public final class SqlCorpus {
+
+    static final int CTE_DEPTH = 30;
+    static final int WIDE_COLUMNS = 1000;
+    static final int UNION_BRANCHES = 100;
+    static final int SCRIPT_STATEMENTS = 200;
+
+    private static final String SUMMARY_COLUMNS = "order_id, user_id, amount, city";
+
+    private SqlCorpus() {
+    }
+
+    /**
+     * 语料所需的表结构
+     */
+    public static InMemoryMetadataProvider metadata() {
+        InMemoryMetadataProvider metadata = new InMemoryMetadataProvider()
+                .table("ods", "t_order", "order_id", "user_id", "amount", "status", "city", "create_time")
+                .table("ods", "t_user", "user_id", "name", "city")
+                .table("dw", "t_order_summary", "order_id", "user_id", "amount", "city")
+                .wideTable("ods", "t_wide", "c", WIDE_COLUMNS)
+                .wideTable("dw", "t_wide_copy", "c", WIDE_COLUMNS);
+        for (int i = 0; i < UNION_BRANCHES; i++) {
+            metadata.table("ods", "t_part_" + i, "order_id", "user_id", "amount", "city");
+        }
+        return metadata;
+    }
+
+    public enum Case {
+        /**
+         * 简单 INSERT…SELECT（两表JOIN）
+         */
+        INSERT_SELECT(DbType.mysql) {
+            @Override
+            String sql() {
+                return insertSelect();
+            }
+        },
+        /**
+         * 深层CTE链：每层引用上一层
+         */
+        DEEP_CTE(DbType.clickhouse) {
+            @Override
+            String sql() {
+                StringBuilder sb = new StringBuilder("INSERT INTO dw.t_order_summary (" + SUMMARY_COLUMNS + ")\nWITH\n");
+                sb.append("c0 AS (SELECT order_id, user_id, amount, city FROM ods.t_order WHERE status = 1)");
+                for (int i = 1; i < CTE_DEPTH; i++) {
+                    sb.append(",\nc").append(i).append(" AS (SELECT order_id, user_id, amount + ").append(i)
+                            .append(" AS amount, city FROM c").append(i - 1).append(")");
+                }
+                sb.append("\nSELECT order_id, user_id, amount, city FROM c").append(CTE_DEPTH - 1);
+                return sb.toString();
+            }
+        },
+        /**
+         * 宽表 SELECT * 展开（经子查询二次展开）
+         */
+        WIDE_STAR(DbType.mysql) {
+            @Override
+            String sql() {
+                return "INSERT INTO dw.t_wide_copy SELECT t.* FROM (SELECT * FROM ods.t_wide) t";
+            }
+        },
+        /**
+         * 大量分支的 UNION ALL
+         */
+        BIG_UNION(DbType.mysql) {
+            @Override
+            String sql() {
+                StringBuilder sb = new StringBuilder("INSERT INTO dw.t_order_summary (" + SUMMARY_COLUMNS + ")\n");
+                for (int i = 0; i < UNION_BRANCHES; i++) {
+                    if (i > 0) {
+                        sb.append("\nUNION ALL\n");
+                    }
+                    sb.append("SELECT order_id, user_id, amount, city FROM ods.t_part_").append(i);
+                }
+                return sb.toString();
+            }
+        },
+        /**
+         * MERGE INTO（更新与插入分支）
+         */
+        MERGE(DbType.odps) {
+            @Override
+            String sql() {
+                return "MERGE INTO dw.t_order_summary t USING ods.t_order s ON t.order_id = s.order_id\n"
+                        + "WHEN MATCHED THEN UPDATE SET t.amount = s.amount, t.city = s.city\n"
+                        + "WHEN NOT MATCHED THEN INSERT (" + SUMMARY_COLUMNS + ")"
+                        + " VALUES (s.order_id, s.user_id, s.amount, s.city)";
+            }
+        },
+        /**
+         * 多语句脚本：覆盖切分与逐条解析的整体开销
+         */
+        SCRIPT(DbType.mysql) {
+            @Override
+            String sql() {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < SCRIPT_STATEMENTS; i++) {
+                    sb.append("-- statement ").append(i).append('\n').append(insertSelect()).append(";\n");
+                }
+                return sb.toString();
+            }
+        };
+
+        private final DbType dbType;
+
+        Case(DbType dbType) {
+            this.dbType = dbType;
+        }
+
+        public DbType dbType() {
+            return dbType;
+        }
+
+        abstract String sql();
+    }
+
+    private static String insertSelect() {
+        return "INSERT INTO dw.t_order_summary (" + SUMMARY_COLUMNS + ")\n"
+                + "SELECT o.order_id, o.user_id, o.amount * 1.0, u.city\n"
+                + "FROM ods.t_order o JOIN ods.t_user u ON o.user_id = u.user_id\n"
+                + "WHERE o.status = 1";
+    }
+}
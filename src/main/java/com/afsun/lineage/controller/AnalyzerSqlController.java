@@ -1,20 +1,30 @@
 package com.afsun.lineage.controller;
 
 
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
 import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.cache.ParseResultCache;
 import com.afsun.lineage.core.exceptions.InternalParseException;
 import com.afsun.lineage.core.exceptions.MetadataNotFoundException;
 import com.afsun.lineage.core.exceptions.UnsupportedSyntaxException;
 import com.afsun.lineage.core.meta.ClickHouseMetadataProvider;
 import com.afsun.lineage.service.SqlLineageParseService;
+import com.afsun.lineage.vo.BatchParseSummary;
 import com.afsun.lineage.vo.Response;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -34,6 +44,12 @@ public class AnalyzerSqlController {
     @Resource
     private ClickHouseMetadataProvider metadataProvider;
 
+    @Resource
+    private ParseResultCache parseResultCache;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
     /**
      * 文件大小限制（字节），默认10MB
      */
@@ -44,10 +60,12 @@ public class AnalyzerSqlController {
      * 通过上传文件解析SQL血缘关系
      *
      * @param file SQL脚本文件（UTF-8编码）
+     * @param mode 血缘粒度：COLUMN（默认）或 TABLE_ONLY（仅表级，不依赖元数据）
      * @return 解析结果，包含血缘图和警告信息
      */
     @PostMapping("/upload")
-    public Response<ParseResult> parseFile(@RequestParam("file") MultipartFile file) {
+    public Response<ParseResult> parseFile(@RequestParam("file") MultipartFile file,
+                                           @RequestParam(value = "mode", defaultValue = "COLUMN") LineageMode mode) {
         // 1. 参数校验
         if (file == null || file.isEmpty()) {
             return Response.fail("文件不能为空");
@@ -67,12 +85,10 @@ public class AnalyzerSqlController {
 
         log.info("开始解析SQL文件: {}, 大小: {} bytes", filename, file.getSize());
 
-        try {
-            // 4. 使用UTF-8编码读取文件内容
-            String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-
+        // 4. 以UTF-8流式读取文件内容，逐条语句解析，避免整文件载入内存
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
             // 5. 调用解析服务
-            ParseResult result = sqlLineageParseService.parse(content,null);
+            ParseResult result = sqlLineageParseService.parse(reader, null, mode, ParseMonitor.NONE);
 
             log.info("SQL文件解析成功: {}, traceId: {}, 耗时: {}ms",
                 filename, result.getTraceId(), result.getParseMillis());
@@ -97,14 +113,68 @@ public class AnalyzerSqlController {
         }
     }
 
+    /**
+     * 批量解析归档（zip/tar/tar.gz）中的全部 .sql 文件
+     * 以 NDJSON 流式返回：每解析完一个文件输出一行结果摘要，最后一行为 {"summary": {...}}，
+     * 处理失败时最后一行为 {"error": "..."}
+     *
+     * @param file SQL脚本归档（脚本需为UTF-8编码）
+     * @param mode 血缘粒度：COLUMN（默认）或 TABLE_ONLY
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> parseBatch(@RequestParam("file") MultipartFile file,
+                                        @RequestParam(value = "mode", defaultValue = "COLUMN") LineageMode mode) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Response.fail("文件不能为空"));
+        }
+        String filename = file.getOriginalFilename();
+        InputStream archive;
+        try {
+            // 在请求线程内打开输入流，避免异步输出期间上传临时文件被清理
+            archive = file.getInputStream();
+        } catch (IOException e) {
+            log.error("读取归档失败: {}", filename, e);
+            return ResponseEntity.ok(Response.fail("文件读取失败: " + e.getMessage()));
+        }
+        log.info("开始批量解析归档: {}, 大小: {} bytes", filename, file.getSize());
+
+        StreamingResponseBody body = out -> {
+            try (InputStream in = archive) {
+                BatchParseSummary summary = sqlLineageParseService.parseBatch(in, null, mode,
+                        item -> writeLine(out, item));
+                writeLine(out, Collections.singletonMap("summary", summary));
+            } catch (UncheckedIOException e) {
+                log.warn("批量解析结果输出中断: {}", filename);
+            } catch (Exception e) {
+                log.error("批量解析异常: {}", filename, e);
+                writeLine(out, Collections.singletonMap("error", "批量解析失败: " + e.getMessage()));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * 直接解析SQL文本
      *
      * @param sqlText SQL脚本文本
+     * @param mode    血缘粒度：COLUMN（默认）或 TABLE_ONLY（仅表级，不依赖元数据）
      * @return 解析结果，包含血缘图和警告信息
      */
     @PostMapping("/parse")
-    public Response<ParseResult> parseText(@RequestBody String sqlText) {
+    public Response<ParseResult> parseText(@RequestBody String sqlText,
+                                           @RequestParam(value = "mode", defaultValue = "COLUMN") LineageMode mode) {
         // 1. 参数校验
         if (sqlText == null || sqlText.trim().isEmpty()) {
             return Response.fail("SQL文本不能为空");
@@ -120,7 +190,7 @@ public class AnalyzerSqlController {
 
         try {
             // 3. 调用解析服务
-            ParseResult result = sqlLineageParseService.parse(sqlText,null);
+            ParseResult result = sqlLineageParseService.parse(sqlText, null, mode, ParseMonitor.NONE);
 
             log.info("SQL文本解析成功, traceId: {}, 耗时: {}ms",
                 result.getTraceId(), result.getParseMillis());
@@ -182,4 +252,19 @@ public class AnalyzerSqlController {
         }
     }
 
+    /**
+     * 获取解析结果缓存统计信息
+     *
+     * @return 统计信息（命中数、未命中数、命中率、条目数等）
+     */
+    @GetMapping("/cache/stats")
+    public Response<Map<String, Object>> getCacheStats() {
+        try {
+            return Response.success(parseResultCache.getStatistics());
+        } catch (Exception e) {
+            log.error("获取缓存统计信息异常", e);
+            return Response.fail("获取统计信息失败: " + e.getMessage());
+        }
+    }
+
 }
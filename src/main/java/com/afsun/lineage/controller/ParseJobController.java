@@ -0,0 +1,154 @@
+package com.afsun.lineage.controller;
+
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.service.ParseJobService;
+import com.afsun.lineage.vo.ParseJobStatus;
+import com.afsun.lineage.vo.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.Resource;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 异步解析任务API控制器
+ * 提交后立即返回任务ID，通过状态接口轮询进度，结束后获取结果
+ *
+ * @author afsun
+ */
+@RestController
+@RequestMapping("/sql/analyzer/jobs")
+@Slf4j
+public class ParseJobController {
+
+    @Resource
+    private ParseJobService parseJobService;
+
+    /**
+     * 文件大小限制（字节），默认10MB
+     */
+    @Value("${sql.lineage.max-file-size:10485760}")
+    private long maxFileSize;
+
+    /**
+     * 上传SQL文件并提交异步解析任务
+     *
+     * @param file SQL脚本文件（UTF-8编码）
+     * @param mode 血缘粒度：COLUMN（默认）或 TABLE_ONLY
+     * @return 任务ID
+     */
+    @PostMapping("/upload")
+    public Response<String> submitFile(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "mode", defaultValue = "COLUMN") LineageMode mode) {
+        if (file == null || file.isEmpty()) {
+            return Response.fail("文件不能为空");
+        }
+        if (file.getSize() > maxFileSize) {
+            return Response.fail(String.format("文件大小超过限制：%.2fMB > %.2fMB",
+                file.getSize() / 1024.0 / 1024.0, maxFileSize / 1024.0 / 1024.0));
+        }
+        Path tempFile = null;
+        try {
+            // 上传临时文件在请求结束后即被清理，先转存一份供后台任务流式读取
+            tempFile = Files.createTempFile("sql-lineage-job-", ".sql");
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String jobId = parseJobService.submit(file.getOriginalFilename(), tempFile, mode);
+            return Response.success(jobId);
+        } catch (Exception e) {
+            log.error("提交解析任务失败: {}", file.getOriginalFilename(), e);
+            deleteQuietly(tempFile);
+            return Response.fail("提交失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 提交SQL文本异步解析任务
+     *
+     * @param sqlText SQL脚本文本
+     * @param mode    血缘粒度：COLUMN（默认）或 TABLE_ONLY
+     * @return 任务ID
+     */
+    @PostMapping("/parse")
+    public Response<String> submitText(@RequestBody String sqlText,
+                                       @RequestParam(value = "mode", defaultValue = "COLUMN") LineageMode mode) {
+        if (sqlText == null || sqlText.trim().isEmpty()) {
+            return Response.fail("SQL文本不能为空");
+        }
+        if (sqlText.length() > maxFileSize) {
+            return Response.fail(String.format("SQL文本长度超过限制：%d > %d",
+                sqlText.length(), maxFileSize));
+        }
+        try {
+            return Response.success(parseJobService.submit("text", sqlText, mode));
+        } catch (Exception e) {
+            log.error("提交解析任务失败", e);
+            return Response.fail("提交失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询任务状态与进度
+     */
+    @GetMapping("/{jobId}")
+    public Response<ParseJobStatus> getStatus(@PathVariable String jobId) {
+        ParseJobStatus status = parseJobService.getStatus(jobId);
+        if (status == null) {
+            return Response.fail(404, "任务不存在或已过期: " + jobId);
+        }
+        return Response.success(status);
+    }
+
+    /**
+     * 获取任务解析结果（仅成功结束的任务）
+     */
+    @GetMapping("/{jobId}/result")
+    public Response<ParseResult> getResult(@PathVariable String jobId) {
+        ParseJobStatus status = parseJobService.getStatus(jobId);
+        if (status == null) {
+            return Response.fail(404, "任务不存在或已过期: " + jobId);
+        }
+        ParseResult result = parseJobService.getResult(jobId);
+        if (result == null && status.getState() == ParseJobStatus.State.SUCCEEDED) {
+            return Response.fail(410, "任务结果已过期或因容量限制被淘汰: " + jobId);
+        }
+        if (result == null) {
+            return Response.fail(409, "任务未成功完成，当前状态: " + status.getState());
+        }
+        return Response.success(result);
+    }
+
+    /**
+     * 取消任务：排队中立即取消，解析中在下一条语句边界停止
+     */
+    @DeleteMapping("/{jobId}")
+    public Response<Boolean> cancel(@PathVariable String jobId) {
+        if (parseJobService.getStatus(jobId) == null) {
+            return Response.fail(404, "任务不存在或已过期: " + jobId);
+        }
+        boolean accepted = parseJobService.cancel(jobId);
+        if (!accepted) {
+            return Response.fail(409, "任务已进入写入阶段或已结束，无法取消");
+        }
+        log.info("已请求取消解析任务: {}", jobId);
+        return Response.success(true);
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (Exception e) {
+            log.warn("删除临时文件失败: {}", path, e);
+        }
+    }
+}
@@ -1,42 +1,64 @@
 package com.afsun.lineage.core;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
-import java.util.Locale;
 import java.util.Objects;
 
 @Data
 public class ColumnRef {
+    /**
+     * 享元池：相等且原文一致的列引用在元数据与解析过程间共享同一实例
+     */
+    private static final WeakPool<ColumnRef, ColumnRef> POOL = new WeakPool<>();
+
     private final String database, schema, table, column;
     private final String originalDatabase, originalSchema, originalTable, originalColumn;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int hash;
 
     private ColumnRef(String db, String sc, String tb, String col,
                       String odb, String osc, String otb, String ocol) {
         this.database = db; this.schema = sc; this.table = tb; this.column = col;
         this.originalDatabase = odb; this.originalSchema = osc; this.originalTable = otb; this.originalColumn = ocol;
+        this.hash = IdentifierPool.hash(db, sc, tb, col);
     }
 
     public static ColumnRef of(String db, String sc, String tb, String col,
                                String odb, String osc, String otb, String ocol) {
-        return new ColumnRef(
-                db == null ? null : db.toLowerCase(Locale.ROOT),
-                sc == null ? null : sc.toLowerCase(Locale.ROOT),
-                tb.toLowerCase(Locale.ROOT),
-                col.toLowerCase(Locale.ROOT),
-                odb, osc, otb, ocol
+        ColumnRef candidate = new ColumnRef(
+                IdentifierPool.lower(db),
+                IdentifierPool.lower(sc),
+                IdentifierPool.lower(Objects.requireNonNull(tb)),
+                IdentifierPool.lower(Objects.requireNonNull(col)),
+                IdentifierPool.original(odb), IdentifierPool.original(osc),
+                IdentifierPool.original(otb), IdentifierPool.original(ocol)
         );
+        return IdentifierPool.share(POOL, candidate, ColumnRef::sameOriginals);
+    }
+
+    private static boolean sameOriginals(ColumnRef a, ColumnRef b) {
+        return Objects.equals(a.originalColumn, b.originalColumn)
+                && Objects.equals(a.originalTable, b.originalTable)
+                && Objects.equals(a.originalSchema, b.originalSchema)
+                && Objects.equals(a.originalDatabase, b.originalDatabase);
     }
 
     @Override public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof ColumnRef)) return false;
         ColumnRef c = (ColumnRef) o;
-        return Objects.equals(database, c.database)
-                && Objects.equals(schema, c.schema)
+        // 名称均为驻留实例，Objects.equals 多数在引用比较处即返回
+        return hash == c.hash
+                && Objects.equals(column, c.column)
                 && Objects.equals(table, c.table)
-                && Objects.equals(column, c.column);
+                && Objects.equals(schema, c.schema)
+                && Objects.equals(database, c.database);
     }
     @Override public int hashCode() {
-        return Objects.hash(database, schema, table, column);
+        return hash;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.afsun.lineage.core;
 
+import com.afsun.lineage.core.dto.SelectOutput;
 import com.afsun.lineage.core.meta.MetadataProvider;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLObject;
@@ -10,6 +11,7 @@ import com.alibaba.druid.sql.ast.statement.SQLSelect;
 import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
 import com.alibaba.druid.sql.ast.statement.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -17,422 +19,387 @@ import java.util.List;
 
 public class DefaultExpressionResolver implements ExpressionResolver {
 
+    /**
+     * 常量子树判定最多检查的节点数：超出时按非常量照常遍历，判定开销不随表达式规模放大
+     */
+    private static final int CONSTANT_CHECK_NODES = 64;
+
     @Override
     public List<ColumnRef> resolve(SQLExpr expr, Scope scope, MetadataProvider metadata, List<LineageWarning> warns) {
-        LinkedHashSet<ColumnRef> set = new LinkedHashSet<>();
-        walk(expr, scope, metadata, warns, set);
-        return new ArrayList<>(set);
+        // 遍历缓冲在语句内复用；子查询解析会重入本方法，此时取到的是另一份缓冲
+        ExprWalkBuffer buffer = scope.acquireWalkBuffer();
+        try {
+            walk(expr, scope, metadata, warns, buffer);
+            return new ArrayList<>(buffer.out);
+        } finally {
+            scope.releaseWalkBuffer(buffer);
+        }
     }
 
-    // 递归下探表达式树，收集所有真实列引用
-    private void walk(SQLObject node, Scope scope, MetadataProvider metadata, List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
-        if (node == null) return;
-
-        // 未限定列: col（仅单表作用域允许）
-        if (node instanceof SQLIdentifierExpr) {
-            String col = ((SQLIdentifierExpr) node).getName();
-            // ===== 修复：先尝试从scope解析，失败时尝试从单表元数据解析 =====
-            ColumnRef ref = scope.resolveUnqualifiedColumn(col, null);
-            if (ref != null) {
-                out.add(ref);
-                return;
+    /**
+     * 显式栈下探表达式树，收集所有真实列引用
+     * 不随表达式深度递归：二元运算链（a || b || c …、长 AND/OR）沿左脊展开为操作数序列，
+     * 只含字面量的子树不入栈、不计入预算（大 IN 列表及其常量元组、常量数组、-1、toDate('2020-01-01')、CAST('x' AS ...)），
+     * 任意深度的表达式都不会栈溢出
+     * 出栈顺序保持从左到右，与源列在表达式中的出现顺序一致
+     */
+    private void walk(SQLExpr root, Scope scope, MetadataProvider metadata, List<LineageWarning> warns, ExprWalkBuffer buffer) {
+        ArrayDeque<SQLObject> stack = buffer.stack;
+        LinkedHashSet<ColumnRef> out = buffer.out;
+        push(stack, root);
+        while (!stack.isEmpty()) {
+            SQLObject node = stack.pop();
+            // 每个表达式节点计入语句预算，超时/超出节点数时中断本语句
+            scope.getBudget().tick();
+
+            // 未限定列: col（仅单表作用域允许）
+            if (node instanceof SQLIdentifierExpr) {
+                resolveIdentifier((SQLIdentifierExpr) node, scope, metadata, warns, out);
+                continue;
             }
-
-            // ===== 关键修复：尝试从所有表的子查询列中查找 =====
-            // 遍历scope中的所有表，查找匹配的子查询列
-            List<ColumnRef> foundSources = null;
-            String foundTable = null;
-            for (String tableAlias : scope.getAllTableAliases()) {
-                List<ColumnRef> subSources = scope.getSubqueryColumnSources(tableAlias, col);
-                if (subSources != null && !subSources.isEmpty()) {
-                    if (foundSources == null) {
-                        foundSources = subSources;
-                        foundTable = tableAlias;
-                    } else {
-                        // 如果在多个表中找到同名列，优先使用非自动生成的别名
-                        if (foundTable != null && foundTable.startsWith("__subquery_") && !tableAlias.startsWith("__subquery_")) {
-                            foundSources = subSources;
-                            foundTable = tableAlias;
-                        } else if (!foundTable.startsWith("__subquery_") && !tableAlias.startsWith("__subquery_")) {
-                            // 两个都不是自动生成的别名，这是歧义的
-                            if (warns != null) {
-                                warns.add(LineageWarning.of("AMBIGUOUS_COL",
-                                        "未限定列名在多个子查询中存在: " + col,
-                                        "ExpressionResolver", "请使用 t.col 形式"));
-                            }
-                            return;
-                        }
-                    }
+            // 限定列: t.col (增强:支持子查询列)
+            if (node instanceof SQLPropertyExpr) {
+                resolveProperty((SQLPropertyExpr) node, scope, metadata, warns, out);
+                continue;
+            }
+            // 二元操作: a + b / a = b；左深链一次展开，操作数按从左到右出栈
+            if (node instanceof SQLBinaryOpExpr) {
+                List<SQLExpr> rights = buffer.chain;
+                SQLExpr left = ((SQLBinaryOpExpr) node).getLeft();
+                rights.add(((SQLBinaryOpExpr) node).getRight());
+                while (left instanceof SQLBinaryOpExpr) {
+                    // 链上每个运算节点同样计入预算
+                    scope.getBudget().tick();
+                    rights.add(((SQLBinaryOpExpr) left).getRight());
+                    left = ((SQLBinaryOpExpr) left).getLeft();
+                }
+                // rights 为从右到左的操作数，依次入栈后最左操作数最先出栈
+                for (SQLExpr right : rights) {
+                    push(stack, right);
                 }
+                rights.clear();
+                push(stack, left);
+                continue;
             }
-
-            if (foundSources != null) {
-                out.addAll(foundSources);
-                return;
+            if (node instanceof SQLBinaryOpExprGroup) {
+                pushAll(stack, ((SQLBinaryOpExprGroup) node).getItems());
+                continue;
             }
-
-            // 单表场景：尝试从元数据解析
-            if (scope.tableCount() == 1) {
-                TableName tn = scope.getSingle();
-                if (tn != null && metadata != null) {
-                    List<ColumnRef> cols = metadata.getColumns(tn.db, tn.sc, tn.table);
-                    if (cols != null) {
-                        for (ColumnRef c : cols) {
-                            if (c.getColumn().equalsIgnoreCase(col)) {
-                                out.add(c);
-                                return;
-                            }
+            // 聚合 SUM(col) / COUNT(*) [OVER (...)]（须先于普通函数判断，聚合也是函数调用）
+            if (node instanceof SQLAggregateExpr) {
+                SQLAggregateExpr ag = (SQLAggregateExpr) node;
+                SQLOver over = ag.getOver();
+                if (over != null) {
+                    SQLOrderBy ob = over.getOrderBy();
+                    if (ob != null && ob.getItems() != null) {
+                        for (int i = ob.getItems().size() - 1; i >= 0; i--) {
+                            push(stack, ob.getItems().get(i).getExpr());
                         }
                     }
+                    if (over.getPartitionBy() != null) {
+                        pushAll(stack, over.getPartitionBy());
+                    }
                 }
-                // 列不存在于元数据中，记录警告
-                if (warns != null) {
-                    warns.add(LineageWarning.of("COLUMN_NOT_FOUND",
-                            "未找到列: " + col + " (表: " + (tn != null ? tn.table : "unknown") + ")",
-                            "ExpressionResolver", "请检查列名或元数据"));
-                }
-            } else if (warns != null) {
-                warns.add(LineageWarning.of("AMBIGUOUS_COL",
-                        "未限定列名在多表作用域中不唯一: " + col,
-                        "ExpressionResolver", "请使用 t.col 形式"));
-            }
-            return;
-        }
-
-        // 限定列: t.col (增强:支持子查询列)
-        if (node instanceof SQLPropertyExpr) {
-            SQLPropertyExpr pe = (SQLPropertyExpr) node;
-            String owner = pe.getOwner() == null ? null : pe.getOwner().toString();
-            String name = pe.getName();
-
-            if ("*".equals(name) || (name == null || name.isEmpty())) {
-                expandStar(owner, scope, metadata, warns, out);
-            } else {
-                // ===== 修改:优先解析子查询列 =====
-                List<ColumnRef> subSources = scope.getSubqueryColumnSources(owner, name);
-                if (subSources != null && !subSources.isEmpty()) {
-                    // 子查询列可能来自多个源,全部添加
-                    out.addAll(subSources);
-                } else {
-                    // 回退到普通列解析
-                    ColumnRef ref = scope.resolveQualifiedColumn(owner, name, null);
-                    if (ref != null) {
-                        out.add(ref);
-                    } else {
-                        // ===== 修复：尝试从元数据直接查找 =====
-                        TableName tn = scope.resolveTable(owner);
-                        if (tn != null && metadata != null) {
-                            List<ColumnRef> cols = metadata.getColumns(tn.db, tn.sc, tn.table);
-                            if (cols != null) {
-                                boolean found = false;
-                                for (ColumnRef c : cols) {
-                                    if (c.getColumn().equalsIgnoreCase(name)) {
-                                        out.add(c);
-                                        found = true;
-                                        break;
-                                    }
-                                }
-                                if (!found && warns != null) {
-                                    warns.add(LineageWarning.of("COLUMN_NOT_FOUND",
-                                            "未找到列: " + owner + "." + name + " (表: " + tn.table + ")",
-                                            "ExpressionResolver", "请检查列名或元数据"));
-                                }
-                            }
-                        } else if (warns != null) {
-                            warns.add(LineageWarning.of("TABLE_NOT_FOUND",
-                                    "无法解析别名/表名: " + owner,
-                                    "ExpressionResolver", "请检查FROM子句或CTE定义"));
-                        }
+                List<SQLExpr> args = ag.getArguments();
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    if (!(args.get(i) instanceof SQLAllColumnExpr)) {
+                        push(stack, args.get(i));
                     }
                 }
+                continue;
             }
-            return;
-        }
-        // 方法/函数调用 foo(a,b)；递归参数
-        if (node instanceof SQLMethodInvokeExpr) {
-            SQLMethodInvokeExpr m = (SQLMethodInvokeExpr) node;
-            for (SQLExpr arg : m.getArguments()) {
-                walk(arg, scope, metadata, warns, out);
+            // 方法/函数调用 foo(a,b)；展开参数
+            if (node instanceof SQLMethodInvokeExpr) {
+                pushAll(stack, ((SQLMethodInvokeExpr) node).getArguments());
+                continue;
             }
-            return;
-        }
-
-        // 聚合 SUM(col) / COUNT(*) [OVER (...)]
-        if (node instanceof SQLAggregateExpr) {
-            SQLAggregateExpr ag = (SQLAggregateExpr) node;
-            for (SQLExpr arg : ag.getArguments()) {
-                if (!(arg instanceof SQLAllColumnExpr)) {
-                    walk(arg, scope, metadata, warns, out);
+            // CASE [value] WHEN
+            if (node instanceof SQLCaseExpr) {
+                SQLCaseExpr c = (SQLCaseExpr) node;
+                push(stack, c.getElseExpr());
+                List<SQLCaseExpr.Item> items = c.getItems();
+                for (int i = items.size() - 1; i >= 0; i--) {
+                    push(stack, items.get(i).getValueExpr());
+                    push(stack, items.get(i).getConditionExpr());
                 }
+                push(stack, c.getValueExpr());
+                continue;
+            }
+            // 一元操作: -a / NOT a
+            if (node instanceof SQLUnaryExpr) {
+                push(stack, ((SQLUnaryExpr) node).getExpr());
+                continue;
+            }
+            // BETWEEN a AND b
+            if (node instanceof SQLBetweenExpr) {
+                SQLBetweenExpr be = (SQLBetweenExpr) node;
+                push(stack, be.getEndExpr());
+                push(stack, be.getBeginExpr());
+                push(stack, be.getTestExpr());
+                continue;
+            }
+            // IN 列表: x IN (a, b, c)；常量项（含常量元组）不入栈
+            if (node instanceof SQLInListExpr) {
+                SQLInListExpr in = (SQLInListExpr) node;
+                pushAll(stack, in.getTargetList());
+                push(stack, in.getExpr());
+                continue;
             }
-            SQLOver over = ag.getOver();
-            if (over != null) {
-                if (over.getPartitionBy() != null) {
-                    for (SQLExpr p : over.getPartitionBy()) walk(p, scope, metadata, warns, out);
+            // 元组/列表: (a, b)
+            if (node instanceof SQLListExpr) {
+                pushAll(stack, ((SQLListExpr) node).getItems());
+                continue;
+            }
+            // IN 子查询: x IN (SELECT ...)；子查询在左侧表达式之后解析
+            if (node instanceof SQLInSubQueryExpr) {
+                SQLInSubQueryExpr ins = (SQLInSubQueryExpr) node;
+                if (ins.getSubQuery() != null) {
+                    stack.push(ins.getSubQuery());
                 }
-                SQLOrderBy ob = over.getOrderBy();
-                if (ob != null && ob.getItems() != null) {
-                    for (SQLSelectOrderByItem i : ob.getItems()) {
-                        walk(i.getExpr(), scope, metadata, warns, out);
-                    }
+                push(stack, ins.getExpr());
+                continue;
+            }
+            // EXISTS (SELECT ...)
+            if (node instanceof SQLExistsExpr) {
+                walkSelect(((SQLExistsExpr) node).getSubQuery(), scope, metadata, warns, out);
+                continue;
+            }
+            // 标量子查询: (SELECT ...)
+            if (node instanceof SQLQueryExpr) {
+                walkSelect(((SQLQueryExpr) node).getSubQuery(), scope, metadata, warns, out);
+                continue;
+            }
+            // 延后解析的子查询（见 IN 子查询）
+            if (node instanceof SQLSelect) {
+                walkSelect((SQLSelect) node, scope, metadata, warns, out);
+                continue;
+            }
+            if (node instanceof SQLCastExpr) {
+                push(stack, ((SQLCastExpr) node).getExpr());
+                continue;
+            }
+            // 数组（某些方言）：常量元素不入栈
+            if (node instanceof SQLArrayExpr) {
+                SQLArrayExpr arrayExpr = (SQLArrayExpr) node;
+                if (arrayExpr.getValues() != null) {
+                    pushAll(stack, arrayExpr.getValues());
                 }
+                push(stack, arrayExpr.getExpr());
+                continue;
             }
-            return;
+            // 其他类型按需扩展
+            warns.add(LineageWarning.of("UNSUPPORTED_Expr",
+                    "不支持的SELECT语法表达式: " + node.getClass().getSimpleName(),
+                    node.getClass().getSimpleName(),
+                    "新增适配算法"));
         }
+    }
 
-        // CASE WHEN
-        if (node instanceof SQLCaseExpr) {
-            SQLCaseExpr c = (SQLCaseExpr) node;
-            for (SQLCaseExpr.Item it : c.getItems()) {
-                walk(it.getConditionExpr(), scope, metadata, warns, out);
-                walk(it.getValueExpr(), scope, metadata, warns, out);
-            }
-            walk(c.getElseExpr(), scope, metadata, warns, out);
-            return;
+    // 入栈一个子表达式；空节点与只含字面量的子树直接跳过
+    private static void push(ArrayDeque<SQLObject> stack, SQLExpr expr) {
+        if (expr != null && !isConstant(expr)) {
+            stack.push(expr);
         }
+    }
 
-        // 二元操作: a + b / a = b
-        if (node instanceof SQLBinaryOpExpr) {
-            SQLBinaryOpExpr b = (SQLBinaryOpExpr) node;
-            walk(b.getLeft(), scope, metadata, warns, out);
-            walk(b.getRight(), scope, metadata, warns, out);
-            return;
+    // 逆序入栈，使出栈顺序与列表顺序一致
+    private static void pushAll(ArrayDeque<SQLObject> stack, List<SQLExpr> exprs) {
+        for (int i = exprs.size() - 1; i >= 0; i--) {
+            push(stack, exprs.get(i));
         }
+    }
 
-        // 一元操作: -a / NOT a
-        if (node instanceof SQLUnaryExpr) {
-            SQLUnaryExpr u = (SQLUnaryExpr) node;
-            walk(u.getExpr(), scope, metadata, warns, out);
-            return;
+    // 只含字面量的子树不引用任何列；列引用等常见节点直接判定，不分配计数器
+    private static boolean isConstant(SQLExpr expr) {
+        if (isLiteral(expr)) {
+            return true;
         }
-
-        // BETWEEN a AND b
-        if (node instanceof SQLBetweenExpr) {
-            SQLBetweenExpr be = (SQLBetweenExpr) node;
-            walk(be.getTestExpr(), scope, metadata, warns, out);
-            walk(be.getBeginExpr(), scope, metadata, warns, out);
-            walk(be.getEndExpr(), scope, metadata, warns, out);
-            return;
+        if (!(expr instanceof SQLUnaryExpr || expr instanceof SQLCastExpr || expr instanceof SQLMethodInvokeExpr
+                || expr instanceof SQLListExpr || expr instanceof SQLArrayExpr || expr instanceof SQLBinaryOpExpr)) {
+            return false;
         }
+        return isConstant(expr, new int[]{CONSTANT_CHECK_NODES});
+    }
 
-        // IN 列表: x IN (a, b, c)
-        if (node instanceof SQLInListExpr) {
-            SQLInListExpr in = (SQLInListExpr) node;
-            walk(in.getExpr(), scope, metadata, warns, out);
-            for (SQLExpr e : in.getTargetList()) {
-                walk(e, scope, metadata, warns, out);
-            }
-            return;
+    // 递归深度受检查节点数限制
+    private static boolean isConstant(SQLExpr expr, int[] remaining) {
+        if (expr == null) {
+            return true;
         }
-
-        // IN 子查询: x IN (SELECT ...)
-        if (node instanceof SQLInSubQueryExpr) {
-            SQLInSubQueryExpr ins = (SQLInSubQueryExpr) node;
-            walk(ins.getExpr(), scope, metadata, warns, out);
-            if (ins.getSubQuery() != null) {
-                walkSelect(ins.getSubQuery(), scope, metadata, warns, out);
-            }
-            return;
+        if (--remaining[0] < 0) {
+            return false;
         }
-
-        // EXISTS (SELECT ...)
-        if (node instanceof SQLExistsExpr) {
-            SQLExistsExpr ex = (SQLExistsExpr) node;
-            if (ex.getSubQuery() != null) {
-                walkSelect(ex.getSubQuery(), scope, metadata, warns, out);
-            }
-            return;
+        if (isLiteral(expr)) {
+            return true;
         }
-
-        // 标量子查询: (SELECT ...)
-        if (node instanceof SQLQueryExpr) {
-            SQLQueryExpr qe = (SQLQueryExpr) node;
-            if (qe.getSubQuery() != null) {
-                walkSelect(qe.getSubQuery(), scope, metadata, warns, out);
-            }
-            return;
+        if (expr instanceof SQLUnaryExpr) {
+            return isConstant(((SQLUnaryExpr) expr).getExpr(), remaining);
         }
-
-        if (node instanceof SQLCastExpr) {
-            walk(((SQLCastExpr) node).getExpr(), scope, metadata, warns, out);
-            return;
+        if (expr instanceof SQLCastExpr) {
+            return isConstant(((SQLCastExpr) expr).getExpr(), remaining);
         }
-
-        // 数组（某些方言）
-        if (node instanceof SQLArrayExpr) {
-            SQLArrayExpr arrayExpr = (SQLArrayExpr) node;
-            walk(arrayExpr.getExpr(), scope, metadata, warns, out);
-            return;
+        if (expr instanceof SQLBinaryOpExpr) {
+            return isConstant(((SQLBinaryOpExpr) expr).getLeft(), remaining)
+                    && isConstant(((SQLBinaryOpExpr) expr).getRight(), remaining);
         }
-        if (node instanceof SQLCharExpr
-                || node instanceof SQLIntegerExpr
-                || node instanceof SQLFloatExpr
-                || node instanceof SQLBooleanExpr
-                || node instanceof SQLDoubleExpr) {
-            return;
+        // 聚合可带 OVER (PARTITION BY col)，带属主的调用（t.f()）可能引用列，均不视为常量
+        if (expr instanceof SQLMethodInvokeExpr) {
+            SQLMethodInvokeExpr method = (SQLMethodInvokeExpr) expr;
+            return !(expr instanceof SQLAggregateExpr) && method.getOwner() == null
+                    && allConstant(method.getArguments(), remaining);
+        }
+        if (expr instanceof SQLListExpr) {
+            return allConstant(((SQLListExpr) expr).getItems(), remaining);
         }
-        // 其他类型按需扩展
-        warns.add(LineageWarning.of("UNSUPPORTED_Expr",
-                "不支持的SELECT语法表达式: " + node.getClass().getSimpleName(),
-                node.getClass().getSimpleName(),
-                "新增适配算法"));
+        if (expr instanceof SQLArrayExpr) {
+            SQLArrayExpr array = (SQLArrayExpr) expr;
+            return isConstant(array.getExpr(), remaining)
+                    && (array.getValues() == null || allConstant(array.getValues(), remaining));
+        }
+        return false;
     }
 
-    // 遍历子查询 SELECT（支持块/UNION），使用同一个 Scope 临时绑定 FROM
-    private void walkSelect(SQLSelect select, Scope scope, MetadataProvider metadata, List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
-        if (select == null || select.getQuery() == null) return;
-
-        SQLSelectQuery q = select.getQuery();
-
-        if (q instanceof SQLSelectQueryBlock) {
-            SQLSelectQueryBlock qb = (SQLSelectQueryBlock) q;
-
-            bindFrom(qb.getFrom(), scope, warns);
-
-            // SELECT 列清单
-            List<SQLSelectItem> items = qb.getSelectList();
-            if (items != null) {
-                for (SQLSelectItem it : items) {
-                    SQLExpr expr = it.getExpr();
-                    if (expr instanceof SQLAllColumnExpr) {
-                        // SELECT ：单表时展开；多表发WARN
-                        expandStar(null, scope, metadata, warns, out);
-                    } else if (expr instanceof SQLIdentifierExpr) {
-                        // ===== 修复：处理SQLIdentifierExpr，判断是否为星号 =====
-                        SQLIdentifierExpr ie = (SQLIdentifierExpr) expr;
-                        if ("*".equals(ie.getName())) {
-                            expandStar(null, scope, metadata, warns, out);
-                        } else {
-                            walk(expr, scope, metadata, warns, out);
-                        }
-                    } else if (expr instanceof SQLPropertyExpr) {
-                        SQLPropertyExpr pe = (SQLPropertyExpr) expr;
-                        if ("*".equals(pe.getName())) {
-                            String qualifier = pe.getOwner() == null ? null : pe.getOwner().toString();
-                            expandStar(qualifier, scope, metadata, warns, out);
-                        } else {
-                            walk(expr, scope, metadata, warns, out);
-                        }
-                    } else {
-                        walk(expr, scope, metadata, warns, out);
-                    }
-                }
+    private static boolean allConstant(List<SQLExpr> exprs, int[] remaining) {
+        for (SQLExpr e : exprs) {
+            if (!isConstant(e, remaining)) {
+                return false;
             }
-        } else if (q instanceof SQLUnionQuery) {
-            SQLUnionQuery u = (SQLUnionQuery) q;
-            SQLSelect left = new SQLSelect();
-            left.setQuery(u.getLeft());
-            SQLSelect right = new SQLSelect();
-            right.setQuery(u.getRight());
-            walkSelect(left, scope, metadata, warns, out);
-            walkSelect(right, scope, metadata, warns, out);
-        } else {
-            warns.add(LineageWarning.of("UNSUPPORTED_SUBQUERY",
-                    "不支持的子查询结构: " + q.getClass().getSimpleName(),
-                    q.getClass().getSimpleName(),
-                    "请简化子查询"));
         }
+        return true;
     }
 
-    // 在当前作用域绑定 FROM 表与别名（支持 JOIN），并解析 JOIN 条件中的列
-    private void bindFrom(SQLTableSource from, Scope scope, List<LineageWarning> warns) {
-        if (from == null) return;
-
-        if (from instanceof SQLExprTableSource) {
-            SQLExprTableSource ts = (SQLExprTableSource) from;
-            String alias = safeLower(ts.getAlias());
-            String full = ts.getExpr().toString(); // 可能 db.schema.table / db.table / table
-            TableName tn = TableName.parse(full);
+    private static boolean isLiteral(SQLExpr expr) {
+        return expr instanceof SQLLiteralExpr
+                || expr instanceof SQLCharExpr
+                || expr instanceof SQLIntegerExpr
+                || expr instanceof SQLFloatExpr
+                || expr instanceof SQLBooleanExpr
+                || expr instanceof SQLDoubleExpr;
+    }
 
-            // 警告：若别名已存在则将被覆盖（Scope 不支持层级/撤销）
-            if (scope.resolveTable(alias != null ? alias : tn.table) != null) {
-                warns.add(LineageWarning.of("ALIAS_OVERRIDE",
-                        "子查询别名与外层冲突，已覆盖: " + (alias != null ? alias : tn.table),
-                        "FROM", "建议在子查询使用不同别名"));
+    // 未限定列: col（仅单表作用域允许）
+    private void resolveIdentifier(SQLIdentifierExpr node, Scope scope, MetadataProvider metadata,
+                                   List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
+        String col = node.getName();
+        // ===== 修复：先尝试从scope解析，失败时尝试从单表元数据解析 =====
+        ColumnRef ref = scope.resolveUnqualifiedColumn(col, null);
+        if (ref != null) {
+            // 唯一的表是子查询/CTE 时与限定列一致，直接使用其源列（UNION 分支等子作用域的登记不会留到语句作用域）
+            List<ColumnRef> subSources = scope.getSubqueryColumnSources(ref.getTable(), col);
+            if (subSources != null && !subSources.isEmpty()) {
+                out.addAll(subSources);
+            } else {
+                out.add(ref);
             }
-
-            scope.addTableAlias(alias != null ? alias : tn.table, tn);
             return;
         }
 
-        if (from instanceof SQLJoinTableSource) {
-            SQLJoinTableSource join = (SQLJoinTableSource) from;
-            bindFrom(join.getLeft(), scope, warns);
-            bindFrom(join.getRight(), scope, warns);
-            if (join.getCondition() != null) {
-                // ON 条件里的列也会影响子查询结果
-                walk(join.getCondition(), scope, null, warns, new LinkedHashSet<>());
+        // ===== 关键修复：尝试从所有表的子查询列中查找 =====
+        // 遍历scope中的所有表，查找匹配的子查询列
+        List<ColumnRef> foundSources = null;
+        String foundTable = null;
+        for (String tableAlias : scope.getAllTableAliases()) {
+            List<ColumnRef> subSources = scope.getSubqueryColumnSources(tableAlias, col);
+            if (subSources != null && !subSources.isEmpty()) {
+                if (foundSources == null) {
+                    foundSources = subSources;
+                    foundTable = tableAlias;
+                } else {
+                    // 如果在多个表中找到同名列，优先使用非自动生成的别名
+                    if (foundTable != null && foundTable.startsWith("__subquery_") && !tableAlias.startsWith("__subquery_")) {
+                        foundSources = subSources;
+                        foundTable = tableAlias;
+                    } else if (!foundTable.startsWith("__subquery_") && !tableAlias.startsWith("__subquery_")) {
+                        // 两个都不是自动生成的别名，这是歧义的
+                        if (warns != null) {
+                            warns.add(LineageWarning.of("AMBIGUOUS_COL",
+                                    "未限定列名在多个子查询中存在: " + col,
+                                    "ExpressionResolver", "请使用 t.col 形式"));
+                        }
+                        return;
+                    }
+                }
             }
-            return;
         }
-        if (from instanceof SQLSubqueryTableSource) {
-            SQLSubqueryTableSource subTS = (SQLSubqueryTableSource) from;
-            String subAlias = safeLower(subTS.getAlias());
 
-            if (subAlias == null || subAlias.isEmpty()) {
-                warns.add(LineageWarning.of("SUBQUERY_NO_ALIAS",
-                        "子查询缺少别名", "FROM", "请为子查询提供别名"));
-                return;
-            }
-
-            // 创建独立的子查询作用域，避免污染外层scope
-            // 注意：这里只是简单处理，不将子查询的FROM表绑定到外层scope
-            // 子查询应该作为一个虚拟表注册到外层scope
-            TableName virtualTable = TableName.of(null, null, subAlias, null, null, subAlias);
-            scope.addTableAlias(subAlias, virtualTable);
+        if (foundSources != null) {
+            out.addAll(foundSources);
             return;
         }
 
-        // 子查询作为表、CTE 等暂不支持（与顶层保持一致）
-        warns.add(LineageWarning.of("UNSUPPORTED_FROM",
-                "FROM 子句结构暂不支持: " + from.getClass().getSimpleName(),
-                from.getClass().getSimpleName(),
-                "请简化 FROM 或移除复杂子查询"));
-    }
-
-    // 星号展开：qualifier=null 表示 ；否则 t.
-    private void expandStar(String qualifier, Scope scope, MetadataProvider metadata, List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
-        if (qualifier == null) {
-            if (scope.tableCount() == 1) {
-                TableName tn = scope.getSingle();
-                List<ColumnRef> cols = metadataColumns(metadata, tn, warns);
-                out.addAll(cols);
-            } else {
-                if (warns != null) {
-                    warns.add(LineageWarning.of("AMBIGUOUS_STAR",
-                            "SELECT * 存在多表或无表，无法唯一展开",
-                            "SELECT", "请使用 t.* 或明确列名"));
+        // 单表场景：尝试从元数据解析
+        if (scope.tableCount() == 1) {
+            TableName tn = scope.getSingle();
+            if (tn != null && metadata != null) {
+                ColumnRef c = metadata.findColumn(tn.db, tn.sc, tn.table, col);
+                if (c != null) {
+                    out.add(c);
+                    return;
                 }
             }
-        } else {
-            TableName tn = scope.resolveTable(qualifier);
-            if (tn == null) {
-                if (warns != null) {
-                    warns.add(LineageWarning.of("UNKNOWN_ALIAS",
-                            "无法解析别名/表名: " + qualifier,
-                            "Scope", "请检查子查询 FROM/别名"));
-                }
-                return;
+            // 列不存在于元数据中，记录警告
+            if (warns != null) {
+                warns.add(LineageWarning.of("COLUMN_NOT_FOUND",
+                        "未找到列: " + col + " (表: " + (tn != null ? tn.table : "unknown") + ")",
+                        "ExpressionResolver", "请检查列名或元数据"));
             }
-            List<ColumnRef> cols = metadataColumns(metadata, tn, warns);
-            out.addAll(cols);
+        } else if (warns != null) {
+            warns.add(LineageWarning.of("AMBIGUOUS_COL",
+                    "未限定列名在多表作用域中不唯一: " + col,
+                    "ExpressionResolver", "请使用 t.col 形式"));
         }
     }
 
-    // 元数据取列清单
-    private List<ColumnRef> metadataColumns(MetadataProvider metadata, TableName tn, List<LineageWarning> warns) {
-        List<ColumnRef> cols = metadata.getColumns(tn.db, tn.sc, tn.table);
-        if (cols == null || cols.isEmpty()) {
-            if (warns != null) {
-                warns.add(LineageWarning.of("METADATA_MISSING",
-                        "元数据缺失: " + tn.toString(), "MetadataProvider", "请补充该表的列元数据"));
+    // 限定列: t.col (增强:支持子查询列)
+    private void resolveProperty(SQLPropertyExpr pe, Scope scope, MetadataProvider metadata,
+                                 List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
+        String owner = pe.getOwner() == null ? null : pe.getOwner().toString();
+        String name = pe.getName();
+
+        if ("*".equals(name) || (name == null || name.isEmpty())) {
+            for (SelectOutput o : QueryOutputVisitor.lenient(this, metadata, warns).expandStar(owner, scope)) {
+                out.addAll(o.getSources());
+            }
+        } else {
+            // ===== 修改:优先解析子查询列 =====
+            List<ColumnRef> subSources = scope.getSubqueryColumnSources(owner, name);
+            if (subSources != null && !subSources.isEmpty()) {
+                // 子查询列可能来自多个源,全部添加
+                out.addAll(subSources);
+            } else {
+                // 回退到普通列解析
+                ColumnRef ref = scope.resolveQualifiedColumn(owner, name, null);
+                if (ref != null) {
+                    out.add(ref);
+                } else {
+                    // ===== 修复：尝试从元数据直接查找 =====
+                    TableName tn = scope.resolveTable(owner);
+                    if (tn != null && metadata != null) {
+                        ColumnRef c = metadata.findColumn(tn.db, tn.sc, tn.table, name);
+                        if (c != null) {
+                            out.add(c);
+                        } else if (warns != null) {
+                            warns.add(LineageWarning.of("COLUMN_NOT_FOUND",
+                                    "未找到列: " + owner + "." + name + " (表: " + tn.table + ")",
+                                    "ExpressionResolver", "请检查列名或元数据"));
+                        }
+                    } else if (warns != null) {
+                        warns.add(LineageWarning.of("TABLE_NOT_FOUND",
+                                "无法解析别名/表名: " + owner,
+                                "ExpressionResolver", "请检查FROM子句或CTE定义"));
+                    }
+                }
             }
-            return new ArrayList<ColumnRef>();
         }
-        return cols;
     }
 
-    private String safeLower(String s) {
-        return s == null ? null : s.toLowerCase(java.util.Locale.ROOT);
+    // 子查询（IN/EXISTS/标量）：在隔离的子作用域中解析其输出列，结果由查询引擎按AST节点缓存
+    private void walkSelect(SQLSelect select, Scope scope, MetadataProvider metadata, List<LineageWarning> warns, LinkedHashSet<ColumnRef> out) {
+        if (select == null || select.getQuery() == null) return;
+        List<SelectOutput> outputs = QueryOutputVisitor.lenient(this, metadata, warns)
+                .outputsOf(select.getQuery(), scope.newSubScope());
+        for (SelectOutput o : outputs) {
+            out.addAll(o.getSources());
+        }
     }
 }
\ No newline at end of file
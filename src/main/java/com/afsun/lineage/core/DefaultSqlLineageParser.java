@@ -2,71 +2,193 @@ package com.afsun.lineage.core;
 
 import com.afsun.lineage.core.exceptions.InternalParseException;
 import com.afsun.lineage.core.exceptions.MetadataNotFoundException;
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
+import com.afsun.lineage.core.exceptions.StatementBudgetExceededException;
 import com.afsun.lineage.core.exceptions.UnsupportedSyntaxException;
-import com.afsun.lineage.core.meta.DynamicMetadataProvider;
 import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.metrics.ParseMetrics;
 import com.afsun.lineage.core.parser.DefaultSqlStatementHandler;
 import com.afsun.lineage.core.parser.SqlStatementHandler;
+import com.afsun.lineage.core.parser.StatementDependencyAnalyzer;
 import com.afsun.lineage.core.util.SqlDialectDetector;
-import com.afsun.lineage.core.util.SqlPlainNormalizationUtil;
-import com.afsun.lineage.core.util.SqlScriptUtils;
+import com.afsun.lineage.core.util.SqlInsertValuesScanner;
+import com.afsun.lineage.core.util.SqlScriptLexer;
+import com.afsun.lineage.core.util.SqlStatementPrefilter;
+import com.afsun.lineage.core.util.SqlStatementReader;
+import com.afsun.lineage.core.util.SqlTableReferenceScanner;
+import com.afsun.lineage.core.util.StatementSpan;
 import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.sql.ast.SQLStatement;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * 默认SQL血缘解析器
+ * 实例无调用级状态（每次调用的状态由 {@link ParseContext} 承载），可作为单例在多线程间共享
+ */
 @Slf4j
 public class DefaultSqlLineageParser implements SqlLineageParser {
 
-    private final SqlStatementHandler sqlStatementHandler = new DefaultSqlStatementHandler();
+    private final SqlStatementHandler sqlStatementHandler;
 
-    private DynamicMetadataProvider dynamicMetadataProvider;
+    /**
+     * 并行解析线程池，为null时逐条串行解析
+     */
+    private final ForkJoinPool parallelPool;
+
+    /**
+     * 启用并行解析的最少语句数，语句较少时并行调度得不偿失
+     */
+    private final int parallelThreshold;
+
+    /**
+     * 解析预算（语句/脚本超时、语句AST节点数）
+     */
+    private final ParseBudget budget;
+
+    /**
+     * 各阶段耗时与告警指标
+     */
+    private final ParseMetrics metrics;
+
+    /**
+     * 语句预过滤器：不可能产生血缘的语句不进入Druid解析
+     */
+    private final SqlStatementPrefilter prefilter;
+
+    /**
+     * 方言检测置信度低于该值时记录告警
+     */
+    private static final double DIALECT_CONFIDENCE_THRESHOLD = 0.6;
+
+    /**
+     * 词法层处理的 INSERT ... VALUES 在语句耗时指标中的类型名
+     */
+    private static final String INSERT_VALUES_STATEMENT_TYPE = "InsertValues";
+
+    /**
+     * 串行、无预算限制、不记录指标的默认配置
+     */
+    public DefaultSqlLineageParser() {
+        this(builder());
+    }
+
+    private DefaultSqlLineageParser(Builder builder) {
+        this.sqlStatementHandler = builder.statementHandler == null
+                ? new DefaultSqlStatementHandler() : builder.statementHandler;
+        this.parallelPool = builder.parallelPool;
+        this.parallelThreshold = builder.parallelThreshold;
+        this.budget = builder.budget == null ? ParseBudget.UNLIMITED : builder.budget;
+        this.metrics = builder.metrics == null ? ParseMetrics.NONE : builder.metrics;
+        this.prefilter = builder.prefilter == null ? SqlStatementPrefilter.NONE : builder.prefilter;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 解析器配置，未设置的项使用默认值：默认语句处理器、串行、不限预算、不记录指标、不做预过滤
+     */
+    public static final class Builder {
+        private SqlStatementHandler statementHandler;
+        private ForkJoinPool parallelPool;
+        private int parallelThreshold = Integer.MAX_VALUE;
+        private ParseBudget budget;
+        private ParseMetrics metrics;
+        private SqlStatementPrefilter prefilter;
+
+        private Builder() {
+        }
+
+        /**
+         * @param statementHandler 语句处理器（须无状态）
+         */
+        public Builder statementHandler(SqlStatementHandler statementHandler) {
+            this.statementHandler = statementHandler;
+            return this;
+        }
+
+        /**
+         * @param parallelPool      并行解析线程池（同时用于超宽 UNION 的分支解析），为null时串行
+         * @param parallelThreshold 语句数达到该值才走并行
+         */
+        public Builder parallel(ForkJoinPool parallelPool, int parallelThreshold) {
+            this.parallelPool = parallelPool;
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        /**
+         * @param budget 解析预算，超出预算的语句被跳过并记录告警
+         */
+        public Builder budget(ParseBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param metrics 指标记录器
+         */
+        public Builder metrics(ParseMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param prefilter 语句预过滤器
+         */
+        public Builder prefilter(SqlStatementPrefilter prefilter) {
+            this.prefilter = prefilter;
+            return this;
+        }
+
+        public DefaultSqlLineageParser build() {
+            return new DefaultSqlLineageParser(this);
+        }
+    }
 
     /**
      * 解析SQL文本，提取表和列级血缘关系
      *
      * @param sqlText          SQL脚本文本
      * @param metadataProvider 元数据提供者
+     * @param mode             血缘粒度
      * @return 解析结果，包含血缘图、警告信息等
      * @throws MetadataNotFoundException  元数据缺失异常
      * @throws UnsupportedSyntaxException 不支持的SQL语法异常
      * @throws InternalParseException     内部解析异常
      */
     @Override
-    public ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider) {
+    public ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider, LineageMode mode,
+                             ParseMonitor monitor) {
         long startTime = System.currentTimeMillis();
         String traceId = "LN-" + System.currentTimeMillis();
-        List<LineageWarning> warns = new ArrayList<>();
-        LineageGraph graph = new LineageGraph();
-        AtomicInteger skipped = new AtomicInteger(0);
-        // 包装为动态元数据管理器（支持脚本内临时表）
-        dynamicMetadataProvider = new DynamicMetadataProvider(metadataProvider);
         try {
-            // 1. 规范化SQL文本
-            String formatSql = SqlPlainNormalizationUtil.process(sqlText);
-            // 2. 移除注释
-            String cleanedSql = SqlScriptUtils.stripComments(formatSql);
-            // 3. 按分号切分多条语句
-            List<String> statements = SqlScriptUtils.splitStatements(cleanedSql);
+            // 1. 单遍扫描：识别注释与引号，按顶层分号切分为语句片段（仅记录偏移，不复制文本）
+            long splitStart = System.nanoTime();
+            List<StatementSpan> statements = SqlScriptLexer.split(sqlText);
+            metrics.recordPhase(ParseMetrics.PHASE_SPLIT, splitStart);
             // ===== 修复：处理空SQL情况 =====
             if (statements.isEmpty()) {
                 log.debug("SQL为空，跳过解析");
-                ParseResult emptyResult = new ParseResult();
-                emptyResult.setGraph(graph);
-                emptyResult.setWarnings(warns);
-                emptyResult.setSkippedFragments(skipped.get());
-                emptyResult.setTraceId(traceId);
-                emptyResult.setParseMillis(0);
-                return emptyResult;
+                return emptyResult(traceId, mode);
             }
+            SqlDialectDetector.Detection detection = null;
             if (dbType == null) {
-                //  测方言类型
-                dbType = SqlDialectDetector.detect(statements.get(0));
-                log.debug("解析语句，检测到方言: {}", dbType);
+                // 检测方言：在语句间采样单遍扫描，整个脚本只检测一次
+                detection = SqlDialectDetector.detect(sqlText, statements);
+                dbType = detection.getDbType();
+                log.debug("解析脚本，检测到方言: {}", detection);
             }
 //            // 4. ClickHouse SQL重写（将 INSERT INTO ... WITH ... SELECT 转换为标准语法）
 //            if (dbType == DbType.clickhouse) {
@@ -79,15 +201,38 @@ public class DefaultSqlLineageParser implements SqlLineageParser {
             if (!sqlStatementHandler.supports(dbType)) {
                 throw new InternalParseException("数据库类型" + dbType.toString() + ",暂不支持解析");
             }
-            // 5. 逐条解析语句
-            for (String stmtText : statements) {
-                if (stmtText.trim().isEmpty()) {
-                    continue;
+            // 包装为动态元数据管理器（支持脚本内临时表）
+            ParseContext context = new ParseContext(traceId, dbType, metadataProvider, monitor, budget, metrics, mode);
+            warnIfDialectAmbiguous(detection, context);
+            // 列级模式下按需加载的元数据：先扫描脚本引用的表，一次批量查询预取
+            if (context.getMode() != LineageMode.TABLE_ONLY) {
+                prefetchMetadata(sqlText, statements, context);
+            }
+            // 5. 逐条解析语句（语句较多且配置了线程池时按依赖并行）
+            if (parallelPool != null && statements.size() >= parallelThreshold) {
+                parseStatementsParallel(sqlText, statements, context);
+            } else {
+                for (int i = 0; i < statements.size(); i++) {
+                    StatementSpan span = statements.get(i);
+                    if (prefilter.shouldSkip(sqlText, span.getStart(), span.getEnd())) {
+                        skipPrefiltered(context);
+                        continue;
+                    }
+                    // INSERT ... VALUES 只扫描语句头，元组部分不复制、不进入Druid
+                    SqlInsertValuesScanner.Header insertValues =
+                            SqlInsertValuesScanner.scan(sqlText, span.getStart(), span.getEnd());
+                    if (insertValues != null) {
+                        parseInsertValues(insertValues, span.position(), context);
+                        continue;
+                    }
+                    parseStatement(span.text(sqlText), i + 1, span.position(), context);
                 }
-                parseStatement(stmtText, dbType, graph, warns, skipped);
             }
             // 6. 构建成功结果
-            return buildResult(traceId, startTime, graph, warns, skipped.get());
+            return buildResult(context, startTime, detection, statements.size());
+        } catch (ParseCancelledException e) {
+            log.info("SQL解析已取消, traceId={}", traceId);
+            throw e;
         } catch (MetadataNotFoundException | UnsupportedSyntaxException e) {
             // 业务异常：直接重新抛出，由Controller处理
             log.warn("SQL解析业务异常: {} - {}", e.getClass().getSimpleName(), e.getMessage());
@@ -105,25 +250,412 @@ public class DefaultSqlLineageParser implements SqlLineageParser {
     }
 
     /**
-     * 解析单条SQL语句
+     * 流式解析SQL脚本：逐条读取、解析并立即丢弃语句文本与AST，血缘图增量构建
+     * 流式路径始终串行（需要按读取顺序维护脚本内临时表）；按需加载的元数据随读取逐条扫描语句，批量预取新出现的表
+     *
+     * @param reader           SQL脚本输入（由调用方负责关闭）
+     * @param metadataProvider 元数据提供者
+     * @param mode             血缘粒度
+     * @return 解析结果，包含血缘图、警告信息等
+     * @throws MetadataNotFoundException  元数据缺失异常
+     * @throws UnsupportedSyntaxException 不支持的SQL语法异常
+     * @throws InternalParseException     内部解析异常
      */
-    private void parseStatement(String stmtText, DbType dialect, LineageGraph graph,
-                                List<LineageWarning> warns, AtomicInteger skipped) {
+    @Override
+    public ParseResult parse(Reader reader, DbType dbType, MetadataProvider metadataProvider, LineageMode mode,
+                             ParseMonitor monitor) {
+        long startTime = System.currentTimeMillis();
+        String traceId = "LN-" + System.currentTimeMillis();
+        SqlStatementReader statementReader = new SqlStatementReader(reader);
         try {
-            // 2. 使用Druid解析SQL
-            List<SQLStatement> stmts = SQLUtils.parseStatements(stmtText, dialect);
-            // 3. 处理每个AST节点
-            for (SQLStatement st : stmts) {
-                Scope scope = new Scope(); // 每条语句独立作用域
-                sqlStatementHandler.handle(st, dialect, scope, graph, dynamicMetadataProvider, warns, skipped);
+            // 预读脚本开头的若干语句作为方言检测样本（显式指定方言时只预读一条）
+            int sampleSize = dbType == null ? SqlDialectDetector.MAX_SAMPLE_STATEMENTS : 1;
+            List<String> sampleTexts = new ArrayList<>(sampleSize);
+            List<String> samplePositions = new ArrayList<>(sampleSize);
+            int sampleChars = 0;
+            while (sampleTexts.size() < sampleSize && sampleChars < SqlDialectDetector.MAX_SCAN_CHARS) {
+                long splitStart = System.nanoTime();
+                String text = statementReader.next();
+                metrics.recordPhase(ParseMetrics.PHASE_SPLIT, splitStart);
+                if (text == null) {
+                    break;
+                }
+                sampleTexts.add(text);
+                samplePositions.add(statementReader.position());
+                sampleChars += text.length();
             }
+            if (sampleTexts.isEmpty()) {
+                log.debug("SQL为空，跳过解析");
+                return emptyResult(traceId, mode);
+            }
+            SqlDialectDetector.Detection detection = null;
+            if (dbType == null) {
+                detection = SqlDialectDetector.detect(sampleTexts);
+                dbType = detection.getDbType();
+                log.debug("流式解析，检测到方言: {}", detection);
+            }
+            if (!sqlStatementHandler.supports(dbType)) {
+                throw new InternalParseException("数据库类型" + dbType.toString() + ",暂不支持解析");
+            }
+            // 包装为动态元数据管理器（支持脚本内临时表）
+            ParseContext context = new ParseContext(traceId, dbType, metadataProvider, monitor, budget, metrics, mode);
+            warnIfDialectAmbiguous(detection, context);
+            // 按需加载的元数据：样本语句引用的表一次批量预取，之后每读入一条语句只预取其中新出现的表
+            SqlTableReferenceScanner.References refs = context.getMode() != LineageMode.TABLE_ONLY
+                    && context.getMetadata().supportsPrefetch() ? new SqlTableReferenceScanner.References() : null;
+            prefetchStreamed(sampleTexts, refs, context);
+            int count = 0;
+            for (int i = 0; i < sampleTexts.size(); i++) {
+                count++;
+                parseOrSkip(sampleTexts.get(i), count, samplePositions.get(i), context);
+                // 尽早释放已解析的样本文本
+                sampleTexts.set(i, null);
+            }
+            while (true) {
+                long splitStart = System.nanoTime();
+                String stmtText = statementReader.next();
+                metrics.recordPhase(ParseMetrics.PHASE_SPLIT, splitStart);
+                if (stmtText == null) {
+                    break;
+                }
+                count++;
+                prefetchStreamed(Collections.singletonList(stmtText), refs, context);
+                parseOrSkip(stmtText, count, statementReader.position(), context);
+            }
+            log.debug("流式解析完成，语句数={}", count);
+            return buildResult(context, startTime, detection, count);
+        } catch (IOException e) {
+            log.error("读取SQL脚本失败, traceId={}", traceId, e);
+            throw new InternalParseException("读取SQL脚本失败: " + e.getMessage() + ", traceId=" + traceId, e);
+        } catch (ParseCancelledException e) {
+            log.info("SQL解析已取消, traceId={}", traceId);
+            throw e;
         } catch (MetadataNotFoundException | UnsupportedSyntaxException e) {
-            // 业务异常直接抛出
+            // 业务异常：直接重新抛出，由Controller处理
+            log.warn("SQL解析业务异常: {} - {}", e.getClass().getSimpleName(), e.getMessage());
+            throw e;
+        } catch (InternalParseException e) {
+            // 已封装的内部异常：直接抛出
+            log.error("SQL解析内部异常: {}", e.getMessage(), e);
             throw e;
         } catch (Exception e) {
-            // 语句级异常：包装为InternalParseException并附带SQL片段信息
+            // 未预期异常：封装为InternalParseException
+            log.error("SQL解析发生未预期异常, traceId={}", traceId, e);
             throw new InternalParseException(
-                    "解析失败: " + shortSql(stmtText) + " -> " + e.getMessage(), e);
+                    "脚本解析异常: " + e.getMessage() + ", traceId=" + traceId, e);
+        }
+    }
+
+    /**
+     * 元数据预取：词法扫描脚本中 FROM/JOIN/INTO/USING 引用的表（不经Druid），交由元数据提供者一次批量加载，
+     * 避免按需加载模式下解析过程中逐表往返查询；脚本内创建的表与CTE不预取
+     */
+    private void prefetchMetadata(String sqlText, List<StatementSpan> statements, ParseContext context) {
+        MetadataProvider metadata = context.getMetadata();
+        if (!metadata.supportsPrefetch()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<String> names = SqlTableReferenceScanner.scan(sqlText, statements).external();
+        if (!names.isEmpty()) {
+            List<TableName> tables = new ArrayList<>(names.size());
+            for (String name : names) {
+                tables.add(TableName.parse(name));
+            }
+            metadata.prefetch(tables);
+        }
+        metrics.recordPhase(ParseMetrics.PHASE_PREFETCH, start);
+    }
+
+    /**
+     * 流式解析的增量预取：扫描新读入的语句，累加到已读语句的扫描结果，只批量预取此前未出现过的外部表；
+     * 不支持预取时 refs 为null，不做扫描
+     */
+    private void prefetchStreamed(List<String> texts, SqlTableReferenceScanner.References refs, ParseContext context) {
+        if (refs == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        int from = refs.getTables().size();
+        for (String text : texts) {
+            SqlTableReferenceScanner.scanInto(text, refs);
+        }
+        List<String> names = refs.externalSince(from);
+        if (!names.isEmpty()) {
+            List<TableName> tables = new ArrayList<>(names.size());
+            for (String name : names) {
+                tables.add(TableName.parse(name));
+            }
+            context.getMetadata().prefetch(tables);
+            metrics.recordPhase(ParseMetrics.PHASE_PREFETCH, start);
+        }
+    }
+
+    private void parseOrSkip(String stmtText, int statementNo, String location, ParseContext context) {
+        if (prefilter.shouldSkip(stmtText)) {
+            skipPrefiltered(context);
+            return;
+        }
+        SqlInsertValuesScanner.Header insertValues = SqlInsertValuesScanner.scan(stmtText);
+        if (insertValues != null) {
+            parseInsertValues(insertValues, location, context);
+        } else {
+            parseStatement(stmtText, statementNo, location, context);
+        }
+    }
+
+    /**
+     * 预过滤命中的语句：不解析，直接计入跳过数
+     */
+    private void skipPrefiltered(ParseContext context) {
+        context.getSkipped().incrementAndGet();
+        context.getMonitor().onStatementParsed();
+    }
+
+    /**
+     * 解析单条SQL语句
+     *
+     * @param statementNo 语句在脚本中的序号（从1开始，与并行路径一致），用于生成确定的子查询虚拟表名
+     */
+    private void parseStatement(String stmtText, int statementNo, String location, ParseContext context) {
+        // 语句边界：响应取消
+        context.checkCancelled();
+        if (skipIfScriptExpired(location, context)) {
+            return;
+        }
+        try {
+            // 2. 使用Druid解析SQL
+            long druidStart = System.nanoTime();
+            List<SQLStatement> stmts = SQLUtils.parseStatements(stmtText, context.getDialect());
+            metrics.recordPhase(ParseMetrics.PHASE_DRUID_PARSE, druidStart);
+            // 3. 处理每个AST节点
+            handleStatements(stmts, statementNo, location, context);
+        } catch (Exception e) {
+            context.getMonitor().onStatementFailed();
+            throw translateStatementError(stmtText, e);
+        }
+        context.getMonitor().onStatementParsed();
+    }
+
+    /**
+     * 词法层识别出的 INSERT ... VALUES：不构建AST，仅登记目标表
+     */
+    private void parseInsertValues(SqlInsertValuesScanner.Header header, String location, ParseContext context) {
+        // 语句边界：响应取消
+        context.checkCancelled();
+        if (skipIfScriptExpired(location, context)) {
+            return;
+        }
+        handleInsertValues(header, location, context);
+        context.getMonitor().onStatementParsed();
+    }
+
+    private void handleInsertValues(SqlInsertValuesScanner.Header header, String location, ParseContext context) {
+        int warnsBefore = context.getWarnings().size();
+        long handleStart = System.nanoTime();
+        try {
+            sqlStatementHandler.handleInsertValues(header.getTable(), header.getColumns(), context);
+        } finally {
+            metrics.recordStatement(INSERT_VALUES_STATEMENT_TYPE, handleStart);
+        }
+        locateWarnings(context.getWarnings(), warnsBefore, location);
+    }
+
+    private void handleStatements(List<SQLStatement> stmts, int statementNo, String location, ParseContext context) {
+        int warnsBefore = context.getWarnings().size();
+        for (int i = 0; i < stmts.size(); i++) {
+            // 一个片段解析出多条语句时（少见）后续语句追加序号
+            handleStatement(stmts.get(i), i == 0 ? String.valueOf(statementNo) : statementNo + "s" + i, context);
+        }
+        locateWarnings(context.getWarnings(), warnsBefore, location);
+    }
+
+    /**
+     * 为本语句产生的告警补充脚本中的行列位置
+     */
+    private void locateWarnings(List<LineageWarning> warns, int from, String location) {
+        for (int i = from; i < warns.size(); i++) {
+            warns.set(i, warns.get(i).at(location));
+        }
+    }
+
+    /**
+     * 处理单个AST语句，并按语句类型记录血缘处理耗时
+     */
+    private void handleStatement(SQLStatement st, String statementId, ParseContext context) {
+        long handleStart = System.nanoTime();
+        try {
+            handleWithinBudget(st, statementId, context);
+        } finally {
+            metrics.recordStatement(st.getClass().getSimpleName(), handleStart);
+        }
+    }
+
+    /**
+     * 在预算内处理单个AST语句
+     * 配置了语句级预算时先写入派生上下文（临时表等登记写入元数据覆盖层），成功后再合并并提交，
+     * 超出预算的语句整体丢弃（不留下半条血缘与临时表登记），记录告警并计入跳过数，脚本继续解析后续语句
+     */
+    private void handleWithinBudget(SQLStatement st, String statementId, ParseContext context) {
+        StatementBudget statementBudget = context.newStatementBudget();
+        if (statementBudget == StatementBudget.UNLIMITED) {
+            // 每条语句独立作用域
+            sqlStatementHandler.handle(st, new Scope(statementBudget, parallelPool, statementId), context);
+            return;
+        }
+        ParseContext attempt = context.forkAttempt();
+        try {
+            sqlStatementHandler.handle(st, new Scope(statementBudget, parallelPool, statementId), attempt);
+        } catch (StatementBudgetExceededException e) {
+            log.warn("语句超出解析预算，已跳过, traceId={}, 语句类型={}, 原因={}",
+                    context.getTraceId(), st.getClass().getSimpleName(), e.getMessage());
+            context.getWarnings().add(LineageWarning.of("STATEMENT_BUDGET_EXCEEDED",
+                    "语句超出解析预算，已跳过: " + e.getMessage(), st.getClass().getSimpleName(),
+                    "建议拆分该语句，或调大 sql.lineage.budget 相关配置"));
+            context.getSkipped().incrementAndGet();
+            return;
+        }
+        context.merge(attempt);
+    }
+
+    /**
+     * 在语句边界检查脚本级超时：超时后剩余语句全部跳过（计入跳过数），仅首次记录告警
+     *
+     * @return true 表示本语句已跳过
+     */
+    private boolean skipIfScriptExpired(String location, ParseContext context) {
+        if (context.expireIfOverdue()) {
+            log.warn("脚本解析超时，剩余语句将被跳过, traceId={}, 位置={}", context.getTraceId(), location);
+            context.getWarnings().add(LineageWarning.of("SCRIPT_BUDGET_EXCEEDED",
+                    "脚本解析超时（" + context.getBudget().getScriptTimeoutMillis() + "ms），自此处起的语句均已跳过",
+                    location, "建议拆分脚本，或调大 sql.lineage.budget.script-timeout-ms"));
+        } else if (!context.isScriptExpired()) {
+            return false;
+        }
+        context.getSkipped().incrementAndGet();
+        return true;
+    }
+
+    private RuntimeException translateStatementError(String stmtText, Exception e) {
+        if (e instanceof MetadataNotFoundException || e instanceof UnsupportedSyntaxException
+                || e instanceof ParseCancelledException) {
+            // 业务异常直接抛出
+            return (RuntimeException) e;
+        }
+        // 语句级异常：包装为InternalParseException并附带SQL片段信息
+        return new InternalParseException(
+                "解析失败: " + shortSql(stmtText) + " -> " + e.getMessage(), e);
+    }
+
+    /**
+     * 按语句依赖DAG并行解析
+     * 1) 并行构建各语句AST；2) 分析临时表/CTE读写依赖；3) 无依赖的语句并发处理，各自写入独立的图片段；
+     * 4) 按脚本顺序合并片段与警告，遇到的第一个失败语句的异常原样抛出，结果与串行路径一致
+     */
+    private void parseStatementsParallel(String sqlText, List<StatementSpan> statements, ParseContext context) {
+        DbType dialect = context.getDialect();
+        List<StatementFragment> fragments = new ArrayList<>(statements.size());
+        for (StatementSpan span : statements) {
+            if (prefilter.shouldSkip(sqlText, span.getStart(), span.getEnd())) {
+                // 预过滤命中：空AST参与依赖分析（无读写），处理阶段直接跳过
+                StatementFragment fragment = new StatementFragment(null, span.position(), context.fork());
+                fragment.ast = Collections.emptyList();
+                fragment.prefiltered = true;
+                fragments.add(fragment);
+                continue;
+            }
+            SqlInsertValuesScanner.Header insertValues =
+                    SqlInsertValuesScanner.scan(sqlText, span.getStart(), span.getEnd());
+            if (insertValues != null) {
+                // INSERT ... VALUES：不复制文本、不构建AST，处理阶段只登记目标表
+                StatementFragment fragment = new StatementFragment(null, span.position(), context.fork());
+                fragment.ast = Collections.emptyList();
+                fragment.insertValues = insertValues;
+                fragments.add(fragment);
+                continue;
+            }
+            fragments.add(new StatementFragment(span.text(sqlText), span.position(), context.fork()));
+        }
+
+        // 1. 并行构建AST（纯文本解析，无共享状态）
+        List<CompletableFuture<Void>> parseFutures = new ArrayList<>(fragments.size());
+        for (StatementFragment fragment : fragments) {
+            if (fragment.ast != null) {
+                continue;
+            }
+            parseFutures.add(CompletableFuture.runAsync(() -> {
+                if (context.getMonitor().isCancelled()) {
+                    // 已取消：不再构建剩余语句的AST
+                    return;
+                }
+                try {
+                    long druidStart = System.nanoTime();
+                    fragment.ast = SQLUtils.parseStatements(fragment.stmtText, dialect);
+                    metrics.recordPhase(ParseMetrics.PHASE_DRUID_PARSE, druidStart);
+                } catch (Exception e) {
+                    fragment.error = translateStatementError(fragment.stmtText, e);
+                }
+            }, parallelPool));
+        }
+        CompletableFuture.allOf(parseFutures.toArray(new CompletableFuture[0])).join();
+        context.checkCancelled();
+
+        // 2. 构建语句依赖DAG
+        List<List<SQLStatement>> asts = new ArrayList<>(fragments.size());
+        for (StatementFragment fragment : fragments) {
+            asts.add(fragment.ast);
+        }
+        List<Set<Integer>> deps = StatementDependencyAnalyzer.analyze(asts);
+
+        // 3. 按依赖调度处理
+        List<CompletableFuture<Void>> handleFutures = new ArrayList<>(fragments.size());
+        for (int i = 0; i < fragments.size(); i++) {
+            StatementFragment fragment = fragments.get(i);
+            int statementNo = i + 1;
+            CompletableFuture<?>[] pre = deps.get(i).stream()
+                    .map(handleFutures::get)
+                    .toArray(CompletableFuture[]::new);
+            handleFutures.add(CompletableFuture.allOf(pre).thenRunAsync(() -> {
+                if (fragment.prefiltered) {
+                    skipPrefiltered(fragment.context);
+                    return;
+                }
+                if (fragment.error != null) {
+                    fragment.context.getMonitor().onStatementFailed();
+                    return;
+                }
+                try {
+                    fragment.context.checkCancelled();
+                } catch (ParseCancelledException e) {
+                    fragment.error = e;
+                    return;
+                }
+                if (skipIfScriptExpired(fragment.location, fragment.context)) {
+                    return;
+                }
+                try {
+                    if (fragment.insertValues != null) {
+                        handleInsertValues(fragment.insertValues, fragment.location, fragment.context);
+                    } else {
+                        handleStatements(fragment.ast, statementNo, fragment.location, fragment.context);
+                    }
+                } catch (Exception e) {
+                    fragment.error = translateStatementError(fragment.sqlForError(), e);
+                    fragment.context.getMonitor().onStatementFailed();
+                    return;
+                }
+                fragment.context.getMonitor().onStatementParsed();
+            }, parallelPool));
+        }
+        CompletableFuture.allOf(handleFutures.toArray(new CompletableFuture[0])).join();
+        log.debug("并行解析完成，语句数={}", fragments.size());
+
+        // 4. 按脚本顺序合并
+        for (StatementFragment fragment : fragments) {
+            if (fragment.error != null) {
+                throw fragment.error;
+            }
+            context.merge(fragment.context);
         }
     }
 
@@ -134,26 +666,75 @@ public class DefaultSqlLineageParser implements SqlLineageParser {
     }
 
 
+    /**
+     * 脚本混有多种方言特征时提示显式指定方言
+     */
+    private void warnIfDialectAmbiguous(SqlDialectDetector.Detection detection, ParseContext context) {
+        if (detection != null && detection.getHits() > 0 && detection.getConfidence() < DIALECT_CONFIDENCE_THRESHOLD) {
+            context.getWarnings().add(LineageWarning.of("DIALECT_AMBIGUOUS",
+                    String.format("脚本包含多种方言特征，按 %s 解析（置信度%.2f）", detection.getDbType(), detection.getConfidence()),
+                    "脚本", "请显式指定 dbType"));
+        }
+    }
+
     /**
      * 构建解析结果对象
      */
-    private ParseResult buildResult(String traceId, long startTime,
-                                    LineageGraph graph, List<LineageWarning> warns, int skipped) {
+    private ParseResult buildResult(ParseContext context, long startTime, SqlDialectDetector.Detection detection,
+                                    int statements) {
         long elapsed = System.currentTimeMillis() - startTime;
+        LineageGraph graph = context.getGraph();
 
         ParseResult result = new ParseResult();
-        result.setTraceId(traceId);
+        result.setTraceId(context.getTraceId());
         result.setGraph(graph);
-        result.setWarnings(warns);
-        result.setSkippedFragments(skipped);
+        result.setWarnings(context.getWarnings());
+        result.setSkippedFragments(context.getSkipped().get());
+        result.setStatements(statements);
         result.setParseMillis(elapsed);
+        result.setDialect(context.getDialect());
+        result.setMode(context.getMode());
+        result.setDialectConfidence(detection == null ? null : detection.getConfidence());
+        metrics.recordScript(elapsed, context.getWarnings(), result.getSkippedFragments());
 
         log.info("SQL解析完成, traceId={}, 表节点={}, 列节点={}, 警告={}, 跳过={}, 耗时={}ms",
-                traceId, graph.getTables().size(), graph.getColumns().size(),
-                warns.size(), skipped, elapsed);
+                context.getTraceId(), graph.getTables().size(), graph.getColumns().size(),
+                context.getWarnings().size(), result.getSkippedFragments(), elapsed);
 
         return result;
     }
 
+    private ParseResult emptyResult(String traceId, LineageMode mode) {
+        ParseResult emptyResult = new ParseResult();
+        emptyResult.setMode(mode == null ? LineageMode.COLUMN : mode);
+        emptyResult.setGraph(new LineageGraph());
+        emptyResult.setWarnings(new ArrayList<>());
+        emptyResult.setSkippedFragments(0);
+        emptyResult.setTraceId(traceId);
+        emptyResult.setParseMillis(0);
+        return emptyResult;
+    }
+
+    /**
+     * 单条语句的并行解析片段
+     */
+    private static final class StatementFragment {
+        final String stmtText;
+        final String location;
+        final ParseContext context;
+        List<SQLStatement> ast;
+        RuntimeException error;
+        boolean prefiltered;
+        SqlInsertValuesScanner.Header insertValues;
+
+        StatementFragment(String stmtText, String location, ParseContext context) {
+            this.stmtText = stmtText;
+            this.location = location;
+            this.context = context;
+        }
 
+        String sqlForError() {
+            return insertValues == null ? stmtText : "INSERT INTO " + insertValues + " VALUES ...";
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.afsun.lineage.core;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 表达式遍历缓冲：显式栈、二元运算链展开区与结果收集集合
+ * 由 {@link Scope} 按语句池化复用，避免每次解析表达式都重新分配
+ */
+final class ExprWalkBuffer {
+
+    final ArrayDeque<SQLObject> stack = new ArrayDeque<>();
+    final List<SQLExpr> chain = new ArrayList<>();
+    final LinkedHashSet<ColumnRef> out = new LinkedHashSet<>();
+
+    void clear() {
+        stack.clear();
+        chain.clear();
+        out.clear();
+    }
+}
@@ -0,0 +1,93 @@
+package com.afsun.lineage.core;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * 标识符规范化池
+ * 库/模式/表/列名在元数据缓存与血缘图中会被反复构造，这里对每个原文只做一次小写化并驻留，
+ * 相同标识符在进程内共享同一个String实例；{@link ColumnRef}、{@link TableName} 及图节点也经由
+ * {@link #share} 复用享元实例，集合去重时多数在引用相等处即可结束
+ * 各池均为弱引用池（{@link WeakPool}）：已删除/改名的表、自动生成的子查询别名等不再被引用的条目随GC回收，
+ * 长期运行时池的大小只跟随仍在使用的元数据与血缘图
+ *
+ * @author afsun
+ */
+public final class IdentifierPool {
+
+    /**
+     * 原文 -> 规范化小写名；小写名自身也映射到自身，作为驻留实例
+     */
+    private static final WeakPool<String, String> LOWER = new WeakPool<>();
+
+    /**
+     * 保留大小写的原文驻留池
+     */
+    private static final WeakPool<String, String> ORIGINAL = new WeakPool<>();
+
+    private IdentifierPool() {
+    }
+
+    /**
+     * 返回标识符的规范化小写形式（驻留实例）
+     */
+    public static String lower(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String hit = LOWER.get(raw);
+        if (hit != null) {
+            return hit;
+        }
+        String canonical = intern(LOWER, raw.toLowerCase(Locale.ROOT));
+        if (canonical != raw) {
+            LOWER.putIfAbsent(raw, canonical);
+        }
+        return canonical;
+    }
+
+    /**
+     * 返回保留大小写的原文驻留实例
+     */
+    public static String original(String raw) {
+        return raw == null ? null : intern(ORIGINAL, raw);
+    }
+
+    /**
+     * 享元复用：池中已有相等且 {@code sameOriginals} 成立的实例时返回池中实例，否则登记并返回候选实例
+     * 相等但原文不同的候选不会替换池中实例，保证调用方拿到的原始大小写与入参一致
+     */
+    public static <T> T share(WeakPool<T, T> pool, T candidate, BiPredicate<T, T> sameOriginals) {
+        T pooled = pool.get(candidate);
+        if (pooled == null) {
+            pooled = pool.putIfAbsent(candidate, candidate);
+            if (pooled == null) {
+                return candidate;
+            }
+        }
+        return sameOriginals.test(pooled, candidate) ? pooled : candidate;
+    }
+
+    /**
+     * 三段标识符的哈希（不分配可变参数数组）
+     */
+    public static int hash(String a, String b, String c) {
+        int h = Objects.hashCode(a);
+        h = 31 * h + Objects.hashCode(b);
+        return 31 * h + Objects.hashCode(c);
+    }
+
+    public static int hash(String a, String b, String c, String d) {
+        return 31 * hash(a, b, c) + Objects.hashCode(d);
+    }
+
+    private static String intern(WeakPool<String, String> pool, String s) {
+        String hit = pool.get(s);
+        if (hit != null) {
+            return hit;
+        }
+        String prev = pool.putIfAbsent(s, s);
+        return prev == null ? s : prev;
+    }
+}
@@ -1,7 +1,9 @@
 package com.afsun.lineage.core;
 
 import com.afsun.lineage.graph.ColumnNode;
+import com.afsun.lineage.graph.IndirectEdge;
 import com.afsun.lineage.graph.OwnerEdge;
+import com.afsun.lineage.graph.TableEdge;
 import com.afsun.lineage.graph.TableNode;
 import com.afsun.lineage.graph.ToEdge;
 import lombok.Data;
@@ -14,6 +16,14 @@ public class LineageGraph {
     private final Set<ColumnNode> columns = new LinkedHashSet<>();
     private final Set<OwnerEdge> ownerEdges = new LinkedHashSet<>();
     private final Set<ToEdge> toEdges = new LinkedHashSet<>();
+    /**
+     * 表级依赖边（{@link LineageMode#TABLE_ONLY} 模式产出）
+     */
+    private final Set<TableEdge> tableEdges = new LinkedHashSet<>();
+    /**
+     * 间接血缘边（JOIN/过滤/分组/排序列 -> 目标表），随 {@link ResolutionProfile} 产出
+     */
+    private final Set<IndirectEdge> indirectEdges = new LinkedHashSet<>();
 
     public void addOwner(ColumnNode col, TableNode tbl) {
         this.columns.add(col);
@@ -26,4 +36,28 @@ public class LineageGraph {
         this.columns.add(dst);
         this.toEdges.add(new ToEdge(src, dst));
     }
+
+    public void addIndirect(ColumnNode src, TableNode dst, IndirectEdge.Kind kind) {
+        this.columns.add(src);
+        this.tables.add(dst);
+        this.indirectEdges.add(new IndirectEdge(src, dst, kind));
+    }
+
+    public void addTableEdge(TableNode src, TableNode dst) {
+        this.tables.add(src);
+        this.tables.add(dst);
+        this.tableEdges.add(new TableEdge(src, dst));
+    }
+
+    /**
+     * 按插入顺序合并另一张血缘图（用于拼接按语句独立构建的图片段）
+     */
+    public void merge(LineageGraph other) {
+        this.tables.addAll(other.tables);
+        this.columns.addAll(other.columns);
+        this.ownerEdges.addAll(other.ownerEdges);
+        this.toEdges.addAll(other.toEdges);
+        this.tableEdges.addAll(other.tableEdges);
+        this.indirectEdges.addAll(other.indirectEdges);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.afsun.lineage.core;
+
+/**
+ * 血缘解析粒度
+ *
+ * @author afsun
+ */
+public enum LineageMode {
+    /**
+     * 列级血缘：解析表达式、展开星号，依赖元数据
+     */
+    COLUMN,
+    /**
+     * 仅表级血缘：只访问 FROM/JOIN/INTO/USING 等表引用，不解析表达式、不查询元数据，
+     * 输出表节点与表级依赖边（{@link LineageGraph#getTableEdges()}）
+     */
+    TABLE_ONLY
+}
@@ -20,4 +20,11 @@ public class LineageWarning {
         return new LineageWarning(c, s, p, sug);
     }
 
+    /**
+     * 附加语句在脚本中的位置（如 "第3行第1列"）
+     */
+    public LineageWarning at(String location) {
+        return new LineageWarning(category, summary, location + " " + position, suggestion);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.afsun.lineage.core;
+
+import lombok.Getter;
+
+/**
+ * 解析预算配置
+ * 限制单条语句与整个脚本的解析耗时、单条语句的AST节点访问数，防止个别超大/深度嵌套语句长期占用线程
+ * 各项取值 <=0 表示不限制
+ *
+ * @author afsun
+ */
+@Getter
+public class ParseBudget {
+
+    public static final ParseBudget UNLIMITED = new ParseBudget(0, 0, 0);
+
+    /**
+     * 单条语句解析超时（毫秒）
+     */
+    private final long statementTimeoutMillis;
+
+    /**
+     * 整个脚本解析超时（毫秒），超时后剩余语句全部跳过
+     */
+    private final long scriptTimeoutMillis;
+
+    /**
+     * 单条语句允许访问的AST节点数
+     */
+    private final int maxAstNodes;
+
+    public ParseBudget(long statementTimeoutMillis, long scriptTimeoutMillis, int maxAstNodes) {
+        this.statementTimeoutMillis = statementTimeoutMillis;
+        this.scriptTimeoutMillis = scriptTimeoutMillis;
+        this.maxAstNodes = maxAstNodes;
+    }
+
+    /**
+     * 是否限制单条语句（耗时或节点数）
+     */
+    public boolean isStatementLimited() {
+        return statementTimeoutMillis > 0 || scriptTimeoutMillis > 0 || maxAstNodes > 0;
+    }
+
+    /**
+     * 计算脚本截止时间（System.nanoTime基准），不限制时返回0
+     */
+    long scriptDeadline(long startNanos) {
+        return scriptTimeoutMillis > 0 ? nonZero(startNanos + scriptTimeoutMillis * 1_000_000L) : 0L;
+    }
+
+    /**
+     * 为一条语句创建预算计数器，截止时间取语句超时与脚本截止时间中较早者
+     */
+    StatementBudget startStatement(long scriptDeadline, ParseMonitor monitor) {
+        long deadline = statementTimeoutMillis > 0 ? nonZero(System.nanoTime() + statementTimeoutMillis * 1_000_000L) : 0L;
+        if (scriptDeadline != 0 && (deadline == 0 || scriptDeadline - deadline < 0)) {
+            deadline = scriptDeadline;
+        }
+        return new StatementBudget(deadline, maxAstNodes, monitor);
+    }
+
+    // 0 用作"不限制"标记，避免nanoTime恰好得到0
+    private static long nonZero(long nanos) {
+        return nanos == 0 ? 1 : nanos;
+    }
+}
@@ -0,0 +1,159 @@
+package com.afsun.lineage.core;
+
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
+import com.afsun.lineage.core.meta.DynamicMetadataProvider;
+import com.afsun.lineage.core.metrics.ParseMetrics;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.alibaba.druid.DbType;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单次解析调用的上下文
+ * 承载一次脚本解析的全部可变状态（方言、脚本内临时表、血缘图、告警、跳过计数、进度监视器），
+ * 解析器与语句处理器本身不保存任何调用级状态，可作为单例在多线程间共享
+ *
+ * @author afsun
+ */
+@Getter
+public class ParseContext {
+
+    private final String traceId;
+    private final DbType dialect;
+    /**
+     * 脚本级动态元数据（临时表/CTE/子查询注册于此），同一脚本的所有语句共享
+     */
+    private final DynamicMetadataProvider metadata;
+    private final LineageGraph graph;
+    private final List<LineageWarning> warnings;
+    private final AtomicInteger skipped;
+    private final ParseMonitor monitor;
+    private final ParseBudget budget;
+    private final ParseMetrics metrics;
+    /**
+     * 血缘粒度
+     */
+    private final LineageMode mode;
+    /**
+     * 脚本截止时间（System.nanoTime基准），0表示不限制
+     */
+    @Getter(AccessLevel.NONE)
+    private final long scriptDeadline;
+    /**
+     * 脚本是否已超时（各片段共享，仅首次超时时记录告警）
+     */
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean scriptExpired;
+
+    /**
+     * 不限预算、不记录指标的列级解析上下文
+     */
+    public ParseContext(String traceId, DbType dialect, MetadataProvider metadataProvider) {
+        this(traceId, dialect, metadataProvider, null, null, null, null);
+    }
+
+    /**
+     * @param metadataProvider 元数据提供者，{@link LineageMode#TABLE_ONLY} 模式下可为null；
+     *                         构造时经 {@link MetadataProvider#snapshot()} 固定快照，整个脚本使用同一版本的元数据
+     * @param monitor          进度监视器，为null时不监视
+     * @param budget           解析预算，为null时不限制
+     * @param metrics          指标记录器，外部元数据查询经其包装计时；为null时不记录
+     * @param mode             血缘粒度，为null时按列级解析
+     */
+    public ParseContext(String traceId, DbType dialect, MetadataProvider metadataProvider, ParseMonitor monitor,
+                        ParseBudget budget, ParseMetrics metrics, LineageMode mode) {
+        this(traceId, dialect,
+                new DynamicMetadataProvider((metrics == null ? ParseMetrics.NONE : metrics)
+                        .timed(metadataProvider == null ? null : metadataProvider.snapshot())),
+                monitor == null ? ParseMonitor.NONE : monitor,
+                budget == null ? ParseBudget.UNLIMITED : budget,
+                metrics == null ? ParseMetrics.NONE : metrics,
+                mode == null ? LineageMode.COLUMN : mode,
+                (budget == null ? ParseBudget.UNLIMITED : budget).scriptDeadline(System.nanoTime()),
+                new AtomicBoolean(false));
+    }
+
+    private ParseContext(String traceId, DbType dialect, DynamicMetadataProvider metadata, ParseMonitor monitor,
+                         ParseBudget budget, ParseMetrics metrics, LineageMode mode, long scriptDeadline,
+                         AtomicBoolean scriptExpired) {
+        this.traceId = traceId;
+        this.dialect = dialect;
+        this.metadata = metadata;
+        this.monitor = monitor;
+        this.budget = budget;
+        this.metrics = metrics;
+        this.mode = mode;
+        this.scriptDeadline = scriptDeadline;
+        this.scriptExpired = scriptExpired;
+        this.graph = new LineageGraph();
+        this.warnings = new ArrayList<>();
+        this.skipped = new AtomicInteger(0);
+    }
+
+    /**
+     * 派生语句片段上下文：共享方言、血缘粒度、脚本级元数据与预算，血缘图/告警/计数独立（用于并行解析或预算内试解析后按序合并）
+     */
+    public ParseContext fork() {
+        return new ParseContext(traceId, dialect, metadata, monitor, budget, metrics, mode, scriptDeadline, scriptExpired);
+    }
+
+    /**
+     * 派生预算内试解析上下文：在 {@link #fork()} 基础上，脚本级元数据的注册与删除写入覆盖层，
+     * {@link #merge} 时才提交；丢弃该上下文即撤销语句内的临时表/CTE/子查询登记
+     */
+    public ParseContext forkAttempt() {
+        return new ParseContext(traceId, dialect, metadata.overlay(), monitor, budget, metrics, mode, scriptDeadline,
+                scriptExpired);
+    }
+
+    /**
+     * 为下一条语句创建预算计数器；未配置语句级限制时返回 {@link StatementBudget#UNLIMITED}
+     */
+    public StatementBudget newStatementBudget() {
+        return budget.isStatementLimited() ? budget.startStatement(scriptDeadline, monitor) : StatementBudget.UNLIMITED;
+    }
+
+    /**
+     * 在语句边界检查脚本是否已超时
+     *
+     * @return true 表示首次检测到超时（调用方据此只记录一次告警）
+     */
+    public boolean expireIfOverdue() {
+        if (scriptDeadline == 0 || System.nanoTime() - scriptDeadline < 0) {
+            return false;
+        }
+        return scriptExpired.compareAndSet(false, true);
+    }
+
+    public boolean isScriptExpired() {
+        return scriptExpired.get();
+    }
+
+    /**
+     * 在语句边界检查取消标记
+     *
+     * @throws ParseCancelledException 已请求取消
+     */
+    public void checkCancelled() {
+        if (monitor.isCancelled()) {
+            throw new ParseCancelledException("解析已取消, traceId=" + traceId);
+        }
+    }
+
+    /**
+     * 按顺序合并片段上下文的结果
+     */
+    public void merge(ParseContext fragment) {
+        if (fragment.metadata != metadata) {
+            fragment.metadata.commit();
+        }
+        graph.merge(fragment.graph);
+        warnings.addAll(fragment.warnings);
+        skipped.addAndGet(fragment.skipped.get());
+    }
+}
@@ -0,0 +1,48 @@
+package com.afsun.lineage.core;
+
+/**
+ * 解析进度监视器
+ * 解析器在每条语句处理完成/失败时回调，并在语句边界检查是否已取消；解析服务在写入血缘图前后回调；
+ * 并行解析时回调可能来自多个线程，实现需线程安全
+ *
+ * @author afsun
+ */
+public interface ParseMonitor {
+
+    /**
+     * 不做任何监控的默认实现
+     */
+    ParseMonitor NONE = new ParseMonitor() {
+    };
+
+    /**
+     * 一条语句处理成功
+     */
+    default void onStatementParsed() {
+    }
+
+    /**
+     * 一条语句处理失败
+     */
+    default void onStatementFailed() {
+    }
+
+    /**
+     * 解析完成，开始写入血缘图
+     */
+    default void onPersistStarted() {
+    }
+
+    /**
+     * 血缘图写入完成
+     */
+    default void onPersisted() {
+    }
+
+    /**
+     * 是否已请求取消，解析器在开始处理下一条语句前检查
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
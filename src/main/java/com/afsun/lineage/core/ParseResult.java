@@ -1,7 +1,9 @@
 package com.afsun.lineage.core;
 
+import com.alibaba.druid.DbType;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -9,6 +11,44 @@ public class ParseResult {
     private LineageGraph graph;
     private List<LineageWarning> warnings;
     private int skippedFragments;
+    /**
+     * 处理的语句数（含预过滤跳过的语句）
+     */
+    private int statements;
     private String traceId;
     private long parseMillis;
-}
\ No newline at end of file
+    /**
+     * 解析使用的方言
+     */
+    private DbType dialect;
+    /**
+     * 方言自动检测的置信度 [0, 1]；调用方显式指定方言时为null
+     */
+    private Double dialectConfidence;
+    /**
+     * 血缘粒度；{@link LineageMode#TABLE_ONLY} 时图中只有表节点与表级依赖边
+     */
+    private LineageMode mode;
+
+    /**
+     * 复制结果：血缘图的集合与告警列表为新实例，节点、边、告警对象与原结果共享
+     * 供缓存在多个调用方之间共享同一结果时使用，调用方修改副本不会影响缓存中的结果
+     */
+    public ParseResult copy() {
+        ParseResult copy = new ParseResult();
+        if (graph != null) {
+            LineageGraph g = new LineageGraph();
+            g.merge(graph);
+            copy.setGraph(g);
+        }
+        copy.setWarnings(warnings == null ? null : new ArrayList<>(warnings));
+        copy.setSkippedFragments(skippedFragments);
+        copy.setStatements(statements);
+        copy.setTraceId(traceId);
+        copy.setParseMillis(parseMillis);
+        copy.setDialect(dialect);
+        copy.setDialectConfidence(dialectConfidence);
+        copy.setMode(mode);
+        return copy;
+    }
+}
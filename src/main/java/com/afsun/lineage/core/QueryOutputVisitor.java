@@ -0,0 +1,371 @@
+package com.afsun.lineage.core;
+
+import com.afsun.lineage.core.dto.SelectOutput;
+import com.afsun.lineage.core.exceptions.MetadataNotFoundException;
+import com.afsun.lineage.core.meta.DynamicMetadataProvider;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.meta.TableHandle;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 查询输出列解析引擎
+ * 基于Druid访问者遍历 SELECT 查询（查询块 / UNION / FROM 中的表与子查询），计算每个查询节点的输出列及其源列；
+ * 结果按AST节点缓存在语句作用域中（子作用域共享，见 {@link Scope#getQueryOutputs()}），
+ * 图构建、CTE/子查询注册与表达式子查询解析复用同一结果，每个查询块在一条语句内只解析一次
+ * 访问者本身只持有一次调用的作用域栈，按需创建，不跨语句复用
+ * 链式 UNION 迭代展开为分支列表，超宽 UNION 的分支在解析器线程池中并行解析，每个输出位置的 sources 只合并一次
+ *
+ * @author afsun
+ */
+public final class QueryOutputVisitor extends SQLASTVisitorAdapter {
+
+    /**
+     * UNION 分支数达到该值时并行解析各分支
+     */
+    static final int PARALLEL_UNION_BRANCHES = 64;
+
+    private final ExpressionResolver exprResolver;
+    private final MetadataProvider metadata;
+    private final List<LineageWarning> warns;
+    /**
+     * 宽松模式（表达式中的子查询）：星号无法展开或元数据缺失时记录告警而不中断语句
+     */
+    private final boolean lenient;
+    private final Deque<Scope> scopes = new ArrayDeque<>();
+
+    public QueryOutputVisitor(ExpressionResolver exprResolver, MetadataProvider metadata, List<LineageWarning> warns) {
+        this(exprResolver, metadata, warns, false);
+    }
+
+    private QueryOutputVisitor(ExpressionResolver exprResolver, MetadataProvider metadata,
+                               List<LineageWarning> warns, boolean lenient) {
+        this.exprResolver = exprResolver;
+        this.metadata = metadata;
+        this.warns = warns;
+        this.lenient = lenient;
+    }
+
+    /**
+     * 用于 IN/EXISTS/标量子查询：元数据问题只记录告警
+     */
+    public static QueryOutputVisitor lenient(ExpressionResolver exprResolver, MetadataProvider metadata,
+                                             List<LineageWarning> warns) {
+        return new QueryOutputVisitor(exprResolver, metadata, warns, true);
+    }
+
+    /**
+     * 查询的输出列；首次计算时把 FROM 绑定到给定作用域，之后直接返回缓存结果
+     *
+     * @return 不可变的输出列列表；不支持的查询结构返回空列表
+     */
+    public List<SelectOutput> outputsOf(SQLSelectQuery query, Scope scope) {
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        Map<SQLSelectQuery, List<SelectOutput>> memo = scope.getQueryOutputs();
+        List<SelectOutput> outputs = memo.get(query);
+        if (outputs != null) {
+            return outputs;
+        }
+        scopes.push(scope);
+        try {
+            query.accept(this);
+        } finally {
+            scopes.pop();
+        }
+        outputs = memo.get(query);
+        if (outputs == null) {
+            outputs = Collections.emptyList();
+            memo.put(query, outputs);
+        }
+        return outputs;
+    }
+
+    /**
+     * 将 FROM/UPDATE 中的表源绑定到作用域（表别名、子查询虚拟表）
+     */
+    public void bind(SQLTableSource from, Scope scope) {
+        scopes.push(scope);
+        try {
+            bindFrom(from, scope);
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    @Override
+    public boolean visit(SQLSelectQueryBlock x) {
+        Scope scope = scopes.peek();
+        bindFrom(x.getFrom(), scope);
+        scope.markBound(x);
+
+        List<SelectOutput> outputs = new ArrayList<>();
+        int idx = 0;
+        for (SQLSelectItem item : x.getSelectList()) {
+            // 协作式预算检查：超时/超出节点数时中断本语句
+            scope.getBudget().tick();
+            String alias = safeLower(item.getAlias());
+            SQLExpr expr = item.getExpr();
+            if (expr instanceof SQLAllColumnExpr) {
+                // * 或 t.*
+                SQLExpr owner = ((SQLAllColumnExpr) expr).getOwner();
+                String qualifier = null;
+                if (owner != null) {
+                    qualifier = owner instanceof SQLIdentifierExpr ? ((SQLIdentifierExpr) owner).getName() : owner.toString();
+                }
+                outputs.addAll(expandStar(qualifier, scope));
+            } else if (expr instanceof SQLIdentifierExpr && "*".equals(((SQLIdentifierExpr) expr).getName())) {
+                outputs.addAll(expandStar(null, scope));
+            } else if (expr instanceof SQLPropertyExpr && "*".equals(((SQLPropertyExpr) expr).getName())) {
+                outputs.addAll(expandStar(((SQLPropertyExpr) expr).getOwner().toString(), scope));
+            } else {
+                List<ColumnRef> sources = exprResolver.resolve(expr, scope, metadata, warns);
+                // 推断输出列名：优先别名；否则取标识/属性表达式名称；实在没有则生成 col_{idx}
+                String outName = alias;
+                if (outName == null) {
+                    if (expr instanceof SQLPropertyExpr) {
+                        outName = safeLower(((SQLPropertyExpr) expr).getName());
+                    } else if (expr instanceof SQLIdentifierExpr) {
+                        outName = safeLower(((SQLIdentifierExpr) expr).getName());
+                    } else {
+                        outName = "col_" + idx;
+                        warns.add(LineageWarning.of("ANON_COL",
+                                "无法推断列名，已生成占位名: " + outName,
+                                expr.getClass().getSimpleName(), "建议为该列提供别名"));
+                    }
+                }
+                outputs.add(new SelectOutput(outName, sources));
+            }
+            idx++;
+        }
+        scope.getQueryOutputs().put(x, Collections.unmodifiableList(outputs));
+        return false;
+    }
+
+    @Override
+    public boolean visit(SQLUnionQuery x) {
+        Scope scope = scopes.peek();
+        scope.getBudget().tick();
+        // 链式 UNION 展开为分支列表，各分支在独立子作用域中解析，避免分支间的表别名互相干扰
+        List<SQLSelectQuery> branches = flattenUnion(x);
+        List<List<SelectOutput>> branchOutputs;
+        if (branches.size() >= PARALLEL_UNION_BRANCHES && scope.getBranchPool() != null) {
+            branchOutputs = collectBranchesInParallel(branches, scope);
+        } else {
+            branchOutputs = new ArrayList<>(branches.size());
+            for (int i = 0; i < branches.size(); i++) {
+                branchOutputs.add(outputsOf(branches.get(i), scope.newUnionBranchScope(i)));
+            }
+        }
+
+        // 按位置对齐：与逐级二元合并一致，每个分支与此前已合并的列数不一致时告警
+        int width = branchOutputs.get(0).size();
+        for (int b = 1; b < branchOutputs.size(); b++) {
+            int size = branchOutputs.get(b).size();
+            if (size != width) {
+                warns.add(LineageWarning.of("UNION_MISMATCH",
+                        "UNION 分支列数不一致，按最短长度位置对齐",
+                        x.getClass().getSimpleName(), "建议为两侧提供一致的列数与别名"));
+                width = Math.min(width, size);
+            }
+        }
+        // 每个输出位置只合并一次 sources；列名取第一个分支，缺失时取第二个分支
+        List<SelectOutput> merged = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            String name = branchOutputs.get(0).get(i).getOutputName();
+            if (name == null && branchOutputs.size() > 1) {
+                name = branchOutputs.get(1).get(i).getOutputName();
+            }
+            Set<ColumnRef> unionSources = new LinkedHashSet<>();
+            for (List<SelectOutput> outputs : branchOutputs) {
+                unionSources.addAll(outputs.get(i).getSources());
+            }
+            merged.add(new SelectOutput(name != null ? name : "col_" + i, new ArrayList<>(unionSources)));
+        }
+        scope.getQueryOutputs().put(x, Collections.unmodifiableList(merged));
+        return false;
+    }
+
+    /**
+     * 迭代展开 UNION 树（含左深/右深链），按从左到右的顺序返回非 UNION 分支
+     */
+    public static List<SQLSelectQuery> flattenUnion(SQLUnionQuery union) {
+        List<SQLSelectQuery> branches = new ArrayList<>();
+        Deque<SQLSelectQuery> stack = new ArrayDeque<>();
+        stack.push(union);
+        while (!stack.isEmpty()) {
+            SQLSelectQuery q = stack.pop();
+            if (q instanceof SQLUnionQuery) {
+                SQLUnionQuery u = (SQLUnionQuery) q;
+                if (u.getRight() != null) {
+                    stack.push(u.getRight());
+                }
+                if (u.getLeft() != null) {
+                    stack.push(u.getLeft());
+                }
+            } else {
+                branches.add(q);
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * 超宽 UNION 的分支并行解析
+     * 并行流显式提交到作用域携带的解析器线程池，不占用公共 ForkJoinPool；
+     * 每个分支使用当前作用域的分支子作用域（共享查询输出缓存）、独立的告警列表与子预算，
+     * 汇合后按分支顺序合并告警并回预算节点数。
+     * 各分支的子查询虚拟表登记在各自的元数据覆盖层中且不提交：分支常复用同一别名（如每个分支都是 {@code FROM (...) t}），
+     * 共用脚本级元数据时 {@code t.*} 会读到其他分支登记的列
+     */
+    private List<List<SelectOutput>> collectBranchesInParallel(List<SQLSelectQuery> branches, Scope scope) {
+        StatementBudget budget = scope.getBudget();
+        ForkJoinPool pool = scope.getBranchPool();
+        List<BranchResult> results = pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, branches.size())
+                .parallel()
+                .mapToObj(i -> {
+                    BranchResult r = new BranchResult(budget.fork());
+                    MetadataProvider branchMetadata = metadata instanceof DynamicMetadataProvider
+                            ? ((DynamicMetadataProvider) metadata).overlay() : metadata;
+                    r.outputs = new QueryOutputVisitor(exprResolver, branchMetadata, r.warns, lenient)
+                            .outputsOf(branches.get(i), scope.newBranchScope(r.budget, i, branchMetadata));
+                    return r;
+                })
+                .collect(Collectors.toList())));
+        List<List<SelectOutput>> outputs = new ArrayList<>(results.size());
+        for (BranchResult r : results) {
+            warns.addAll(r.warns);
+            budget.join(r.budget);
+            outputs.add(r.outputs);
+        }
+        return outputs;
+    }
+
+    private static final class BranchResult {
+        final StatementBudget budget;
+        final List<LineageWarning> warns = new ArrayList<>();
+        List<SelectOutput> outputs;
+
+        BranchResult(StatementBudget budget) {
+            this.budget = budget;
+        }
+    }
+
+    @Override
+    public boolean visit(SQLExprTableSource x) {
+        String alias = safeLower(x.getAlias());
+        TableName tn = TableName.parse(x.getExpr().toString());
+        scopes.peek().addTableAlias(alias != null ? alias : tn.getTable(), tn);
+        return false;
+    }
+
+    @Override
+    public boolean visit(SQLJoinTableSource x) {
+        Scope scope = scopes.peek();
+        bindFrom(x.getLeft(), scope);
+        bindFrom(x.getRight(), scope);
+        return false;
+    }
+
+    @Override
+    public boolean visit(SQLSubqueryTableSource x) {
+        Scope scope = scopes.peek();
+        String subAlias = safeLower(x.getAlias());
+        // 子查询没有别名时生成一个默认别名（用于INSERT SELECT场景）
+        if (subAlias == null || subAlias.isEmpty()) {
+            subAlias = scope.nextSubqueryAlias();
+            warns.add(LineageWarning.of("SUBQUERY_NO_ALIAS",
+                    "子查询缺少别名，已自动生成: " + subAlias,
+                    x.getClass().getSimpleName(), "建议为子查询提供显式别名"));
+        }
+
+        // 子查询在隔离作用域中解析，嵌套子查询在其中递归处理
+        List<SelectOutput> subOutputs = outputsOf(x.getSelect().getQuery(), scope.newSubScope());
+
+        // 注册为父作用域中的虚拟表，并登记子查询列（支持 sub.col 解析）
+        scope.addTableAlias(subAlias, TableName.of(null, null, subAlias, null, null, subAlias));
+        List<ColumnRef> subColumns = new ArrayList<>(subOutputs.size());
+        for (SelectOutput out : subOutputs) {
+            scope.addSubqueryColumn(subAlias, out.getOutputName(), out.getSources());
+            subColumns.add(ColumnRef.of(null, null, subAlias, out.getOutputName(),
+                    null, null, subAlias, out.getOutputName()));
+        }
+        // 同时注册到动态元数据，供 sub.* 展开与虚拟表判断
+        if (metadata instanceof DynamicMetadataProvider) {
+            ((DynamicMetadataProvider) metadata).registerTempTable(null, null, subAlias, subColumns);
+        }
+        return false;
+    }
+
+    private void bindFrom(SQLTableSource from, Scope scope) {
+        if (from == null) {
+            return;
+        }
+        scope.getBudget().tick();
+        if (from instanceof SQLExprTableSource || from instanceof SQLJoinTableSource
+                || from instanceof SQLSubqueryTableSource) {
+            from.accept(this);
+            return;
+        }
+        warns.add(LineageWarning.of("UNSUPPORTED_FROM",
+                "FROM 子句结构暂不支持: " + from.getClass().getSimpleName(),
+                from.getClass().getSimpleName(), "请简化 FROM"));
+    }
+
+    /**
+     * 星号展开：qualifier=null 表示 *，否则 t.*；子查询/CTE 列展开为其源列
+     */
+    public List<SelectOutput> expandStar(String qualifier, Scope scope) {
+        List<SelectOutput> outs = new ArrayList<>();
+        TableName tn;
+        if (qualifier == null) {
+            if (scope.tableCount() != 1) {
+                return starFailure("AMBIGUOUS_STAR", "SELECT * 存在多表或无表，无法唯一展开", "请使用 t.* 或明确列名");
+            }
+            tn = scope.getSingle();
+        } else {
+            tn = scope.resolveTable(qualifier);
+            if (tn == null) {
+                return starFailure("UNKNOWN_ALIAS", "无法解析别名/表名: " + qualifier, "请检查 FROM/别名");
+            }
+        }
+        TableHandle handle = metadata == null ? null : metadata.getTable(tn.getDb(), tn.getSc(), tn.getTable());
+        List<ColumnRef> cols = handle == null ? null : handle.getColumns();
+        if (cols == null || cols.isEmpty()) {
+            return starFailure("METADATA_MISSING", "元数据缺失: " + tn, "请补充该表的列元数据");
+        }
+        for (ColumnRef c : cols) {
+            // 子查询/CTE 列直接使用其源列
+            List<ColumnRef> subSources = qualifier == null ? null : scope.getSubqueryColumnSources(qualifier, c.getColumn());
+            if (subSources != null && !subSources.isEmpty()) {
+                outs.add(new SelectOutput(c.getColumn(), subSources));
+            } else {
+                outs.add(new SelectOutput(c.getColumn(), Collections.singletonList(c)));
+            }
+        }
+        return outs;
+    }
+
+    private List<SelectOutput> starFailure(String code, String message, String suggestion) {
+        if (!lenient) {
+            throw new MetadataNotFoundException(message);
+        }
+        warns.add(LineageWarning.of(code, message, "SELECT", suggestion));
+        return Collections.emptyList();
+    }
+
+    private static String safeLower(String s) {
+        return s == null ? null : s.toLowerCase(Locale.ROOT);
+    }
+}
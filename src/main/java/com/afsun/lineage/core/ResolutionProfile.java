@@ -0,0 +1,31 @@
+package com.afsun.lineage.core;
+
+/**
+ * 列级血缘的表达式解析档位
+ * 只需数据流向（SELECT 输出列来源）时选择 {@link #PROJECTION}，不再为 JOIN/WHERE/GROUP BY 等子句付出解析开销；
+ * 非投影子句引用的列以间接血缘（{@link com.afsun.lineage.graph.IndirectEdge}）单独记录，不混入列级 to 边
+ *
+ * @author afsun
+ */
+public enum ResolutionProfile {
+    /**
+     * 仅解析 SELECT 输出列
+     */
+    PROJECTION,
+    /**
+     * 解析 SELECT 输出列与 JOIN ON 条件
+     */
+    PROJECTION_JOIN,
+    /**
+     * 另解析 WHERE/GROUP BY/HAVING/ORDER BY
+     */
+    FULL;
+
+    public boolean includesJoin() {
+        return this != PROJECTION;
+    }
+
+    public boolean includesPredicates() {
+        return this == FULL;
+    }
+}
@@ -1,13 +1,64 @@
 package com.afsun.lineage.core;
 
+import com.afsun.lineage.core.dto.SelectOutput;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
+
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * 语句级作用域：维护 FROM 中的别名到表的映射，支持限定/未限定列解析。
+ * 子作用域持有只读的父作用域引用：本层找不到的别名与子查询列沿父链查找（相关子查询引用外层别名）
  */
 public class Scope {
 
+    /**
+     * 自动生成的子查询虚拟表名前缀
+     */
+    public static final String SUBQUERY_PREFIX = "__subquery_";
+
+    /**
+     * 所属语句的解析预算，子作用域共享同一预算
+     */
+    private final StatementBudget budget;
+    /**
+     * 所属语句的查询输出列缓存（按AST节点），子作用域与并行分支共享，见 {@link QueryOutputVisitor}
+     */
+    private final Map<SQLSelectQuery, List<SelectOutput>> queryOutputs;
+    /**
+     * 查询块绑定 FROM 时所在的作用域（按AST节点），与查询输出缓存一同共享；
+     * 之后解析该查询块的其他子句（如 UNION 各分支的 JOIN/WHERE）时复用，不再重新绑定
+     */
+    private final Map<SQLSelectQuery, Scope> boundScopes;
+    /**
+     * 并行 UNION 分支的元数据覆盖层（分支内的子查询虚拟表登记于此），子作用域继承；其他作用域为null
+     */
+    private final MetadataProvider branchMetadata;
+    /**
+     * 表达式遍历缓冲池，子作用域共享；并行分支各用一份（缓冲池不做同步）
+     */
+    private final Deque<ExprWalkBuffer> walkBuffers;
+    /**
+     * 超宽 UNION 分支并行解析使用的线程池，为null时串行
+     */
+    private final ForkJoinPool branchPool;
+    /**
+     * 无别名子查询虚拟表名的前缀：由语句在脚本中的序号（及所在 UNION 分支序号）组成，
+     * 与解析线程的调度顺序无关，并行与串行解析生成相同的名称，且在脚本内唯一
+     */
+    private final String subqueryPrefix;
+    /**
+     * 同一前缀下的无别名子查询序号，子作用域共享；UNION 分支各用一份
+     */
+    private final AtomicInteger subquerySeq;
+    /**
+     * 外层作用域，根作用域为null；只用于查找，从不写入
+     */
+    private final Scope parent;
+
     private final Map<String, TableName> alias2Table = new LinkedHashMap<>();
     private final Map<String, String> cteMap = new LinkedHashMap<>();
     private final Map<String, String> outputAliasToExpr = new LinkedHashMap<>();
@@ -15,14 +66,232 @@ public class Scope {
     // key: "子查询别名.列名" (如 "basedata.counttotal")
     // value: 该列的源列引用
     private final Map<String, List<ColumnRef>> subqueryColumns = new LinkedHashMap<>();
+    /**
+     * 子查询/CTE 列追溯到物理列的结果缓存，key 同 subqueryColumns；登记新的子查询列时清空
+     */
+    private final Map<String, List<ColumnRef>> physicalSources = new HashMap<>();
+
+    public Scope() {
+        this(StatementBudget.UNLIMITED);
+    }
+
+    public Scope(StatementBudget budget) {
+        this(budget, null);
+    }
+
+    /**
+     * @param branchPool 超宽 UNION 分支并行解析的线程池（通常为解析器的并行线程池），为null时串行解析
+     */
+    public Scope(StatementBudget budget, ForkJoinPool branchPool) {
+        this(budget, branchPool, null);
+    }
+
+    /**
+     * @param statementId 语句在脚本中的编号，计入无别名子查询的虚拟表名（为null时不带编号）
+     */
+    public Scope(StatementBudget budget, ForkJoinPool branchPool, String statementId) {
+        this(budget == null ? StatementBudget.UNLIMITED : budget,
+                branchPool == null ? new IdentityHashMap<>() : Collections.synchronizedMap(new IdentityHashMap<>()),
+                branchPool == null ? new IdentityHashMap<>() : Collections.synchronizedMap(new IdentityHashMap<>()),
+                null, new ArrayDeque<>(), branchPool,
+                statementId == null ? SUBQUERY_PREFIX : SUBQUERY_PREFIX + statementId + "_", new AtomicInteger(), null);
+    }
+
+    private Scope(StatementBudget budget, Map<SQLSelectQuery, List<SelectOutput>> queryOutputs,
+                  Map<SQLSelectQuery, Scope> boundScopes, MetadataProvider branchMetadata,
+                  Deque<ExprWalkBuffer> walkBuffers, ForkJoinPool branchPool, String subqueryPrefix,
+                  AtomicInteger subquerySeq, Scope parent) {
+        this.budget = budget;
+        this.queryOutputs = queryOutputs;
+        this.boundScopes = boundScopes;
+        this.branchMetadata = branchMetadata;
+        this.walkBuffers = walkBuffers;
+        this.branchPool = branchPool;
+        this.subqueryPrefix = subqueryPrefix;
+        this.subquerySeq = subquerySeq;
+        this.parent = parent;
+    }
+
+    /**
+     * 创建子作用域（子查询/CTE）：自身的别名映射为空，本层未绑定的别名与子查询列回退到当前作用域查找；
+     * 共享语句预算与查询输出缓存
+     */
+    public Scope newSubScope() {
+        return new Scope(budget, queryOutputs, boundScopes, branchMetadata, walkBuffers, branchPool,
+                subqueryPrefix, subquerySeq, this);
+    }
+
+    /**
+     * 创建 UNION 第 branch 个分支的子作用域：同 {@link #newSubScope()}，但无别名子查询按分支单独编号，
+     * 分支串行或并行解析时生成的名称相同
+     */
+    public Scope newUnionBranchScope(int branch) {
+        return new Scope(budget, queryOutputs, boundScopes, branchMetadata, walkBuffers, branchPool,
+                branchPrefix(branch), new AtomicInteger(), this);
+    }
+
+    /**
+     * 创建在其他线程中使用的 UNION 分支子作用域：使用给定的子预算、分支的元数据覆盖层与独立的遍历缓冲池，
+     * 其余同 {@link #newUnionBranchScope}；分支解析期间当前作用域及其外层只读
+     */
+    public Scope newBranchScope(StatementBudget branchBudget, int branch, MetadataProvider metadata) {
+        return new Scope(branchBudget, queryOutputs, boundScopes, metadata, new ArrayDeque<>(), branchPool,
+                branchPrefix(branch), new AtomicInteger(), this);
+    }
+
+    private String branchPrefix(int branch) {
+        return subqueryPrefix + "u" + branch + "_";
+    }
+
+    public StatementBudget getBudget() {
+        return budget;
+    }
+
+    public ForkJoinPool getBranchPool() {
+        return branchPool;
+    }
+
+    /**
+     * 无别名子查询的虚拟表名：语句编号 + 分支编号 + 序号，按AST遍历顺序分配
+     */
+    public String nextSubqueryAlias() {
+        return subqueryPrefix + subquerySeq.incrementAndGet();
+    }
+
+    public Map<SQLSelectQuery, List<SelectOutput>> getQueryOutputs() {
+        return queryOutputs;
+    }
+
+    /**
+     * 记录查询块的 FROM 绑定在当前作用域中
+     */
+    public void markBound(SQLSelectQuery query) {
+        boundScopes.put(query, this);
+    }
+
+    /**
+     * 查询块绑定 FROM 时所在的作用域，尚未计算输出列时为null
+     */
+    public Scope boundScopeOf(SQLSelectQuery query) {
+        return boundScopes.get(query);
+    }
+
+    /**
+     * 并行 UNION 分支的元数据覆盖层，不在并行分支中时为null（使用语句的元数据）
+     */
+    public MetadataProvider getBranchMetadata() {
+        return branchMetadata;
+    }
+
+    /**
+     * 取一份空的表达式遍历缓冲；用完须 {@link #releaseWalkBuffer} 归还
+     */
+    ExprWalkBuffer acquireWalkBuffer() {
+        ExprWalkBuffer buffer = walkBuffers.poll();
+        return buffer != null ? buffer : new ExprWalkBuffer();
+    }
+
+    void releaseWalkBuffer(ExprWalkBuffer buffer) {
+        buffer.clear();
+        walkBuffers.push(buffer);
+    }
+
     public void addSubqueryColumn(String subAlias, String colName, List<ColumnRef> sources) {
         String key = buildSubqueryColKey(subAlias, colName);
         subqueryColumns.put(key, new ArrayList<>(sources));
+        physicalSources.clear();
     }
     public List<ColumnRef> getSubqueryColumnSources(String subAlias, String colName) {
-        String key = buildSubqueryColKey(subAlias, colName);
-        return subqueryColumns.get(key);
+        return lookupSubqueryColumn(buildSubqueryColKey(subAlias, colName));
+    }
+
+    // 子查询列按作用域链查找：本层登记的优先
+    private List<ColumnRef> lookupSubqueryColumn(String key) {
+        for (Scope s = this; s != null; s = s.parent) {
+            List<ColumnRef> sources = s.subqueryColumns.get(key);
+            if (sources != null) {
+                return sources;
+            }
+        }
+        return null;
     }
+
+    /**
+     * 将列引用沿子查询/CTE 列映射追溯到物理表列
+     * 迭代深度优先展开（不受调用栈深度限制），每个 (表, 列) 在本作用域内只展开一次并缓存，
+     * 深层 CTE 链的耗时与不同列的数量线性相关；遇到循环引用时截断该回边并记录告警
+     *
+     * @return 去重后的物理列，不可变列表（可能与其他调用共享）
+     */
+    public List<ColumnRef> resolvePhysicalSources(ColumnRef ref, List<LineageWarning> warns) {
+        String rootKey = buildSubqueryColKey(ref.getTable(), ref.getColumn());
+        List<ColumnRef> cached = physicalSources.get(rootKey);
+        if (cached != null) {
+            return cached;
+        }
+        List<ColumnRef> rootSubs = lookupSubqueryColumn(rootKey);
+        if (rootSubs == null || rootSubs.isEmpty()) {
+            // 已经是物理表列
+            return Collections.singletonList(ref);
+        }
+
+        Deque<PhysicalFrame> stack = new ArrayDeque<>();
+        Set<String> onPath = new HashSet<>();
+        stack.push(new PhysicalFrame(rootKey, rootSubs));
+        onPath.add(rootKey);
+        List<ColumnRef> result = null;
+        while (!stack.isEmpty()) {
+            PhysicalFrame frame = stack.peek();
+            if (frame.next < frame.subs.size()) {
+                budget.tick();
+                ColumnRef child = frame.subs.get(frame.next++);
+                String childKey = buildSubqueryColKey(child.getTable(), child.getColumn());
+                List<ColumnRef> childResolved = physicalSources.get(childKey);
+                if (childResolved != null) {
+                    frame.acc.addAll(childResolved);
+                    continue;
+                }
+                List<ColumnRef> childSubs = lookupSubqueryColumn(childKey);
+                if (childSubs == null || childSubs.isEmpty()) {
+                    frame.acc.add(child);
+                } else if (onPath.contains(childKey)) {
+                    if (warns != null) {
+                        warns.add(LineageWarning.of("CYCLIC_COLUMN_REF",
+                                "子查询/CTE 列引用存在循环，已截断: " + childKey,
+                                "Scope", "请检查子查询/CTE 别名是否与其引用的表重名"));
+                    }
+                } else {
+                    stack.push(new PhysicalFrame(childKey, childSubs));
+                    onPath.add(childKey);
+                }
+                continue;
+            }
+            stack.pop();
+            onPath.remove(frame.key);
+            result = Collections.unmodifiableList(new ArrayList<>(frame.acc));
+            physicalSources.put(frame.key, result);
+            if (!stack.isEmpty()) {
+                stack.peek().acc.addAll(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 物理列追溯的展开帧：待展开的源列及已收集的物理列
+     */
+    private static final class PhysicalFrame {
+        final String key;
+        final List<ColumnRef> subs;
+        final Set<ColumnRef> acc = new LinkedHashSet<>();
+        int next;
+
+        PhysicalFrame(String key, List<ColumnRef> subs) {
+            this.key = key;
+            this.subs = subs;
+        }
+    }
+
     private String buildSubqueryColKey(String alias, String col) {
         return (alias == null ? "" : alias.toLowerCase(Locale.ROOT))
                 + "." + col.toLowerCase(Locale.ROOT);
@@ -59,7 +328,8 @@ public class Scope {
         for (TableName t : alias2Table.values()) {
             if (t.table.equalsIgnoreCase(aliasOrName)) return t;
         }
-        return null;
+        // 相关子查询：回退到外层作用域
+        return parent == null ? null : parent.resolveTable(aliasOrName);
     }
 
 //    // 解析限定列 t.col
@@ -72,7 +342,7 @@ public class Scope {
 //            }
 //            return null;
 //        }
-//        return ColumnRef.of(tn.db, tn.sc, tn.table, column.toLowerCase(Locale.ROOT),
+//        return ColumnRef.of(tn.db, tn.sc, tn.table, column,
 //                tn.odb, tn.osc, tn.otb, column);
 //    }
 
@@ -94,17 +364,20 @@ public class Scope {
             }
             return null;
         }
-        return ColumnRef.of(tn.db, tn.sc, tn.table, column.toLowerCase(Locale.ROOT),
+        return ColumnRef.of(tn.db, tn.sc, tn.table, column,
                 tn.odb, tn.osc, tn.otb, column);
     }
 
-    // 解析未限定列 col：仅在单表作用域下允许
+    // 解析未限定列 col：仅在单表作用域下允许；本层没有表时（如 SELECT 子句中无 FROM 的子查询）回退到外层作用域
     public ColumnRef resolveUnqualifiedColumn(String column, List warns) {
         if (tableCount() == 1) {
             TableName tn = getSingle();
-            return ColumnRef.of(tn.db, tn.sc, tn.table, column.toLowerCase(Locale.ROOT),
+            return ColumnRef.of(tn.db, tn.sc, tn.table, column,
                     tn.odb, tn.osc, tn.otb, column);
         }
+        if (tableCount() == 0 && parent != null) {
+            return parent.resolveUnqualifiedColumn(column, warns);
+        }
         if (warns != null) {
             warns.add(LineageWarning.of("AMBIGUOUS_COL",
                     "未限定列名在多表作用域中不唯一: " + column, "Scope", "请使用 t.col 形式"));
@@ -2,10 +2,16 @@ package com.afsun.lineage.core;
 
 import com.afsun.lineage.core.exceptions.InternalParseException;
 import com.afsun.lineage.core.exceptions.MetadataNotFoundException;
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
 import com.afsun.lineage.core.exceptions.UnsupportedSyntaxException;
 import com.afsun.lineage.core.meta.MetadataProvider;
 import com.alibaba.druid.DbType;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
 public interface SqlLineageParser {
     /**
      * 解析SQL文本，提取表和列级血缘关系
@@ -17,5 +23,72 @@ public interface SqlLineageParser {
      * @throws UnsupportedSyntaxException 不支持的SQL语法异常
      * @throws InternalParseException 内部解析异常
      */
-    ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider);
+    default ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider) {
+        return parse(sqlText, dbType, metadataProvider, ParseMonitor.NONE);
+    }
+
+    /**
+     * 解析SQL文本，并在语句粒度上报进度、响应取消
+     *
+     * @param monitor 进度监视器
+     * @throws ParseCancelledException 解析被取消
+     */
+    default ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider, ParseMonitor monitor) {
+        return parse(sqlText, dbType, metadataProvider, LineageMode.COLUMN, monitor);
+    }
+
+    /**
+     * 按指定粒度解析SQL文本
+     *
+     * @param metadataProvider 元数据提供者，{@link LineageMode#TABLE_ONLY} 模式下不会被访问，可为null
+     * @param mode             血缘粒度
+     * @param monitor          进度监视器
+     * @throws ParseCancelledException 解析被取消
+     */
+    ParseResult parse(String sqlText, DbType dbType, MetadataProvider metadataProvider, LineageMode mode,
+                      ParseMonitor monitor);
+
+    /**
+     * 流式解析SQL脚本：逐条读取语句并解析，解析后立即丢弃AST，血缘图增量构建
+     * 峰值内存取决于最大单条语句，而非脚本大小
+     *
+     * @param reader SQL脚本输入（由调用方负责关闭）
+     * @param metadataProvider 元数据提供者
+     * @return 解析结果，包含血缘图、警告信息等
+     */
+    default ParseResult parse(Reader reader, DbType dbType, MetadataProvider metadataProvider) {
+        return parse(reader, dbType, metadataProvider, ParseMonitor.NONE);
+    }
+
+    /**
+     * 流式解析SQL脚本，并在语句粒度上报进度、响应取消
+     *
+     * @param monitor 进度监视器
+     * @throws ParseCancelledException 解析被取消
+     */
+    default ParseResult parse(Reader reader, DbType dbType, MetadataProvider metadataProvider, ParseMonitor monitor) {
+        return parse(reader, dbType, metadataProvider, LineageMode.COLUMN, monitor);
+    }
+
+    /**
+     * 按指定粒度流式解析SQL脚本
+     *
+     * @param metadataProvider 元数据提供者，{@link LineageMode#TABLE_ONLY} 模式下不会被访问，可为null
+     * @param mode             血缘粒度
+     * @param monitor          进度监视器
+     * @throws ParseCancelledException 解析被取消
+     */
+    ParseResult parse(Reader reader, DbType dbType, MetadataProvider metadataProvider, LineageMode mode,
+                      ParseMonitor monitor);
+
+    /**
+     * 流式解析UTF-8编码的SQL脚本
+     *
+     * @param in SQL脚本输入流（由调用方负责关闭）
+     * @param metadataProvider 元数据提供者
+     * @return 解析结果，包含血缘图、警告信息等
+     */
+    default ParseResult parse(InputStream in, DbType dbType, MetadataProvider metadataProvider) {
+        return parse(new InputStreamReader(in, StandardCharsets.UTF_8), dbType, metadataProvider);
+    }
 }
\ No newline at end of file
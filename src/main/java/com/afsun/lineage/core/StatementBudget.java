@@ -0,0 +1,110 @@
+package com.afsun.lineage.core;
+
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
+import com.afsun.lineage.core.exceptions.StatementBudgetExceededException;
+
+/**
+ * 单条语句的解析预算计数器
+ * 由表达式遍历与SELECT块抽取在访问AST节点时协作式调用 {@link #tick()}：
+ * 超出节点数、到达截止时间或任务被取消时抛出异常中断当前语句
+ * 实例只在处理该语句的单个线程内使用，非线程安全；并行分支的子预算在分支线程内使用，
+ * 并回后在原线程继续访问分支节点（如分支的 WHERE 子句）时直接计入父预算
+ *
+ * @author afsun
+ */
+public final class StatementBudget {
+
+    /**
+     * 不做任何限制的预算（可跨线程共享）
+     */
+    public static final StatementBudget UNLIMITED = new StatementBudget(0, 0, ParseMonitor.NONE);
+
+    // 每访问 64 个节点检查一次时间，避免频繁调用 nanoTime
+    private static final int CLOCK_CHECK_MASK = 63;
+
+    private final long deadlineNanos;
+    private final int maxNodes;
+    private final ParseMonitor monitor;
+    private final boolean limited;
+    private final long startNanos = System.nanoTime();
+    /**
+     * 创建该子预算的父预算，非子预算为null
+     */
+    private final StatementBudget parent;
+    private int visited;
+    /**
+     * 已并回父预算：之后的节点访问直接计入父预算
+     */
+    private boolean joined;
+
+    StatementBudget(long deadlineNanos, int maxNodes, ParseMonitor monitor) {
+        this(deadlineNanos, maxNodes, monitor, null);
+    }
+
+    private StatementBudget(long deadlineNanos, int maxNodes, ParseMonitor monitor, StatementBudget parent) {
+        this.deadlineNanos = deadlineNanos;
+        this.maxNodes = maxNodes;
+        this.monitor = monitor;
+        this.limited = deadlineNanos != 0 || maxNodes > 0;
+        this.parent = parent;
+    }
+
+    /**
+     * 记录访问一个AST节点，并检查预算
+     *
+     * @throws StatementBudgetExceededException 超出节点数或超时
+     * @throws ParseCancelledException          任务已取消
+     */
+    public void tick() {
+        if (!limited) {
+            return;
+        }
+        if (joined) {
+            parent.tick();
+            return;
+        }
+        visited++;
+        if (maxNodes > 0 && visited > maxNodes) {
+            throw new StatementBudgetExceededException("语句AST节点访问数超过限制: " + maxNodes);
+        }
+        if ((visited & CLOCK_CHECK_MASK) == 0) {
+            if (monitor.isCancelled()) {
+                throw new ParseCancelledException("解析已取消");
+            }
+            long now = System.nanoTime();
+            if (deadlineNanos != 0 && now - deadlineNanos > 0) {
+                throw new StatementBudgetExceededException("语句解析超时，已耗时" + (now - startNanos) / 1_000_000L
+                        + "ms，已访问节点数" + visited);
+            }
+        }
+    }
+
+    /**
+     * 为并行解析的分支创建子预算：共享截止时间与取消状态，节点上限按当前剩余量计，
+     * 分支结束后须在原线程调用 {@link #join} 并回节点数
+     */
+    public StatementBudget fork() {
+        if (!limited) {
+            return this;
+        }
+        return new StatementBudget(deadlineNanos, maxNodes > 0 ? Math.max(1, maxNodes - visited) : 0, monitor, this);
+    }
+
+    /**
+     * 并回子预算的节点访问数并检查上限
+     */
+    public void join(StatementBudget child) {
+        if (!limited || child == this) {
+            return;
+        }
+        visited += child.visited;
+        child.joined = true;
+        if (maxNodes > 0 && visited > maxNodes) {
+            throw new StatementBudgetExceededException("语句AST节点访问数超过限制: " + maxNodes);
+        }
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+}
@@ -1,8 +1,11 @@
 package com.afsun.lineage.core;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
-import java.util.Locale;
+import java.util.Objects;
 
 /**
  * @author afsun
@@ -11,53 +14,87 @@ import java.util.Locale;
 // 规范化表名解析器
 @Data
 public class TableName {
+    /**
+     * 原文 -> 解析结果；同一表名在脚本与元数据中反复出现，只切分、小写化一次（弱引用，不再使用的条目随GC回收）
+     */
+    private static final WeakPool<String, TableName> PARSED = new WeakPool<>();
+
     final String db, sc, table;
     final String odb, osc, otb;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int hash;
 
     private TableName(String db, String sc, String table, String odb, String osc, String otb) {
-        this.db = db;
-        this.sc = sc;
-        this.table = table;
-        this.odb = odb;
-        this.osc = osc;
-        this.otb = otb;
+        this.db = IdentifierPool.lower(db);
+        this.sc = IdentifierPool.lower(sc);
+        this.table = IdentifierPool.lower(table);
+        this.odb = IdentifierPool.original(odb);
+        this.osc = IdentifierPool.original(osc);
+        this.otb = IdentifierPool.original(otb);
+        this.hash = 31 * IdentifierPool.hash(this.db, this.sc, this.table) + IdentifierPool.hash(this.odb, this.osc, this.otb);
     }
 
     // ===== 新增:直接构造方法 =====
     public static TableName of(String db, String sc, String table,
                                String odb, String osc, String otb) {
-        return new TableName(
-                db == null ? null : db.toLowerCase(Locale.ROOT),
-                sc == null ? null : sc.toLowerCase(Locale.ROOT),
-                table.toLowerCase(Locale.ROOT),
-                odb, osc, otb
-        );
+        return new TableName(db, sc, Objects.requireNonNull(table), odb, osc, otb);
     }
 
     public static TableName parse(String full) {
+        TableName hit = PARSED.get(full);
+        if (hit != null) {
+            return hit;
+        }
+        TableName tn = doParse(full);
+        TableName prev = PARSED.putIfAbsent(full, tn);
+        return prev != null ? prev : tn;
+    }
+
+    // 小写化在构造时经由 IdentifierPool 完成，这里只切分原文
+    private static TableName doParse(String full) {
         String raw = full.trim();
         String[] parts = raw.split("\\.");
         String odb = raw, osc = null, otb = raw;
         String db = null, sc = null, tb;
         if (parts.length == 3) {
-            db = parts[0].toLowerCase(Locale.ROOT);
-            sc = parts[1].toLowerCase(Locale.ROOT);
-            tb = parts[2].toLowerCase(Locale.ROOT);
+            db = parts[0];
+            sc = parts[1];
+            tb = parts[2];
             odb = parts[0];
             osc = parts[1];
             otb = parts[2];
         } else if (parts.length == 2) {
-            db = parts[0].toLowerCase(Locale.ROOT);
-            tb = parts[1].toLowerCase(Locale.ROOT);
+            db = parts[0];
+            tb = parts[1];
             odb = parts[0];
             otb = parts[1];
         } else {
-            tb = raw.toLowerCase(Locale.ROOT);
+            tb = raw;
             otb = raw;
         }
         return new TableName(db, sc, tb, odb, osc, otb);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TableName)) return false;
+        TableName t = (TableName) o;
+        return hash == t.hash
+                && Objects.equals(table, t.table)
+                && Objects.equals(sc, t.sc)
+                && Objects.equals(db, t.db)
+                && Objects.equals(otb, t.otb)
+                && Objects.equals(osc, t.osc)
+                && Objects.equals(odb, t.odb);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,79 @@
+package com.afsun.lineage.core;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 弱引用驻留池
+ * 键与值都不阻止回收：不再被元数据缓存或血缘图引用的条目随GC自动移除，池的大小跟随存活实例而不是历史总量；
+ * 按哈希分段加锁，每段为一个 WeakHashMap，值以 WeakReference 保存（值即键自身时也不会造成强引用环）
+ *
+ * @author afsun
+ */
+public final class WeakPool<K, V> {
+
+    private static final int SEGMENTS = 32;
+
+    private final Segment<K, V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    public WeakPool() {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * @return 池中与键相等的条目的值，不存在或已被回收时返回null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            WeakReference<V> ref = segment.map.get(key);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    /**
+     * 登记条目；已有存活的相等条目时不替换
+     *
+     * @return 已存在的值，新登记时返回null
+     */
+    public V putIfAbsent(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            WeakReference<V> ref = segment.map.get(key);
+            V existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            segment.map.put(key, new WeakReference<>(value));
+            return null;
+        }
+    }
+
+    /**
+     * 当前条目数（含尚未清理的已回收条目，仅用于观测）
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment<K, V> {
+        final Map<K, WeakReference<V>> map = new WeakHashMap<>();
+    }
+}
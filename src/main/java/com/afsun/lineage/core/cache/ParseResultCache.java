@@ -0,0 +1,206 @@
+package com.afsun.lineage.core.cache;
+
+import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.metrics.ParseMetrics;
+import com.afsun.lineage.core.util.SqlScriptLexer;
+import com.afsun.lineage.core.util.StatementSpan;
+import com.alibaba.druid.DbType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析结果缓存
+ * 以 规范化脚本内容哈希 + 方言 + 血缘粒度 + 元数据版本 作为键缓存 {@link ParseResult}，
+ * 同一脚本重复提交且元数据未变化时直接返回缓存结果，跳过解析与持久化
+ *
+ * 规范化：按语句切分后去除注释与语句首尾空白，语句间以分号拼接；
+ * 每条语句的起始行列一并计入哈希：缓存的告警带有语句位置，开头注释、空行或缩进使语句位置不同的脚本不共用结果
+ * 容量：按血缘图元素数（表、列、边、告警）加权，超出上限按W-TinyLFU淘汰
+ * 隔离：写入与读取时都复制结果，调用方修改返回的血缘图或告警列表不会影响缓存及其他调用方
+ *
+ * @author afsun
+ */
+@Component
+@Slf4j
+public class ParseResultCache {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ParseMetrics parseMetrics;
+
+    @Value("${sql.lineage.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存总权重上限（血缘图元素数）
+     */
+    @Value("${sql.lineage.cache.max-weight:2000000}")
+    private long maxWeight;
+
+    /**
+     * 写入后过期时间（分钟）
+     */
+    @Value("${sql.lineage.cache.expire-minutes:1440}")
+    private long expireMinutes;
+
+    private Cache<String, ParseResult> cache;
+
+    public ParseResultCache() {
+    }
+
+    /**
+     * 非Spring环境使用：直接开启缓存，不注册缓存指标
+     */
+    public ParseResultCache(long maxWeight, long expireMinutes, ParseMetrics parseMetrics) {
+        this.enabled = true;
+        this.maxWeight = maxWeight;
+        this.expireMinutes = expireMinutes;
+        this.parseMetrics = parseMetrics;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("解析结果缓存未开启");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, ParseResult value) -> weightOf(value))
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "sql.lineage.parse.result");
+        }
+        log.info("解析结果缓存已开启，权重上限={}, 过期={}分钟", maxWeight, expireMinutes);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * 计算缓存键，耗时（脚本切分与哈希）计入 phase=cache_key
+     *
+     * @param sqlText         SQL脚本原文
+     * @param dbType          方言（为null表示自动检测）
+     * @param mode            血缘粒度
+     * @param metadataVersion 元数据版本号（表级模式不依赖元数据，不计入键）
+     */
+    public String key(String sqlText, DbType dbType, LineageMode mode, long metadataVersion) {
+        long start = System.nanoTime();
+        MessageDigest digest = sha256();
+        for (StatementSpan span : SqlScriptLexer.split(sqlText)) {
+            // 缓存的告警带有语句的行列位置
+            updateInt(digest, span.getLine());
+            updateInt(digest, span.getColumn());
+            digest.update(span.text(sqlText).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ';');
+        }
+        StringBuilder sb = new StringBuilder(96);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        sb.append('|').append(dbType == null ? "auto" : dbType.name())
+                .append('|').append(mode.name())
+                .append('|').append(mode == LineageMode.TABLE_ONLY ? 0L : metadataVersion);
+        parseMetrics.recordPhase(ParseMetrics.PHASE_CACHE_KEY, start);
+        return sb.toString();
+    }
+
+    /**
+     * 读取缓存结果，返回副本
+     */
+    public ParseResult get(String key) {
+        ParseResult cached = cache == null ? null : cache.getIfPresent(key);
+        return cached == null ? null : cached.copy();
+    }
+
+    /**
+     * 写入结果副本，调用方之后对 result 的修改不影响缓存
+     */
+    public void put(String key, ParseResult result) {
+        if (cache != null && result != null) {
+            cache.put(key, result.copy());
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 包含命中数、未命中数、命中率、淘汰数、当前条目数等信息的Map
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache != null) {
+            CacheStats cs = cache.stats();
+            stats.put("hits", cs.hitCount());
+            stats.put("misses", cs.missCount());
+            stats.put("hitRate", cs.hitRate());
+            stats.put("evictions", cs.evictionCount());
+            stats.put("size", cache.estimatedSize());
+            stats.put("maxWeight", maxWeight);
+        }
+        return stats;
+    }
+
+    /**
+     * 结果权重：血缘图元素数（表、列、边）与告警数之和
+     */
+    public static int weightOf(ParseResult result) {
+        long weight = 1;
+        LineageGraph graph = result.getGraph();
+        if (graph != null) {
+            weight += graph.getTables().size() + graph.getColumns().size()
+                    + graph.getOwnerEdges().size() + graph.getToEdges().size() + graph.getTableEdges().size()
+                    + graph.getIndirectEdges().size();
+        }
+        if (result.getWarnings() != null) {
+            weight += result.getWarnings().size();
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
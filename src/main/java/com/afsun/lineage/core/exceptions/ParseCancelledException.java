@@ -0,0 +1,47 @@
+package com.afsun.lineage.core.exceptions;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * 解析被取消（在语句边界检查取消标记时抛出）
+ *
+ * @author afsun
+ */
+public class ParseCancelledException extends RuntimeException{
+    public ParseCancelledException(String message, Object... args) {
+        super(MessageFormatter.arrayFormat(message, trimLastThrowable(args)).getMessage(), extractThrowable(args));
+    }
+
+    public ParseCancelledException(String message){
+        super(message);
+    }
+
+    private static Throwable extractThrowable(Object[] args) {
+        if (ArrayUtils.isEmpty(args)) {
+            return null;
+        }
+
+        Object last = args[args.length - 1];
+        if (last instanceof Throwable) {
+            return (Throwable) last;
+        }
+        return null;
+    }
+
+    public static Object[] trimLastThrowable(Object[] argumentArray) {
+        if (ArrayUtils.isEmpty(argumentArray)) {
+            return argumentArray;
+        }
+        if (extractThrowable(argumentArray) == null) {
+            return argumentArray;
+        }
+        int trimmedLen = argumentArray.length - 1;
+        if (trimmedLen == 0) {
+            return new Object[0];
+        }
+        Object[] trimmedArray = new Object[trimmedLen];
+        System.arraycopy(argumentArray, 0, trimmedArray, 0, trimmedLen);
+        return trimmedArray;
+    }
+}
@@ -0,0 +1,47 @@
+package com.afsun.lineage.core.exceptions;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * 单条语句超出解析预算（耗时或AST节点访问数），该语句将被跳过，脚本继续解析
+ *
+ * @author afsun
+ */
+public class StatementBudgetExceededException extends RuntimeException{
+    public StatementBudgetExceededException(String message, Object... args) {
+        super(MessageFormatter.arrayFormat(message, trimLastThrowable(args)).getMessage(), extractThrowable(args));
+    }
+
+    public StatementBudgetExceededException(String message){
+        super(message);
+    }
+
+    private static Throwable extractThrowable(Object[] args) {
+        if (ArrayUtils.isEmpty(args)) {
+            return null;
+        }
+
+        Object last = args[args.length - 1];
+        if (last instanceof Throwable) {
+            return (Throwable) last;
+        }
+        return null;
+    }
+
+    public static Object[] trimLastThrowable(Object[] argumentArray) {
+        if (ArrayUtils.isEmpty(argumentArray)) {
+            return argumentArray;
+        }
+        if (extractThrowable(argumentArray) == null) {
+            return argumentArray;
+        }
+        int trimmedLen = argumentArray.length - 1;
+        if (trimmedLen == 0) {
+            return new Object[0];
+        }
+        Object[] trimmedArray = new Object[trimmedLen];
+        System.arraycopy(argumentArray, 0, trimmedArray, 0, trimmedLen);
+        return trimmedArray;
+    }
+}
@@ -1,25 +1,29 @@
 package com.afsun.lineage.core.meta;
 
 import com.afsun.lineage.core.ColumnRef;
-import com.afsun.lineage.vo.TableKey;
+import com.afsun.lineage.core.IdentifierPool;
+import com.afsun.lineage.core.TableName;
 import com.clickhouse.jdbc.ClickHouseDataSource;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ClickHouse元数据提供者
  * 从ClickHouse的system.columns表加载表和列的元数据信息
- * 支持定时刷新和手动刷新
+ * 支持定时刷新和手动刷新；定时刷新默认按 system.tables 的修改时间增量加载
+ * {@link MetadataLoadMode#LAZY} 模式下不做全量加载，首次引用某张表时才查询其列（见 {@link LazyTableCache}）
  *
  * @author afsun
  */
@@ -27,26 +31,78 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ClickHouseMetadataProvider implements MetadataProvider, ApplicationRunner {
 
+    private static final String COLUMNS_SQL = "SELECT database, table, name, position FROM system.columns ";
+    private static final String COLUMNS_ORDER = "ORDER BY database, table, position";
+
     @Resource
     private JdbcTemplate jdbcTemplate;
 
     /**
-     * 元数据缓存：表 -> 列清单
-     * 使用ConcurrentHashMap保证线程安全
+     * 当前发布的元数据快照：刷新时构建完整的新快照后一次性替换引用，
+     * 读取方要么看到旧快照、要么看到新快照，不会看到清空或半填充的中间状态
+     */
+    private volatile MetadataSnapshot snapshot = MetadataSnapshot.EMPTY;
+
+    /**
+     * 最后一次全量加载时间戳
+     */
+    private volatile long lastFullReloadTime = 0;
+
+    /**
+     * 定时任务是否走增量刷新
+     */
+    @Value("${sql.lineage.metadata.incremental.enabled:true}")
+    private boolean incrementalEnabled;
+
+    /**
+     * 增量刷新模式下全量加载的最长间隔（小时），用于兜底修正增量未能识别的变更
+     */
+    @Value("${sql.lineage.metadata.incremental.full-reload-hours:24}")
+    private long fullReloadHours;
+
+    /**
+     * 增量刷新与批量预取时单次列查询包含的表数上限
+     */
+    @Value("${sql.lineage.metadata.incremental.batch-size:500}")
+    private int incrementalBatchSize;
+
+    /**
+     * 加载方式：EAGER 全量常驻 / LAZY 按需加载
      */
-    private final Map<TableKey, List<ColumnRef>> columnsByTable = new ConcurrentHashMap<>();
+    @Value("${sql.lineage.metadata.mode:EAGER}")
+    private MetadataLoadMode mode;
 
     /**
-     * 最后一次刷新时间戳
+     * 按需加载缓存的总列数上限
      */
-    private volatile long lastReloadTime = 0;
+    @Value("${sql.lineage.metadata.lazy.max-columns:2000000}")
+    private long lazyMaxColumns;
 
     /**
-     * 元数据总数统计
+     * 按需加载的表元数据过期时间（分钟）
      */
-    private volatile int totalTables = 0;
-    private volatile int totalColumns = 0;
+    @Value("${sql.lineage.metadata.lazy.ttl-minutes:60}")
+    private long lazyTtlMinutes;
 
+    /**
+     * 不存在的表的负缓存时间（秒）
+     */
+    @Value("${sql.lineage.metadata.lazy.negative-ttl-seconds:60}")
+    private long lazyNegativeTtlSeconds;
+
+    /**
+     * 按需加载缓存，仅 LAZY 模式下创建
+     */
+    private LazyTableCache lazyTables;
+
+    @PostConstruct
+    public void init() {
+        if (mode == MetadataLoadMode.LAZY) {
+            lazyTables = new LazyTableCache(this::loadTable, this::loadTables, lazyMaxColumns, lazyTtlMinutes, lazyNegativeTtlSeconds);
+            log.info("元数据按需加载模式，列数上限={}, 过期={}分钟, 负缓存={}秒",
+                    lazyMaxColumns, lazyTtlMinutes, lazyNegativeTtlSeconds);
+        }
+    }
 
     /**
      * 应用启动时自动加载元数据
@@ -65,18 +121,32 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
             throw new RuntimeException(e);
         }
         jdbcTemplate.setDataSource(clickHouseDataSource);
+        if (lazyTables != null) {
+            log.info("应用启动，元数据按需加载，跳过全量加载");
+            return;
+        }
         log.info("应用启动，开始加载ClickHouse元数据...");
         reload();
     }
 
     /**
      * 定时刷新元数据：每小时执行一次
-     * 可通过配置文件调整刷新频率
+     * 可通过配置文件调整刷新频率；开启增量刷新时只重新加载发生变化的表，
+     * 距上次全量加载超过 {@code full-reload-hours} 时回退为全量加载
      */
     @Scheduled(cron = "${sql.lineage.metadata.refresh-cron:0 0 * * * ?}")
     public void scheduledReload() {
-        log.info("定时任务触发，开始刷新ClickHouse元数据...");
-        reload();
+        if (lazyTables != null) {
+            // 按需加载模式由TTL淘汰过期条目，无需定时刷新
+            return;
+        }
+        if (!incrementalEnabled || System.currentTimeMillis() - lastFullReloadTime >= fullReloadHours * 3_600_000L) {
+            log.info("定时任务触发，开始全量刷新ClickHouse元数据...");
+            reload();
+        } else {
+            log.info("定时任务触发，开始增量刷新ClickHouse元数据...");
+            refresh();
+        }
     }
 
     /**
@@ -87,54 +157,51 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
      */
     public synchronized Map<String, Object> reload() {
         long startTime = System.currentTimeMillis();
-        Map<TableKey, List<ColumnRef>> newMap = new HashMap<>();
-
+        if (lazyTables != null) {
+            // 按需加载模式：清空缓存，后续引用重新查询
+            lazyTables.invalidateAll();
+            long version = lazyTables.version();
+            log.info("元数据按需加载缓存已清空，版本 {}", version);
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("success", true);
+            stats.put("mode", "lazy");
+            stats.put("elapsedMs", System.currentTimeMillis() - startTime);
+            stats.put("version", version);
+            return stats;
+        }
         try {
-            // 查询ClickHouse系统表获取元数据
-            final String sql =
-                    "SELECT database, table, name, position " +
-                    "FROM system.columns " +
-                    "WHERE database NOT IN ('system', 'INFORMATION_SCHEMA') " +
-                    "ORDER BY database, table, position";
-
-            log.debug("执行元数据查询: {}", sql);
-
-            jdbcTemplate.query(sql, rs -> {
-                String ckDb = rs.getString("database");
-                String ckTable = rs.getString("table");
-                String ckColumn = rs.getString("name");
-
-                // 约定：ColumnRef.database=null，ColumnRef.schema=ckDb
-                TableKey key = new TableKey(null, ckDb, ckTable);
-                List<ColumnRef> list = newMap.computeIfAbsent(key, k -> new ArrayList<>());
-
-                // original* 保留原值；of() 内部会对 db/sc/tb/col 做 toLowerCase
-                list.add(ColumnRef.of(
-                        null, ckDb, ckTable, ckColumn,  // 逻辑层面的 db/schema/table/column
-                        null, ckDb, ckTable, ckColumn   // original*
-                ));
-            });
+            // 先读取表的修改时间再读取列：两次查询之间发生的变更在下次增量刷新时会被识别
+            Map<String, Map<String, Long>> modificationTimes = loadModificationTimes();
+            Map<String, Map<String, List<ColumnRef>>> newMap = loadColumns(
+                    COLUMNS_SQL + "WHERE database NOT IN ('system', 'INFORMATION_SCHEMA') " + COLUMNS_ORDER);
 
-            // 原子替换旧缓存
-            columnsByTable.clear();
-            newMap.forEach((k, v) -> columnsByTable.put(k, Collections.unmodifiableList(v)));
+            // 构建新快照后原子替换旧快照（reload 串行执行，版本号单调递增）
+            TableIndex index = new TableIndex();
+            int columnCount = 0;
+            for (Map.Entry<String, Map<String, List<ColumnRef>>> db : newMap.entrySet()) {
+                for (Map.Entry<String, List<ColumnRef>> tb : db.getValue().entrySet()) {
+                    index.put(null, db.getKey(), tb.getKey(), TableHandle.of(tb.getValue()));
+                    columnCount += tb.getValue().size();
+                }
+            }
+            MetadataSnapshot next = new MetadataSnapshot(snapshot.getVersion() + 1, index, columnCount,
+                    System.currentTimeMillis(), modificationTimes);
+            snapshot = next;
+            lastFullReloadTime = next.getLoadedAt();
 
-            // 更新统计信息
-            totalTables = newMap.size();
-            totalColumns = newMap.values().stream().mapToInt(List::size).sum();
-            lastReloadTime = System.currentTimeMillis();
-
-            long elapsed = lastReloadTime - startTime;
-            log.info("元数据刷新完成！加载 {} 张表，{} 个列，耗时 {}ms",
-                    totalTables, totalColumns, elapsed);
+            long elapsed = next.getLoadedAt() - startTime;
+            log.info("元数据刷新完成！加载 {} 张表，{} 个列，耗时 {}ms，版本 {}",
+                    next.getTableCount(), next.getColumnCount(), elapsed, next.getVersion());
 
             // 返回统计信息
             Map<String, Object> stats = new HashMap<>();
             stats.put("success", true);
-            stats.put("tables", totalTables);
-            stats.put("columns", totalColumns);
+            stats.put("mode", "full");
+            stats.put("tables", next.getTableCount());
+            stats.put("columns", next.getColumnCount());
             stats.put("elapsedMs", elapsed);
-            stats.put("timestamp", new Date(lastReloadTime));
+            stats.put("timestamp", new Date(next.getLoadedAt()));
+            stats.put("version", next.getVersion());
             return stats;
 
         } catch (Exception e) {
@@ -146,6 +213,225 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
         }
     }
 
+    /**
+     * 增量刷新元数据
+     * 对比 system.tables 的 metadata_modification_time 与当前快照记录的修改时间，
+     * 只重新加载新增或修改过的表的列，并移除已删除的表；在当前快照的副本上合并后整体发布新快照，
+     * 刷新开销与变更的表数相关，而与元数据总量无关。尚未进行过全量加载时执行全量加载
+     *
+     * @return 刷新结果统计信息
+     */
+    public synchronized Map<String, Object> refresh() {
+        MetadataSnapshot base = snapshot;
+        if (lazyTables != null || base.getVersion() == 0) {
+            return reload();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            Map<String, Map<String, Long>> modificationTimes = loadModificationTimes();
+            Map<String, Map<String, Long>> known = base.modificationTimes();
+
+            List<String[]> changed = new ArrayList<>();
+            List<String[]> dropped = new ArrayList<>();
+            modificationTimes.forEach((db, tables) -> {
+                Map<String, Long> knownTables = known.getOrDefault(db, Collections.emptyMap());
+                tables.forEach((table, time) -> {
+                    if (!time.equals(knownTables.get(table))) {
+                        changed.add(new String[]{db, table});
+                    }
+                });
+            });
+            known.forEach((db, tables) -> {
+                Map<String, Long> currentTables = modificationTimes.getOrDefault(db, Collections.emptyMap());
+                for (String table : tables.keySet()) {
+                    if (!currentTables.containsKey(table)) {
+                        dropped.add(new String[]{db, table});
+                    }
+                }
+            });
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("success", true);
+            stats.put("mode", "incremental");
+            stats.put("changedTables", changed.size());
+            stats.put("droppedTables", dropped.size());
+            if (changed.isEmpty() && dropped.isEmpty()) {
+                log.info("元数据增量刷新：无变更，版本 {}", base.getVersion());
+                stats.put("version", base.getVersion());
+                stats.put("elapsedMs", System.currentTimeMillis() - startTime);
+                return stats;
+            }
+
+            // 写时复制：在当前快照索引的副本上合并变更，旧快照对正在进行的解析保持不变
+            TableIndex index = base.tables().copy();
+            int columnCount = base.getColumnCount();
+            for (String[] t : dropped) {
+                columnCount -= removeTable(index, t[0], t[1]);
+            }
+            for (int from = 0; from < changed.size(); from += incrementalBatchSize) {
+                List<String[]> batch = changed.subList(from, Math.min(changed.size(), from + incrementalBatchSize));
+                Map<String, Map<String, List<ColumnRef>>> loaded = loadColumns(batch);
+                for (String[] t : batch) {
+                    columnCount -= removeTable(index, t[0], t[1]);
+                    List<ColumnRef> columns = loaded.getOrDefault(IdentifierPool.lower(t[0]), Collections.emptyMap())
+                            .get(IdentifierPool.lower(t[1]));
+                    if (columns != null && !columns.isEmpty()) {
+                        index.put(null, t[0], t[1], TableHandle.of(columns));
+                        columnCount += columns.size();
+                    }
+                }
+            }
+            MetadataSnapshot next = new MetadataSnapshot(base.getVersion() + 1, index, columnCount,
+                    System.currentTimeMillis(), modificationTimes);
+            snapshot = next;
+
+            long elapsed = next.getLoadedAt() - startTime;
+            log.info("元数据增量刷新完成！变更 {} 张表，删除 {} 张表，当前 {} 张表，{} 个列，耗时 {}ms，版本 {}",
+                    changed.size(), dropped.size(), next.getTableCount(), next.getColumnCount(), elapsed, next.getVersion());
+            stats.put("tables", next.getTableCount());
+            stats.put("columns", next.getColumnCount());
+            stats.put("elapsedMs", elapsed);
+            stats.put("timestamp", new Date(next.getLoadedAt()));
+            stats.put("version", next.getVersion());
+            return stats;
+
+        } catch (Exception e) {
+            log.error("元数据增量刷新失败", e);
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("success", false);
+            stats.put("error", e.getMessage());
+            return stats;
+        }
+    }
+
+    /**
+     * 读取各表的元数据修改时间：库 -> 表 -> 修改时间（秒）
+     */
+    private Map<String, Map<String, Long>> loadModificationTimes() {
+        final String sql =
+                "SELECT database, name, toUnixTimestamp(metadata_modification_time) AS modified " +
+                "FROM system.tables " +
+                "WHERE database NOT IN ('system', 'INFORMATION_SCHEMA') AND is_temporary = 0";
+        log.debug("执行表修改时间查询: {}", sql);
+        Map<String, Map<String, Long>> times = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            times.computeIfAbsent(rs.getString("database"), k -> new HashMap<>())
+                    .put(rs.getString("name"), rs.getLong("modified"));
+        });
+        return times;
+    }
+
+    /**
+     * 只加载指定表的列
+     *
+     * @param tables (库, 表) 列表
+     */
+    private Map<String, Map<String, List<ColumnRef>>> loadColumns(List<String[]> tables) {
+        StringBuilder sql = new StringBuilder(COLUMNS_SQL).append("WHERE (database, table) IN (");
+        Object[] args = new Object[tables.size() * 2];
+        for (int i = 0; i < tables.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            args[2 * i] = tables.get(i)[0];
+            args[2 * i + 1] = tables.get(i)[1];
+        }
+        sql.append(") ").append(COLUMNS_ORDER);
+        return loadColumns(sql.toString(), args);
+    }
+
+    /**
+     * 执行列查询并按 规范化库名 -> 规范化表名 -> 列清单 分组
+     */
+    private Map<String, Map<String, List<ColumnRef>>> loadColumns(String sql, Object... args) {
+        log.debug("执行元数据查询: {}", sql);
+        Map<String, Map<String, List<ColumnRef>>> newMap = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String ckDb = rs.getString("database");
+            String ckTable = rs.getString("table");
+            String ckColumn = rs.getString("name");
+
+            // 约定：ColumnRef.database=null，ColumnRef.schema=ckDb
+            // 按规范化名分组，仅大小写不同的库/表名合并为同一张表
+            List<ColumnRef> list = newMap.computeIfAbsent(IdentifierPool.lower(ckDb), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(IdentifierPool.lower(ckTable), k -> new ArrayList<>());
+
+            // original* 保留原值；of() 内部会对 db/sc/tb/col 做 toLowerCase
+            list.add(ColumnRef.of(
+                    null, ckDb, ckTable, ckColumn,  // 逻辑层面的 db/schema/table/column
+                    null, ckDb, ckTable, ckColumn   // original*
+            ));
+        }, args);
+        return newMap;
+    }
+
+    /**
+     * 按需加载单张表的列
+     * 先按原名精确匹配（可利用 system.columns 的库表过滤）；未命中时再按小写名匹配，以兼容大小写不同的库表名，
+     * 该回查只在表不存在或大小写不一致时发生，结果会被负缓存
+     */
+    private List<ColumnRef> loadTable(String ckDb, String table) {
+        Map<String, Map<String, List<ColumnRef>>> loaded = loadColumns(
+                COLUMNS_SQL + "WHERE database = ? AND table = ? " + COLUMNS_ORDER, ckDb, table);
+        if (loaded.isEmpty()) {
+            loaded = loadColumns(
+                    COLUMNS_SQL + "WHERE lower(database) = ? AND lower(table) = ? " + COLUMNS_ORDER,
+                    IdentifierPool.lower(ckDb), IdentifierPool.lower(table));
+        }
+        List<ColumnRef> columns = loaded.getOrDefault(IdentifierPool.lower(ckDb), Collections.emptyMap())
+                .get(IdentifierPool.lower(table));
+        return columns == null ? Collections.emptyList() : columns;
+    }
+
+    /**
+     * 批量加载多张表的列（预取用），按 batch-size 分批
+     * 先按原名精确匹配；未命中的表再按小写名整体回查一次，与 {@link #loadTable} 的匹配规则一致
+     */
+    private Map<String, Map<String, List<ColumnRef>>> loadTables(List<String[]> tables) {
+        Map<String, Map<String, List<ColumnRef>>> loaded = new HashMap<>();
+        for (int from = 0; from < tables.size(); from += incrementalBatchSize) {
+            List<String[]> batch = tables.subList(from, Math.min(tables.size(), from + incrementalBatchSize));
+            merge(loaded, loadColumns(batch));
+        }
+        List<String[]> unresolved = new ArrayList<>();
+        for (String[] t : tables) {
+            if (!loaded.getOrDefault(IdentifierPool.lower(t[0]), Collections.emptyMap())
+                    .containsKey(IdentifierPool.lower(t[1]))) {
+                unresolved.add(new String[]{IdentifierPool.lower(t[0]), IdentifierPool.lower(t[1])});
+            }
+        }
+        for (int from = 0; from < unresolved.size(); from += incrementalBatchSize) {
+            List<String[]> batch = unresolved.subList(from, Math.min(unresolved.size(), from + incrementalBatchSize));
+            StringBuilder sql = new StringBuilder(COLUMNS_SQL).append("WHERE (lower(database), lower(table)) IN (");
+            Object[] args = new Object[batch.size() * 2];
+            for (int i = 0; i < batch.size(); i++) {
+                sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+                args[2 * i] = batch.get(i)[0];
+                args[2 * i + 1] = batch.get(i)[1];
+            }
+            sql.append(") ").append(COLUMNS_ORDER);
+            merge(loaded, loadColumns(sql.toString(), args));
+        }
+        log.debug("批量预取元数据: 请求表数={}, 加载表数={}, 大小写回查表数={}",
+                tables.size(), loaded.values().stream().mapToInt(Map::size).sum(), unresolved.size());
+        return loaded;
+    }
+
+    private static void merge(Map<String, Map<String, List<ColumnRef>>> target,
+                              Map<String, Map<String, List<ColumnRef>>> source) {
+        source.forEach((db, byTable) -> target.computeIfAbsent(db, k -> new HashMap<>()).putAll(byTable));
+    }
+
+    /**
+     * 从索引中移除表，返回移除的列数
+     */
+    private static int removeTable(TableIndex index, String db, String table) {
+        TableHandle old = index.get(null, db, table);
+        if (old == null) {
+            return 0;
+        }
+        index.remove(null, db, table);
+        return old.size();
+    }
+
     /**
      * 获取指定表的列清单
      *
@@ -156,13 +442,55 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
      */
     @Override
     public List<ColumnRef> getColumns(String database, String schema, String table) {
-        // 对入参归一化：优先使用 schema 作为 CK database；schema 为空则用 database
-        String ckDb = schema != null ? schema : database;
-        if (table == null || ckDb == null) {
-            return Collections.emptyList();
+        if (lazyTables != null) {
+            TableHandle handle = getTable(database, schema, table);
+            return handle == null ? Collections.emptyList() : handle.getColumns();
+        }
+        return snapshot.getColumns(database, schema, table);
+    }
+
+    /**
+     * 获取指定表的元数据句柄，按列名查找为O(1)
+     *
+     * @return 表句柄，若表不存在则返回null
+     */
+    @Override
+    public TableHandle getTable(String database, String schema, String table) {
+        if (lazyTables != null) {
+            String ckDb = schema != null ? schema : database;
+            return table == null || ckDb == null ? null : lazyTables.get(ckDb, table);
+        }
+        return snapshot.getTable(database, schema, table);
+    }
+
+    @Override
+    public ColumnRef findColumn(String database, String schema, String table, String column) {
+        TableHandle handle = getTable(database, schema, table);
+        return handle == null ? null : handle.findColumn(column);
+    }
+
+    /**
+     * 返回当前发布的快照，解析期间固定使用该快照；按需加载模式下返回固定于本次解析的视图，
+     * 其版本为缓存内容版本，任何表过期、被淘汰或缓存清空后都会变化
+     */
+    @Override
+    public MetadataProvider snapshot() {
+        return lazyTables != null ? lazyTables.pin(lazyTables.version()) : snapshot;
+    }
+
+    /**
+     * 仅按需加载模式需要预取；全量模式下元数据已常驻内存
+     */
+    @Override
+    public boolean supportsPrefetch() {
+        return lazyTables != null;
+    }
+
+    @Override
+    public void prefetch(Collection<TableName> tables) {
+        if (lazyTables != null) {
+            lazyTables.prefetch(tables);
         }
-        TableKey key = new TableKey(null, ckDb, table);
-        return columnsByTable.getOrDefault(key, Collections.emptyList());
     }
 
     /**
@@ -172,13 +500,31 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
      */
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalTables", totalTables);
-        stats.put("totalColumns", totalColumns);
-        stats.put("lastReloadTime", lastReloadTime > 0 ? new Date(lastReloadTime) : null);
-        stats.put("cacheSize", columnsByTable.size());
+        if (lazyTables != null) {
+            CacheStats cacheStats = lazyTables.stats();
+            stats.put("mode", "lazy");
+            stats.put("cacheSize", lazyTables.size());
+            stats.put("hitRate", cacheStats.hitRate());
+            stats.put("loadCount", cacheStats.loadCount());
+            stats.put("evictionCount", cacheStats.evictionCount());
+            stats.put("version", lazyTables.version());
+            return stats;
+        }
+        MetadataSnapshot current = snapshot;
+        stats.put("totalTables", current.getTableCount());
+        stats.put("totalColumns", current.getColumnCount());
+        stats.put("lastReloadTime", current.getLoadedAt() > 0 ? new Date(current.getLoadedAt()) : null);
+        stats.put("lastFullReloadTime", lastFullReloadTime > 0 ? new Date(lastFullReloadTime) : null);
+        stats.put("cacheSize", current.getTableCount());
+        stats.put("version", current.getVersion());
         return stats;
     }
 
+    @Override
+    public long getVersion() {
+        return lazyTables != null ? lazyTables.version() : snapshot.getVersion();
+    }
+
     /**
      * 检查指定表是否存在于元数据缓存中
      *
@@ -188,11 +534,6 @@ public class ClickHouseMetadataProvider implements MetadataProvider, Application
      * @return 是否存在
      */
     public boolean hasTable(String database, String schema, String table) {
-        String ckDb = schema != null ? schema : database;
-        if (table == null || ckDb == null) {
-            return false;
-        }
-        TableKey key = new TableKey(null, ckDb, table);
-        return columnsByTable.containsKey(key);
+        return getTable(database, schema, table) != null;
     }
 }
\ No newline at end of file
@@ -1,13 +1,14 @@
 package com.afsun.lineage.core.meta;
 
 import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.TableName;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author afsun
@@ -17,49 +18,147 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class DynamicMetadataProvider implements MetadataProvider {
 
+    /**
+     * 覆盖层中标记"已删除"的占位句柄
+     */
+    private static final TableHandle DROPPED = TableHandle.of(Collections.emptyList());
+
     // 基础元数据(来自外部)
     private final MetadataProvider baseProvider;
 
     // 动态注册的临时表元数据(脚本执行期间累积)
-    private final Map<String, List<ColumnRef>> tempTables = new ConcurrentHashMap<>();
+    private final TableIndex tempTables = new TableIndex();
+
+    /**
+     * 覆盖层的上层（脚本级实例为null）
+     */
+    private final DynamicMetadataProvider parent;
+
+    /**
+     * 覆盖层中删除的临时表，查找时不再回退到上层
+     */
+    private final TableIndex dropped;
 
     public DynamicMetadataProvider(MetadataProvider baseProvider) {
         this.baseProvider = baseProvider;
+        this.parent = null;
+        this.dropped = null;
+    }
+
+    private DynamicMetadataProvider(DynamicMetadataProvider parent) {
+        this.baseProvider = parent.baseProvider;
+        this.parent = parent;
+        this.dropped = new TableIndex();
+    }
+
+    /**
+     * 创建覆盖层：读取时先查本层再查上层，注册与删除只记录在本层，{@link #commit()} 后才写入上层
+     * 用于预算内试解析，超出预算的语句丢弃覆盖层即可撤销其临时表/CTE登记
+     */
+    public DynamicMetadataProvider overlay() {
+        return new DynamicMetadataProvider(this);
+    }
+
+    /**
+     * 将覆盖层的删除与注册按此顺序写入上层；脚本级实例调用时不做任何事
+     */
+    public void commit() {
+        if (parent == null) {
+            return;
+        }
+        dropped.forEach((db, sc, tb, handle) -> parent.removeTemp(db, sc, tb));
+        tempTables.forEach(parent::putTemp);
     }
 
     @Override
     public List<ColumnRef> getColumns(String database, String schema, String table) {
         // 1. 优先查找临时表
-        String key = buildKey(database, schema, table);
-        if (tempTables.containsKey(key)) {
-            return new ArrayList<>(tempTables.get(key));
+        TableHandle temp = findTemp(database, schema, table);
+        if (temp != null) {
+            return new ArrayList<>(temp.getColumns());
         }
 
         // 2. 回退到基础元数据
         return baseProvider.getColumns(database, schema, table);
     }
 
+    @Override
+    public TableHandle getTable(String database, String schema, String table) {
+        TableHandle temp = findTemp(database, schema, table);
+        return temp != null ? temp : baseProvider.getTable(database, schema, table);
+    }
+
+    @Override
+    public ColumnRef findColumn(String database, String schema, String table, String column) {
+        TableHandle temp = findTemp(database, schema, table);
+        return temp != null ? temp.findColumn(column) : baseProvider.findColumn(database, schema, table, column);
+    }
+
+    @Override
+    public boolean supportsPrefetch() {
+        return baseProvider != null && baseProvider.supportsPrefetch();
+    }
+
+    /**
+     * 已注册的临时表不需要从基础元数据预取
+     */
+    @Override
+    public void prefetch(Collection<TableName> tables) {
+        if (!supportsPrefetch()) {
+            return;
+        }
+        List<TableName> external = new ArrayList<>(tables.size());
+        for (TableName tn : tables) {
+            if (findTemp(tn.getDb(), tn.getSc(), tn.getTable()) == null) {
+                external.add(tn);
+            }
+        }
+        if (!external.isEmpty()) {
+            baseProvider.prefetch(external);
+        }
+    }
+
     // ===== 新增:注册临时表 =====
     public void registerTempTable(String database, String schema, String table,
                                   List<ColumnRef> columns) {
-        String key = buildKey(database, schema, table);
-        tempTables.put(key, new ArrayList<>(columns));
-        log.info("注册临时表: {} 列数={}", key, columns.size());
+        putTemp(database, schema, table, TableHandle.of(columns));
+        log.info("注册临时表: {} 列数={}", buildKey(database, schema, table), columns.size());
     }
 
     // ===== 新增:删除临时表 =====
     public void dropTempTable(String database, String schema, String table) {
-        String key = buildKey(database, schema, table);
-        tempTables.remove(key);
-        log.info("删除临时表: {}", key);
+        removeTemp(database, schema, table);
+        log.info("删除临时表: {}", buildKey(database, schema, table));
     }
 
     // ===== 新增:检查是否为临时表 =====
     public boolean isTempTable(String database, String schema, String table) {
-        String key = buildKey(database, schema, table);
-        return tempTables.containsKey(key);
+        return findTemp(database, schema, table) != null;
+    }
+
+    private TableHandle findTemp(String database, String schema, String table) {
+        TableHandle temp = tempTables.get(database, schema, table);
+        if (temp != null || parent == null || dropped.get(database, schema, table) != null) {
+            return temp;
+        }
+        return parent.findTemp(database, schema, table);
+    }
+
+    private void putTemp(String database, String schema, String table, TableHandle handle) {
+        tempTables.put(database, schema, table, handle);
+        if (dropped != null) {
+            dropped.remove(database, schema, table);
+        }
+    }
+
+    private void removeTemp(String database, String schema, String table) {
+        tempTables.remove(database, schema, table);
+        if (dropped != null) {
+            dropped.put(database, schema, table, DROPPED);
+        }
     }
 
+    // 仅用于日志输出
     private String buildKey(String db, String sc, String tb) {
         return (db == null ? "" : db.toLowerCase()) + "." +
                 (sc == null ? "" : sc.toLowerCase()) + "." +
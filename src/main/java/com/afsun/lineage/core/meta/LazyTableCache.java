@@ -0,0 +1,325 @@
+package com.afsun.lineage.core.meta;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.IdentifierPool;
+import com.afsun.lineage.core.TableName;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按需加载的表元数据缓存（{@link MetadataLoadMode#LAZY}）
+ * 首次引用某张表时经 {@link TableLoader} 查询其列，同一张表的并发未命中只触发一次查询（Caffeine按键加载）；
+ * 按列数加权限制总容量，超出后按W-TinyLFU淘汰；存在的表按 TTL 过期，不存在的表以空句柄做短时负缓存，
+ * 避免拼写错误的表名反复查询ClickHouse；解析前可经 {@link #prefetch} 用一次批量查询预先加载脚本引用的表。
+ * 条目被移除（过期、淘汰、清空）时 {@link #version()} 递增，下游按版本缓存的解析结果因此不会在表被重新加载后继续命中；
+ * 首次加载与预取不改变版本：解析引用到的表必然在本次解析中加载，同一版本下看到的列清单不变，
+ * 加载失败的表不缓存，由 {@link MetadataProvider#hasLoadFailures()} 告知调用方不要缓存该次解析结果
+ *
+ * @author afsun
+ */
+@Slf4j
+final class LazyTableCache {
+
+    /**
+     * 负缓存标记：表不存在或没有列
+     */
+    private static final TableHandle MISSING = TableHandle.of(Collections.emptyList());
+    /**
+     * 加载失败标记（不写入缓存）
+     */
+    private static final TableHandle FAILED = TableHandle.of(Collections.emptyList());
+
+    /**
+     * 按 (库, 表) 查询列，传入脚本中的原始大小写，表不存在时返回空列表
+     */
+    @FunctionalInterface
+    interface TableLoader {
+        List<ColumnRef> load(String database, String table);
+    }
+
+    /**
+     * 按 (库, 表) 列表批量查询列，结果按 规范化库名 -> 规范化表名 -> 列清单 分组，不存在的表不出现在结果中
+     */
+    @FunctionalInterface
+    interface BatchLoader {
+        Map<String, Map<String, List<ColumnRef>>> loadAll(List<String[]> tables);
+    }
+
+    private final LoadingCache<TableId, TableHandle> cache;
+    private final BatchLoader batchLoader;
+    private final AtomicLong version = new AtomicLong(1);
+
+    LazyTableCache(TableLoader loader, BatchLoader batchLoader, long maxColumns, long ttlMinutes,
+                   long negativeTtlSeconds) {
+        this.batchLoader = batchLoader;
+        long ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxColumns)
+                .weigher((TableId key, TableHandle value) -> value.size() + 1)
+                .expireAfter(new Expiry<TableId, TableHandle>() {
+                    @Override
+                    public long expireAfterCreate(TableId key, TableHandle value, long currentTime) {
+                        return value == MISSING ? negativeTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TableId key, TableHandle value, long currentTime, long currentDuration) {
+                        return value == MISSING ? negativeTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(TableId key, TableHandle value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // 同步执行移除回调，过期条目在 cleanUp 返回前已计入版本；只有移除改变版本
+                .executor(Runnable::run)
+                .removalListener((TableId key, TableHandle value, RemovalCause cause) -> version.incrementAndGet())
+                .recordStats()
+                .build(key -> {
+                    List<ColumnRef> columns = loader.load(key.originalDatabase, key.originalTable);
+                    log.debug("按需加载表元数据: {}.{} 列数={}", key.originalDatabase, key.originalTable, columns.size());
+                    return columns.isEmpty() ? MISSING : TableHandle.of(columns);
+                });
+    }
+
+    /**
+     * 查询表句柄，未缓存时同步加载
+     *
+     * @return 表句柄；表不存在或加载失败时返回null（加载失败不缓存，下次引用重试）
+     */
+    TableHandle get(String database, String table) {
+        TableHandle handle = get(new TableId(database, table));
+        return handle == FAILED ? null : handle;
+    }
+
+    /**
+     * @return 表句柄；表不存在时返回null，加载失败时返回 {@link #FAILED}
+     */
+    private TableHandle get(TableId key) {
+        TableHandle handle;
+        try {
+            handle = cache.get(key);
+        } catch (RuntimeException e) {
+            log.warn("按需加载表元数据失败: {}.{} - {}", key.originalDatabase, key.originalTable, e.getMessage());
+            return FAILED;
+        }
+        return handle == MISSING ? null : handle;
+    }
+
+    /**
+     * 批量预取：过滤出尚未缓存的表，用一次批量查询加载后写入缓存，查询结果中没有的表写入负缓存
+     * 预取只是性能优化，查询失败时记录告警并返回，解析时仍按需加载
+     *
+     * @param tables 脚本引用的表，库名取 schema（为空时取 database），未限定库名的表跳过
+     */
+    void prefetch(Collection<TableName> tables) {
+        Map<TableId, String[]> missing = new LinkedHashMap<>();
+        for (TableName tn : tables) {
+            TableId key = TableId.of(tn);
+            if (key != null && !missing.containsKey(key) && cache.getIfPresent(key) == null) {
+                // 精确匹配使用原文，命中 system.columns 的库表过滤
+                missing.put(key, new String[]{key.originalDatabase, key.originalTable});
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, List<ColumnRef>>> loaded;
+        try {
+            loaded = batchLoader.loadAll(new ArrayList<>(missing.values()));
+        } catch (RuntimeException e) {
+            log.warn("批量预取表元数据失败，解析时按需加载: 表数={} - {}", missing.size(), e.getMessage());
+            return;
+        }
+        Map<TableId, TableHandle> handles = new HashMap<>(missing.size() * 2);
+        int found = 0;
+        for (TableId key : missing.keySet()) {
+            List<ColumnRef> columns = loaded.getOrDefault(key.database, Collections.emptyMap()).get(key.table);
+            if (columns == null || columns.isEmpty()) {
+                handles.put(key, MISSING);
+            } else {
+                handles.put(key, TableHandle.of(columns));
+                found++;
+            }
+        }
+        cache.putAll(handles);
+        log.debug("批量预取表元数据: 请求表数={} 命中={}", missing.size(), found);
+    }
+
+    /**
+     * 固定一个解析期间的视图：同一次解析内对同一张表的重复引用只访问缓存一次，
+     * 且解析过程中缓存条目过期或被淘汰不影响已看到的结果
+     */
+    MetadataProvider pin(long version) {
+        return new PinnedView(this, version);
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+        version.incrementAndGet();
+    }
+
+    /**
+     * 缓存内容版本：先执行待处理的过期清理，使已过期但尚未被访问的条目也计入版本
+     */
+    long version() {
+        cache.cleanUp();
+        return version.get();
+    }
+
+    long size() {
+        return cache.estimatedSize();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 缓存键：按规范化名比较，同时携带首次引用时的原始大小写供加载查询使用
+     */
+    private static final class TableId {
+        final String database;
+        final String table;
+        final String originalDatabase;
+        final String originalTable;
+        final int hash;
+
+        TableId(String database, String table) {
+            this.database = IdentifierPool.lower(database);
+            this.table = IdentifierPool.lower(table);
+            this.originalDatabase = database;
+            this.originalTable = table;
+            this.hash = 31 * Objects.hashCode(this.database) + this.table.hashCode();
+        }
+
+        /**
+         * 库名取 schema（为空时取 database），优先使用原文；未限定库名时返回null
+         */
+        static TableId of(TableName tn) {
+            String ckDb = tn.getSc() != null ? tn.getSc() : tn.getDb();
+            if (ckDb == null) {
+                return null;
+            }
+            String originalDb = tn.getSc() != null ? tn.getOsc() : tn.getOdb();
+            return new TableId(originalDb != null ? originalDb : ckDb,
+                    tn.getOtb() != null ? tn.getOtb() : tn.getTable());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TableId)) return false;
+            TableId that = (TableId) o;
+            return hash == that.hash && table.equals(that.table) && Objects.equals(database, that.database);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class PinnedView implements MetadataProvider {
+        private final LazyTableCache cache;
+        private final long version;
+        private final TableIndex seen = new TableIndex();
+        /**
+         * 预取时见到的原始大小写：解析器按规范化名查询，条目过期或预取失败后重新加载仍按原文精确匹配
+         */
+        private final Map<TableId, TableId> originals = new ConcurrentHashMap<>();
+        /**
+         * 视图使用期间有表加载失败（失败的表按不存在处理）
+         */
+        private volatile boolean loadFailed;
+
+        PinnedView(LazyTableCache cache, long version) {
+            this.cache = cache;
+            this.version = version;
+        }
+
+        @Override
+        public List<ColumnRef> getColumns(String database, String schema, String table) {
+            TableHandle handle = getTable(database, schema, table);
+            return handle == null ? Collections.emptyList() : handle.getColumns();
+        }
+
+        @Override
+        public TableHandle getTable(String database, String schema, String table) {
+            // 对入参归一化：优先使用 schema 作为 CK database；schema 为空则用 database
+            String ckDb = schema != null ? schema : database;
+            if (table == null || ckDb == null) {
+                return null;
+            }
+            TableHandle handle = seen.get(null, ckDb, table);
+            if (handle == null) {
+                TableId key = new TableId(ckDb, table);
+                handle = cache.get(originals.getOrDefault(key, key));
+                if (handle == FAILED) {
+                    loadFailed = true;
+                    return null;
+                }
+                if (handle == null) {
+                    return null;
+                }
+                seen.put(null, ckDb, table, handle);
+            }
+            return handle;
+        }
+
+        @Override
+        public ColumnRef findColumn(String database, String schema, String table, String column) {
+            TableHandle handle = getTable(database, schema, table);
+            return handle == null ? null : handle.findColumn(column);
+        }
+
+        @Override
+        public boolean supportsPrefetch() {
+            return true;
+        }
+
+        @Override
+        public void prefetch(Collection<TableName> tables) {
+            for (TableName tn : tables) {
+                TableId key = TableId.of(tn);
+                if (key != null) {
+                    originals.putIfAbsent(key, key);
+                }
+            }
+            cache.prefetch(tables);
+        }
+
+        @Override
+        public boolean hasLoadFailures() {
+            return loadFailed;
+        }
+
+        @Override
+        public MetadataProvider snapshot() {
+            return this;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.afsun.lineage.core.meta;
+
+/**
+ * ClickHouse元数据加载方式
+ *
+ * @author afsun
+ */
+public enum MetadataLoadMode {
+    /**
+     * 启动时全量加载 system.columns 到内存，定时刷新
+     */
+    EAGER,
+    /**
+     * 首次引用某张表时才查询其列，缓存容量有上限并按TTL过期；适用于元数据总量无法常驻内存的集群
+     */
+    LAZY
+}
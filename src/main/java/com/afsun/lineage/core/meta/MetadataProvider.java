@@ -1,9 +1,79 @@
 package com.afsun.lineage.core.meta;
 
 import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.IdentifierPool;
+import com.afsun.lineage.core.TableName;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface MetadataProvider {
     List<ColumnRef> getColumns(String database, String schema, String table);
-}
\ No newline at end of file
+
+    /**
+     * 获取表的元数据句柄，表不存在或没有列时返回null
+     * 默认实现每次基于 {@link #getColumns} 临时构建索引；持有索引的实现应覆盖为O(1)查找
+     */
+    default TableHandle getTable(String database, String schema, String table) {
+        List<ColumnRef> columns = getColumns(database, schema, table);
+        return columns == null || columns.isEmpty() ? null : TableHandle.of(columns);
+    }
+
+    /**
+     * 按列名（忽略大小写）查找单列，表或列不存在时返回null
+     * 默认实现直接顺序扫描 {@link #getColumns}，不构建临时索引；持有索引的实现应覆盖为经由 {@link TableHandle} 查找
+     */
+    default ColumnRef findColumn(String database, String schema, String table, String column) {
+        List<ColumnRef> columns = getColumns(database, schema, table);
+        if (columns == null || column == null) {
+            return null;
+        }
+        String lower = IdentifierPool.lower(column);
+        for (ColumnRef c : columns) {
+            if (lower.equals(c.getColumn())) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 固定当前可见的元数据视图，供一次解析全程使用
+     * 支持在线刷新的实现应返回不可变快照，使解析期间发生的刷新不影响已开始的解析；默认返回自身
+     */
+    default MetadataProvider snapshot() {
+        return this;
+    }
+
+    /**
+     * 是否支持批量预取；按需加载的实现返回true，解析前会先扫描脚本中的表引用并调用 {@link #prefetch}
+     */
+    default boolean supportsPrefetch() {
+        return false;
+    }
+
+    /**
+     * 批量预取表元数据：一次查询加载尚未缓存的表，避免解析过程中逐表往返查询
+     * 仅是性能提示，失败时不应抛出异常（解析时仍会按需加载）；默认不做任何事
+     *
+     * @param tables 脚本引用的表
+     */
+    default void prefetch(Collection<TableName> tables) {
+    }
+
+    /**
+     * 固定的视图在使用期间是否有表元数据加载失败（如查询超时）：失败的表按不存在处理，
+     * 基于该视图的解析结果可能缺少这些表的列，不应按版本缓存；默认返回false
+     */
+    default boolean hasLoadFailures() {
+        return false;
+    }
+
+    /**
+     * 元数据版本号，元数据发生变化时递增，供下游缓存判断是否失效
+     * 不支持版本的实现固定返回0
+     */
+    default long getVersion() {
+        return 0L;
+    }
+}
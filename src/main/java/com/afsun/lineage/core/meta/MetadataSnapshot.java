@@ -0,0 +1,106 @@
+package com.afsun.lineage.core.meta;
+
+import com.afsun.lineage.core.ColumnRef;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClickHouse元数据的不可变快照
+ * 每次刷新构建一个新快照，由 {@link ClickHouseMetadataProvider} 通过单个 volatile 引用整体发布；
+ * 解析开始时经 {@link MetadataProvider#snapshot()} 固定一个快照，整个解析过程看到同一版本的元数据，
+ * 不会观察到刷新过程中的空表或半填充状态
+ * 按 ClickHouse 约定索引为 (null, database, table)，查找时 schema 为空则以 database 作为 CK 库名
+ *
+ * @author afsun
+ */
+public final class MetadataSnapshot implements MetadataProvider {
+
+    /**
+     * 首次加载前的空快照
+     */
+    public static final MetadataSnapshot EMPTY = new MetadataSnapshot(0, new TableIndex(), 0, 0L, Collections.emptyMap());
+
+    private final long version;
+    private final TableIndex tables;
+    private final int columnCount;
+    private final long loadedAt;
+    /**
+     * 加载时各表的元数据修改时间（库 -> 表 -> 秒，按ClickHouse原名），供增量刷新识别变更
+     */
+    private final Map<String, Map<String, Long>> modificationTimes;
+
+    MetadataSnapshot(long version, TableIndex tables, int columnCount, long loadedAt,
+                     Map<String, Map<String, Long>> modificationTimes) {
+        this.version = version;
+        this.tables = tables;
+        this.columnCount = columnCount;
+        this.loadedAt = loadedAt;
+        this.modificationTimes = modificationTimes;
+    }
+
+    @Override
+    public List<ColumnRef> getColumns(String database, String schema, String table) {
+        TableHandle handle = getTable(database, schema, table);
+        return handle == null ? Collections.emptyList() : handle.getColumns();
+    }
+
+    @Override
+    public TableHandle getTable(String database, String schema, String table) {
+        // 对入参归一化：优先使用 schema 作为 CK database；schema 为空则用 database
+        String ckDb = schema != null ? schema : database;
+        if (table == null || ckDb == null) {
+            return null;
+        }
+        return tables.get(null, ckDb, table);
+    }
+
+    @Override
+    public ColumnRef findColumn(String database, String schema, String table, String column) {
+        TableHandle handle = getTable(database, schema, table);
+        return handle == null ? null : handle.findColumn(column);
+    }
+
+    /**
+     * 快照本身不可变，直接返回自身
+     */
+    @Override
+    public MetadataProvider snapshot() {
+        return this;
+    }
+
+    /**
+     * 快照版本号，每次成功刷新后单调递增
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * 快照加载完成时间（毫秒时间戳），空快照为0
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 快照的表索引；发布后不再修改，增量刷新在其副本上合并变更
+     */
+    TableIndex tables() {
+        return tables;
+    }
+
+    Map<String, Map<String, Long>> modificationTimes() {
+        return modificationTimes;
+    }
+}
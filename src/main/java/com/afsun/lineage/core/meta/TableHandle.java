@@ -0,0 +1,64 @@
+package com.afsun.lineage.core.meta;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.IdentifierPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单张表的元数据句柄
+ * 持有按定义顺序排列的列清单，以及按规范化小写列名建立的索引；构建后不可变，可跨线程共享
+ * 列名索引的键与 {@link ColumnRef#getColumn()} 为同一驻留实例，按列查找为O(1)且不分配对象
+ *
+ * @author afsun
+ */
+public final class TableHandle {
+
+    private final List<ColumnRef> columns;
+    private final Map<String, ColumnRef> byName;
+
+    private TableHandle(List<ColumnRef> columns) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.byName = new HashMap<>(Math.max(4, columns.size() * 4 / 3 + 1));
+        for (ColumnRef c : columns) {
+            // 同名列保留第一个，与按顺序扫描的语义一致
+            byName.putIfAbsent(c.getColumn(), c);
+        }
+    }
+
+    public static TableHandle of(List<ColumnRef> columns) {
+        return new TableHandle(columns == null ? Collections.emptyList() : columns);
+    }
+
+    /**
+     * 列清单（按定义顺序，只读）
+     */
+    public List<ColumnRef> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 按列名查找（忽略大小写）
+     *
+     * @return 列引用；不存在时返回null
+     */
+    public ColumnRef findColumn(String column) {
+        if (column == null) {
+            return null;
+        }
+        ColumnRef hit = byName.get(column);
+        if (hit != null) {
+            return hit;
+        }
+        String lower = IdentifierPool.lower(column);
+        return lower == column ? null : byName.get(lower);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+}
@@ -0,0 +1,89 @@
+package com.afsun.lineage.core.meta;
+
+import com.afsun.lineage.core.IdentifierPool;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 表句柄的分级哈希索引：库 -> 模式 -> 表 -> {@link TableHandle}
+ * 各级键为经 {@link IdentifierPool} 规范化的小写名（null 记为空串），查找时不拼接字符串、不构造键对象
+ *
+ * @author afsun
+ */
+final class TableIndex {
+
+    private static final String NONE = "";
+
+    private final Map<String, Map<String, Map<String, TableHandle>>> tables = new ConcurrentHashMap<>();
+    private volatile int size;
+
+    TableHandle get(String database, String schema, String table) {
+        if (table == null) {
+            return null;
+        }
+        Map<String, Map<String, TableHandle>> bySchema = tables.get(key(database));
+        if (bySchema == null) {
+            return null;
+        }
+        Map<String, TableHandle> byTable = bySchema.get(key(schema));
+        return byTable == null ? null : byTable.get(key(table));
+    }
+
+    synchronized void put(String database, String schema, String table, TableHandle handle) {
+        TableHandle prev = tables.computeIfAbsent(key(database), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key(schema), k -> new ConcurrentHashMap<>())
+                .put(key(table), handle);
+        if (prev == null) {
+            size++;
+        }
+    }
+
+    synchronized void remove(String database, String schema, String table) {
+        if (table == null) {
+            return;
+        }
+        Map<String, Map<String, TableHandle>> bySchema = tables.get(key(database));
+        Map<String, TableHandle> byTable = bySchema == null ? null : bySchema.get(key(schema));
+        if (byTable != null && byTable.remove(key(table)) != null) {
+            size--;
+        }
+    }
+
+    /**
+     * 复制索引结构（表句柄不可变，直接共享），用于写时复制
+     */
+    synchronized TableIndex copy() {
+        TableIndex copy = new TableIndex();
+        tables.forEach((db, bySchema) -> bySchema.forEach((sc, byTable) ->
+                copy.tables.computeIfAbsent(db, k -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(sc, k -> new ConcurrentHashMap<>())
+                        .putAll(byTable)));
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * 遍历已登记的表，回调的库/模式/表为规范化后的键（null 记为空串）
+     */
+    void forEach(Visitor visitor) {
+        tables.forEach((db, bySchema) -> bySchema.forEach((sc, byTable) ->
+                byTable.forEach((tb, handle) -> visitor.visit(db, sc, tb, handle))));
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String database, String schema, String table, TableHandle handle);
+    }
+
+    /**
+     * 已登记的表数
+     */
+    int size() {
+        return size;
+    }
+
+    private static String key(String name) {
+        return name == null ? NONE : IdentifierPool.lower(name);
+    }
+}
@@ -0,0 +1,209 @@
+package com.afsun.lineage.core.metrics;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.TableName;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.meta.TableHandle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析与写入各阶段的Micrometer指标（通过 /actuator/prometheus 暴露）
+ *
+ * <ul>
+ *     <li>sql.lineage.parse.phase{phase}：解析结果缓存键计算(cache_key，仅启用缓存时)、切分(split，含注释识别)、元数据预取(metadata_prefetch)、Druid解析(druid_parse)耗时</li>
+ *     <li>sql.lineage.parse.statement{type}：按语句类型统计血缘处理耗时</li>
+ *     <li>sql.lineage.parse.script：整个脚本解析耗时</li>
+ *     <li>sql.lineage.metadata.lookup{result}：外部元数据查询耗时，result=hit/miss</li>
+ *     <li>sql.lineage.persist.batch{kind}：Neo4j每批写入耗时，kind=tables/columns/lineage/table_lineage/indirect</li>
+ *     <li>sql.lineage.persist.graph：单次血缘图写入总耗时</li>
+ *     <li>sql.lineage.parse.warnings{category}、sql.lineage.parse.skipped：告警与跳过片段计数</li>
+ * </ul>
+ * 计时器均发布直方图，可在Prometheus中按分位数聚合
+ *
+ * @author afsun
+ */
+@Component
+public class ParseMetrics {
+
+    /**
+     * 不输出任何指标（非Spring环境或测试使用）
+     */
+    public static final ParseMetrics NONE = new ParseMetrics(new CompositeMeterRegistry());
+
+    public static final String PHASE_CACHE_KEY = "cache_key";
+    public static final String PHASE_SPLIT = "split";
+    public static final String PHASE_DRUID_PARSE = "druid_parse";
+    public static final String PHASE_PREFETCH = "metadata_prefetch";
+
+    private static final Duration STAGE_MIN = Duration.ofNanos(100_000);
+    private static final Duration STAGE_MAX = Duration.ofSeconds(60);
+    private static final Duration LOOKUP_MIN = Duration.ofNanos(1_000);
+    private static final Duration LOOKUP_MAX = Duration.ofSeconds(1);
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> phaseTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> statementTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> persistTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> warningCounters = new ConcurrentHashMap<>();
+    private final Timer scriptTimer;
+    private final Timer persistGraphTimer;
+    private final Timer lookupHitTimer;
+    private final Timer lookupMissTimer;
+    private final Counter skippedCounter;
+
+    public ParseMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.scriptTimer = timer("sql.lineage.parse.script", null, null, STAGE_MIN, STAGE_MAX);
+        this.persistGraphTimer = timer("sql.lineage.persist.graph", null, null, STAGE_MIN, STAGE_MAX);
+        this.lookupHitTimer = timer("sql.lineage.metadata.lookup", "result", "hit", LOOKUP_MIN, LOOKUP_MAX);
+        this.lookupMissTimer = timer("sql.lineage.metadata.lookup", "result", "miss", LOOKUP_MIN, LOOKUP_MAX);
+        this.skippedCounter = Counter.builder("sql.lineage.parse.skipped")
+                .description("因预算或过滤跳过的语句片段数")
+                .register(registry);
+    }
+
+    /**
+     * 记录解析阶段耗时
+     *
+     * @param phase      阶段名，见 PHASE_* 常量
+     * @param startNanos 阶段开始时的 System.nanoTime()
+     */
+    public void recordPhase(String phase, long startNanos) {
+        phaseTimers.computeIfAbsent(phase, p -> timer("sql.lineage.parse.phase", "phase", p, STAGE_MIN, STAGE_MAX))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录单个语句的血缘处理耗时
+     *
+     * @param statementType 语句类型（AST类名）
+     */
+    public void recordStatement(String statementType, long startNanos) {
+        statementTimers.computeIfAbsent(statementType,
+                        t -> timer("sql.lineage.parse.statement", "type", t, STAGE_MIN, STAGE_MAX))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录脚本解析结果：总耗时、各类告警数、跳过片段数
+     */
+    public void recordScript(long elapsedMillis, List<LineageWarning> warnings, int skipped) {
+        scriptTimer.record(elapsedMillis, TimeUnit.MILLISECONDS);
+        for (LineageWarning warning : warnings) {
+            String category = warning.getCategory() == null ? "UNKNOWN" : warning.getCategory();
+            warningCounters.computeIfAbsent(category, c -> Counter.builder("sql.lineage.parse.warnings")
+                            .tag("category", c)
+                            .register(registry))
+                    .increment();
+        }
+        if (skipped > 0) {
+            skippedCounter.increment(skipped);
+        }
+    }
+
+    /**
+     * 记录一批Neo4j写入耗时
+     *
+     * @param kind 写入内容：tables / columns / lineage
+     */
+    public void recordPersistBatch(String kind, long startNanos) {
+        persistTimers.computeIfAbsent(kind, k -> timer("sql.lineage.persist.batch", "kind", k, STAGE_MIN, STAGE_MAX))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录单次血缘图写入总耗时
+     */
+    public void recordPersistGraph(long startNanos) {
+        persistGraphTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 包装元数据提供者，统计每次外部元数据查询的耗时与命中情况
+     */
+    public MetadataProvider timed(MetadataProvider provider) {
+        if (this == NONE || provider == null || provider instanceof TimedMetadataProvider) {
+            return provider;
+        }
+        return new TimedMetadataProvider(provider);
+    }
+
+    private Timer timer(String name, String tagKey, String tagValue, Duration min, Duration max) {
+        Timer.Builder builder = Timer.builder(name)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(min)
+                .maximumExpectedValue(max);
+        if (tagKey != null) {
+            builder.tag(tagKey, tagValue);
+        }
+        return builder.register(registry);
+    }
+
+    private final class TimedMetadataProvider implements MetadataProvider {
+        private final MetadataProvider delegate;
+
+        TimedMetadataProvider(MetadataProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<ColumnRef> getColumns(String database, String schema, String table) {
+            long start = System.nanoTime();
+            List<ColumnRef> columns = delegate.getColumns(database, schema, table);
+            Timer timer = columns == null || columns.isEmpty() ? lookupMissTimer : lookupHitTimer;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return columns;
+        }
+
+        @Override
+        public TableHandle getTable(String database, String schema, String table) {
+            long start = System.nanoTime();
+            TableHandle handle = delegate.getTable(database, schema, table);
+            Timer timer = handle == null ? lookupMissTimer : lookupHitTimer;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return handle;
+        }
+
+        @Override
+        public ColumnRef findColumn(String database, String schema, String table, String column) {
+            long start = System.nanoTime();
+            ColumnRef found = delegate.findColumn(database, schema, table, column);
+            Timer timer = found == null ? lookupMissTimer : lookupHitTimer;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return found;
+        }
+
+        @Override
+        public boolean supportsPrefetch() {
+            return delegate.supportsPrefetch();
+        }
+
+        @Override
+        public void prefetch(Collection<TableName> tables) {
+            delegate.prefetch(tables);
+        }
+
+        @Override
+        public MetadataProvider snapshot() {
+            MetadataProvider pinned = delegate.snapshot();
+            return pinned == delegate ? this : new TimedMetadataProvider(pinned);
+        }
+
+        @Override
+        public long getVersion() {
+            return delegate.getVersion();
+        }
+    }
+}
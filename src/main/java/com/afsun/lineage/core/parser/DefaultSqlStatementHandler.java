@@ -7,13 +7,13 @@ import com.afsun.lineage.core.exceptions.MetadataNotFoundException;
 import com.afsun.lineage.core.exceptions.UnsupportedSyntaxException;
 import com.afsun.lineage.core.meta.DynamicMetadataProvider;
 import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.meta.TableHandle;
 import com.afsun.lineage.graph.ColumnNode;
+import com.afsun.lineage.graph.IndirectEdge;
 import com.afsun.lineage.graph.TableNode;
-import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLName;
 import com.alibaba.druid.sql.ast.SQLStatement;
-import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
 import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
 import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
 import com.alibaba.druid.sql.ast.statement.*;
@@ -29,23 +29,43 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class DefaultSqlStatementHandler implements SqlStatementHandler {
 
-    private final ExpressionResolver exprResolver = new DefaultExpressionResolver();
-
-    private DynamicMetadataProvider dynamicMetadataProvider;
+    private final ExpressionResolver exprResolver;
+    /**
+     * 表达式解析档位：决定 SELECT 列清单之外还解析哪些子句
+     */
+    private final ResolutionProfile profile;
 
     public DefaultSqlStatementHandler() {
+        this(ResolutionProfile.FULL);
+    }
+
+    public DefaultSqlStatementHandler(ResolutionProfile profile) {
+        this(new DefaultExpressionResolver(), profile);
+    }
+
+    public DefaultSqlStatementHandler(ExpressionResolver exprResolver) {
+        this(exprResolver, ResolutionProfile.FULL);
+    }
+
+    public DefaultSqlStatementHandler(ExpressionResolver exprResolver, ResolutionProfile profile) {
+        this.exprResolver = exprResolver;
+        this.profile = profile;
     }
 
 
     @Override
     public void handle(SQLStatement st,
-                       DbType dialect,
                        Scope scope,
-                       LineageGraph graph,
-                       DynamicMetadataProvider metadata,
-                       List<LineageWarning> warns,
-                       AtomicInteger skipped) {
-        dynamicMetadataProvider = metadata;
+                       ParseContext context) {
+        if (context.getMode() == LineageMode.TABLE_ONLY) {
+            // 仅表级血缘：不解析表达式、不依赖元数据
+            TableLineageCollector.collect(st, scope, context);
+            return;
+        }
+        LineageGraph graph = context.getGraph();
+        DynamicMetadataProvider metadata = context.getMetadata();
+        List<LineageWarning> warns = context.getWarnings();
+        AtomicInteger skipped = context.getSkipped();
         // ===== 新增:处理DROP TABLE =====
         if (st instanceof SQLDropTableStatement) {
             SQLDropTableStatement drop = (SQLDropTableStatement) st;
@@ -92,7 +112,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
             return;
         }
         if (st instanceof SQLInsertStatement) {
-            handleInsert((SQLInsertStatement) st, scope, graph, metadata, warns);
+            handleInsert((SQLInsertStatement) st, scope, context);
             return;
         }
         if (st instanceof SQLUpdateStatement) {
@@ -186,92 +206,16 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                                     LineageGraph graph,
                                     DynamicMetadataProvider metadata,
                                     List<LineageWarning> warns) {
-        // 1) FROM 解析：填充作用域中的表别名映射
-        bindFrom(qb.getFrom(), scope, graph, metadata, warns);
+        // 1) FROM 绑定与 SELECT 列清单：由查询引擎计算一次并按节点缓存
+        List<SelectOutput> outputs = queryOutputs(qb, scope, metadata, warns);
 
         log.debug("extractSelectBlock: FROM类型={}, target={}, scope表数量={}",
                   qb.getFrom() != null ? qb.getFrom().getClass().getSimpleName() : "null",
                   target != null ? target.getTargetTable().getTable() : "null",
                   scope.tableCount());
 
-        // 2) 遍历 SELECT 列清单
-        List<SelectOutput> outputs = new ArrayList<>();
-        List<SQLSelectItem> items = qb.getSelectList();
-        int idx = 0;
-        for (SQLSelectItem item : items) {
-            String alias = safeLower(item.getAlias()); // 输出列别名
-            SQLExpr expr = item.getExpr();
-            // 2.1 星号展开（* 或 t.*）
-            if (expr instanceof SQLAllColumnExpr) {
-                SQLAllColumnExpr expr2 = (SQLAllColumnExpr) expr;
-                SQLExpr owner = expr2.getOwner();
-                String qualifier = null;
-                if(owner != null) {
-                    SQLIdentifierExpr owner1 = (SQLIdentifierExpr)owner;
-                    qualifier = owner1.getName();
-                }
-                outputs.addAll(expandStar(qualifier, scope, metadata, graph, warns));
-            }  else if (expr instanceof SQLIdentifierExpr) {
-                SQLIdentifierExpr sqlExpr = (SQLIdentifierExpr) expr;
-                // ===== 修复：先判断是否为星号展开 =====
-                String identName = sqlExpr.getName();
-                if ("*".equals(identName)) {
-                    outputs.addAll(expandStar(null, scope, metadata, graph, warns));
-                } else {
-                    // 普通标识符列：解析为列引用
-                    List<ColumnRef> sources = exprResolver.resolve(expr, scope, metadata, warns);
-                    String outName = alias != null ? alias : safeLower(identName);
-                    outputs.add(new SelectOutput(outName, sources));
-                }
-            }
-            else if (expr instanceof SQLPropertyExpr && "*".equals(((SQLPropertyExpr) expr).getName())) {
-                String qualifier = ((SQLPropertyExpr) expr).getOwner().toString();
-                outputs.addAll(expandStar(qualifier, scope, metadata, graph, warns));
-            } else {
-                // 2.2 普通表达式：解析上游源列
-                List<ColumnRef> sources = exprResolver.resolve(expr, scope, metadata, warns);
-                // 推断输出列名：优先别名；否则尝试从标识/属性表达式获取名称；实在没有则生成 col_{idx}
-                String outName = alias;
-                if (outName == null) {
-                    if (expr instanceof SQLPropertyExpr) {
-                        outName = safeLower(((SQLPropertyExpr) expr).getName());
-                    } else if (expr instanceof SQLIdentifierExpr) {
-                        outName = safeLower(((SQLIdentifierExpr) expr).getName());
-                    } else {
-                        outName = "col_" + idx;
-                        warns.add(LineageWarning.of("ANON_COL",
-                                "无法推断列名，已生成占位名: " + outName,
-                                positionOf(expr), "建议为该列提供别名"));
-                    }
-                }
-                outputs.add(new SelectOutput(outName, sources));
-            }
-            idx++;
-        }
-
-        // ===== 新增：解析 WHERE 子句中的列引用 =====
-        if (qb.getWhere() != null) {
-            exprResolver.resolve(qb.getWhere(), scope, metadata, warns);
-        }
-
-        // ===== 新增：解析 GROUP BY 子句中的列引用 =====
-        if (qb.getGroupBy() != null) {
-            for (SQLExpr groupExpr : qb.getGroupBy().getItems()) {
-                exprResolver.resolve(groupExpr, scope, metadata, warns);
-            }
-        }
-
-        // ===== 新增：解析 HAVING 子句中的列引用 =====
-        if (qb.getGroupBy() != null && qb.getGroupBy().getHaving() != null) {
-            exprResolver.resolve(qb.getGroupBy().getHaving(), scope, metadata, warns);
-        }
-
-        // ===== 新增：解析 ORDER BY 子句中的列引用 =====
-        if (qb.getOrderBy() != null && qb.getOrderBy().getItems() != null) {
-            for (SQLSelectOrderByItem orderItem : qb.getOrderBy().getItems()) {
-                exprResolver.resolve(orderItem.getExpr(), scope, metadata, warns);
-            }
-        }
+        // 2) 按解析档位处理非投影子句（JOIN ON / WHERE / GROUP BY / HAVING / ORDER BY），结果作为间接血缘
+        Map<IndirectEdge.Kind, List<ColumnRef>> indirect = resolveIndirectSources(qb, scope, metadata, warns);
 
         log.debug("extractSelectBlock: 输出列数={}", outputs.size());
         for (int i = 0; i < outputs.size(); i++) {
@@ -302,7 +246,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                 String tgtCol = safeLower(targetCols.get(i));
                 SelectOutput out = outputs.get(i);
                 // 3.3 创建目标列节点与 owner 关系
-                ColumnNode targetColumn = new ColumnNode(
+                ColumnNode targetColumn = ColumnNode.of(
                         target.getTargetTable().getDatabase(),
                         target.getTargetTable().getSchema(),
                         target.getTargetTable().getTable(),
@@ -319,11 +263,11 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
 
                 // 3.4 为每个源列建立 to(target → source)
                 for (ColumnRef src : out.getSources()) {
-                    // 关键修复：递归解析到真实的物理表列（跳过CTE/子查询）
-                    List<ColumnRef> physicalSources = resolvePhysicalSources(src, scope);
+                    // 追溯到真实的物理表列（跳过CTE/子查询），结果按作用域缓存
+                    List<ColumnRef> physicalSources = scope.resolvePhysicalSources(src, warns);
                     for (ColumnRef physicalSrc : physicalSources) {
                         // 过滤掉CTE和自动生成的子查询表
-                        if (isVirtualTable(physicalSrc.getTable())) {
+                        if (isVirtualTable(physicalSrc.getTable(), metadata)) {
                             continue;
                         }
                         ColumnNode srcNode = toColumnNode(physicalSrc);
@@ -337,6 +281,9 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                     }
                 }
             }
+
+            // 3.5 间接血缘：影响结果行但不构成目标列取值的源列 -> 目标表
+            addIndirectEdges(indirect, target, scope, graph, metadata, warns);
         } else {
             // 无目标上下文：仅为源列建立 owner（不创建 to）
             for (SelectOutput out : outputs) {
@@ -348,6 +295,85 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
         }
     }
 
+    /**
+     * 按解析档位解析 SELECT 列清单之外的子句，返回各类间接引用的源列
+     * PROJECTION 档位直接返回空结果，不遍历这些子句
+     */
+    private Map<IndirectEdge.Kind, List<ColumnRef>> resolveIndirectSources(SQLSelectQueryBlock qb,
+                                                                          Scope scope,
+                                                                          DynamicMetadataProvider metadata,
+                                                                          List<LineageWarning> warns) {
+        Map<IndirectEdge.Kind, List<ColumnRef>> result = new EnumMap<>(IndirectEdge.Kind.class);
+        if (!profile.includesJoin()) {
+            return result;
+        }
+        List<SQLExpr> joinConditions = new ArrayList<>();
+        collectJoinConditions(qb.getFrom(), joinConditions);
+        for (SQLExpr condition : joinConditions) {
+            addIndirect(result, IndirectEdge.Kind.JOIN, exprResolver.resolve(condition, scope, metadata, warns));
+        }
+        if (!profile.includesPredicates()) {
+            return result;
+        }
+        if (qb.getWhere() != null) {
+            addIndirect(result, IndirectEdge.Kind.FILTER, exprResolver.resolve(qb.getWhere(), scope, metadata, warns));
+        }
+        if (qb.getGroupBy() != null) {
+            for (SQLExpr groupExpr : qb.getGroupBy().getItems()) {
+                addIndirect(result, IndirectEdge.Kind.GROUP, exprResolver.resolve(groupExpr, scope, metadata, warns));
+            }
+            if (qb.getGroupBy().getHaving() != null) {
+                addIndirect(result, IndirectEdge.Kind.FILTER,
+                        exprResolver.resolve(qb.getGroupBy().getHaving(), scope, metadata, warns));
+            }
+        }
+        if (qb.getOrderBy() != null && qb.getOrderBy().getItems() != null) {
+            for (SQLSelectOrderByItem orderItem : qb.getOrderBy().getItems()) {
+                addIndirect(result, IndirectEdge.Kind.ORDER, exprResolver.resolve(orderItem.getExpr(), scope, metadata, warns));
+            }
+        }
+        return result;
+    }
+
+    // 间接血缘落图：源列追溯到物理列后建立 源列 -> 目标表
+    private void addIndirectEdges(Map<IndirectEdge.Kind, List<ColumnRef>> indirect,
+                                  TargetContext target,
+                                  Scope scope,
+                                  LineageGraph graph,
+                                  DynamicMetadataProvider metadata,
+                                  List<LineageWarning> warns) {
+        for (Map.Entry<IndirectEdge.Kind, List<ColumnRef>> e : indirect.entrySet()) {
+            for (ColumnRef src : e.getValue()) {
+                for (ColumnRef physicalSrc : scope.resolvePhysicalSources(src, warns)) {
+                    if (isVirtualTable(physicalSrc.getTable(), metadata)) {
+                        continue;
+                    }
+                    ColumnNode srcNode = toColumnNode(physicalSrc);
+                    graph.addOwner(srcNode, toTableNode(physicalSrc));
+                    graph.addIndirect(srcNode, target.getTargetTable(), e.getKey());
+                }
+            }
+        }
+    }
+
+    private static void addIndirect(Map<IndirectEdge.Kind, List<ColumnRef>> result, IndirectEdge.Kind kind, List<ColumnRef> refs) {
+        if (!refs.isEmpty()) {
+            result.computeIfAbsent(kind, k -> new ArrayList<>()).addAll(refs);
+        }
+    }
+
+    // 收集 JOIN 树中的 ON 条件（不进入子查询，子查询的条件在其自身查询块中处理）
+    private void collectJoinConditions(SQLTableSource from, List<SQLExpr> out) {
+        if (from instanceof SQLJoinTableSource) {
+            SQLJoinTableSource join = (SQLJoinTableSource) from;
+            collectJoinConditions(join.getLeft(), out);
+            collectJoinConditions(join.getRight(), out);
+            if (join.getCondition() != null) {
+                out.add(join.getCondition());
+            }
+        }
+    }
+
     // UNION 处理：按位置对齐两侧输出，并合并其 sources 到统一输出列
     private void extractUnion(SQLUnionQuery uq,
                               TargetContext target,
@@ -355,24 +381,8 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                               LineageGraph graph,
                               DynamicMetadataProvider metadata,
                               List<LineageWarning> warns) {
-        // 仅处理二元 UNION；链式 UNION 可递归处理 left 或 right
-        List<SelectOutput> left = collectSelectOutputs(uq.getLeft(), scope, metadata, graph, warns);
-        List<SelectOutput> right = collectSelectOutputs(uq.getRight(), scope, metadata, graph, warns);
-        int n = Math.min(left.size(), right.size());
-        if (left.size() != right.size()) {
-            warns.add(LineageWarning.of("UNION_MISMATCH",
-                    "UNION 分支列数不一致，按最短长度位置对齐",
-                    positionOf(uq), "建议为两侧提供一致的列数与别名"));
-        }
-        // 将左右分支对应列的 sources 合并为一个输出集合
-        List<SelectOutput> merged = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            String name = left.get(i).getOutputName() != null ? left.get(i).getOutputName() : right.get(i).getOutputName();
-            Set<ColumnRef> unionSources = new LinkedHashSet<>();
-            unionSources.addAll(left.get(i).getSources());
-            unionSources.addAll(right.get(i).getSources());
-            merged.add(new SelectOutput(name != null ? name : "col_" + i, new ArrayList<>(unionSources)));
-        }
+        // 两侧分支按位置对齐后的输出列（由查询引擎合并并缓存）
+        List<SelectOutput> merged = queryOutputs(uq, scope, metadata, warns);
 
         // 若有目标上下文，则映射 merged 到目标；否则仅记录 owner
         if (target != null && target.getTargetTable() != null) {
@@ -383,7 +393,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
             for (int i = 0; i < m; i++) {
                 String tgtCol = safeLower(tgtCols.get(i));
                 SelectOutput out = merged.get(i);
-                ColumnNode targetColumn = new ColumnNode(
+                ColumnNode targetColumn = ColumnNode.of(
                         target.getTargetTable().getDatabase(),
                         target.getTargetTable().getSchema(),
                         target.getTargetTable().getTable(),
@@ -395,9 +405,30 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                 );
                 graph.addOwner(targetColumn, target.getTargetTable());
                 for (ColumnRef src : out.getSources()) {
-                    ColumnNode srcNode = toColumnNode(src);
-                    graph.addOwner(srcNode, toTableNode(src));
-                    graph.addTo(targetColumn, srcNode);
+                    // 与单查询块一致：追溯到物理列并跳过CTE/子查询虚拟表
+                    for (ColumnRef physicalSrc : scope.resolvePhysicalSources(src, warns)) {
+                        if (isVirtualTable(physicalSrc.getTable(), metadata)) {
+                            continue;
+                        }
+                        ColumnNode srcNode = toColumnNode(physicalSrc);
+                        graph.addOwner(srcNode, toTableNode(physicalSrc));
+                        graph.addTo(targetColumn, srcNode);
+                    }
+                }
+            }
+
+            // 间接血缘按分支解析：各分支的 JOIN/WHERE 等子句在计算输出列时绑定了该分支 FROM 的作用域中解析，
+            // 不重新绑定（不再生成子查询别名、登记虚拟表或重复计入预算）；并行分支使用其元数据覆盖层
+            if (profile.includesJoin()) {
+                for (SQLSelectQuery branch : QueryOutputVisitor.flattenUnion(uq)) {
+                    Scope branchScope = branch instanceof SQLSelectQueryBlock ? scope.boundScopeOf(branch) : null;
+                    if (branchScope == null) {
+                        continue;
+                    }
+                    DynamicMetadataProvider branchMetadata = branchScope.getBranchMetadata() instanceof DynamicMetadataProvider
+                            ? (DynamicMetadataProvider) branchScope.getBranchMetadata() : metadata;
+                    addIndirectEdges(resolveIndirectSources((SQLSelectQueryBlock) branch, branchScope, branchMetadata, warns),
+                            target, branchScope, graph, branchMetadata, warns);
                 }
             }
         } else {
@@ -410,205 +441,12 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
         }
     }
 
-    // 收集任意 SELECT（块或 UNION）输出，便于 UNION 合并
-    private List<SelectOutput> collectSelectOutputs(SQLSelectQuery q,
-                                                    Scope scope,
-                                                    DynamicMetadataProvider metadata,
-                                                    LineageGraph graph,
-                                                    List<LineageWarning> warns) {
-        if (q instanceof SQLSelectQueryBlock) {
-            // 临时收集：不写图（target=null），仅收集 outputs
-            return collectSelectBlockOutputs((SQLSelectQueryBlock) q, scope, metadata, warns);
-        } else if (q instanceof SQLUnionQuery) {
-            List<SelectOutput> left = collectSelectOutputs(((SQLUnionQuery) q).getLeft(), scope, metadata, graph, warns);
-            List<SelectOutput> right = collectSelectOutputs(((SQLUnionQuery) q).getRight(), scope, metadata, graph, warns);
-            int n = Math.min(left.size(), right.size());
-            List<SelectOutput> merged = new ArrayList<>();
-            for (int i = 0; i < n; i++) {
-                String name = left.get(i).getOutputName() != null ? left.get(i).getOutputName() : right.get(i).getOutputName();
-                Set<ColumnRef> unionSources = new LinkedHashSet<>();
-                unionSources.addAll(left.get(i).getSources());
-                unionSources.addAll(right.get(i).getSources());
-                merged.add(new SelectOutput(name != null ? name : "col_" + i, new ArrayList<>(unionSources)));
-            }
-            return merged;
-        }
-        return Collections.emptyList();
-    }
-
-    // 与 extractSelectBlock 类似，但不写图，仅返回输出列描述
-    private List<SelectOutput> collectSelectBlockOutputs(SQLSelectQueryBlock qb,
-                                                         Scope scope,
-                                                         DynamicMetadataProvider metadata,
-                                                         List<LineageWarning> warns) {
-        // ===== 关键修复：创建一个临时的LineageGraph用于bindFrom，以便正确处理子查询 =====
-        LineageGraph tempGraph = new LineageGraph();
-        bindFrom(qb.getFrom(), scope, tempGraph, metadata, warns);
-        List<SelectOutput> outputs = new ArrayList<>();
-        int idx = 0;
-        for (SQLSelectItem item : qb.getSelectList()) {
-            SQLExpr expr = item.getExpr();
-            String alias = safeLower(item.getAlias());
-            if (expr instanceof SQLAllColumnExpr) {
-                SQLAllColumnExpr expr2 = (SQLAllColumnExpr) expr;
-                SQLExpr owner = expr2.getOwner();
-                String qualifier = null;
-                if(owner != null) {
-                    SQLIdentifierExpr owner1 = (SQLIdentifierExpr)owner;
-                    qualifier = owner1.getName();
-                }
-                outputs.addAll(expandStar(qualifier, scope, metadata, null, warns));
-            } else if (expr instanceof SQLIdentifierExpr) {
-                SQLIdentifierExpr sqlExpr = (SQLIdentifierExpr) expr;
-                // ===== 修复：先判断是否为星号展开 =====
-                String identName = sqlExpr.getName();
-                if ("*".equals(identName)) {
-                    outputs.addAll(expandStar(null, scope, metadata, null, warns));
-                } else {
-                    // 普通标识符列：解析为列引用
-                    List<ColumnRef> sources = exprResolver.resolve(expr, scope, metadata, warns);
-                    String outName = alias != null ? alias : safeLower(identName);
-                    outputs.add(new SelectOutput(outName, sources));
-                }
-            } else if (expr instanceof SQLPropertyExpr && "*".equals(((SQLPropertyExpr) expr).getName())) {
-                String qualifier = ((SQLPropertyExpr) expr).getOwner().toString();
-                outputs.addAll(expandStar(qualifier, scope, metadata, null, warns));
-            } else {
-                List<ColumnRef> sources = exprResolver.resolve(expr, scope, metadata, warns);
-                String outName = alias;
-                if (outName == null) {
-                    if (expr instanceof SQLPropertyExpr) {
-                        outName = safeLower(((SQLPropertyExpr) expr).getName());
-                    } else if (expr instanceof SQLIdentifierExpr) {
-                        outName = safeLower(((SQLIdentifierExpr) expr).getName());
-                    } else {
-                        outName = "col_" + idx;
-                    }
-                }
-                outputs.add(new SelectOutput(outName, sources));
-            }
-            idx++;
-        }
-        return outputs;
-    }
-
-    // 绑定 FROM 表与别名到作用域
-    private void bindFrom(SQLTableSource from, Scope scope, LineageGraph graph,
-                         DynamicMetadataProvider metadata, List<LineageWarning> warns) {
-        if (from == null) return;
-        if (from instanceof SQLExprTableSource) {
-            SQLExprTableSource ts = (SQLExprTableSource) from;
-            String alias = safeLower(ts.getAlias());
-            String full = ts.getExpr().toString();
-            TableName tn = TableName.parse(full);
-            scope.addTableAlias(alias != null ? alias : tn.getTable(), tn);
-            return;
-        }
-        if (from instanceof SQLJoinTableSource) {
-            SQLJoinTableSource join = (SQLJoinTableSource) from;
-            bindFrom(join.getLeft(), scope, graph, metadata, warns);
-            bindFrom(join.getRight(), scope, graph, metadata, warns);
-            return;
-        }
-        // ===== 修复核心:完整处理子查询 =====
-        if (from instanceof SQLSubqueryTableSource) {
-            SQLSubqueryTableSource subTS = (SQLSubqueryTableSource) from;
-            String subAlias = safeLower(subTS.getAlias());
-
-            // 如果子查询没有别名，生成一个默认别名（用于INSERT SELECT场景）
-            if (subAlias == null || subAlias.isEmpty()) {
-                subAlias = "__subquery_" + System.currentTimeMillis();
-                warns.add(LineageWarning.of("SUBQUERY_NO_ALIAS",
-                        "子查询缺少别名，已自动生成: " + subAlias,
-                        positionOf(subTS), "建议为子查询提供显式别名"));
-            }
-
-            // 1. 创建子查询专用Scope(隔离作用域)
-            Scope subScope = new Scope();
-
-            // 2. 收集子查询输出列（用于注册到父scope）
-            // 关键修复：先收集输出列，这样会递归处理所有嵌套的子查询并正确绑定它们的列信息
-            List<SelectOutput> subOutputs = collectSelectOutputs(
-                    subTS.getSelect().getQuery(), subScope, metadata, graph, warns);
-
-            log.debug("bindFrom: 子查询 {} 输出列数={}", subAlias, subOutputs.size());
-            for (int i = 0; i < subOutputs.size(); i++) {
-                SelectOutput out = subOutputs.get(i);
-                log.debug("  子查询输出列[{}]: name={}, sources数量={}", i, out.getOutputName(), out.getSources().size());
-            }
-
-            // 3. 将子查询输出列注册为虚拟表到父Scope
-            TableName virtualTable = TableName.of(null, null, subAlias, null, null, subAlias);
-            scope.addTableAlias(subAlias, virtualTable);
-
-            // 4. 注册子查询列到Scope(支持 baseData.countTotal 解析)
-            for (SelectOutput out : subOutputs) {
-                scope.addSubqueryColumn(subAlias, out.getOutputName(), out.getSources());
-            }
-
-            // 5. 将子查询也注册到动态元数据提供者
-            List<ColumnRef> subColumns = new ArrayList<>();
-            for (SelectOutput out : subOutputs) {
-                ColumnRef col = ColumnRef.of(
-                        null, null, subAlias, out.getOutputName(),
-                        null, null, subAlias, out.getOutputName()
-                );
-                subColumns.add(col);
-            }
-            dynamicMetadataProvider.registerTempTable(null, null, subAlias, subColumns);
-
-            return;
-        }
-        warns.add(LineageWarning.of("UNSUPPORTED_FROM",
-                "FROM 子句结构暂不支持: " + from.getClass().getSimpleName(),
-                positionOf(from), "请简化 FROM"));
-    }
-
-    // 星号展开：qualifier=null 表示 ，否则 t.
-    private List<SelectOutput> expandStar(String qualifier,
-                                          Scope scope,
-                                          DynamicMetadataProvider metadata,
-                                          LineageGraph graphOrNull,
-                                          List<LineageWarning> warns) {
-        List<SelectOutput> outs = new ArrayList<>();
-        if (qualifier == null) {
-            if (scope.tableCount() == 1) {
-                TableName tn = scope.getSingle();
-                List<ColumnRef> cols = metadataColumns(metadata, tn, warns);
-                for (ColumnRef c : cols) {
-                    outs.add(new SelectOutput(c.getColumn(), Collections.singletonList(c)));
-                    if (graphOrNull != null) {
-                        graphOrNull.addOwner(toColumnNode(c), toTableNode(c));
-                    }
-                }
-            } else {
-                throw new MetadataNotFoundException("SELECT * 存在多表或无表，无法唯一展开");
-            }
-        } else {
-            TableName tn = scope.resolveTable(qualifier);
-            if (tn == null) {
-                throw new MetadataNotFoundException("无法解析别名/表名: " + qualifier);
-            }
-            List<ColumnRef> cols = metadataColumns(metadata, tn, warns);
-            for (ColumnRef c : cols) {
-                // 关键修复：检查是否为子查询列，如果是则使用其源列
-                List<ColumnRef> subSources = scope.getSubqueryColumnSources(qualifier, c.getColumn());
-                if (subSources != null && !subSources.isEmpty()) {
-                    outs.add(new SelectOutput(c.getColumn(), subSources));
-                    if (graphOrNull != null) {
-                        for (ColumnRef src : subSources) {
-                            graphOrNull.addOwner(toColumnNode(src), toTableNode(src));
-                        }
-                    }
-                } else {
-                    outs.add(new SelectOutput(c.getColumn(), Collections.singletonList(c)));
-                    if (graphOrNull != null) {
-                        graphOrNull.addOwner(toColumnNode(c), toTableNode(c));
-                    }
-                }
-            }
-        }
-        return outs;
+    // 查询输出列：同一语句内每个查询节点只计算一次
+    private List<SelectOutput> queryOutputs(SQLSelectQuery query,
+                                            Scope scope,
+                                            DynamicMetadataProvider metadata,
+                                            List<LineageWarning> warns) {
+        return new QueryOutputVisitor(exprResolver, metadata, warns).outputsOf(query, scope);
     }
 
 //    // CTAS 处理：目标表 = create ... as (select)
@@ -619,7 +457,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
 //                            List<LineageWarning> warns) {
 //        String tableFull = ct.getTableSource().toString();
 //        TableName tn = TableName.parse(tableFull);
-//        TableNode targetTable = new TableNode(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+//        TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
 //        TargetContext target = TargetContext.of(targetTable, Collections.emptyList());
 //        handleSelect(ct.getSelect(), target, scope, graph, metadata, warns);
 //    }
@@ -631,11 +469,10 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                             List<LineageWarning> warns) {
         String tableFull = ct.getTableSource().toString();
         TableName tn = TableName.parse(tableFull);
-        TableNode targetTable = new TableNode(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+        TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
 
         // ===== 先收集SELECT输出列 =====
-        List<SelectOutput> outputs = collectSelectOutputs(
-                ct.getSelect().getQuery(), scope, metadata, graph, warns);
+        List<SelectOutput> outputs = queryOutputs(ct.getSelect().getQuery(), scope, metadata, warns);
 
         // ===== 注册CTAS表的列到元数据 =====
         List<ColumnRef> ctasColumns = new ArrayList<>();
@@ -648,7 +485,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
         }
         metadata.registerTempTable(tn.getDb(), tn.getSc(), tn.getTable(), ctasColumns);
 
-        // ===== 建立血缘 =====
+        // ===== 建立血缘（复用上面已计算的输出列） =====
         TargetContext target = TargetContext.of(targetTable,
                 map(outputs, SelectOutput::getOutputName));
         handleSelect(ct.getSelect(), target, scope, graph, metadata, warns);
@@ -665,7 +502,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
         // 兼容不同 Druid 版本/方言的列清单类型
         List cols = extractViewColumnNames(v);
 
-        TableNode targetTable = new TableNode(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+        TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
         TargetContext target = TargetContext.of(targetTable, cols);
         handleSelect(v.getSubQuery(), target, scope, graph, metadata, warns);
     }
@@ -673,12 +510,13 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
     // INSERT INTO t(col1, col2) SELECT ...
     private void handleInsert(SQLInsertStatement ins,
                               Scope scope,
-                              LineageGraph graph,
-                              DynamicMetadataProvider metadata,
-                              List<LineageWarning> warns) {
+                              ParseContext context) {
+        LineageGraph graph = context.getGraph();
+        DynamicMetadataProvider metadata = context.getMetadata();
+        List<LineageWarning> warns = context.getWarnings();
         String tableFull = ins.getTableName().toString();
         TableName tn = TableName.parse(tableFull);
-        TableNode targetTable = new TableNode(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+        TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
         // 收集 INSERT 显式列清单
         List<String> tgtCols = new ArrayList<>();
         if (ins.getColumns() != null && !ins.getColumns().isEmpty()) {
@@ -689,18 +527,18 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                     tgtCols.add(safeLower(((SQLPropertyExpr) c).getName()));
                 }
             }
-        } else {
+        }
+        if (ins.getQuery() == null) {
+            // 单纯 VALUES 不做列级血缘，也无需目标表元数据
+            handleInsertValues(tableFull, tgtCols, context);
+            return;
+        }
+        if (tgtCols.isEmpty()) {
             // 未指定列清单：回退为元数据列顺序（可能与 SELECT 输出不一致，发 WARN 并按短对齐）
             List<ColumnRef> cols = metadataColumns(metadata, tn, warns);
             for (ColumnRef c : cols) tgtCols.add(c.getColumn());
         }
         TargetContext target = TargetContext.of(targetTable, tgtCols);
-        if (ins.getQuery() == null) {
-            // 单纯 VALUES 不做列级血缘
-            warns.add(LineageWarning.of("NO_LINEAGE_FOR_VALUES",
-                    "INSERT VALUES 不解析列级血缘", positionOf(ins), "如需列级血缘请改为 INSERT ... SELECT"));
-            return;
-        }
         // ===== 处理 INSERT ... WITH ... SELECT 中的 WITH 子句 =====
         SQLWithSubqueryClause withClause = ins.getQuery().getWithSubQuery();
         if (withClause != null) {
@@ -723,8 +561,9 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                               DynamicMetadataProvider metadata,
                               List<LineageWarning> warns) {
         // 绑定主表与 FROM 表
-        bindFrom(upd.getTableSource(), scope, graph, metadata, warns);
-        if (upd.getFrom() != null) bindFrom(upd.getFrom(), scope, graph, metadata, warns);
+        QueryOutputVisitor binder = new QueryOutputVisitor(exprResolver, metadata, warns);
+        binder.bind(upd.getTableSource(), scope);
+        if (upd.getFrom() != null) binder.bind(upd.getFrom(), scope);
 
         for (SQLUpdateSetItem it : upd.getItems()) {
             SQLExpr left = it.getColumn();
@@ -766,11 +605,8 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
 
             log.debug("处理CTE: {}", cteName);
 
-            // ===== 修复：使用独立的scope处理CTE，确保源表被添加到图中 =====
-            Scope cteScope = new Scope();
-
-            // ===== 关键修复：先处理CTE的SELECT，将其源表和列添加到图中 =====
-            // 这里必须调用extractSelectBlock而不是handleSelect，以确保源表被正确处理
+            // 使用独立的scope处理CTE，将其源表和列添加到图中
+            Scope cteScope = scope.newSubScope();
             SQLSelectQuery query = entry.getSubQuery().getQuery();
 
             log.debug("CTE {} 的查询类型: {}", cteName, query.getClass().getSimpleName());
@@ -785,19 +621,13 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
             int tableCountAfter = graph.getTables().size();
             log.debug("CTE {} 处理后，表数量从 {} 增加到 {}", cteName, tableCountBefore, tableCountAfter);
 
-            // 收集CTE的输出列（用于注册到父scope）
-            // 注意：这里需要重新创建scope，因为上面的extractSelectBlock已经消费了cteScope
-            Scope collectScope = new Scope();
-            List<SelectOutput> cteOutputs = collectSelectOutputs(
-                    entry.getSubQuery().getQuery(), collectScope, metadata, graph, warns);
+            // CTE的输出列（上面建图时已计算，这里命中缓存），用于注册到父scope
+            List<SelectOutput> cteOutputs = queryOutputs(query, cteScope, metadata, warns);
 
             log.debug("CTE {} 输出列数: {}", cteName, cteOutputs.size());
 
-            // 将CTE注册为虚拟表到父scope
-            TableName virtualTable = TableName.of(null, null, cteName, null, null, cteName);
-            scope.addTableAlias(cteName, virtualTable);
-
-            // 注册CTE列到父scope
+            // 注册CTE列到父scope；CTE名称不登记为父scope的表别名，只有 FROM 引用它的查询块才绑定，
+            // 否则主查询中的未限定列会因作用域内有多张表而无法解析
             for (SelectOutput out : cteOutputs) {
                 scope.addSubqueryColumn(cteName, out.getOutputName(), out.getSources());
             }
@@ -879,7 +709,7 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
                 if (intoTS instanceof SQLExprTableSource) {
                     SQLExprTableSource into = (SQLExprTableSource) intoTS;
                     TableName tn = TableName.parse(into.getExpr().toString());
-                    TableNode targetTable = new TableNode(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+                    TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
                     TargetContext tgt = TargetContext.of(targetTable, cols);
                     handleSelect(select, tgt, scope, graph, metadata, warns);
                 }
@@ -1045,57 +875,24 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
 
     // 工具：从元数据获取列清单并转 ColumnRef
     private List<ColumnRef> metadataColumns(MetadataProvider metadata, TableName tn, List<LineageWarning> warns) {
-        List<ColumnRef> cols = metadata.getColumns(tn.getDb(), tn.getSc(), tn.getTable());
-        if (cols == null || cols.isEmpty()) {
+        TableHandle handle = metadata.getTable(tn.getDb(), tn.getSc(), tn.getTable());
+        if (handle == null || handle.size() == 0) {
             throw new MetadataNotFoundException("元数据缺失: " + tn.toString());
         }
-        return cols;
+        return handle.getColumns();
     }
 
     // 判断是否为虚拟表（CTE或自动生成的子查询）
-    private boolean isVirtualTable(String tableName) {
+    private boolean isVirtualTable(String tableName, DynamicMetadataProvider metadata) {
         if (tableName == null) return false;
         // 自动生成的子查询别名
         if (tableName.startsWith("__subquery_")) return true;
         // 检查是否为CTE（只检查临时表，不检查物理表）
         // CTE在dynamicMetadataProvider中注册，但物理表也在其中
         // 需要区分：如果表名是小写且在CTE map中，则为CTE
-        return dynamicMetadataProvider.isTempTable(null, null, tableName);
-    }
-
-    // 递归解析列引用，追踪到真实的物理表列（跳过CTE/子查询）
-    private List<ColumnRef> resolvePhysicalSources(ColumnRef colRef, Scope scope) {
-        List<ColumnRef> result = new ArrayList<>();
-        // 检查是否为子查询/CTE列
-        List<ColumnRef> subSources = scope.getSubqueryColumnSources(colRef.getTable(), colRef.getColumn());
-        if (subSources != null && !subSources.isEmpty()) {
-            // 递归解析每个源列
-            for (ColumnRef subSrc : subSources) {
-                result.addAll(resolvePhysicalSources(subSrc, scope));
-            }
-            return result;
-        }
-
-        // 检查是否为CTE（从dynamicMetadataProvider中查找）
-        List<ColumnRef> cteCols = dynamicMetadataProvider.getColumns(colRef.getDatabase(), colRef.getSchema(), colRef.getTable());
-        if (cteCols != null && !cteCols.isEmpty()) {
-            // 这是一个CTE，尝试从CTE的列定义中找到对应列的源
-            for (ColumnRef cteCol : cteCols) {
-                if (cteCol.getColumn().equalsIgnoreCase(colRef.getColumn())) {
-                    // 找到了CTE中的列定义，但这里只有列名，没有源信息
-                    // 直接返回当前列（无法继续追踪）
-                    result.add(colRef);
-                    return result;
-                }
-            }
-        }
-
-        // 已经是物理表列，直接返回
-        result.add(colRef);
-        return result;
+        return metadata.isTempTable(null, null, tableName);
     }
 
-
     private String positionOf(Object ast) {
         // 占位：可用 Druid 的 parser position 获取位置信息，这里返回简单类型名
         return ast.getClass().getSimpleName();
@@ -1112,14 +909,14 @@ public class DefaultSqlStatementHandler implements SqlStatementHandler {
         return r;
     }
 
-    // ColumnRef/表名到图节点的简单映射（小写键 + original*）
+    // ColumnRef/表名到图节点的映射（经由享元池共享实例）
     private ColumnNode toColumnNode(ColumnRef c) {
-        return new ColumnNode(c.getDatabase(), c.getSchema(), c.getTable(), c.getColumn(),
+        return ColumnNode.of(c.getDatabase(), c.getSchema(), c.getTable(), c.getColumn(),
                 c.getOriginalDatabase(), c.getOriginalSchema(), c.getOriginalTable(), c.getOriginalColumn());
     }
 
     private TableNode toTableNode(ColumnRef c) {
-        return new TableNode(c.getDatabase(), c.getSchema(), c.getTable(),
+        return TableNode.of(c.getDatabase(), c.getSchema(), c.getTable(),
                 c.getOriginalDatabase(), c.getOriginalSchema(), c.getOriginalTable());
     }
 
@@ -1,20 +1,25 @@
 package com.afsun.lineage.core.parser;
 
 import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.LineageMode;
 import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.ParseContext;
 import com.afsun.lineage.core.Scope;
-import com.afsun.lineage.core.meta.DynamicMetadataProvider;
+import com.afsun.lineage.core.TableName;
+import com.afsun.lineage.graph.ColumnNode;
+import com.afsun.lineage.graph.TableNode;
 import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.ast.SQLStatement;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SQL语句处理器接口
  * 定义处理不同类型SQL语句的统一接口
+ * 实现类应无状态（调用级状态全部经由 {@link ParseContext} 传递），以便作为单例并发复用
  *
  * @author afsun
  */
@@ -27,30 +32,47 @@ public interface SqlStatementHandler {
      * @return 是否支持
      */
     default boolean supports(DbType dbType) {
-        Set<DbType> dbTypeSet = new HashSet<>();
-        dbTypeSet.add(DbType.mysql);
-        dbTypeSet.add(DbType.odps);
-        dbTypeSet.add(DbType.clickhouse);
-        dbTypeSet.add(DbType.postgresql);
-        return dbTypeSet.contains(dbType);
+        return dbType != null && SUPPORTED_DB_TYPES.contains(dbType);
     }
 
+    /**
+     * 默认支持的方言
+     */
+    Set<DbType> SUPPORTED_DB_TYPES = Collections.unmodifiableSet(
+            EnumSet.of(DbType.mysql, DbType.odps, DbType.clickhouse, DbType.postgresql));
+
     /**
      * 处理SQL语句，提取血缘关系
      *
      * @param statement SQL语句AST节点
-     * @param dialect SQL方言类型
      * @param scope 作用域
-     * @param graph 血缘图
-     * @param metadata 元数据提供者
-     * @param warnings 警告列表
-     * @param skipped 跳过计数器
+     * @param context 解析上下文（方言、动态元数据、血缘图、警告列表、跳过计数器）
      */
     void handle(SQLStatement statement,
-                DbType dialect,
                 Scope scope,
-                LineageGraph graph,
-                DynamicMetadataProvider metadata,
-                List<LineageWarning> warnings,
-                AtomicInteger skipped);
+                ParseContext context);
+
+    /**
+     * 处理 INSERT ... VALUES：不产生列级血缘，仅登记目标表（列级模式下含显式列清单）
+     * 词法层快速路径与Druid解析路径共用，保证两条路径的结果一致
+     *
+     * @param table   目标表名（原文）
+     * @param columns 显式列清单（原文），未指定时为空
+     * @param context 解析上下文
+     */
+    default void handleInsertValues(String table, List<String> columns, ParseContext context) {
+        TableName tn = TableName.parse(table);
+        TableNode targetTable = TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+        LineageGraph graph = context.getGraph();
+        graph.getTables().add(targetTable);
+        if (context.getMode() == LineageMode.TABLE_ONLY) {
+            return;
+        }
+        for (String column : columns) {
+            graph.addOwner(ColumnNode.of(tn.getDb(), tn.getSc(), tn.getTable(), column,
+                    tn.getOdb(), tn.getOsc(), tn.getOtb(), column), targetTable);
+        }
+        context.getWarnings().add(LineageWarning.of("NO_LINEAGE_FOR_VALUES",
+                "INSERT VALUES 不解析列级血缘", "SQLInsertStatement", "如需列级血缘请改为 INSERT ... SELECT"));
+    }
 }
@@ -0,0 +1,155 @@
+package com.afsun.lineage.core.parser;
+
+import com.afsun.lineage.core.TableName;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * 语句依赖分析器
+ * 根据每条语句读写的表名（含脚本内临时表、CTE、子查询别名）构建语句依赖DAG，
+ * 供并行解析时确定哪些语句可以并发处理
+ *
+ * 规则（保守策略，只按表名最后一段比较）：
+ * - 写：CREATE TABLE 目标表、DROP TABLE 目标表、CTE 名称、子查询别名（都会注册到 DynamicMetadataProvider）
+ * - 读：语句中出现的所有表引用
+ * - 读后写、写后读、写后写均形成依赖；无法分析的语句作为屏障，与前后所有语句串行
+ *
+ * @author afsun
+ */
+@Slf4j
+public final class StatementDependencyAnalyzer {
+
+    private StatementDependencyAnalyzer() {
+    }
+
+    /**
+     * 计算每条语句的直接前驱
+     *
+     * @param statements 按脚本顺序排列的语句AST，元素为null表示该语句无法解析（作为屏障处理）
+     * @return 与入参等长的列表，第i个元素为语句i必须等待的语句下标
+     */
+    public static List<Set<Integer>> analyze(List<List<SQLStatement>> statements) {
+        List<Set<Integer>> deps = new ArrayList<>(statements.size());
+        Map<String, Integer> lastWriter = new HashMap<>();
+        Map<String, List<Integer>> readersSinceWrite = new HashMap<>();
+        List<Integer> sinceBarrier = new ArrayList<>();
+        int lastBarrier = -1;
+
+        for (int i = 0; i < statements.size(); i++) {
+            Set<Integer> pre = new TreeSet<>();
+            if (lastBarrier >= 0) {
+                pre.add(lastBarrier);
+            }
+            TableAccess access = collect(statements.get(i));
+            if (access == null) {
+                // 屏障：等待屏障后的全部语句，之后的语句都等待它
+                pre.addAll(sinceBarrier);
+                lastBarrier = i;
+                sinceBarrier.clear();
+                lastWriter.clear();
+                readersSinceWrite.clear();
+                deps.add(pre);
+                continue;
+            }
+            for (String name : access.reads) {
+                Integer w = lastWriter.get(name);
+                if (w != null) pre.add(w);
+            }
+            for (String name : access.writes) {
+                Integer w = lastWriter.get(name);
+                if (w != null) pre.add(w);
+                List<Integer> readers = readersSinceWrite.remove(name);
+                if (readers != null) pre.addAll(readers);
+            }
+            for (String name : access.writes) {
+                lastWriter.put(name, i);
+            }
+            for (String name : access.reads) {
+                if (!access.writes.contains(name)) {
+                    readersSinceWrite.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
+                }
+            }
+            pre.remove(i);
+            sinceBarrier.add(i);
+            deps.add(pre);
+        }
+        return deps;
+    }
+
+    /**
+     * 收集一条语句（可能被Druid拆成多个AST）的读写表集合；无法分析时返回null
+     */
+    private static TableAccess collect(List<SQLStatement> stmts) {
+        if (stmts == null) {
+            return null;
+        }
+        TableAccess access = new TableAccess();
+        try {
+            for (SQLStatement st : stmts) {
+                if (st instanceof SQLCreateTableStatement) {
+                    SQLCreateTableStatement ct = (SQLCreateTableStatement) st;
+                    access.writes.add(key(ct.getTableSource().toString()));
+                } else if (st instanceof SQLDropTableStatement) {
+                    for (SQLExprTableSource ts : ((SQLDropTableStatement) st).getTableSources()) {
+                        access.writes.add(key(ts.getExpr().toString()));
+                    }
+                }
+                st.accept(new TableAccessVisitor(access));
+            }
+        } catch (Exception e) {
+            // 部分方言AST不接受通用visitor，退化为屏障
+            log.debug("语句依赖分析失败，按屏障处理: {}", e.getMessage());
+            return null;
+        }
+        return access;
+    }
+
+    private static String key(String name) {
+        if (name == null) {
+            return "";
+        }
+        String raw = name.replace("`", "").replace("\"", "").trim();
+        return TableName.parse(raw).getTable();
+    }
+
+    private static final class TableAccess {
+        final Set<String> reads = new HashSet<>();
+        final Set<String> writes = new HashSet<>();
+    }
+
+    private static final class TableAccessVisitor extends SQLASTVisitorAdapter {
+        private final TableAccess access;
+
+        TableAccessVisitor(TableAccess access) {
+            this.access = access;
+        }
+
+        @Override
+        public boolean visit(SQLExprTableSource x) {
+            if (x.getExpr() != null) {
+                access.reads.add(key(x.getExpr().toString()));
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLSubqueryTableSource x) {
+            if (x.getAlias() != null) {
+                access.writes.add(key(x.getAlias()));
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLWithSubqueryClause.Entry x) {
+            if (x.getAlias() != null) {
+                access.writes.add(key(x.getAlias()));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.afsun.lineage.core.parser;
+
+import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.ParseContext;
+import com.afsun.lineage.core.Scope;
+import com.afsun.lineage.core.StatementBudget;
+import com.afsun.lineage.core.TableName;
+import com.afsun.lineage.core.exceptions.UnsupportedSyntaxException;
+import com.afsun.lineage.graph.TableNode;
+import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.*;
+
+/**
+ * 表级血缘收集器（{@link com.afsun.lineage.core.LineageMode#TABLE_ONLY}）
+ * 单次遍历AST，只记录 FROM/JOIN/INTO/USING 中的表引用，不解析表达式、不展开星号、不查询元数据；
+ * 输出源表与目标表节点，以及 源表 -> 目标表 的依赖边
+ * CTE 名称不作为表节点，CTE 内部引用的表直接视为外层语句的源表
+ *
+ * @author afsun
+ */
+final class TableLineageCollector {
+
+    private TableLineageCollector() {
+    }
+
+    static void collect(SQLStatement st, Scope scope, ParseContext context) {
+        LineageGraph graph = context.getGraph();
+        if (st instanceof SQLDropTableStatement
+                || (st instanceof SQLCreateTableStatement && ((SQLCreateTableStatement) st).getSelect() == null)) {
+            // DDL 不产生表级依赖
+            context.getSkipped().incrementAndGet();
+            return;
+        }
+        if (st instanceof SQLDeleteStatement) {
+            context.getWarnings().add(LineageWarning.of("NO_LINEAGE_FOR_DELETE",
+                    "DELETE 语句不产生血缘", st.getClass().getSimpleName(), "无需处理"));
+            context.getSkipped().incrementAndGet();
+            return;
+        }
+        if (!isSupported(st)) {
+            context.getWarnings().add(LineageWarning.of("UNSUPPORTED_SYNTAX",
+                    "不支持的语句类型: " + st.getClass().getSimpleName(),
+                    st.getClass().getSimpleName(), "请简化脚本或拆分受支持语句"));
+            throw new UnsupportedSyntaxException("不支持的语句: " + st.getClass().getSimpleName());
+        }
+
+        TableName target = targetOf(st);
+        SourceVisitor visitor = new SourceVisitor(scope.getBudget());
+        st.accept(visitor);
+
+        TableNode targetNode = target == null ? null : toTableNode(target);
+        if (targetNode != null) {
+            graph.getTables().add(targetNode);
+        }
+        for (TableName source : visitor.sources.values()) {
+            if (visitor.cteNames.contains(source.getTable()) && source.getDb() == null && source.getSc() == null) {
+                continue;
+            }
+            TableNode sourceNode = toTableNode(source);
+            if (targetNode == null) {
+                graph.getTables().add(sourceNode);
+            } else if (!sourceNode.equals(targetNode)) {
+                graph.addTableEdge(sourceNode, targetNode);
+            }
+        }
+    }
+
+    private static boolean isSupported(SQLStatement st) {
+        return st instanceof SQLSelectStatement || st instanceof SQLInsertStatement
+                || st instanceof SQLCreateTableStatement || st instanceof SQLCreateViewStatement
+                || st instanceof SQLUpdateStatement || st instanceof SQLMergeStatement;
+    }
+
+    /**
+     * 语句的写入目标表；无写入目标（SELECT）或目标不是单表（如多表 UPDATE）时返回null，此时只登记源表
+     */
+    private static TableName targetOf(SQLStatement st) {
+        if (st instanceof SQLInsertStatement) {
+            return TableName.parse(((SQLInsertStatement) st).getTableName().toString());
+        }
+        if (st instanceof SQLCreateTableStatement) {
+            return TableName.parse(((SQLCreateTableStatement) st).getTableSource().toString());
+        }
+        if (st instanceof SQLCreateViewStatement) {
+            return TableName.parse(((SQLCreateViewStatement) st).getName().toString());
+        }
+        if (st instanceof SQLUpdateStatement) {
+            SQLTableSource ts = ((SQLUpdateStatement) st).getTableSource();
+            return ts instanceof SQLExprTableSource ? TableName.parse(((SQLExprTableSource) ts).getExpr().toString()) : null;
+        }
+        if (st instanceof SQLMergeStatement) {
+            SQLTableSource ts = ((SQLMergeStatement) st).getInto();
+            return ts instanceof SQLExprTableSource ? TableName.parse(((SQLExprTableSource) ts).getExpr().toString()) : null;
+        }
+        return null;
+    }
+
+    private static TableNode toTableNode(TableName tn) {
+        return TableNode.of(tn.getDb(), tn.getSc(), tn.getTable(), tn.getOdb(), tn.getOsc(), tn.getOtb());
+    }
+
+    /**
+     * 收集表引用与 CTE 名称；每访问一个表引用计一次语句预算
+     */
+    private static final class SourceVisitor extends SQLASTVisitorAdapter {
+        private final StatementBudget budget;
+        /**
+         * 按出现顺序去重的表引用（键为规范化表名）
+         */
+        final Map<String, TableName> sources = new LinkedHashMap<>();
+        final Set<String> cteNames = new HashSet<>();
+
+        SourceVisitor(StatementBudget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public boolean visit(SQLExprTableSource x) {
+            budget.tick();
+            // 仅收集表名引用，跳过 numbers(10) 之类的表函数
+            if (x.getExpr() instanceof SQLName) {
+                TableName tn = TableName.parse(x.getExpr().toString());
+                sources.putIfAbsent(tn.toString(), tn);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLWithSubqueryClause.Entry x) {
+            budget.tick();
+            if (x.getAlias() != null) {
+                cteNames.add(x.getAlias().toLowerCase(Locale.ROOT));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.afsun.lineage.core.util;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * SQL脚本归档读取器
+ * 顺序读取 zip / tar / tar.gz 归档中的 .sql 文件（自动识别格式），跳过目录与其他文件
+ *
+ * @author afsun
+ */
+public class SqlArchiveReader implements Closeable {
+
+    private final ArchiveInputStream archive;
+    private final long maxEntrySize;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    /**
+     * @param in           归档输入流
+     * @param maxEntrySize 单个脚本的最大字节数，超出的条目以 {@link SqlEntry#getError()} 报告
+     */
+    public SqlArchiveReader(InputStream in, long maxEntrySize) throws IOException {
+        this.maxEntrySize = maxEntrySize;
+        InputStream stream = new BufferedInputStream(in);
+        try {
+            // tar.gz / tgz 先解压
+            String compressor = CompressorStreamFactory.detect(stream);
+            stream = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(compressor, stream));
+        } catch (CompressorException e) {
+            // 非压缩流，按原始归档读取
+        }
+        try {
+            this.archive = new ArchiveStreamFactory().createArchiveInputStream(stream);
+        } catch (ArchiveException e) {
+            throw new IOException("无法识别的归档格式（仅支持zip/tar/tar.gz）: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取下一个SQL脚本
+     *
+     * @return 脚本条目；归档读完返回null
+     */
+    public SqlEntry next() throws IOException {
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (entry.isDirectory() || !archive.canReadEntryData(entry) || !isSqlFile(entry.getName())) {
+                continue;
+            }
+            if (entry.getSize() > maxEntrySize) {
+                return SqlEntry.failed(entry.getName(), "文件大小超过限制: " + entry.getSize() + " > " + maxEntrySize);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+            long total = 0;
+            int n;
+            while ((n = archive.read(buffer)) > 0) {
+                total += n;
+                // 部分zip条目未在头部声明大小，这里按实际读取量再做一次限制
+                if (total > maxEntrySize) {
+                    return SqlEntry.failed(entry.getName(), "文件大小超过限制: > " + maxEntrySize);
+                }
+                out.write(buffer, 0, n);
+            }
+            return new SqlEntry(entry.getName(), new String(out.toByteArray(), StandardCharsets.UTF_8), null);
+        }
+        return null;
+    }
+
+    private static boolean isSqlFile(String name) {
+        if (name == null) return false;
+        String lower = name.toLowerCase(Locale.ROOT);
+        // 跳过macOS打包产生的元数据文件
+        if (lower.startsWith("__macosx/") || lower.contains("/._") || lower.startsWith("._")) return false;
+        return lower.endsWith(".sql");
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    /**
+     * 归档中的一个SQL脚本
+     */
+    public static final class SqlEntry {
+        private final String name;
+        private final String content;
+        private final String error;
+
+        SqlEntry(String name, String content, String error) {
+            this.name = name;
+            this.content = content;
+            this.error = error;
+        }
+
+        static SqlEntry failed(String name, String error) {
+            return new SqlEntry(name, null, error);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * 读取失败原因，为null表示读取成功
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -1,118 +1,375 @@
 package com.afsun.lineage.core.util;
 
 import com.alibaba.druid.DbType;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Locale;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
 
 /**
  * SQL方言检测器
  * 根据SQL文本特征智能识别数据库方言类型
  *
+ * <p>所有方言特征词预编译为一个多模式匹配自动机（Aho-Corasick），对采样文本只做一遍扫描：
+ * 大小写折叠与连续空白合并在扫描时完成，不复制文本；特征词两端为字母数字时要求词边界。
+ * 命中的特征按权重累计到各方言得分，得分最高者胜出，置信度为其得分占总得分的比例。
+ * 扫描量有上限（按语句均匀采样，每条语句与总字符数均有上限），检测耗时与脚本大小无关。
+ * 解析器对每个脚本只检测一次，逐条语句解析时复用该结果；同一脚本重复提交时由解析结果缓存整体命中，不再单独缓存检测结果。
+ *
  * @author afsun
  */
 @Slf4j
 public class SqlDialectDetector {
 
+    /**
+     * 无任何方言特征时使用的方言
+     */
+    public static final DbType DEFAULT_DB_TYPE = DbType.clickhouse;
+
+    /**
+     * 最多采样的语句数
+     */
+    public static final int MAX_SAMPLE_STATEMENTS = 16;
+
+    /**
+     * 每条语句最多扫描的字符数
+     */
+    public static final int MAX_CHARS_PER_STATEMENT = 4096;
+
+    /**
+     * 单次检测最多扫描的字符数
+     */
+    public static final int MAX_SCAN_CHARS = 64 * 1024;
+
+    /**
+     * 同一特征最多计分次数，避免单个特征反复出现压过其他证据
+     */
+    private static final int MAX_HITS_PER_FEATURE = 3;
+
+    /**
+     * 候选方言，顺序即得分相同时的优先级
+     */
+    private static final DbType[] DIALECTS = {
+            DbType.odps, DbType.clickhouse, DbType.postgresql, DbType.oracle, DbType.sqlserver
+    };
+
+    private static final Feature[] FEATURES = {
+            // ODPS/MaxCompute
+            new Feature("merge into", DbType.odps, 2),
+            new Feature("distribute by", DbType.odps, 3),
+            new Feature("cluster by", DbType.odps, 2),
+            new Feature("pt partition", DbType.odps, 2),
+            new Feature("insert overwrite", DbType.odps, 3),
+            new Feature("lifecycle", DbType.odps, 3),
+            // ClickHouse
+            new Feature("engine =", DbType.clickhouse, 3),
+            new Feature("engine=", DbType.clickhouse, 3),
+            new Feature("sample by", DbType.clickhouse, 3),
+            new Feature("prewhere", DbType.clickhouse, 3),
+            new Feature("final", DbType.clickhouse, 1),
+            new Feature("array join", DbType.clickhouse, 3),
+            new Feature("global in", DbType.clickhouse, 2),
+            new Feature("clickhouse", DbType.clickhouse, 1),
+            // ClickHouse 专有函数与类型名（ClickHouse 同样支持 :: 类型转换，需要这些特征压过 ::）
+            new Feature("todate(", DbType.clickhouse, 3),
+            new Feature("todatetime(", DbType.clickhouse, 3),
+            new Feature("tostring(", DbType.clickhouse, 3),
+            new Feature("::string", DbType.clickhouse, 3),
+            new Feature("::datetime", DbType.clickhouse, 3),
+            new Feature("lowcardinality(", DbType.clickhouse, 3),
+            new Feature("nullable(", DbType.clickhouse, 2),
+            // PostgreSQL
+            new Feature("returning", DbType.postgresql, 2),
+            // ClickHouse 也支持 :: 类型转换，仅作弱证据
+            new Feature("::", DbType.postgresql, 1),
+            new Feature("lateral", DbType.postgresql, 2),
+            new Feature("generate_series", DbType.postgresql, 3),
+            new Feature("ilike", DbType.postgresql, 2),
+            // Oracle
+            new Feature("dual", DbType.oracle, 2),
+            new Feature("sysdate", DbType.oracle, 3),
+            new Feature("rownum", DbType.oracle, 3),
+            new Feature("connect by", DbType.oracle, 3),
+            new Feature("start with", DbType.oracle, 2),
+            new Feature("nvl2", DbType.oracle, 2),
+            // SQLServer
+            new Feature("select top", DbType.sqlserver, 3),
+            new Feature("[dbo]", DbType.sqlserver, 3),
+            new Feature("with (nolock)", DbType.sqlserver, 3),
+            new Feature("getdate", DbType.sqlserver, 2),
+    };
+
+    private static final Automaton AUTOMATON = new Automaton(FEATURES);
+
     /**
      * 检测SQL方言类型
-     * 支持：MySQL、ClickHouse、ODPS、PostgreSQL、Oracle、SQLServer等
+     * 支持：ODPS、ClickHouse、PostgreSQL、Oracle、SQLServer，无特征时返回 {@link #DEFAULT_DB_TYPE}
      *
      * @param sql SQL文本
      * @return 检测到的方言类型
      */
     public static DbType detect(String sql) {
         if (sql == null || sql.isEmpty()) {
-            return DbType.mysql;
+            return DEFAULT_DB_TYPE;
         }
+        Scanner scanner = new Scanner();
+        scanner.scan(sql, 0, Math.min(sql.length(), MAX_SCAN_CHARS));
+        return scanner.result().getDbType();
+    }
 
-        String s = sql.toLowerCase(Locale.ROOT);
-
-        // 1. ODPS/MaxCompute特征检测
-        if (containsOdpsFeatures(s)) {
-            log.debug("检测到ODPS方言特征");
-            return DbType.odps;
+    /**
+     * 对整个脚本检测方言：在语句间均匀采样（跳过注释，不复制文本）
+     *
+     * @param script 脚本原文
+     * @param spans  {@link SqlScriptLexer#split} 切分结果
+     */
+    public static Detection detect(CharSequence script, List<StatementSpan> spans) {
+        Scanner scanner = new Scanner();
+        int n = spans.size();
+        int samples = Math.min(n, MAX_SAMPLE_STATEMENTS);
+        for (int i = 0; i < samples && !scanner.exhausted(); i++) {
+            StatementSpan span = spans.get(n <= MAX_SAMPLE_STATEMENTS ? i : (int) ((long) i * n / MAX_SAMPLE_STATEMENTS));
+            int limit = Math.min(span.getEnd(), span.getStart() + MAX_CHARS_PER_STATEMENT);
+            int[] comments = span.getCommentRanges();
+            int from = span.getStart();
+            if (comments != null) {
+                for (int c = 0; c < comments.length && comments[c] < limit; c += 2) {
+                    scanner.scan(script, from, comments[c]);
+                    scanner.separate();
+                    from = comments[c + 1];
+                }
+            }
+            if (from < limit) {
+                scanner.scan(script, from, limit);
+            }
+            scanner.separate();
         }
+        return scanner.result();
+    }
 
-        // 2. ClickHouse特征检测
-        if (containsClickHouseFeatures(s)) {
-            log.debug("检测到ClickHouse方言特征");
-            return DbType.clickhouse;
+    /**
+     * 对若干条语句文本检测方言（流式解析时用脚本开头的语句作为样本）
+     */
+    public static Detection detect(Iterable<String> statements) {
+        Scanner scanner = new Scanner();
+        int count = 0;
+        for (String statement : statements) {
+            if (count++ >= MAX_SAMPLE_STATEMENTS || scanner.exhausted()) {
+                break;
+            }
+            scanner.scan(statement, 0, Math.min(statement.length(), MAX_CHARS_PER_STATEMENT));
+            scanner.separate();
         }
+        return scanner.result();
+    }
 
-        // 3. PostgreSQL特征检测
-        if (containsPostgreSQLFeatures(s)) {
-            log.debug("检测到PostgreSQL方言特征");
-            return DbType.postgresql;
-        }
+    /**
+     * 方言检测结果
+     */
+    @Getter
+    public static final class Detection {
+        private final DbType dbType;
+        /**
+         * 置信度 [0, 1]：胜出方言得分占总得分的比例，无任何特征时为0
+         */
+        private final double confidence;
+        /**
+         * 命中的特征次数
+         */
+        private final int hits;
 
-        // 4. Oracle特征检测
-        if (containsOracleFeatures(s)) {
-            log.debug("检测到Oracle方言特征");
-            return DbType.oracle;
+        Detection(DbType dbType, double confidence, int hits) {
+            this.dbType = dbType;
+            this.confidence = confidence;
+            this.hits = hits;
         }
 
-        // 5. SQLServer特征检测
-        if (containsSQLServerFeatures(s)) {
-            log.debug("检测到SQLServer方言特征");
-            return DbType.sqlserver;
+        @Override
+        public String toString() {
+            return dbType + "(" + String.format("%.2f", confidence) + ", hits=" + hits + ")";
         }
-
-        // 6. 默认使用MySQL（最通用）
-        log.debug("使用默认MySQL方言");
-        return DbType.clickhouse;
     }
 
-    /**
-     * 检测ODPS特征
-     */
-    private static boolean containsOdpsFeatures(String sql) {
-        return sql.contains("merge into") ||
-               sql.contains("distribute by") ||
-               sql.contains("cluster by") ||
-               sql.contains("pt partition") ||
-               sql.contains("insert overwrite table");
-    }
+    private static final class Feature {
+        final String pattern;
+        final int dialect;
+        final int weight;
+        /**
+         * 首/尾为字母数字时要求词边界，避免 "individual" 命中 "dual"
+         */
+        final boolean leadingBoundary;
+        final boolean trailingBoundary;
 
-    /**
-     * 检测ClickHouse特征
-     */
-    private static boolean containsClickHouseFeatures(String sql) {
-        return sql.contains("engine =") ||
-               sql.contains("engine=") ||
-               (sql.contains("materialize") && sql.contains("clickhouse")) ||
-               sql.contains("sample by") ||
-               sql.contains("prewhere") ||
-               sql.contains("final");
+        Feature(String pattern, DbType dialect, int weight) {
+            this.pattern = pattern;
+            this.dialect = Arrays.asList(DIALECTS).indexOf(dialect);
+            this.weight = weight;
+            this.leadingBoundary = isWordChar(pattern.charAt(0));
+            this.trailingBoundary = isWordChar(pattern.charAt(pattern.length() - 1));
+        }
     }
 
     /**
-     * 检测PostgreSQL特征
+     * 预编译的确定性多模式自动机：字母表为ASCII，非ASCII字符一律回到根状态
      */
-    private static boolean containsPostgreSQLFeatures(String sql) {
-        return (sql.contains("returning") && sql.contains("insert")) ||
-               sql.contains("::") ||  // 类型转换语法
-               sql.contains("lateral") ||
-               sql.contains("generate_series");
+    private static final class Automaton {
+        static final int ALPHABET = 128;
+
+        final int[][] next;
+        final int[][] outputs;
+
+        Automaton(Feature[] features) {
+            List<int[]> trie = new ArrayList<>();
+            List<List<Integer>> out = new ArrayList<>();
+            trie.add(newRow());
+            out.add(new ArrayList<>());
+            for (int f = 0; f < features.length; f++) {
+                int state = 0;
+                for (char c : features[f].pattern.toCharArray()) {
+                    if (trie.get(state)[c] < 0) {
+                        trie.get(state)[c] = trie.size();
+                        trie.add(newRow());
+                        out.add(new ArrayList<>());
+                    }
+                    state = trie.get(state)[c];
+                }
+                out.get(state).add(f);
+            }
+            // BFS 计算失败链接，并把 goto 补全为完整转移表
+            int[] fail = new int[trie.size()];
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie.get(0)[c];
+                if (child < 0) {
+                    trie.get(0)[c] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                out.get(state).addAll(out.get(fail[state]));
+                for (int c = 0; c < ALPHABET; c++) {
+                    int child = trie.get(state)[c];
+                    if (child < 0) {
+                        trie.get(state)[c] = trie.get(fail[state])[c];
+                    } else {
+                        fail[child] = trie.get(fail[state])[c];
+                        queue.add(child);
+                    }
+                }
+            }
+            next = trie.toArray(new int[0][]);
+            outputs = new int[out.size()][];
+            for (int s = 0; s < out.size(); s++) {
+                outputs[s] = out.get(s).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        private static int[] newRow() {
+            int[] row = new int[ALPHABET];
+            Arrays.fill(row, -1);
+            return row;
+        }
     }
 
     /**
-     * 检测Oracle特征
+     * 单次检测的扫描状态（非线程安全，每次检测新建）
      */
-    private static boolean containsOracleFeatures(String sql) {
-        return sql.contains("dual") ||
-               sql.contains("sysdate") ||
-               sql.contains("rownum") ||
-               sql.contains("connect by") ||
-               sql.contains("start with");
+    private static final class Scanner {
+        // 最近送入自动机的字符（环形缓冲），用于判断匹配起点前的词边界
+        private static final int HISTORY = 64;
+
+        private final char[] history = new char[HISTORY];
+        private final int[] hitCounts = new int[FEATURES.length];
+        private long fed;
+        private int state;
+        private int scanned;
+
+        boolean exhausted() {
+            return scanned >= MAX_SCAN_CHARS;
+        }
+
+        /**
+         * 语句/注释分隔：相当于一个空白
+         */
+        void separate() {
+            feed(' ', ' ');
+        }
+
+        void scan(CharSequence text, int from, int to) {
+            int end = Math.min(to, from + (MAX_SCAN_CHARS - scanned));
+            for (int i = from; i < end; i++) {
+                char c = text.charAt(i);
+                char folded;
+                if (c <= ' ') {
+                    folded = ' ';
+                } else if (c >= 'A' && c <= 'Z') {
+                    folded = (char) (c + ('a' - 'A'));
+                } else {
+                    folded = c;
+                }
+                char after = i + 1 < to ? text.charAt(i + 1) : ' ';
+                feed(folded, after);
+            }
+            scanned += Math.max(0, end - from);
+        }
+
+        private void feed(char c, char after) {
+            // 连续空白合并为一个空格
+            if (c == ' ' && fed > 0 && history[(int) ((fed - 1) % HISTORY)] == ' ') {
+                return;
+            }
+            history[(int) (fed % HISTORY)] = c;
+            fed++;
+            state = c < Automaton.ALPHABET ? AUTOMATON.next[state][c] : 0;
+            for (int f : AUTOMATON.outputs[state]) {
+                Feature feature = FEATURES[f];
+                int len = feature.pattern.length();
+                if (feature.leadingBoundary && fed > len
+                        && isWordChar(history[(int) ((fed - len - 1) % HISTORY)])) {
+                    continue;
+                }
+                if (feature.trailingBoundary && isWordChar(after)) {
+                    continue;
+                }
+                hitCounts[f]++;
+            }
+        }
+
+        Detection result() {
+            int[] scores = new int[DIALECTS.length];
+            int hits = 0;
+            for (int f = 0; f < FEATURES.length; f++) {
+                if (hitCounts[f] > 0) {
+                    hits += hitCounts[f];
+                    scores[FEATURES[f].dialect] += FEATURES[f].weight * Math.min(hitCounts[f], MAX_HITS_PER_FEATURE);
+                }
+            }
+            int best = -1;
+            int total = 0;
+            for (int d = 0; d < DIALECTS.length; d++) {
+                total += scores[d];
+                if (scores[d] > 0 && (best < 0 || scores[d] > scores[best])) {
+                    best = d;
+                }
+            }
+            if (best < 0) {
+                log.debug("未检测到方言特征，使用默认方言: {}", DEFAULT_DB_TYPE);
+                return new Detection(DEFAULT_DB_TYPE, 0d, 0);
+            }
+            Detection detection = new Detection(DIALECTS[best], (double) scores[best] / total, hits);
+            log.debug("方言检测结果: {}, 各方言得分={}", detection, Arrays.toString(scores));
+            return detection;
+        }
     }
 
-    /**
-     * 检测SQLServer特征
-     */
-    private static boolean containsSQLServerFeatures(String sql) {
-        return (sql.contains("top ") && sql.contains("select")) ||
-               sql.contains("[dbo]") ||
-               sql.contains("with (nolock)");
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c > 127;
     }
 }
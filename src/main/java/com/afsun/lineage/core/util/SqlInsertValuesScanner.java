@@ -0,0 +1,209 @@
+package com.afsun.lineage.core.util;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * INSERT ... VALUES 语句头扫描器
+ * 数据初始化脚本中的 INSERT ... VALUES 可能包含数十万个元组，交给Druid会为每个字面量构建AST，
+ * 而 VALUES 本身并不产生血缘。这里仅在词法层面识别
+ * {@code INSERT INTO|OVERWRITE [TABLE] <表名> [(<列清单>)] VALUES}，
+ * 读到 VALUES 关键字即停止，元组部分不读取也不复制，耗时只与语句头长度相关
+ * 语句头含注释、提示、PARTITION 等其他结构时返回null，由Druid按常规路径解析
+ *
+ * @author afsun
+ */
+public final class SqlInsertValuesScanner {
+
+    private SqlInsertValuesScanner() {
+    }
+
+    /**
+     * 扫描语句文本
+     *
+     * @param text 语句文本（已去除首部注释）
+     * @return 语句头；不是 INSERT ... VALUES 时返回null
+     */
+    public static Header scan(CharSequence text) {
+        return scan(text, 0, text.length());
+    }
+
+    /**
+     * 扫描脚本 [start, end) 区间的语句，不复制文本
+     *
+     * @return 语句头；不是 INSERT ... VALUES 时返回null
+     */
+    public static Header scan(CharSequence text, int start, int end) {
+        Cursor c = new Cursor(text, start, end);
+        if (!c.keyword("INSERT")) {
+            return null;
+        }
+        if (!c.keyword("INTO") && !c.keyword("OVERWRITE")) {
+            return null;
+        }
+        // INSERT INTO TABLE t：TABLE 后仍跟标识符时才视为关键字
+        int mark = c.pos;
+        if (c.keyword("TABLE") && !c.atIdentifierStart()) {
+            c.pos = mark;
+        }
+        String table = c.qualifiedName();
+        if (table == null) {
+            return null;
+        }
+        List<String> columns = Collections.emptyList();
+        c.skipWhitespace();
+        if (c.peek() == '(') {
+            c.pos++;
+            columns = new ArrayList<>();
+            while (true) {
+                String column = c.qualifiedName();
+                if (column == null) {
+                    return null;
+                }
+                columns.add(column);
+                c.skipWhitespace();
+                char ch = c.peek();
+                c.pos++;
+                if (ch == ')') {
+                    break;
+                }
+                if (ch != ',') {
+                    return null;
+                }
+            }
+        }
+        if (!c.keyword("VALUES")) {
+            return null;
+        }
+        return new Header(table, columns);
+    }
+
+    /**
+     * INSERT ... VALUES 语句头
+     */
+    @Getter
+    public static final class Header {
+        /**
+         * 目标表名（按原文，含限定符与引号）
+         */
+        private final String table;
+        /**
+         * 显式列清单（按原文）；未指定时为空
+         */
+        private final List<String> columns;
+
+        Header(String table, List<String> columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+
+        @Override
+        public String toString() {
+            return columns.isEmpty() ? table : table + "(" + String.join(", ", columns) + ")";
+        }
+    }
+
+    private static final class Cursor {
+        final CharSequence text;
+        final int end;
+        int pos;
+
+        Cursor(CharSequence text, int start, int end) {
+            this.text = text;
+            this.pos = start;
+            this.end = end;
+        }
+
+        char peek() {
+            return pos < end ? text.charAt(pos) : 0;
+        }
+
+        void skipWhitespace() {
+            while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean atIdentifierStart() {
+            skipWhitespace();
+            char ch = peek();
+            return isIdentifierPart(ch) || ch == '`' || ch == '"' || ch == '[';
+        }
+
+        /**
+         * 匹配关键字（忽略大小写，要求其后为非标识符字符），未匹配时不移动位置
+         */
+        boolean keyword(String keyword) {
+            int mark = pos;
+            skipWhitespace();
+            int len = keyword.length();
+            if (end - pos < len) {
+                pos = mark;
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                char ch = text.charAt(pos + i);
+                if (ch >= 'a' && ch <= 'z') {
+                    ch = (char) (ch - ('a' - 'A'));
+                }
+                if (ch != keyword.charAt(i)) {
+                    pos = mark;
+                    return false;
+                }
+            }
+            if (pos + len < end && isIdentifierPart(text.charAt(pos + len))) {
+                pos = mark;
+                return false;
+            }
+            pos += len;
+            return true;
+        }
+
+        /**
+         * 读取以 '.' 连接的（可带引号的）标识符，返回原文
+         */
+        String qualifiedName() {
+            skipWhitespace();
+            int from = pos;
+            while (true) {
+                if (!identifier()) {
+                    return null;
+                }
+                if (peek() != '.') {
+                    break;
+                }
+                pos++;
+            }
+            return text.subSequence(from, pos).toString();
+        }
+
+        private boolean identifier() {
+            char open = peek();
+            char close = open == '[' ? ']' : open;
+            if (open == '`' || open == '"' || open == '[') {
+                for (int i = pos + 1; i < end; i++) {
+                    if (text.charAt(i) == close) {
+                        if (i == pos + 1) {
+                            return false;
+                        }
+                        pos = i + 1;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int from = pos;
+            while (pos < end && isIdentifierPart(text.charAt(pos))) {
+                pos++;
+            }
+            return pos > from;
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,324 @@
+package com.afsun.lineage.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL脚本单遍词法扫描器
+ * 一次扫描完成：注释识别、字符串/标识符引号识别、按顶层分号切分语句，输出语句在原文中的位置
+ * 支持：
+ * - 单行注释：-- comment 或 # comment (MySQL)
+ * - 多行注释：/* comment *\/
+ * - 单引号字符串（'' 与反斜杠转义）、双引号与反引号标识符
+ * - PostgreSQL 美元引用：$$ ... $$ 或 $tag$ ... $tag$（紧跟在标识符字符之后的 $ 视为标识符的一部分）
+ *
+ * 扫描可增量进行：输入未结束时 {@link #next(boolean)} 在需要更多字符的位置暂停并保留状态，
+ * 追加文本后可继续扫描（供流式读取使用）
+ *
+ * @author afsun
+ */
+public final class SqlScriptLexer {
+
+    private static final int NORMAL = 0;
+    private static final int SINGLE_QUOTE = 1;
+    private static final int DOUBLE_QUOTE = 2;
+    private static final int BACKTICK = 3;
+    private static final int LINE_COMMENT = 4;
+    private static final int BLOCK_COMMENT = 5;
+    private static final int DOLLAR_QUOTE = 6;
+
+    private final CharSequence text;
+
+    private int mode = NORMAL;
+    private String dollarTag;
+    private int pos;
+    private int line = 1;
+    private int column = 1;
+
+    // ===== 当前语句状态 =====
+    private int stmtStart = -1;
+    private int stmtLine;
+    private int stmtColumn;
+    private int lastCodeEnd;
+    private int commentStart;
+    private final List<int[]> comments = new ArrayList<>();
+
+    public SqlScriptLexer(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * 一次性切分完整脚本
+     */
+    public static List<StatementSpan> split(CharSequence text) {
+        List<StatementSpan> spans = new ArrayList<>();
+        if (text == null || text.length() == 0) {
+            return spans;
+        }
+        SqlScriptLexer lexer = new SqlScriptLexer(text);
+        StatementSpan span;
+        while ((span = lexer.next()) != null) {
+            spans.add(span);
+        }
+        return spans;
+    }
+
+    /**
+     * 扫描下一条语句（输入已完整）
+     */
+    public StatementSpan next() {
+        return next(true);
+    }
+
+    /**
+     * 扫描下一条语句
+     *
+     * @param endOfInput 输入是否已结束；为false时若当前文本不足以确定下一条语句则返回null，追加文本后可再次调用
+     * @return 下一条非空语句；没有（或暂时没有）时返回null
+     */
+    public StatementSpan next(boolean endOfInput) {
+        int len = text.length();
+        while (pos < len) {
+            char c = text.charAt(pos);
+            switch (mode) {
+                case NORMAL:
+                    if (c == ';') {
+                        advance(c);
+                        StatementSpan span = finish();
+                        if (span != null) {
+                            return span;
+                        }
+                        continue;
+                    }
+                    if (c == '\'' || c == '"' || c == '`') {
+                        mode = c == '\'' ? SINGLE_QUOTE : (c == '"' ? DOUBLE_QUOTE : BACKTICK);
+                        code(pos + 1);
+                        advance(c);
+                        continue;
+                    }
+                    if (c == '-' || c == '/') {
+                        if (pos + 1 >= len && !endOfInput) {
+                            return null;
+                        }
+                        char n = pos + 1 < len ? text.charAt(pos + 1) : 0;
+                        if ((c == '-' && n == '-') || (c == '/' && n == '*')) {
+                            mode = c == '-' ? LINE_COMMENT : BLOCK_COMMENT;
+                            commentStart = pos;
+                            advance(c);
+                            advance(n);
+                            continue;
+                        }
+                    }
+                    if (c == '#') {
+                        mode = LINE_COMMENT;
+                        commentStart = pos;
+                        advance(c);
+                        continue;
+                    }
+                    if (c == '$' && !isIdentifierChar(pos - 1)
+                            && !(pos + 1 < len && Character.isDigit(text.charAt(pos + 1)))) {
+                        // 美元引用只能出现在标识符之外（a$b$c 是标识符），且标签不以数字开头（$1 是位置参数）
+                        int j = pos + 1;
+                        while (j < len && isTagChar(text.charAt(j))) {
+                            j++;
+                        }
+                        if (j >= len && !endOfInput) {
+                            return null;
+                        }
+                        if (j < len && text.charAt(j) == '$') {
+                            dollarTag = text.subSequence(pos, j + 1).toString();
+                            mode = DOLLAR_QUOTE;
+                            code(j + 1);
+                            advanceTo(j + 1);
+                            continue;
+                        }
+                    }
+                    if (!Character.isWhitespace(c)) {
+                        code(pos + 1);
+                    }
+                    advance(c);
+                    continue;
+                case SINGLE_QUOTE:
+                case DOUBLE_QUOTE:
+                case BACKTICK:
+                    char quote = mode == SINGLE_QUOTE ? '\'' : (mode == DOUBLE_QUOTE ? '"' : '`');
+                    if (c == '\\' && mode != BACKTICK) {
+                        if (pos + 1 >= len && !endOfInput) {
+                            return null;
+                        }
+                        advanceTo(Math.min(pos + 2, len));
+                        code(pos);
+                        continue;
+                    }
+                    if (c == quote) {
+                        if (pos + 1 >= len && !endOfInput) {
+                            return null;
+                        }
+                        if (pos + 1 < len && text.charAt(pos + 1) == quote) {
+                            // 双写转义
+                            advanceTo(pos + 2);
+                        } else {
+                            mode = NORMAL;
+                            advance(c);
+                        }
+                        code(pos);
+                        continue;
+                    }
+                    advance(c);
+                    code(pos);
+                    continue;
+                case LINE_COMMENT:
+                    if (c == '\n' || c == '\r') {
+                        endComment(pos);
+                        mode = NORMAL;
+                        continue;
+                    }
+                    advance(c);
+                    continue;
+                case BLOCK_COMMENT:
+                    if (c == '*') {
+                        if (pos + 1 >= len && !endOfInput) {
+                            return null;
+                        }
+                        if (pos + 1 < len && text.charAt(pos + 1) == '/') {
+                            advanceTo(pos + 2);
+                            endComment(pos);
+                            mode = NORMAL;
+                            continue;
+                        }
+                    }
+                    advance(c);
+                    continue;
+                case DOLLAR_QUOTE:
+                    if (c == '$') {
+                        int tagLen = dollarTag.length();
+                        if (pos + tagLen > len && !endOfInput) {
+                            return null;
+                        }
+                        if (regionMatches(pos, dollarTag)) {
+                            advanceTo(pos + tagLen);
+                            code(pos);
+                            mode = NORMAL;
+                            continue;
+                        }
+                    }
+                    advance(c);
+                    code(pos);
+                    continue;
+                default:
+                    throw new IllegalStateException("unknown lexer mode: " + mode);
+            }
+        }
+        if (!endOfInput) {
+            return null;
+        }
+        if (mode == LINE_COMMENT || mode == BLOCK_COMMENT) {
+            endComment(pos);
+            mode = NORMAL;
+        }
+        return finish();
+    }
+
+    /**
+     * 已扫描到的位置（该位置之前的文本均已处理）
+     */
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * 当前是否处于两条语句之间（没有未完成的语句）
+     */
+    public boolean isBetweenStatements() {
+        return stmtStart < 0 && mode == NORMAL;
+    }
+
+    /**
+     * 调用方删除了文本开头的 consumed 个字符后，同步调整内部偏移
+     * 仅允许在语句之间调用，且 consumed 不超过 {@link #position()}
+     */
+    public void rebase(int consumed) {
+        if (!isBetweenStatements() || consumed > pos) {
+            throw new IllegalStateException("lexer can only be rebased between statements");
+        }
+        pos -= consumed;
+    }
+
+    private StatementSpan finish() {
+        if (stmtStart < 0) {
+            comments.clear();
+            return null;
+        }
+        int[] ranges = null;
+        int count = 0;
+        for (int[] r : comments) {
+            if (r[1] <= lastCodeEnd) count++;
+        }
+        if (count > 0) {
+            ranges = new int[count * 2];
+            int k = 0;
+            for (int[] r : comments) {
+                if (r[1] <= lastCodeEnd) {
+                    ranges[k++] = r[0];
+                    ranges[k++] = r[1];
+                }
+            }
+        }
+        StatementSpan span = new StatementSpan(stmtStart, lastCodeEnd, stmtLine, stmtColumn, ranges);
+        stmtStart = -1;
+        comments.clear();
+        return span;
+    }
+
+    private void code(int end) {
+        if (stmtStart < 0) {
+            stmtStart = pos;
+            stmtLine = line;
+            stmtColumn = column;
+        }
+        lastCodeEnd = end;
+    }
+
+    private void endComment(int end) {
+        // 语句开始前的注释不属于语句片段
+        if (stmtStart >= 0) {
+            comments.add(new int[]{commentStart, end});
+        }
+    }
+
+    private void advance(char c) {
+        pos++;
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+    }
+
+    private void advanceTo(int target) {
+        while (pos < target) {
+            advance(text.charAt(pos));
+        }
+    }
+
+    private boolean regionMatches(int from, String s) {
+        if (from + s.length() > text.length()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(from + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private boolean isIdentifierChar(int index) {
+        if (index < 0) {
+            return false;
+        }
+        char c = text.charAt(index);
+        return isTagChar(c) || c == '$';
+    }
+
+    private static boolean isTagChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -133,19 +133,12 @@ public class SqlScriptUtils {
     }
 
 
-    // 语句切分（保守策略：以分号切分，保留语句顺序）
+    // 语句切分：按顶层分号切分（忽略字符串、引用标识符与注释中的分号），保留语句顺序，空语句不输出
     public static List<String> splitStatements(String text) {
         List<String> list = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            if (c == ';') {
-                list.add(sb.toString().trim());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
+        for (StatementSpan span : SqlScriptLexer.split(text)) {
+            list.add(span.text(text));
         }
-        if (sb.length() > 0) list.add(sb.toString().trim());
         return list;
     }
 
@@ -0,0 +1,109 @@
+package com.afsun.lineage.core.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 语句预过滤器
+ * 在调用Druid之前按语句首个关键字判断是否可能产生血缘，SET/USE/SHOW/OPTIMIZE/SYSTEM/GRANT/ALTER 等
+ * 语句直接计入跳过数，不构建AST、不抛出异常
+ * 判定规则：首关键字在跳过列表中且不在保留列表中
+ *
+ * @author afsun
+ */
+public final class SqlStatementPrefilter {
+
+    /**
+     * 默认跳过的语句首关键字（均不产生血缘，也不影响脚本内临时表）
+     */
+    public static final Set<String> DEFAULT_SKIP_KEYWORDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "SET", "USE", "SHOW", "DESC", "DESCRIBE", "EXPLAIN", "EXISTS",
+            "OPTIMIZE", "SYSTEM", "KILL", "WATCH", "CHECK", "ANALYZE",
+            "GRANT", "REVOKE", "ALTER", "RENAME", "TRUNCATE", "COMMENT",
+            "ATTACH", "DETACH", "FLUSH", "LOCK", "UNLOCK",
+            "BEGIN", "COMMIT", "ROLLBACK")));
+
+    /**
+     * 不做任何过滤
+     */
+    public static final SqlStatementPrefilter NONE = new SqlStatementPrefilter(Collections.emptySet(), Collections.emptySet());
+
+    public static final SqlStatementPrefilter DEFAULT = new SqlStatementPrefilter(DEFAULT_SKIP_KEYWORDS, Collections.emptySet());
+
+    // 关键字最长长度，超过则不可能命中
+    private static final int MAX_KEYWORD_LENGTH = 16;
+
+    private final Set<String> skipKeywords;
+
+    /**
+     * @param skipKeywords 跳过的首关键字
+     * @param keepKeywords 保留的首关键字，优先于跳过列表
+     */
+    public SqlStatementPrefilter(Collection<String> skipKeywords, Collection<String> keepKeywords) {
+        Set<String> skip = new HashSet<>();
+        for (String keyword : skipKeywords) {
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                skip.add(keyword.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        for (String keyword : keepKeywords) {
+            if (keyword != null) {
+                skip.remove(keyword.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        this.skipKeywords = skip;
+    }
+
+    public boolean isEnabled() {
+        return !skipKeywords.isEmpty();
+    }
+
+    /**
+     * 判断语句是否不可能产生血缘（可直接跳过）
+     *
+     * @param text 语句文本（已去除首部注释）
+     */
+    public boolean shouldSkip(CharSequence text) {
+        return shouldSkip(text, 0, text.length());
+    }
+
+    /**
+     * 判断脚本 [start, end) 区间的语句是否可直接跳过，不复制文本
+     */
+    public boolean shouldSkip(CharSequence text, int start, int end) {
+        if (skipKeywords.isEmpty()) {
+            return false;
+        }
+        int i = start;
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        char[] keyword = new char[MAX_KEYWORD_LENGTH];
+        int len = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - ('a' - 'A'));
+            } else if (c < 'A' || c > 'Z') {
+                break;
+            }
+            if (len == MAX_KEYWORD_LENGTH) {
+                return false;
+            }
+            keyword[len++] = c;
+        }
+        // 关键字后须为分隔符，避免把 "settings_tbl" 之类的标识符当成 SET
+        if (len == 0 || (i < end && isIdentifierPart(text.charAt(i)))) {
+            return false;
+        }
+        return skipKeywords.contains(new String(keyword, 0, len));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,79 @@
+package com.afsun.lineage.core.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式语句读取器
+ * 从Reader按块读取脚本，借助 {@link SqlScriptLexer} 增量切分语句；已消费文本超过缓冲区一半时整体丢弃，
+ * 每个字符至多被搬移常数次，内存占用只与最大单条语句相关，与脚本总大小无关
+ *
+ * @author afsun
+ */
+public class SqlStatementReader implements Closeable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE);
+    private final SqlScriptLexer lexer = new SqlScriptLexer(buffer);
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private boolean endOfInput;
+    private String position;
+
+    public SqlStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取下一条非空语句
+     *
+     * @return 语句文本（已去除注释与首尾空白），读完返回null
+     */
+    public String next() throws IOException {
+        while (true) {
+            StatementSpan span = lexer.next(endOfInput);
+            if (span != null) {
+                String text = span.text(buffer);
+                position = span.position();
+                compact();
+                return text;
+            }
+            if (endOfInput) {
+                return null;
+            }
+            if (lexer.isBetweenStatements()) {
+                // 语句间的空白也及时丢弃
+                compact();
+            }
+            int n = reader.read(chunk);
+            if (n < 0) {
+                endOfInput = true;
+            } else {
+                buffer.append(chunk, 0, n);
+            }
+        }
+    }
+
+    // 已消费文本超过缓冲区一半时才丢弃：逐条删除会让每条语句都搬移剩余缓冲区，总开销随语句数平方增长
+    private void compact() {
+        int consumed = lexer.position();
+        if (consumed > 0 && consumed * 2 >= buffer.length()) {
+            buffer.delete(0, consumed);
+            lexer.rebase(consumed);
+        }
+    }
+
+    /**
+     * 最近一次返回语句在脚本中的位置
+     */
+    public String position() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,385 @@
+package com.afsun.lineage.core.util;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 表引用词法扫描器（元数据预取用）
+ * 不构建AST，仅在词法层面收集 FROM/JOIN/INTO/USING 之后的表名，以及脚本内 CREATE TABLE/VIEW 创建的表和 CTE 名称，
+ * 供解析前一次性批量拉取元数据。跳过注释、字符串字面量与子查询括号；表函数（如 numbers(10)）不计入
+ * 结果只是预取提示：多收集的名称至多产生一次负缓存，漏收集的表在解析时按需加载
+ *
+ * @author afsun
+ */
+public final class SqlTableReferenceScanner {
+
+    /**
+     * 表名之后不会作为别名出现的关键字
+     */
+    private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList(
+            "WHERE", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "CROSS", "OUTER", "SEMI", "ANTI", "ANY", "ALL",
+            "ASOF", "GLOBAL", "ARRAY", "ON", "USING", "GROUP", "ORDER", "HAVING", "LIMIT", "UNION", "EXCEPT",
+            "INTERSECT", "SETTINGS", "FORMAT", "WINDOW", "PREWHERE", "SAMPLE", "FINAL", "SELECT", "VALUES",
+            "SET", "WHEN", "THEN", "PARTITION", "WITH"));
+
+    /**
+     * CREATE 与 TABLE/VIEW 之间允许出现的修饰词
+     */
+    private static final Set<String> CREATE_MODIFIERS = new HashSet<>(Arrays.asList(
+            "OR", "REPLACE", "TEMPORARY", "TEMP", "MATERIALIZED", "LIVE", "GLOBAL", "LOCAL"));
+
+    private SqlTableReferenceScanner() {
+    }
+
+    /**
+     * 扫描完整脚本
+     */
+    public static References scan(CharSequence text) {
+        return scan(text, SqlScriptLexer.split(text));
+    }
+
+    /**
+     * 按已切分的语句片段扫描脚本，不复制语句文本
+     */
+    public static References scan(CharSequence text, List<StatementSpan> statements) {
+        References refs = new References();
+        for (StatementSpan span : statements) {
+            scanStatement(new Tokens(text, span.getStart(), span.getEnd()), refs);
+        }
+        return refs;
+    }
+
+    /**
+     * 扫描单条语句并累加到已有的扫描结果（流式解析逐条读取语句时使用）
+     */
+    public static void scanInto(CharSequence statement, References refs) {
+        scanStatement(new Tokens(statement, 0, statement.length()), refs);
+    }
+
+    private static void scanStatement(Tokens t, References refs) {
+        boolean create = false;
+        while (t.next()) {
+            if (t.type != Tokens.WORD) {
+                create = false;
+                continue;
+            }
+            if (t.is("CREATE")) {
+                create = true;
+                continue;
+            }
+            if (create) {
+                if (t.is("TABLE") || t.is("VIEW")) {
+                    create = false;
+                    t.skipWords("IF", "NOT", "EXISTS");
+                    String name = t.qualifiedName();
+                    if (name != null) {
+                        refs.created.add(name.toLowerCase(Locale.ROOT));
+                    }
+                } else if (!CREATE_MODIFIERS.contains(t.upper())) {
+                    create = false;
+                }
+                continue;
+            }
+            if (t.is("AS")) {
+                String previous = t.previousWord();
+                if (previous != null && t.peekChar() == '(') {
+                    // name AS ( ... )：CTE 定义
+                    refs.cteNames.add(previous.toLowerCase(Locale.ROOT));
+                }
+                continue;
+            }
+            if (t.is("INTO")) {
+                // INSERT INTO [TABLE] t (列清单) 中的括号是列清单而非表函数
+                t.skipWords("TABLE");
+                if (!t.isNextWord("FUNCTION")) {
+                    refs.add(t.qualifiedName());
+                }
+                continue;
+            }
+            if (t.is("JOIN") && "ARRAY".equalsIgnoreCase(t.previousWord())) {
+                // ARRAY JOIN 之后是数组表达式而非表
+                continue;
+            }
+            if (t.is("FROM") || t.is("JOIN") || t.is("USING")) {
+                readTableList(t, refs);
+            }
+        }
+    }
+
+    /**
+     * 读取 FROM 之后以逗号分隔的表清单（含可选别名）
+     */
+    private static void readTableList(Tokens t, References refs) {
+        while (true) {
+            if (t.peekChar() == '(') {
+                // 子查询或 USING (col)
+                return;
+            }
+            String name = t.qualifiedName();
+            if (name == null) {
+                return;
+            }
+            if (t.peekChar() == '(') {
+                // 表函数
+                return;
+            }
+            refs.add(name);
+            int mark = t.pos;
+            if (t.next() && t.type == Tokens.WORD) {
+                if (t.is("AS")) {
+                    t.next();
+                } else if (CLAUSE_KEYWORDS.contains(t.upper())) {
+                    t.pos = mark;
+                    return;
+                }
+                mark = t.pos;
+                if (!t.next()) {
+                    return;
+                }
+            }
+            if (t.type != Tokens.COMMA) {
+                t.pos = mark;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 扫描结果
+     */
+    public static final class References {
+        /**
+         * 引用的表名（去除引号，按首次出现顺序去重）
+         */
+        @Getter
+        private final List<String> tables = new ArrayList<>();
+        /**
+         * 脚本内 CREATE TABLE/VIEW 创建的表（小写）
+         */
+        @Getter
+        private final Set<String> created = new HashSet<>();
+        /**
+         * CTE 名称（小写）
+         */
+        @Getter
+        private final Set<String> cteNames = new HashSet<>();
+
+        private final Set<String> seen = new HashSet<>();
+
+        public References() {
+        }
+
+        private void add(String name) {
+            if (name != null && seen.add(name.toLowerCase(Locale.ROOT))) {
+                tables.add(name);
+            }
+        }
+
+        /**
+         * 需要从外部元数据获取的表：排除脚本内创建的表与未限定的 CTE 名称
+         */
+        public List<String> external() {
+            return externalSince(0);
+        }
+
+        /**
+         * 第 from 个引用起收集到的外部表，排除规则同 {@link #external()}；流式解析据此只预取新出现的表
+         *
+         * @param from 此前已取过的引用数（{@link #getTables()} 的大小）
+         */
+        public List<String> externalSince(int from) {
+            List<String> out = new ArrayList<>(Math.max(0, tables.size() - from));
+            for (int i = from; i < tables.size(); i++) {
+                String name = tables.get(i);
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (created.contains(lower) || (lower.indexOf('.') < 0 && cteNames.contains(lower))) {
+                    continue;
+                }
+                out.add(name);
+            }
+            return Collections.unmodifiableList(out);
+        }
+    }
+
+    /**
+     * 语句内的简单记号流：单词、带引号标识符、逗号、点与其他单字符；注释与字符串字面量被跳过
+     */
+    private static final class Tokens {
+        static final int WORD = 1;
+        static final int QUOTED = 2;
+        static final int COMMA = 3;
+        static final int OTHER = 4;
+
+        final CharSequence text;
+        final int end;
+        int pos;
+        int type;
+        int tokenStart;
+        int tokenEnd;
+        private int prevType;
+        private int prevStart;
+        private int prevEnd;
+
+        Tokens(CharSequence text, int start, int end) {
+            this.text = text;
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean next() {
+            prevType = type;
+            prevStart = tokenStart;
+            prevEnd = tokenEnd;
+            skipTrivia();
+            if (pos >= end) {
+                type = 0;
+                return false;
+            }
+            char c = text.charAt(pos);
+            tokenStart = pos;
+            if (isIdentifierPart(c)) {
+                while (pos < end && isIdentifierPart(text.charAt(pos))) {
+                    pos++;
+                }
+                type = WORD;
+                tokenEnd = pos;
+                return true;
+            }
+            if (c == '`' || c == '"' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int i = pos + 1;
+                while (i < end && text.charAt(i) != close) {
+                    i++;
+                }
+                tokenStart = pos + 1;
+                tokenEnd = i;
+                pos = Math.min(i + 1, end);
+                type = QUOTED;
+                return true;
+            }
+            pos++;
+            tokenEnd = pos;
+            type = c == ',' ? COMMA : OTHER;
+            return true;
+        }
+
+        boolean is(String keyword) {
+            int len = tokenEnd - tokenStart;
+            if (type != WORD || len != keyword.length()) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (Character.toUpperCase(text.charAt(tokenStart + i)) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String upper() {
+            return text.subSequence(tokenStart, tokenEnd).toString().toUpperCase(Locale.ROOT);
+        }
+
+        /**
+         * 当前记号之前紧邻的标识符，不是标识符时返回null
+         */
+        String previousWord() {
+            return prevType == WORD || prevType == QUOTED ? text.subSequence(prevStart, prevEnd).toString() : null;
+        }
+
+        char peekChar() {
+            skipTrivia();
+            return pos < end ? text.charAt(pos) : 0;
+        }
+
+        boolean isNextWord(String keyword) {
+            int mark = pos;
+            boolean hit = next() && is(keyword);
+            pos = mark;
+            return hit;
+        }
+
+        void skipWords(String... keywords) {
+            for (String keyword : keywords) {
+                int mark = pos;
+                if (!(next() && is(keyword))) {
+                    pos = mark;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 读取以 '.' 连接的（可带引号的）名称，去除引号后返回；不是名称时不移动位置并返回null
+         */
+        String qualifiedName() {
+            int mark = pos;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (!next() || (type != WORD && type != QUOTED) || tokenEnd == tokenStart) {
+                    pos = mark;
+                    return null;
+                }
+                sb.append(text, tokenStart, tokenEnd);
+                if (pos < end && text.charAt(pos) == '.') {
+                    pos++;
+                    sb.append('.');
+                    continue;
+                }
+                return sb.toString();
+            }
+        }
+
+        private void skipTrivia() {
+            while (pos < end) {
+                char c = text.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '-' && pos + 1 < end && text.charAt(pos + 1) == '-' || c == '#') {
+                    while (pos < end && text.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (c == '/' && pos + 1 < end && text.charAt(pos + 1) == '*') {
+                    int close = indexOf("*/", pos + 2);
+                    pos = close < 0 ? end : close + 2;
+                } else if (c == '\'') {
+                    pos++;
+                    while (pos < end) {
+                        char ch = text.charAt(pos++);
+                        if (ch == '\\') {
+                            pos++;
+                        } else if (ch == '\'') {
+                            if (pos < end && text.charAt(pos) == '\'') {
+                                pos++;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private int indexOf(String s, int from) {
+            for (int i = from; i + s.length() <= end; i++) {
+                if (text.charAt(i) == s.charAt(0) && text.charAt(i + 1) == s.charAt(1)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,70 @@
+package com.afsun.lineage.core.util;
+
+import lombok.Getter;
+
+/**
+ * 语句片段：原始脚本中一条语句的位置（不复制文本）
+ * start/end 为去除首尾空白与注释后的偏移，[start, end)
+ *
+ * @author afsun
+ */
+@Getter
+public final class StatementSpan {
+    private final int start;
+    private final int end;
+    /**
+     * 语句起始行号（从1开始）
+     */
+    private final int line;
+    /**
+     * 语句起始列号（从1开始）
+     */
+    private final int column;
+    /**
+     * 语句内部注释区间，成对存放 [s0, e0, s1, e1 ...]；无注释时为null
+     */
+    private final int[] commentRanges;
+
+    StatementSpan(int start, int end, int line, int column, int[] commentRanges) {
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.column = column;
+        this.commentRanges = commentRanges;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * 取出语句文本：无注释时直接截取；有注释时仅拷贝一次并以空格替换注释
+     *
+     * @param source 生成该片段的原始文本
+     */
+    public String text(CharSequence source) {
+        if (commentRanges == null) {
+            return source.subSequence(start, end).toString();
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        int from = start;
+        for (int i = 0; i < commentRanges.length; i += 2) {
+            sb.append(source, from, commentRanges[i]).append(' ');
+            from = commentRanges[i + 1];
+        }
+        sb.append(source, from, end);
+        return sb.toString();
+    }
+
+    /**
+     * 位置描述，用于告警定位
+     */
+    public String position() {
+        return "第" + line + "行第" + column + "列";
+    }
+
+    @Override
+    public String toString() {
+        return "StatementSpan{" + "start=" + start + ", end=" + end + ", line=" + line + ", column=" + column + '}';
+    }
+}
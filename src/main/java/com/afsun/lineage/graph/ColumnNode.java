@@ -1,18 +1,32 @@
 package com.afsun.lineage.graph;
 
+import com.afsun.lineage.core.IdentifierPool;
+import com.afsun.lineage.core.WeakPool;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
 import org.springframework.data.neo4j.core.schema.Property;
 
-import java.util.Locale;
 import java.util.Objects;
 
 @Data
 public class ColumnNode {
+    /**
+     * 享元池：相等且原文一致的节点在各次解析的血缘图之间共享同一实例
+     */
+    private static final WeakPool<ColumnNode, ColumnNode> POOL = new WeakPool<>();
+
+    /**
+     * 享元实例在各次解析之间共享，不提供写入；持久化经由独立的实体类完成
+     */
     @Id
     @GeneratedValue
+    @Setter(AccessLevel.NONE)
     private Long id;
     @Property("database")
     private final String database;
@@ -26,38 +40,55 @@ public class ColumnNode {
     private final String originalSchema;
     private final String originalTable;
     private final String originalColumn;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int hash;
 
     public ColumnNode(String database, String schema, String table, String column,
                       String originalDatabase, String originalSchema, String originalTable, String originalColumn) {
-        this.database = toLowerOrNull(database);
-        this.schema = toLowerOrNull(schema);
-        this.table = toLowerOrNull(table);
-        this.column = toLowerOrNull(column);
-        this.originalDatabase = originalDatabase;
-        this.originalSchema = originalSchema;
-        this.originalTable = originalTable;
-        this.originalColumn = originalColumn;
+        this.database = IdentifierPool.lower(database);
+        this.schema = IdentifierPool.lower(schema);
+        this.table = IdentifierPool.lower(table);
+        this.column = IdentifierPool.lower(column);
+        this.originalDatabase = IdentifierPool.original(originalDatabase);
+        this.originalSchema = IdentifierPool.original(originalSchema);
+        this.originalTable = IdentifierPool.original(originalTable);
+        this.originalColumn = IdentifierPool.original(originalColumn);
+        this.hash = IdentifierPool.hash(this.database, this.schema, this.table, this.column);
+    }
+
+    /**
+     * 获取共享的列节点实例
+     */
+    public static ColumnNode of(String database, String schema, String table, String column,
+                                String originalDatabase, String originalSchema, String originalTable, String originalColumn) {
+        ColumnNode candidate = new ColumnNode(database, schema, table, column,
+                originalDatabase, originalSchema, originalTable, originalColumn);
+        return IdentifierPool.share(POOL, candidate, ColumnNode::sameOriginals);
     }
 
+    private static boolean sameOriginals(ColumnNode a, ColumnNode b) {
+        return Objects.equals(a.originalColumn, b.originalColumn)
+                && Objects.equals(a.originalTable, b.originalTable)
+                && Objects.equals(a.originalSchema, b.originalSchema)
+                && Objects.equals(a.originalDatabase, b.originalDatabase);
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof ColumnNode)) return false;
         ColumnNode that = (ColumnNode) o;
-        return Objects.equals(database, that.database)
-                && Objects.equals(schema, that.schema)
+        return hash == that.hash
+                && Objects.equals(column, that.column)
                 && Objects.equals(table, that.table)
-                && Objects.equals(column, that.column);
+                && Objects.equals(schema, that.schema)
+                && Objects.equals(database, that.database);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(database, schema, table, column);
+        return hash;
     }
 
-
-    private static String toLowerOrNull(String s) {
-        return s == null ? null : s.toLowerCase(Locale.ROOT);
-    }
 }
\ No newline at end of file
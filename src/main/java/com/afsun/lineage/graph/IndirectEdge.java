@@ -0,0 +1,61 @@
+package com.afsun.lineage.graph;
+
+import lombok.Data;
+
+import java.util.Objects;
+
+/**
+ * 间接血缘边：JOIN 条件、过滤、分组、排序中引用的源列 -> 目标表
+ * 这些列不构成目标列的取值，但影响结果集的行，按类型与列级 to 边分开存放
+ */
+@Data
+public class IndirectEdge {
+
+    public enum Kind {
+        /**
+         * JOIN ON 条件
+         */
+        JOIN,
+        /**
+         * WHERE / HAVING
+         */
+        FILTER,
+        /**
+         * GROUP BY
+         */
+        GROUP,
+        /**
+         * ORDER BY
+         */
+        ORDER
+    }
+
+    private final ColumnNode from;
+    private final TableNode to;
+    private final Kind kind;
+
+    public IndirectEdge(ColumnNode from, TableNode to, Kind kind) {
+        this.from = from;
+        this.to = to;
+        this.kind = kind;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndirectEdge)) return false;
+        IndirectEdge that = (IndirectEdge) o;
+        return Objects.equals(from, that.from) && Objects.equals(to, that.to) && kind == that.kind;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Objects.hashCode(from) + Objects.hashCode(to)) + Objects.hashCode(kind);
+    }
+
+    @Override
+    public String toString() {
+        return "IndirectEdge{" + "from=" + from + ", to=" + to + ", kind=" + kind + '}';
+    }
+}
@@ -33,7 +33,7 @@ public class OwnerEdge {
 
     @Override
     public int hashCode() {
-        return Objects.hash(from, to);
+        return 31 * Objects.hashCode(from) + Objects.hashCode(to);
     }
 
     @Override
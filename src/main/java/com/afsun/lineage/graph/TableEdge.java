@@ -0,0 +1,38 @@
+package com.afsun.lineage.graph;
+
+import lombok.Data;
+
+import java.util.Objects;
+
+/**
+ * 表级依赖边：源表 -> 目标表
+ */
+@Data
+public class TableEdge {
+    private final TableNode from;
+    private final TableNode to;
+
+    public TableEdge(TableNode from, TableNode to) {
+        this.from = from;
+        this.to = to;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TableEdge)) return false;
+        TableEdge that = (TableEdge) o;
+        return Objects.equals(from, that.from) && Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(from) + Objects.hashCode(to);
+    }
+
+    @Override
+    public String toString() {
+        return "TableEdge{" + "from=" + from + ", to=" + to + '}';
+    }
+}
@@ -1,18 +1,32 @@
 package com.afsun.lineage.graph;
 
+import com.afsun.lineage.core.IdentifierPool;
+import com.afsun.lineage.core.WeakPool;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
 import org.springframework.data.neo4j.core.schema.Property;
 
-import java.util.Locale;
 import java.util.Objects;
 
 @Data
 public class TableNode {
+    /**
+     * 享元池：相等且原文一致的节点在各次解析的血缘图之间共享同一实例
+     */
+    private static final WeakPool<TableNode, TableNode> POOL = new WeakPool<>();
+
+    /**
+     * 享元实例在各次解析之间共享，不提供写入；持久化经由独立的实体类完成
+     */
     @Id
     @GeneratedValue
+    @Setter(AccessLevel.NONE)
     private Long id; // Neo4j 生成的内部ID
 
     @Property("database")
@@ -30,34 +44,50 @@ public class TableNode {
 
     private final String originalTable;
 
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int hash;
+
     public TableNode(String database, String schema, String table,
                      String originalDatabase, String originalSchema, String originalTable) {
-        this.database = toLowerOrNull(database);
-        this.schema = toLowerOrNull(schema);
-        this.table = toLowerOrNull(table);
-        this.originalDatabase = originalDatabase;
-        this.originalSchema = originalSchema;
-        this.originalTable = originalTable;
+        this.database = IdentifierPool.lower(database);
+        this.schema = IdentifierPool.lower(schema);
+        this.table = IdentifierPool.lower(table);
+        this.originalDatabase = IdentifierPool.original(originalDatabase);
+        this.originalSchema = IdentifierPool.original(originalSchema);
+        this.originalTable = IdentifierPool.original(originalTable);
+        this.hash = IdentifierPool.hash(this.database, this.schema, this.table);
     }
 
+    /**
+     * 获取共享的表节点实例
+     */
+    public static TableNode of(String database, String schema, String table,
+                               String originalDatabase, String originalSchema, String originalTable) {
+        TableNode candidate = new TableNode(database, schema, table, originalDatabase, originalSchema, originalTable);
+        return IdentifierPool.share(POOL, candidate, TableNode::sameOriginals);
+    }
+
+    private static boolean sameOriginals(TableNode a, TableNode b) {
+        return Objects.equals(a.originalTable, b.originalTable)
+                && Objects.equals(a.originalSchema, b.originalSchema)
+                && Objects.equals(a.originalDatabase, b.originalDatabase);
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof TableNode)) return false;
         TableNode that = (TableNode) o;
-        return Objects.equals(database, that.database)
+        return hash == that.hash
+                && Objects.equals(table, that.table)
                 && Objects.equals(schema, that.schema)
-                && Objects.equals(table, that.table);
+                && Objects.equals(database, that.database);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(database, schema, table);
+        return hash;
     }
 
-
-    private static String toLowerOrNull(String s) {
-        return s == null ? null : s.toLowerCase(Locale.ROOT);
-    }
 }
\ No newline at end of file
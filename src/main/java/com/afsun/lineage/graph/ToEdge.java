@@ -25,7 +25,7 @@ public class ToEdge {
 
     @Override
     public int hashCode() {
-        return Objects.hash(from, to);
+        return 31 * Objects.hashCode(from) + Objects.hashCode(to);
     }
 
     @Override
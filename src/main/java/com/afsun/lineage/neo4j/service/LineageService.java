@@ -1,8 +1,11 @@
 package com.afsun.lineage.neo4j.service;
 
 import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.metrics.ParseMetrics;
 import com.afsun.lineage.graph.ColumnNode;
+import com.afsun.lineage.graph.IndirectEdge;
 import com.afsun.lineage.graph.OwnerEdge;
+import com.afsun.lineage.graph.TableEdge;
 import com.afsun.lineage.graph.TableNode;
 import com.afsun.lineage.graph.ToEdge;
 import org.springframework.data.neo4j.core.Neo4jClient;
@@ -20,11 +23,14 @@ public class LineageService {
 
     private final Neo4jClient neo4jClient;
 
+    private final ParseMetrics parseMetrics;
+
     // 批处理大小，可配置
     private static final int BATCH_SIZE = 100;
 
-    public LineageService(Neo4jClient neo4jClient) {
+    public LineageService(Neo4jClient neo4jClient, ParseMetrics parseMetrics) {
         this.neo4jClient = neo4jClient;
+        this.parseMetrics = parseMetrics;
     }
 
     @Transactional
@@ -32,12 +38,18 @@ public class LineageService {
         if (graph == null) {
             return;
         }
+        long start = System.nanoTime();
         // 1. 批量保存Table节点
         saveTables(new ArrayList<>(graph.getTables()));
         // 2. 批量保存Column节点和BELONGS_TO关系
         saveColumnsWithBelongsTo(new ArrayList<>(graph.getOwnerEdges()));
         // 3. 批量创建LINKS_TO关系
         saveColumnLineage(new ArrayList<>(graph.getToEdges()));
+        // 4. 批量创建表级FLOWS_TO关系（仅表级模式产出）
+        saveTableLineage(new ArrayList<>(graph.getTableEdges()));
+        // 5. 批量创建间接血缘INFLUENCES关系（JOIN/过滤/分组/排序列 -> 目标表）
+        saveIndirectLineage(new ArrayList<>(graph.getIndirectEdges()));
+        parseMetrics.recordPersistGraph(start);
     }
 
     private void saveTables(List<TableNode> tables) {
@@ -62,9 +74,11 @@ public class LineageService {
                     .map(this::tableNodeToMap)
                     .collect(Collectors.toList());
 
+            long batchStart = System.nanoTime();
             neo4jClient.query(batchQuery)
                     .bind(tableData).to("tables")
                     .run();
+            parseMetrics.recordPersistBatch("tables", batchStart);
         }
     }
 
@@ -99,9 +113,11 @@ public class LineageService {
                     .map(this::ownerEdgeToMap)
                     .collect(Collectors.toList());
 
+            long batchStart = System.nanoTime();
             neo4jClient.query(batchQuery)
                     .bind(edgeData).to("edges")
                     .run();
+            parseMetrics.recordPersistBatch("columns", batchStart);
         }
     }
 
@@ -132,9 +148,78 @@ public class LineageService {
                     .map(this::toEdgeToMap)
                     .collect(Collectors.toList());
 
+            long batchStart = System.nanoTime();
+            neo4jClient.query(batchQuery)
+                    .bind(edgeData).to("edges")
+                    .run();
+            parseMetrics.recordPersistBatch("lineage", batchStart);
+        }
+    }
+
+    private void saveTableLineage(List<TableEdge> tableEdges) {
+        if (tableEdges == null || tableEdges.isEmpty()) {
+            return;
+        }
+
+        String batchQuery = "            UNWIND $edges AS edge\n" +
+                "            MERGE (src:Table {\n" +
+                "                database: COALESCE(edge.srcDatabase, 'UNKNOWN'),\n" +
+                "                schema: COALESCE(edge.srcSchema, 'UNKNOWN'),\n" +
+                "                name: edge.srcName\n" +
+                "            })\n" +
+                "            MERGE (dst:Table {\n" +
+                "                database: COALESCE(edge.dstDatabase, 'UNKNOWN'),\n" +
+                "                schema: COALESCE(edge.dstSchema, 'UNKNOWN'),\n" +
+                "                name: edge.dstName\n" +
+                "            })\n" +
+                "            MERGE (src)-[:FLOWS_TO]->(dst)";
+
+        // 分批处理
+        for (int i = 0; i < tableEdges.size(); i += BATCH_SIZE) {
+            List<TableEdge> batch = tableEdges.subList(i, Math.min(i + BATCH_SIZE, tableEdges.size()));
+            List<Map<String, Object>> edgeData = batch.stream()
+                    .map(this::tableEdgeToMap)
+                    .collect(Collectors.toList());
+
+            long batchStart = System.nanoTime();
+            neo4jClient.query(batchQuery)
+                    .bind(edgeData).to("edges")
+                    .run();
+            parseMetrics.recordPersistBatch("table_lineage", batchStart);
+        }
+    }
+
+    private void saveIndirectLineage(List<IndirectEdge> indirectEdges) {
+        if (indirectEdges == null || indirectEdges.isEmpty()) {
+            return;
+        }
+
+        String batchQuery = "            UNWIND $edges AS edge\n" +
+                "            MERGE (src:Column {\n" +
+                "                database: COALESCE(edge.srcDatabase, 'UNKNOWN'),\n" +
+                "                schema: COALESCE(edge.srcSchema, 'UNKNOWN'),\n" +
+                "                tableName: edge.srcTable,\n" +
+                "                name: edge.srcName\n" +
+                "            })\n" +
+                "            MERGE (dst:Table {\n" +
+                "                database: COALESCE(edge.dstDatabase, 'UNKNOWN'),\n" +
+                "                schema: COALESCE(edge.dstSchema, 'UNKNOWN'),\n" +
+                "                name: edge.dstName\n" +
+                "            })\n" +
+                "            MERGE (src)-[:INFLUENCES {kind: edge.kind}]->(dst)";
+
+        // 分批处理
+        for (int i = 0; i < indirectEdges.size(); i += BATCH_SIZE) {
+            List<IndirectEdge> batch = indirectEdges.subList(i, Math.min(i + BATCH_SIZE, indirectEdges.size()));
+            List<Map<String, Object>> edgeData = batch.stream()
+                    .map(this::indirectEdgeToMap)
+                    .collect(Collectors.toList());
+
+            long batchStart = System.nanoTime();
             neo4jClient.query(batchQuery)
                     .bind(edgeData).to("edges")
                     .run();
+            parseMetrics.recordPersistBatch("indirect", batchStart);
         }
     }
 
@@ -190,4 +275,36 @@ public class LineageService {
         map.put("dstName", dst.getColumn());
         return map;
     }
+
+    // 辅助方法：将TableEdge转为Map
+    private Map<String, Object> tableEdgeToMap(TableEdge edge) {
+        TableNode src = edge.getFrom();
+        TableNode dst = edge.getTo();
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("srcDatabase", src.getDatabase());
+        map.put("srcSchema", src.getSchema());
+        map.put("srcName", src.getTable());
+        map.put("dstDatabase", dst.getDatabase());
+        map.put("dstSchema", dst.getSchema());
+        map.put("dstName", dst.getTable());
+        return map;
+    }
+
+    // 辅助方法：将IndirectEdge转为Map
+    private Map<String, Object> indirectEdgeToMap(IndirectEdge edge) {
+        ColumnNode src = edge.getFrom();
+        TableNode dst = edge.getTo();
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("srcDatabase", src.getDatabase());
+        map.put("srcSchema", src.getSchema());
+        map.put("srcTable", src.getTable());
+        map.put("srcName", src.getColumn());
+        map.put("dstDatabase", dst.getDatabase());
+        map.put("dstSchema", dst.getSchema());
+        map.put("dstName", dst.getTable());
+        map.put("kind", edge.getKind().name());
+        return map;
+    }
 }
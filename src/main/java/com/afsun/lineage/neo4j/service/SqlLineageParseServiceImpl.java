@@ -1,13 +1,33 @@
 package com.afsun.lineage.neo4j.service;
 
 import com.afsun.lineage.core.*;
+import com.afsun.lineage.core.cache.ParseResultCache;
+import com.afsun.lineage.core.exceptions.InternalParseException;
 import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.metrics.ParseMetrics;
+import com.afsun.lineage.core.parser.DefaultSqlStatementHandler;
+import com.afsun.lineage.core.util.SqlArchiveReader;
+import com.afsun.lineage.core.util.SqlStatementPrefilter;
 import com.afsun.lineage.service.SqlLineageParseService;
+import com.afsun.lineage.vo.BatchParseItem;
+import com.afsun.lineage.vo.BatchParseSummary;
 import com.alibaba.druid.DbType;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * @author afsun
@@ -20,12 +40,398 @@ public class SqlLineageParseServiceImpl implements SqlLineageParseService {
     private LineageService lineageService;
     @Resource
     private MetadataProvider metadataProvider;
+    @Resource
+    private ParseResultCache parseResultCache;
+    @Resource
+    private ParseMetrics parseMetrics;
+
+    /**
+     * 是否开启按语句依赖并行解析
+     */
+    @Value("${sql.lineage.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    /**
+     * 并行解析线程数，0表示使用CPU核数
+     */
+    @Value("${sql.lineage.parallel.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * 脚本语句数达到该值才走并行解析
+     */
+    @Value("${sql.lineage.parallel.min-statements:16}")
+    private int parallelMinStatements;
+
+    /**
+     * 单条语句解析超时（毫秒），超时的语句跳过并记录告警，0表示不限制
+     */
+    @Value("${sql.lineage.budget.statement-timeout-ms:30000}")
+    private long statementTimeoutMillis;
+
+    /**
+     * 整个脚本解析超时（毫秒），超时后剩余语句全部跳过，0表示不限制
+     */
+    @Value("${sql.lineage.budget.script-timeout-ms:0}")
+    private long scriptTimeoutMillis;
+
+    /**
+     * 单条语句允许访问的AST节点数，超出的语句跳过并记录告警，0表示不限制
+     */
+    @Value("${sql.lineage.budget.max-ast-nodes:0}")
+    private int maxAstNodes;
+
+    /**
+     * 列级血缘解析档位：PROJECTION / PROJECTION_JOIN / FULL
+     */
+    @Value("${sql.lineage.resolution.profile:PROJECTION}")
+    private ResolutionProfile resolutionProfile;
+
+    /**
+     * 是否在Druid解析前按语句首关键字跳过不产生血缘的语句
+     */
+    @Value("${sql.lineage.prefilter.enabled:true}")
+    private boolean prefilterEnabled;
+
+    /**
+     * 跳过的语句首关键字（逗号分隔），为空时使用内置列表
+     */
+    @Value("${sql.lineage.prefilter.skip-keywords:}")
+    private String[] prefilterSkipKeywords;
+
+    /**
+     * 保留的语句首关键字（逗号分隔），优先于跳过列表
+     */
+    @Value("${sql.lineage.prefilter.keep-keywords:}")
+    private String[] prefilterKeepKeywords;
+
+    /**
+     * 批量解析线程数，0表示使用CPU核数
+     */
+    @Value("${sql.lineage.batch.threads:0}")
+    private int batchThreads;
+
+    /**
+     * 批量解析等待队列长度，队列满时由读取归档的线程自行解析（反压）
+     */
+    @Value("${sql.lineage.batch.queue-capacity:64}")
+    private int batchQueueCapacity;
+
+    /**
+     * 合并血缘图累计元素数达到该值时写入一次Neo4j
+     */
+    @Value("${sql.lineage.batch.flush-threshold:20000}")
+    private int batchFlushThreshold;
+
+    /**
+     * 单个脚本大小限制（字节）
+     */
+    @Value("${sql.lineage.max-file-size:10485760}")
+    private long maxFileSize;
+
+    private ForkJoinPool parallelPool;
+
+    private ThreadPoolExecutor batchExecutor;
+
+    /**
+     * 解析引擎单例（无调用级状态，所有请求共享）
+     */
+    private SqlLineageParser sqlLineageParser;
+
+    @PostConstruct
+    public void init() {
+        if (parallelEnabled) {
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            parallelPool = new ForkJoinPool(threads);
+            log.info("已开启并行解析，线程数={}, 最少语句数={}", threads, parallelMinStatements);
+        }
+        ParseBudget budget = new ParseBudget(statementTimeoutMillis, scriptTimeoutMillis, maxAstNodes);
+        SqlStatementPrefilter prefilter = SqlStatementPrefilter.NONE;
+        if (prefilterEnabled) {
+            prefilter = new SqlStatementPrefilter(
+                    prefilterSkipKeywords.length == 0 ? SqlStatementPrefilter.DEFAULT_SKIP_KEYWORDS : Arrays.asList(prefilterSkipKeywords),
+                    Arrays.asList(prefilterKeepKeywords));
+        }
+        sqlLineageParser = DefaultSqlLineageParser.builder()
+                .statementHandler(new DefaultSqlStatementHandler(resolutionProfile))
+                .parallel(parallelPool, parallelMinStatements)
+                .budget(budget)
+                .metrics(parseMetrics)
+                .prefilter(prefilter)
+                .build();
+        log.info("列级解析档位：{}", resolutionProfile);
+        log.info("解析预算：语句超时={}ms, 脚本超时={}ms, 语句节点上限={}（0表示不限制）",
+                statementTimeoutMillis, scriptTimeoutMillis, maxAstNodes);
+
+        int threads = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        batchExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, batchQueueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "sql-batch-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        batchExecutor.allowCoreThreadTimeOut(true);
+        log.info("批量解析线程池已创建，线程数={}, 队列长度={}, 写入阈值={}", threads, batchQueueCapacity, batchFlushThreshold);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (parallelPool != null) {
+            parallelPool.shutdown();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public ParseResult parse(String content, DbType dbType, LineageMode mode, ParseMonitor monitor) {
+        // 固定元数据快照：缓存键的版本与解析所用元数据一致
+        MetadataProvider metadata = metadataProvider.snapshot();
+        String cacheKey = null;
+        if (parseResultCache.isEnabled()) {
+            cacheKey = parseResultCache.key(content, dbType, mode, metadata.getVersion());
+            ParseResult cached = parseResultCache.get(cacheKey);
+            if (cached != null) {
+                // 相同脚本、相同元数据版本的血缘已持久化过，无需重复写入；仍按缓存结果回报进度
+                log.debug("命中解析结果缓存: {}", cacheKey);
+                for (int i = 0; i < cached.getStatements(); i++) {
+                    monitor.onStatementParsed();
+                }
+                monitor.onPersistStarted();
+                monitor.onPersisted();
+                return cached;
+            }
+        }
+        ParseResult parse = sqlLineageParser.parse(content, dbType, metadata, mode, monitor);
+        monitor.onPersistStarted();
+        lineageService.saveLineageGraph(parse.getGraph());
+        monitor.onPersisted();
+        if (cacheKey != null && !exceededBudget(parse) && !metadata.hasLoadFailures()) {
+            // 超出预算被跳过的结果与耗时相关、不可复现，不缓存；元数据加载失败（重试可能成功）的结果也不缓存
+            parseResultCache.put(cacheKey, parse);
+        }
+        return parse;
+    }
 
+    private static boolean exceededBudget(ParseResult result) {
+        for (LineageWarning warning : result.getWarnings()) {
+            String category = warning.getCategory();
+            if ("STATEMENT_BUDGET_EXCEEDED".equals(category) || "SCRIPT_BUDGET_EXCEEDED".equals(category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 流式解析（/upload 上传文件）不经过解析结果缓存：计算缓存键需要先读完整个脚本，与流式读取控制内存的目的相悖
+     */
     @Override
-    public ParseResult parse(String content, DbType dbType) {
-        SqlLineageParser sqlLineageParser = new DefaultSqlLineageParser();
-        ParseResult parse = sqlLineageParser.parse(content,dbType, metadataProvider);
+    public ParseResult parse(Reader reader, DbType dbType, LineageMode mode, ParseMonitor monitor) {
+        ParseResult parse = sqlLineageParser.parse(reader, dbType, metadataProvider, mode, monitor);
+        monitor.onPersistStarted();
         lineageService.saveLineageGraph(parse.getGraph());
+        monitor.onPersisted();
         return parse;
     }
+
+    @Override
+    public BatchParseSummary parseBatch(InputStream archive, DbType dbType, LineageMode mode,
+                                        Consumer<BatchParseItem> listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        BatchParseSummary summary = new BatchParseSummary();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Object listenerLock = new Object();
+        Consumer<BatchParseItem> emit = item -> {
+            synchronized (listenerLock) {
+                try {
+                    listener.accept(item);
+                } catch (RuntimeException e) {
+                    // 调用方断开等回调异常不影响解析与入库
+                    log.warn("批量解析结果回调失败: {} - {}", item.getFileName(), e.getMessage());
+                }
+            }
+        };
+        GraphBatcher batcher = new GraphBatcher(emit, succeeded, failed);
+
+        List<Future<?>> futures = new ArrayList<>();
+        int files = 0;
+        Exception primary = null;
+        try (SqlArchiveReader reader = new SqlArchiveReader(archive, maxFileSize)) {
+            SqlArchiveReader.SqlEntry entry;
+            while ((entry = reader.next()) != null) {
+                files++;
+                SqlArchiveReader.SqlEntry current = entry;
+                if (current.getError() != null) {
+                    failed.incrementAndGet();
+                    emit.accept(BatchParseItem.fail(current.getName(), current.getError()));
+                    continue;
+                }
+                futures.add(batchExecutor.submit(() -> {
+                    ParseResult result;
+                    try {
+                        // 每个文件固定各自的元数据视图：按需加载模式下视图持有其引用过的表，整批共用会持有全部表直至批次结束
+                        MetadataProvider metadata = metadataProvider.snapshot();
+                        result = sqlLineageParser.parse(current.getContent(), dbType, metadata, mode, ParseMonitor.NONE);
+                    } catch (Exception e) {
+                        log.warn("批量解析失败: {} - {}", current.getName(), e.getMessage());
+                        failed.incrementAndGet();
+                        emit.accept(BatchParseItem.fail(current.getName(), e.getMessage()));
+                        return;
+                    }
+                    // 结果在所在批次写入后才回调；写入失败影响整批，异常交由Future向上抛出
+                    batcher.add(result.getGraph(), BatchParseItem.success(current.getName(), result));
+                }));
+            }
+        } catch (IOException | RuntimeException e) {
+            primary = e;
+            throw e;
+        } finally {
+            // 归档读取异常时也要等待已提交的脚本完成；等待中的异常作为被抑制异常附加，不掩盖读取异常
+            try {
+                awaitAll(futures);
+            } catch (RuntimeException e) {
+                if (primary == null) {
+                    primary = e;
+                    throw e;
+                }
+                primary.addSuppressed(e);
+            } finally {
+                if (primary != null) {
+                    batcher.discard(primary);
+                }
+            }
+        }
+        batcher.flush();
+
+        summary.setFiles(files);
+        summary.setSucceeded(succeeded.get());
+        summary.setFailed(failed.get());
+        summary.setPersistBatches(batcher.batches);
+        summary.setTotalMillis(System.currentTimeMillis() - startTime);
+        log.info("批量解析完成, 文件数={}, 成功={}, 失败={}, 写入批次={}, 耗时={}ms",
+                files, summary.getSucceeded(), summary.getFailed(), summary.getPersistBatches(), summary.getTotalMillis());
+        return summary;
+    }
+
+    private void awaitAll(List<Future<?>> futures) {
+        RuntimeException first = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InternalParseException("批量解析被中断", e);
+            } catch (ExecutionException e) {
+                if (first == null) {
+                    Throwable cause = e.getCause();
+                    first = cause instanceof RuntimeException ? (RuntimeException) cause
+                            : new InternalParseException("批量解析失败: " + cause.getMessage(), cause);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    /**
+     * 批量写入器：合并多个脚本的血缘图，累计到阈值后一次性写入Neo4j
+     * 写入串行进行（避免并发MERGE相同节点产生锁竞争），写入较慢时解析线程随之阻塞，形成自然反压
+     * 脚本的结果在其所在批次写入成功后才回调为成功；批次写入失败时该批次的脚本均回调为失败
+     */
+    private final class GraphBatcher {
+        private final Object persistLock = new Object();
+        private final Consumer<BatchParseItem> emit;
+        private final AtomicInteger succeeded;
+        private final AtomicInteger failed;
+        private LineageGraph pending = new LineageGraph();
+        private List<BatchParseItem> pendingItems = new ArrayList<>();
+        private int pendingSize;
+        private volatile int batches;
+
+        GraphBatcher(Consumer<BatchParseItem> emit, AtomicInteger succeeded, AtomicInteger failed) {
+            this.emit = emit;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        void add(LineageGraph graph, BatchParseItem item) {
+            LineageGraph toPersist = null;
+            List<BatchParseItem> items = null;
+            synchronized (this) {
+                pending.merge(graph);
+                pendingItems.add(item);
+                pendingSize += graph.getTables().size() + graph.getOwnerEdges().size() + graph.getToEdges().size()
+                        + graph.getTableEdges().size() + graph.getIndirectEdges().size();
+                if (pendingSize >= batchFlushThreshold) {
+                    toPersist = pending;
+                    items = pendingItems;
+                    pending = new LineageGraph();
+                    pendingItems = new ArrayList<>();
+                    pendingSize = 0;
+                }
+            }
+            if (toPersist != null) {
+                persist(toPersist, items);
+            }
+        }
+
+        void flush() {
+            LineageGraph toPersist;
+            List<BatchParseItem> items;
+            synchronized (this) {
+                toPersist = pending;
+                items = pendingItems;
+                pending = new LineageGraph();
+                pendingItems = new ArrayList<>();
+                pendingSize = 0;
+            }
+            persist(toPersist, items);
+        }
+
+        /**
+         * 批量解析中止：尚未写入的脚本回调为失败
+         */
+        void discard(Exception cause) {
+            List<BatchParseItem> items;
+            synchronized (this) {
+                items = pendingItems;
+                pending = new LineageGraph();
+                pendingItems = new ArrayList<>();
+                pendingSize = 0;
+            }
+            failAll(items, "批量解析中止，血缘未写入: " + cause.getMessage());
+        }
+
+        private void persist(LineageGraph graph, List<BatchParseItem> items) {
+            if (!graph.getTables().isEmpty()) {
+                try {
+                    synchronized (persistLock) {
+                        lineageService.saveLineageGraph(graph);
+                        batches++;
+                    }
+                } catch (RuntimeException e) {
+                    failAll(items, "血缘写入失败: " + e.getMessage());
+                    throw e;
+                }
+            }
+            for (BatchParseItem item : items) {
+                succeeded.incrementAndGet();
+                emit.accept(item);
+            }
+        }
+
+        private void failAll(List<BatchParseItem> items, String error) {
+            for (BatchParseItem item : items) {
+                failed.incrementAndGet();
+                emit.accept(BatchParseItem.fail(item.getFileName(), error));
+            }
+        }
+    }
 }
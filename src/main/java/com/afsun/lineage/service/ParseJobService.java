@@ -0,0 +1,75 @@
+package com.afsun.lineage.service;
+
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.vo.ParseJobStatus;
+
+import java.nio.file.Path;
+
+/**
+ * 异步解析任务服务
+ * 提交后立即返回任务ID，解析与入库在后台线程执行；已结束任务的结果在有界存储中保留一段时间
+ *
+ * @author afsun
+ */
+public interface ParseJobService {
+
+    /**
+     * 提交SQL文本解析任务
+     *
+     * @param name    任务名
+     * @param content SQL脚本文本
+     * @return 任务ID
+     */
+    default String submit(String name, String content) {
+        return submit(name, content, LineageMode.COLUMN);
+    }
+
+    /**
+     * 按指定粒度提交SQL文本解析任务
+     *
+     * @param mode 血缘粒度
+     * @return 任务ID
+     */
+    String submit(String name, String content, LineageMode mode);
+
+    /**
+     * 提交SQL文件解析任务（流式读取，任务结束后删除该文件）
+     *
+     * @param name       任务名
+     * @param scriptFile UTF-8编码的SQL脚本临时文件
+     * @return 任务ID
+     */
+    default String submit(String name, Path scriptFile) {
+        return submit(name, scriptFile, LineageMode.COLUMN);
+    }
+
+    /**
+     * 按指定粒度提交SQL文件解析任务
+     *
+     * @param mode 血缘粒度
+     * @return 任务ID
+     */
+    String submit(String name, Path scriptFile, LineageMode mode);
+
+    /**
+     * 查询任务状态
+     *
+     * @return 任务状态；任务不存在或已过期返回null
+     */
+    ParseJobStatus getStatus(String jobId);
+
+    /**
+     * 获取已成功任务的解析结果
+     *
+     * @return 解析结果；任务不存在、未完成或未成功返回null
+     */
+    ParseResult getResult(String jobId);
+
+    /**
+     * 取消任务：排队中的任务直接取消，解析中的任务在下一条语句边界停止
+     *
+     * @return 是否已受理取消（任务已进入写入阶段或已结束时返回false）
+     */
+    boolean cancel(String jobId);
+}
@@ -1,10 +1,79 @@
 package com.afsun.lineage.service;
 
 import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
 import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.vo.BatchParseItem;
+import com.afsun.lineage.vo.BatchParseSummary;
 import com.alibaba.druid.DbType;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.function.Consumer;
+
 public interface SqlLineageParseService {
 
-    ParseResult parse(String content, DbType dbType);
+    default ParseResult parse(String content, DbType dbType) {
+        return parse(content, dbType, ParseMonitor.NONE);
+    }
+
+    /**
+     * 解析SQL文本并持久化，解析过程按语句上报进度、响应取消
+     */
+    default ParseResult parse(String content, DbType dbType, ParseMonitor monitor) {
+        return parse(content, dbType, LineageMode.COLUMN, monitor);
+    }
+
+    /**
+     * 按指定粒度解析SQL文本并持久化
+     *
+     * @param mode 血缘粒度，{@link LineageMode#TABLE_ONLY} 不依赖元数据
+     */
+    ParseResult parse(String content, DbType dbType, LineageMode mode, ParseMonitor monitor);
+
+    /**
+     * 流式解析SQL脚本（适用于大文件），reader由调用方关闭
+     */
+    default ParseResult parse(Reader reader, DbType dbType) {
+        return parse(reader, dbType, ParseMonitor.NONE);
+    }
+
+    /**
+     * 流式解析SQL脚本并持久化，解析过程按语句上报进度、响应取消
+     */
+    default ParseResult parse(Reader reader, DbType dbType, ParseMonitor monitor) {
+        return parse(reader, dbType, LineageMode.COLUMN, monitor);
+    }
+
+    /**
+     * 按指定粒度流式解析SQL脚本并持久化
+     *
+     * @param mode 血缘粒度，{@link LineageMode#TABLE_ONLY} 不依赖元数据
+     */
+    ParseResult parse(Reader reader, DbType dbType, LineageMode mode, ParseMonitor monitor);
+
+    /**
+     * 批量解析归档（zip/tar/tar.gz）中的全部SQL脚本
+     * 脚本在有界线程池中并发解析，每完成一个即回调 listener（回调已串行化）；
+     * 各脚本血缘图合并后按批写入Neo4j
+     *
+     * @param archive  归档输入流，由调用方关闭
+     * @param dbType   方言，为null时按脚本自动检测
+     * @param listener 单个脚本结果回调
+     * @return 批量解析汇总
+     */
+    default BatchParseSummary parseBatch(InputStream archive, DbType dbType, Consumer<BatchParseItem> listener)
+            throws IOException {
+        return parseBatch(archive, dbType, LineageMode.COLUMN, listener);
+    }
+
+    /**
+     * 按指定粒度批量解析归档中的全部SQL脚本
+     *
+     * @param mode 血缘粒度
+     */
+    BatchParseSummary parseBatch(InputStream archive, DbType dbType, LineageMode mode, Consumer<BatchParseItem> listener)
+            throws IOException;
 }
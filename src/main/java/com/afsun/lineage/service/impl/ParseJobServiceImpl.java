@@ -0,0 +1,328 @@
+package com.afsun.lineage.service.impl;
+
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.cache.ParseResultCache;
+import com.afsun.lineage.core.exceptions.InternalParseException;
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
+import com.afsun.lineage.service.ParseJobService;
+import com.afsun.lineage.service.SqlLineageParseService;
+import com.afsun.lineage.vo.ParseJobStatus;
+import com.afsun.lineage.vo.ParseJobStatus.State;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步解析任务服务实现
+ * 运行中的任务保存在内存Map中；结束后任务状态移入按条数限制的状态存储，
+ * 解析结果单独移入按血缘图大小加权的结果存储，大结果被淘汰后状态仍可查询
+ *
+ * @author afsun
+ */
+@Service
+@Slf4j
+public class ParseJobServiceImpl implements ParseJobService {
+
+    @Resource
+    private SqlLineageParseService sqlLineageParseService;
+
+    /**
+     * 任务执行线程数
+     */
+    @Value("${sql.lineage.job.threads:2}")
+    private int threads;
+
+    /**
+     * 排队任务上限，超出时拒绝提交
+     */
+    @Value("${sql.lineage.job.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * 已结束任务的保留时间（分钟）
+     */
+    @Value("${sql.lineage.job.result-ttl-minutes:60}")
+    private long resultTtlMinutes;
+
+    /**
+     * 已结束任务状态的最大保留数
+     */
+    @Value("${sql.lineage.job.max-results:1000}")
+    private long maxResults;
+
+    /**
+     * 已结束任务解析结果的总权重上限（血缘图元素数）
+     */
+    @Value("${sql.lineage.job.max-result-weight:2000000}")
+    private long maxResultWeight;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, ParseJob> activeJobs = new ConcurrentHashMap<>();
+
+    private Cache<String, ParseJob> finishedJobs;
+
+    private Cache<String, ParseResult> finishedResults;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "sql-parse-job-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        finishedJobs = Caffeine.newBuilder()
+                .maximumSize(maxResults)
+                .expireAfterWrite(resultTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        finishedResults = Caffeine.newBuilder()
+                .maximumWeight(maxResultWeight)
+                .weigher((String key, ParseResult value) -> ParseResultCache.weightOf(value))
+                .expireAfterWrite(resultTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        log.info("异步解析任务线程池已创建，线程数={}, 队列长度={}, 结果保留={}分钟", threads, queueCapacity, resultTtlMinutes);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (ParseJob job : activeJobs.values()) {
+            job.cancel();
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public String submit(String name, String content, LineageMode mode) {
+        return submit(name, job -> sqlLineageParseService.parse(content, null, mode, job), null);
+    }
+
+    @Override
+    public String submit(String name, Path scriptFile, LineageMode mode) {
+        return submit(name, job -> {
+            try (Reader reader = Files.newBufferedReader(scriptFile, StandardCharsets.UTF_8)) {
+                return sqlLineageParseService.parse(reader, null, mode, job);
+            }
+        }, () -> {
+            try {
+                Files.deleteIfExists(scriptFile);
+            } catch (IOException e) {
+                log.warn("删除任务临时文件失败: {}", scriptFile, e);
+            }
+        });
+    }
+
+    private String submit(String name, JobTask task, Runnable cleanup) {
+        ParseJob job = new ParseJob(UUID.randomUUID().toString().replace("-", ""), name);
+        activeJobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, task, cleanup));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(job.id);
+            if (cleanup != null) {
+                cleanup.run();
+            }
+            throw new InternalParseException("解析任务队列已满（" + queueCapacity + "），请稍后重试");
+        }
+        log.info("已提交解析任务: jobId={}, name={}", job.id, name);
+        return job.id;
+    }
+
+    private void run(ParseJob job, JobTask task, Runnable cleanup) {
+        try {
+            if (!job.start()) {
+                // 排队期间已取消
+                return;
+            }
+            ParseResult result = task.run(job);
+            job.succeed(result);
+            log.info("解析任务完成: jobId={}, traceId={}, 语句数={}", job.id, result.getTraceId(), job.parsed.get());
+        } catch (ParseCancelledException e) {
+            job.fail(State.CANCELLED, "任务已取消");
+            log.info("解析任务已取消: jobId={}, 已解析语句数={}", job.id, job.parsed.get());
+        } catch (Exception e) {
+            job.fail(State.FAILED, e.getMessage());
+            log.warn("解析任务失败: jobId={}, error={}", job.id, e.getMessage());
+        } finally {
+            if (cleanup != null) {
+                cleanup.run();
+            }
+            // 先转存结果再移出运行中任务，查询期间结果始终可见；之后任务本身只保留状态
+            if (job.result != null) {
+                finishedResults.put(job.id, job.result);
+            }
+            finishedJobs.put(job.id, job);
+            activeJobs.remove(job.id);
+            job.detachResult();
+        }
+    }
+
+    @Override
+    public ParseJobStatus getStatus(String jobId) {
+        ParseJob job = findJob(jobId);
+        return job == null ? null : job.toStatus();
+    }
+
+    @Override
+    public ParseResult getResult(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        ParseJob job = activeJobs.get(jobId);
+        if (job != null && job.result != null) {
+            return job.result;
+        }
+        return finishedResults.getIfPresent(jobId);
+    }
+
+    @Override
+    public boolean cancel(String jobId) {
+        ParseJob job = activeJobs.get(jobId);
+        return job != null && job.cancel();
+    }
+
+    private ParseJob findJob(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        ParseJob job = activeJobs.get(jobId);
+        return job != null ? job : finishedJobs.getIfPresent(jobId);
+    }
+
+    @FunctionalInterface
+    private interface JobTask {
+        ParseResult run(ParseJob job) throws Exception;
+    }
+
+    /**
+     * 单个解析任务：同时作为解析进度监视器，接收语句级进度并提供取消标记
+     */
+    private static final class ParseJob implements ParseMonitor {
+        private final String id;
+        private final String name;
+        private final Date submitTime = new Date();
+        private final AtomicInteger parsed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile int persisted;
+        private volatile State state = State.PENDING;
+        private volatile boolean cancelled;
+        private volatile Date startTime;
+        private volatile Date endTime;
+        private volatile String error;
+        private volatile String traceId;
+        private volatile ParseResult result;
+
+        ParseJob(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            state = State.RUNNING;
+            startTime = new Date();
+            return true;
+        }
+
+        synchronized boolean cancel() {
+            if (state == State.PENDING) {
+                // 排队中的任务立即标记为已取消，出队时直接跳过
+                cancelled = true;
+                fail(State.CANCELLED, "任务已取消");
+                return true;
+            }
+            if (state == State.RUNNING) {
+                cancelled = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void succeed(ParseResult parseResult) {
+            result = parseResult;
+            traceId = parseResult.getTraceId();
+            state = State.SUCCEEDED;
+            endTime = new Date();
+        }
+
+        /**
+         * 释放解析结果，任务本身只保留状态
+         */
+        void detachResult() {
+            result = null;
+        }
+
+        synchronized void fail(State finalState, String message) {
+            state = finalState;
+            error = message;
+            endTime = new Date();
+        }
+
+        @Override
+        public void onStatementParsed() {
+            parsed.incrementAndGet();
+        }
+
+        @Override
+        public void onStatementFailed() {
+            failed.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void onPersistStarted() {
+            // 写入前最后一次响应取消，进入写入阶段后不再可取消
+            if (cancelled) {
+                throw new ParseCancelledException("解析任务已取消: " + id);
+            }
+            state = State.PERSISTING;
+        }
+
+        @Override
+        public void onPersisted() {
+            persisted = parsed.get();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        ParseJobStatus toStatus() {
+            ParseJobStatus status = new ParseJobStatus();
+            status.setJobId(id);
+            status.setName(name);
+            status.setState(state);
+            status.setStatementsParsed(parsed.get());
+            status.setStatementsFailed(failed.get());
+            status.setStatementsPersisted(persisted);
+            status.setTraceId(traceId);
+            status.setError(error);
+            status.setSubmitTime(submitTime);
+            status.setStartTime(startTime);
+            status.setEndTime(endTime);
+            return status;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.afsun.lineage.vo;
+
+import com.afsun.lineage.core.ParseResult;
+import lombok.Data;
+
+/**
+ * 批量解析中单个脚本的结果摘要
+ *
+ * @author afsun
+ */
+@Data
+public class BatchParseItem {
+
+    /**
+     * 归档内文件路径
+     */
+    private String fileName;
+
+    private boolean success;
+
+    private String traceId;
+
+    /**
+     * 表节点数
+     */
+    private int tables;
+
+    /**
+     * 列节点数
+     */
+    private int columns;
+
+    /**
+     * 列级血缘边数
+     */
+    private int lineageEdges;
+
+    private int warnings;
+
+    private int skippedFragments;
+
+    private long parseMillis;
+
+    /**
+     * 失败原因（成功时为null）
+     */
+    private String error;
+
+    public static BatchParseItem success(String fileName, ParseResult result) {
+        BatchParseItem item = new BatchParseItem();
+        item.setFileName(fileName);
+        item.setSuccess(true);
+        item.setTraceId(result.getTraceId());
+        item.setTables(result.getGraph().getTables().size());
+        item.setColumns(result.getGraph().getColumns().size());
+        item.setLineageEdges(result.getGraph().getToEdges().size());
+        item.setWarnings(result.getWarnings() == null ? 0 : result.getWarnings().size());
+        item.setSkippedFragments(result.getSkippedFragments());
+        item.setParseMillis(result.getParseMillis());
+        return item;
+    }
+
+    public static BatchParseItem fail(String fileName, String error) {
+        BatchParseItem item = new BatchParseItem();
+        item.setFileName(fileName);
+        item.setSuccess(false);
+        item.setError(error);
+        return item;
+    }
+}
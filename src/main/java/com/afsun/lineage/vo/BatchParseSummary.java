@@ -0,0 +1,28 @@
+package com.afsun.lineage.vo;
+
+import lombok.Data;
+
+/**
+ * 批量解析汇总
+ *
+ * @author afsun
+ */
+@Data
+public class BatchParseSummary {
+
+    /**
+     * 归档中的SQL文件数
+     */
+    private int files;
+
+    private int succeeded;
+
+    private int failed;
+
+    /**
+     * 写入Neo4j的批次数
+     */
+    private int persistBatches;
+
+    private long totalMillis;
+}
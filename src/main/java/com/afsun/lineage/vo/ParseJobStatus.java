@@ -0,0 +1,67 @@
+package com.afsun.lineage.vo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 异步解析任务状态
+ *
+ * @author afsun
+ */
+@Data
+public class ParseJobStatus {
+
+    public enum State {
+        /** 排队中 */
+        PENDING,
+        /** 解析中 */
+        RUNNING,
+        /** 写入血缘图 */
+        PERSISTING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private String jobId;
+
+    /**
+     * 任务名（上传文件名）
+     */
+    private String name;
+
+    private State state;
+
+    /**
+     * 已成功解析的语句数
+     */
+    private int statementsParsed;
+
+    /**
+     * 解析失败的语句数
+     */
+    private int statementsFailed;
+
+    /**
+     * 血缘已写入Neo4j的语句数
+     */
+    private int statementsPersisted;
+
+    private String traceId;
+
+    /**
+     * 失败或取消原因
+     */
+    private String error;
+
+    private Date submitTime;
+
+    private Date startTime;
+
+    private Date endTime;
+}
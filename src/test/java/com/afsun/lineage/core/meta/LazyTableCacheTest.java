@@ -0,0 +1,261 @@
+package com.afsun.lineage.core.meta;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.TableName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按需加载表元数据缓存的测试：并发合并、负缓存、容量、解析视图与批量预取
+ */
+class LazyTableCacheTest {
+
+    private final List<String> loads = new CopyOnWriteArrayList<>();
+    private final List<List<String[]>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testConcurrentMissesLoadOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(db + "." + table);
+            await(release);
+            return columns(db, table, "id", "name");
+        }, this::batch, 1000, 60, 60);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TableHandle>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String table = i % 2 == 0 ? "T_User" : "t_user";
+                futures.add(executor.submit(() -> cache.get("ods", table)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            TableHandle first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<TableHandle> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void testMissingTableNegativelyCached() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(table);
+            return created.get() == 0 ? Collections.emptyList() : columns(db, table, "id");
+        }, this::batch, 1000, 60, 1);
+
+        assertNull(cache.get("ods", "t_new"));
+        assertNull(cache.get("ods", "t_new"));
+        assertEquals(1, loads.size());
+
+        // 负缓存过期后重新查询，新建的表可见
+        created.set(1);
+        Thread.sleep(1200);
+        assertEquals(1, cache.get("ods", "t_new").size());
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testFailedLoadNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("连接超时");
+            }
+            return columns(db, table, "id");
+        }, this::batch, 1000, 60, 60);
+
+        assertNull(cache.get("ods", "t_user"));
+        assertNotNull(cache.get("ods", "t_user"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testPinnedViewReportsLoadFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            if ("t_user".equals(table) && calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("连接超时");
+            }
+            return "t_gone".equals(table) ? Collections.emptyList() : columns(db, table, "id");
+        }, this::batch, 1000, 60, 60);
+
+        // 表不存在不算失败
+        MetadataProvider view = cache.pin(cache.version());
+        assertNull(view.getTable(null, "ods", "t_gone"));
+        assertFalse(view.hasLoadFailures());
+        // 加载失败的视图告知调用方不要缓存结果；重试的新视图正常
+        assertNull(view.getTable(null, "ods", "t_user"));
+        assertTrue(view.hasLoadFailures());
+        MetadataProvider retry = cache.pin(cache.version());
+        assertNotNull(retry.getTable(null, "ods", "t_user"));
+        assertFalse(retry.hasLoadFailures());
+    }
+
+    @Test
+    void testWeightBoundedByColumnCount() {
+        LazyTableCache cache = new LazyTableCache((db, table) -> columns(db, table, "a", "b", "c"),
+                this::batch, 10, 60, 60);
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(cache.get("ods", "t_" + i));
+        }
+        // 每张表权重为列数+1，上限10列最多保留两张表
+        cache.version();
+        assertTrue(cache.size() <= 2, "size=" + cache.size());
+        assertTrue(cache.stats().evictionCount() >= 18);
+    }
+
+    @Test
+    void testLoaderReceivesOriginalCase() {
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(db + "." + table);
+            return columns(db, table, "id");
+        }, this::batch, 1000, 60, 60);
+
+        assertNotNull(cache.get("ODS", "T_User"));
+        assertNotNull(cache.get("ods", "t_user"));
+        assertEquals(Collections.singletonList("ODS.T_User"), loads);
+    }
+
+    @Test
+    void testPinnedViewIsStable() {
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(table);
+            return columns(db, table, "id", loads.size() == 1 ? "name" : "email");
+        }, this::batch, 1000, 60, 60);
+
+        MetadataProvider view = cache.pin(cache.version());
+        long version = view.getVersion();
+        assertNotNull(view.findColumn(null, "ods", "t_user", "NAME"));
+
+        // 解析期间缓存被清空，同一视图仍看到首次加载的列
+        cache.invalidateAll();
+        assertNotNull(view.findColumn(null, "ods", "t_user", "name"));
+        assertNull(view.findColumn(null, "ods", "t_user", "email"));
+        assertEquals(1, loads.size());
+        assertEquals(version, view.getVersion());
+
+        MetadataProvider next = cache.pin(cache.version());
+        assertNotNull(next.findColumn(null, "ods", "t_user", "email"));
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testVersionChangesWithContent() throws Exception {
+        LazyTableCache cache = new LazyTableCache((db, table) -> "t_gone".equals(table)
+                ? Collections.emptyList() : columns(db, table, "id"), this::batch, 1000, 60, 1);
+
+        // 首次加载、负缓存与预取不改变版本：同一版本下解析看到的列清单不变，解析结果缓存保持命中
+        long initial = cache.version();
+        cache.get("ods", "t_user");
+        cache.get("ods", "t_gone");
+        cache.prefetch(Collections.singletonList(table("ods", "t_order")));
+        assertEquals(initial, cache.version());
+
+        // 负缓存过期即使未被再次访问也使版本变化，按旧版本缓存的解析结果不再命中
+        Thread.sleep(1200);
+        long expired = cache.version();
+        assertTrue(expired > initial);
+
+        // 淘汰与清空同样改变版本
+        cache.invalidateAll();
+        assertTrue(cache.version() > expired);
+    }
+
+    @Test
+    void testPrefetchBatchLoadsMissingTables() {
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(db + "." + table);
+            return columns(db, table, "id");
+        }, tables -> {
+            batches.add(tables);
+            Map<String, Map<String, List<ColumnRef>>> loaded = new HashMap<>();
+            loaded.computeIfAbsent("ods", k -> new HashMap<>()).put("t_order", columns("ODS", "T_Order", "id", "amount"));
+            return loaded;
+        }, 1000, 60, 60);
+        cache.get("ods", "t_user");
+
+        MetadataProvider view = cache.pin(cache.version());
+        view.prefetch(Arrays.asList(
+                table("ODS", "T_Order"), table("ods", "t_user"), table("ods", "t_typo"), table("ODS", "t_order"),
+                TableName.of(null, null, "t_nodb", null, null, "t_nodb")));
+
+        // 已缓存、重复与未限定库名的表不进入批量查询，查询使用原文
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList("ODS.T_Order", "ods.t_typo"), names(batches.get(0)));
+        assertEquals(2, view.getTable(null, "ods", "t_order").size());
+        // 批量结果中没有的表写入负缓存，解析时不再逐表查询
+        assertNull(view.getTable(null, "ods", "t_typo"));
+        assertEquals(Collections.singletonList("ods.t_user"), loads);
+    }
+
+    @Test
+    void testPrefetchFailureFallsBackToLoader() {
+        LazyTableCache cache = new LazyTableCache((db, table) -> {
+            loads.add(db + "." + table);
+            return columns(db, table, "id");
+        }, tables -> {
+            throw new IllegalStateException("查询超时");
+        }, 1000, 60, 60);
+
+        MetadataProvider view = cache.pin(cache.version());
+        view.prefetch(Collections.singletonList(table("ODS", "T_Order")));
+        // 解析器按规范化名查询，视图按预取时记录的原文加载
+        assertNotNull(view.getTable(null, "ods", "t_order"));
+        assertEquals(Collections.singletonList("ODS.T_Order"), loads);
+    }
+
+    private Map<String, Map<String, List<ColumnRef>>> batch(List<String[]> tables) {
+        batches.add(tables);
+        return Collections.emptyMap();
+    }
+
+    private static List<ColumnRef> columns(String db, String table, String... names) {
+        List<ColumnRef> columns = new ArrayList<>();
+        for (String name : names) {
+            columns.add(ColumnRef.of(null, db, table, name, null, db, table, name));
+        }
+        return columns;
+    }
+
+    private static TableName table(String db, String table) {
+        return TableName.of(db, null, table, db, null, table);
+    }
+
+    private static List<String> names(List<String[]> tables) {
+        List<String> names = new ArrayList<>();
+        for (String[] t : tables) {
+            names.add(t[0] + "." + t[1]);
+        }
+        return names;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
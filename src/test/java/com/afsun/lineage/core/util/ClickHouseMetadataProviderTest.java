@@ -0,0 +1,251 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.TableName;
+import com.afsun.lineage.core.meta.ClickHouseMetadataProvider;
+import com.afsun.lineage.core.meta.MetadataLoadMode;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ClickHouse元数据快照发布、增量刷新与按需加载测试：以内存中的 system.tables / system.columns 代替ClickHouse
+ */
+class ClickHouseMetadataProviderTest {
+
+    private FakeClickHouse clickHouse;
+    private ClickHouseMetadataProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        clickHouse = new FakeClickHouse();
+        clickHouse.createTable("ods", "t_user", 100L, "id", "name");
+        clickHouse.createTable("ods", "t_order", 100L, "id", "user_id", "amount");
+        provider = provider(clickHouse, MetadataLoadMode.EAGER);
+    }
+
+    @Test
+    void testReloadPublishesNewSnapshot() {
+        assertEquals(0L, provider.getVersion());
+        assertNull(provider.getTable(null, "ods", "t_user"));
+
+        provider.reload();
+        assertEquals(1L, provider.getVersion());
+        MetadataProvider pinned = provider.snapshot();
+        assertEquals(2, pinned.getTable(null, "ods", "t_user").size());
+
+        clickHouse.createTable("ods", "t_user", 200L, "id", "name", "email");
+        provider.reload();
+
+        // 已固定的快照不受刷新影响，新解析看到新版本
+        assertEquals(1L, pinned.getVersion());
+        assertEquals(2, pinned.getTable(null, "ods", "t_user").size());
+        assertEquals(2L, provider.getVersion());
+        assertNotNull(provider.findColumn(null, "ODS", "T_User", "EMAIL"));
+    }
+
+    @Test
+    void testFailedReloadKeepsSnapshot() {
+        provider.reload();
+        clickHouse.failing = true;
+
+        assertEquals(Boolean.FALSE, provider.reload().get("success"));
+        assertEquals(1L, provider.getVersion());
+        assertEquals(3, provider.getTable(null, "ods", "t_order").size());
+    }
+
+    @Test
+    void testRefreshLoadsOnlyChangedTables() {
+        provider.reload();
+        clickHouse.columnQueries.clear();
+        clickHouse.createTable("ods", "t_user", 200L, "id", "name", "email");
+        clickHouse.createTable("dwd", "T_Visit", 200L, "ip");
+        clickHouse.dropTable("ods", "t_order");
+
+        Map<String, Object> stats = provider.refresh();
+
+        assertEquals("incremental", stats.get("mode"));
+        assertEquals(2, stats.get("changedTables"));
+        assertEquals(1, stats.get("droppedTables"));
+        // 只查询变更的表，未变更的表不重新加载
+        assertEquals(1, clickHouse.columnQueries.size());
+        assertTrue(clickHouse.columnQueries.get(0).contains("(database, table) IN ((?, ?), (?, ?))"));
+        assertEquals(2L, provider.getVersion());
+        assertEquals(3, provider.getTable(null, "ods", "t_user").size());
+        assertNotNull(provider.findColumn(null, "dwd", "t_visit", "ip"));
+        assertNull(provider.getTable(null, "ods", "t_order"));
+        assertEquals(2, provider.getStatistics().get("totalTables"));
+        assertEquals(4, provider.getStatistics().get("totalColumns"));
+    }
+
+    @Test
+    void testRefreshWithoutChangesKeepsVersion() {
+        provider.reload();
+        MetadataProvider pinned = provider.snapshot();
+        clickHouse.columnQueries.clear();
+
+        Map<String, Object> stats = provider.refresh();
+
+        assertEquals(0, stats.get("changedTables"));
+        assertEquals(1L, provider.getVersion());
+        assertSame(pinned, provider.snapshot());
+        assertTrue(clickHouse.columnQueries.isEmpty());
+    }
+
+    @Test
+    void testRefreshBeforeFirstLoadFallsBackToReload() {
+        assertEquals("full", provider.refresh().get("mode"));
+        assertEquals(1L, provider.getVersion());
+        assertEquals(2, provider.getTable(null, "ods", "t_user").size());
+    }
+
+    @Test
+    void testLazyLoadUsesOriginalCase() throws Exception {
+        clickHouse.createTable("DWD", "T_Visit", 100L, "ip", "city");
+        ClickHouseMetadataProvider lazy = provider(clickHouse, MetadataLoadMode.LAZY);
+        long version = lazy.getVersion();
+
+        MetadataProvider view = lazy.snapshot();
+        view.prefetch(Collections.singletonList(TableName.parse("DWD.T_Visit")));
+        // 预取不改变版本
+        assertEquals(version, lazy.getVersion());
+        lazy.reload();
+        long reloaded = lazy.getVersion();
+        assertTrue(reloaded > version);
+        clickHouse.columnQueries.clear();
+
+        // 缓存已清空：解析器按规范化名查询，仍以原文精确匹配，不回退到全表扫描的 lower() 查询
+        assertNotNull(view.findColumn(null, "dwd", "t_visit", "city"));
+        assertEquals(1, clickHouse.columnQueries.size());
+        assertTrue(clickHouse.columnQueries.get(0).contains("WHERE database = ? AND table = ?"));
+        assertFalse(view.hasLoadFailures());
+        assertEquals(reloaded, lazy.getVersion());
+    }
+
+    static ClickHouseMetadataProvider provider(FakeClickHouse clickHouse, MetadataLoadMode mode) throws Exception {
+        ClickHouseMetadataProvider provider = new ClickHouseMetadataProvider();
+        set(provider, "jdbcTemplate", clickHouse);
+        set(provider, "incrementalEnabled", true);
+        set(provider, "fullReloadHours", 24L);
+        set(provider, "incrementalBatchSize", 500);
+        set(provider, "mode", mode);
+        set(provider, "lazyMaxColumns", 1000L);
+        set(provider, "lazyTtlMinutes", 60L);
+        set(provider, "lazyNegativeTtlSeconds", 60L);
+        provider.init();
+        return provider;
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * 按SQL文本应答元数据查询的 JdbcTemplate，记录执行过的列查询
+     */
+    static final class FakeClickHouse extends JdbcTemplate {
+        /**
+         * 库 -> 表 -> (修改时间, 列)，保留原始大小写
+         */
+        final Map<String, Map<String, Object[]>> tables = new LinkedHashMap<>();
+        final List<String> columnQueries = new ArrayList<>();
+        volatile boolean failing;
+
+        void createTable(String db, String table, long modified, String... columns) {
+            tables.computeIfAbsent(db, k -> new LinkedHashMap<>()).put(table, new Object[]{modified, columns});
+        }
+
+        void dropTable(String db, String table) {
+            tables.get(db).remove(table);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch) {
+            query(sql, rch, new Object[0]);
+        }
+
+        @Override
+        public synchronized void query(String sql, RowCallbackHandler rch, Object... args) {
+            if (failing) {
+                throw new IllegalStateException("ClickHouse不可用");
+            }
+            try {
+                if (sql.contains("system.tables")) {
+                    for (Map.Entry<String, Map<String, Object[]>> db : tables.entrySet()) {
+                        for (Map.Entry<String, Object[]> tb : db.getValue().entrySet()) {
+                            rch.processRow(row("database", db.getKey(), "name", tb.getKey(), "modified", tb.getValue()[0]));
+                        }
+                    }
+                    return;
+                }
+                columnQueries.add(sql);
+                for (Map.Entry<String, Map<String, Object[]>> db : tables.entrySet()) {
+                    for (Map.Entry<String, Object[]> tb : db.getValue().entrySet()) {
+                        if (!matches(sql, args, db.getKey(), tb.getKey())) {
+                            continue;
+                        }
+                        String[] columns = (String[]) tb.getValue()[1];
+                        for (int i = 0; i < columns.length; i++) {
+                            rch.processRow(row("database", db.getKey(), "table", tb.getKey(), "name", columns[i], "position", i + 1));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static boolean matches(String sql, Object[] args, String db, String table) {
+            if (args.length == 0) {
+                return true;
+            }
+            boolean lower = sql.contains("lower(database)");
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String d = lower ? db.toLowerCase(Locale.ROOT) : db;
+                String t = lower ? table.toLowerCase(Locale.ROOT) : table;
+                if (d.equals(args[i]) && t.equals(args[i + 1])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static ResultSet row(Object... pairs) {
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < pairs.length; i += 2) {
+                values.put((String) pairs[i], pairs[i + 1]);
+            }
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                    (proxy, method, methodArgs) -> {
+                        Object value = values.get((String) methodArgs[0]);
+                        switch (method.getName()) {
+                            case "getString":
+                                return (String) value;
+                            case "getLong":
+                                return ((Number) value).longValue();
+                            case "getInt":
+                                return ((Number) value).intValue();
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
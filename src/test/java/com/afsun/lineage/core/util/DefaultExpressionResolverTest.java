@@ -0,0 +1,52 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.DefaultExpressionResolver;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.Scope;
+import com.afsun.lineage.core.TableName;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表达式解析器：超深表达式不依赖调用栈深度
+ */
+class DefaultExpressionResolverTest {
+
+    @Test
+    void testDeepBinaryChainDoesNotOverflow() {
+        Scope scope = new Scope();
+        scope.addTableAlias("t", TableName.parse("ods.t"));
+
+        // 左深 a0 || a1 || ... 与右深 CASE 嵌套，深度远超默认线程栈可递归的层数
+        SQLExpr concat = new SQLIdentifierExpr("a0");
+        for (int i = 1; i < 200_000; i++) {
+            concat = new SQLBinaryOpExpr(concat, SQLBinaryOperator.Concat, new SQLIdentifierExpr("a" + (i % 50)));
+        }
+        SQLExpr nested = new SQLIdentifierExpr("b");
+        for (int i = 0; i < 100_000; i++) {
+            SQLCaseExpr caseExpr = new SQLCaseExpr();
+            caseExpr.addItem(new SQLBinaryOpExpr(new SQLIdentifierExpr("c"), SQLBinaryOperator.Equality, new SQLIntegerExpr(i)), nested);
+            caseExpr.setElseExpr(new SQLCharExpr("x"));
+            nested = caseExpr;
+        }
+        SQLExpr root = new SQLBinaryOpExpr(concat, SQLBinaryOperator.BooleanAnd, nested);
+
+        List<LineageWarning> warns = new ArrayList<>();
+        List<ColumnRef> refs = new DefaultExpressionResolver().resolve(root, scope, null, warns);
+
+        assertEquals(52, refs.size());
+        // 出现顺序保持从左到右
+        assertEquals("a0", refs.get(0).getColumn());
+        assertEquals("a1", refs.get(1).getColumn());
+        assertEquals("c", refs.get(50).getColumn());
+        assertEquals("b", refs.get(51).getColumn());
+        assertTrue(warns.isEmpty());
+    }
+}
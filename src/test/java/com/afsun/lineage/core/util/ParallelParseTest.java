@@ -0,0 +1,237 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.DefaultSqlLineageParser;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.exceptions.ParseCancelledException;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.metrics.ParseMetrics;
+import com.afsun.lineage.core.parser.StatementDependencyAnalyzer;
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按语句依赖DAG并行解析的测试
+ */
+class ParallelParseTest {
+
+    /**
+     * 临时表先建后读、删除后重建：星号展开依赖执行顺序，顺序错乱时列不同或抛出元数据缺失
+     */
+    private static final String TEMP_TABLE_CHAIN = "CREATE TABLE tmp_a AS SELECT ip, city FROM t_ipaddress;\n" +
+            "CREATE TABLE tmp_b AS SELECT * FROM tmp_a;\n" +
+            "DROP TABLE tmp_a;\n" +
+            "CREATE TABLE tmp_a AS SELECT website, status FROM t_system_menu_catalog;\n" +
+            "CREATE TABLE tmp_c AS SELECT * FROM tmp_a;\n" +
+            "INSERT INTO t_target (url, city) SELECT * FROM tmp_b;\n" +
+            "INSERT INTO t_target (url, city) SELECT c.website, i.city FROM tmp_c c JOIN t_ipaddress i ON c.website = i.ip";
+
+    private ForkJoinPool pool;
+    private MetadataProvider metadata;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+        metadata = (db, schema, table) -> {
+            if ("t_ipaddress".equalsIgnoreCase(table)) {
+                return Arrays.asList(
+                        ColumnRef.of(db, schema, table, "ip", db, schema, table, "ip"),
+                        ColumnRef.of(db, schema, table, "city", db, schema, table, "city"));
+            }
+            if ("t_system_menu_catalog".equalsIgnoreCase(table)) {
+                return Arrays.asList(
+                        ColumnRef.of(db, schema, table, "website", db, schema, table, "website"),
+                        ColumnRef.of(db, schema, table, "status", db, schema, table, "status"));
+            }
+            return null;
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        ParseResult sequential = new DefaultSqlLineageParser().parse(TEMP_TABLE_CHAIN, DbType.mysql, metadata);
+        DefaultSqlLineageParser parallelParser = DefaultSqlLineageParser.builder().parallel(pool, 1).build();
+
+        for (int round = 0; round < 20; round++) {
+            ParseResult parallel = parallelParser.parse(TEMP_TABLE_CHAIN, DbType.mysql, metadata);
+            assertEquals(sequential.getGraph().getColumns(), parallel.getGraph().getColumns());
+            assertEquals(sequential.getGraph().getToEdges(), parallel.getGraph().getToEdges());
+            assertEquals(sequential.getGraph().getIndirectEdges(), parallel.getGraph().getIndirectEdges());
+            // 告警按脚本顺序合并，内容一致
+            assertEquals(sequential.getWarnings(), parallel.getWarnings());
+        }
+
+        // 重建后的 tmp_a 只有 website/status
+        Set<String> tmpC = sequential.getGraph().getColumns().stream()
+                .filter(c -> "tmp_c".equals(c.getTable()))
+                .map(c -> c.getColumn())
+                .collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList("website", "status")), tmpC);
+    }
+
+    @Test
+    void testDependencyOrderAcrossTempTables() {
+        List<Set<Integer>> deps = StatementDependencyAnalyzer.analyze(SqlScriptLexer.split(TEMP_TABLE_CHAIN).stream()
+                .map(span -> SQLUtils.parseStatements(span.text(TEMP_TABLE_CHAIN), DbType.mysql))
+                .collect(Collectors.toList()));
+
+        assertEquals(Collections.emptySet(), deps.get(0));
+        // 读 tmp_a 等待建表
+        assertEquals(set(0), deps.get(1));
+        // DROP 等待上一次写入及其后的读取
+        assertEquals(set(0, 1), deps.get(2));
+        assertEquals(set(2), deps.get(3));
+        assertEquals(set(3), deps.get(4));
+        assertEquals(set(1), deps.get(5));
+        assertEquals(set(4), deps.get(6));
+    }
+
+    @Test
+    void testUnparsableStatementIsBarrier() {
+        List<Set<Integer>> deps = StatementDependencyAnalyzer.analyze(Arrays.asList(
+                SQLUtils.parseStatements("INSERT INTO t1 SELECT a FROM s1", DbType.mysql),
+                SQLUtils.parseStatements("INSERT INTO t2 SELECT a FROM s2", DbType.mysql),
+                null,
+                SQLUtils.parseStatements("INSERT INTO t3 SELECT a FROM s3", DbType.mysql),
+                SQLUtils.parseStatements("INSERT INTO t4 SELECT a FROM s4", DbType.mysql)));
+
+        // 屏障等待之前的全部语句，之后的语句都等待屏障
+        assertEquals(Collections.emptySet(), deps.get(1));
+        assertEquals(set(0, 1), deps.get(2));
+        assertEquals(set(2), deps.get(3));
+        assertEquals(set(2), deps.get(4));
+    }
+
+    @Test
+    void testCancelledBeforeAstParse() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DefaultSqlLineageParser parallelParser = DefaultSqlLineageParser.builder()
+                .parallel(pool, 1)
+                .metrics(new ParseMetrics(registry))
+                .build();
+        ParseMonitor cancelled = new ParseMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        assertThrows(ParseCancelledException.class, () -> parallelParser.parse(TEMP_TABLE_CHAIN, DbType.mysql,
+                metadata, LineageMode.COLUMN, cancelled));
+        // 取消后不再构建AST
+        Timer druid = registry.find("sql.lineage.parse.phase").tag("phase", ParseMetrics.PHASE_DRUID_PARSE).timer();
+        assertTrue(druid == null || druid.count() == 0);
+    }
+
+    @Test
+    void testWideUnionBranchesOnParserPool() {
+        // 分支数超过并行阈值；无别名子查询在并行分支中同时登记虚拟表
+        StringBuilder sql = new StringBuilder("INSERT INTO t_target (url, city)\n");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                sql.append("\nUNION ALL\n");
+            }
+            sql.append(i % 2 == 0 ? "SELECT ip, city FROM (SELECT ip, city FROM t_ipaddress)"
+                    : "SELECT website, status FROM (SELECT website, status FROM t_system_menu_catalog)");
+        }
+        ParseResult sequential = new DefaultSqlLineageParser().parse(sql.toString(), DbType.mysql, metadata);
+        ParseResult parallel = DefaultSqlLineageParser.builder().parallel(pool, Integer.MAX_VALUE).build()
+                .parse(sql.toString(), DbType.mysql, metadata);
+
+        assertEquals(new HashSet<>(Arrays.asList("t_ipaddress.ip->url", "t_system_menu_catalog.website->url",
+                "t_ipaddress.city->city", "t_system_menu_catalog.status->city")), edges(sequential));
+        assertEquals(edges(sequential), edges(parallel));
+        assertEquals(sequential.getWarnings(), parallel.getWarnings());
+        // 自动生成的子查询别名在脚本内唯一
+        Set<String> aliases = parallel.getWarnings().stream()
+                .filter(w -> "SUBQUERY_NO_ALIAS".equals(w.getCategory()))
+                .map(w -> w.getSummary())
+                .collect(Collectors.toSet());
+        assertEquals(200, aliases.size());
+    }
+
+    @Test
+    void testParallelUnionBranchesWithSameSubqueryAlias() {
+        // 每个分支的子查询都叫 t，t.* 只能展开本分支子查询的列
+        StringBuilder sql = new StringBuilder("INSERT INTO t_target (v)\n");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                sql.append("\nUNION ALL\n");
+            }
+            sql.append("SELECT t.* FROM (SELECT c").append(i).append(" AS v").append(i).append(" FROM t_src) t");
+        }
+        MetadataProvider wide = (db, schema, table) -> {
+            if (!"t_src".equalsIgnoreCase(table)) {
+                return null;
+            }
+            List<ColumnRef> columns = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                columns.add(ColumnRef.of(db, schema, table, "c" + i, db, schema, table, "c" + i));
+            }
+            return columns;
+        };
+        ParseResult sequential = new DefaultSqlLineageParser().parse(sql.toString(), DbType.mysql, wide);
+        assertEquals(200, edges(sequential).size());
+        assertTrue(edges(sequential).contains("t_src.c199->v"));
+
+        DefaultSqlLineageParser parallelParser = DefaultSqlLineageParser.builder().parallel(pool, 1).build();
+        for (int round = 0; round < 10; round++) {
+            ParseResult parallel = parallelParser.parse(sql.toString(), DbType.mysql, wide);
+            assertEquals(sequential.getGraph().getToEdges(), parallel.getGraph().getToEdges());
+            assertEquals(sequential.getWarnings(), parallel.getWarnings());
+        }
+    }
+
+    @Test
+    void testSubqueryAliasesIndependentOfScheduling() {
+        // 相互独立的语句并行执行，自动生成的子查询别名按语句序号编号，与完成顺序无关
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            sql.append("INSERT INTO tgt").append(i).append(" (a, b) SELECT * FROM (SELECT ip, city FROM t_ipaddress);\n");
+        }
+        ParseResult sequential = new DefaultSqlLineageParser().parse(sql.toString(), DbType.mysql, metadata);
+        assertEquals(40, sequential.getWarnings().stream()
+                .filter(w -> "SUBQUERY_NO_ALIAS".equals(w.getCategory())).count());
+
+        DefaultSqlLineageParser parallelParser = DefaultSqlLineageParser.builder().parallel(pool, 1).build();
+        for (int round = 0; round < 20; round++) {
+            ParseResult parallel = parallelParser.parse(sql.toString(), DbType.mysql, metadata);
+            assertEquals(sequential.getWarnings(), parallel.getWarnings());
+            assertEquals(sequential.getGraph().getToEdges(), parallel.getGraph().getToEdges());
+        }
+    }
+
+    private static Set<String> edges(ParseResult result) {
+        return result.getGraph().getToEdges().stream()
+                .map(e -> e.getTo().getTable() + "." + e.getTo().getColumn() + "->" + e.getFrom().getColumn())
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> set(Integer... values) {
+        return new TreeSet<>(Arrays.asList(values));
+    }
+}
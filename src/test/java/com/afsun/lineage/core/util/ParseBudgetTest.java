@@ -0,0 +1,135 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.DefaultSqlLineageParser;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.ParseBudget;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.meta.DynamicMetadataProvider;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.alibaba.druid.DbType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 解析预算测试：超出预算的语句整体丢弃，不留下血缘与临时表登记
+ */
+class ParseBudgetTest {
+
+    private final MetadataProvider metadata = (db, schema, table) -> {
+        if ("t_ipaddress".equalsIgnoreCase(table)) {
+            return Arrays.asList(
+                    ColumnRef.of(db, schema, table, "ip", db, schema, table, "ip"),
+                    ColumnRef.of(db, schema, table, "city", db, schema, table, "city"));
+        }
+        if ("t_system_menu_catalog".equalsIgnoreCase(table)) {
+            return Arrays.asList(
+                    ColumnRef.of(db, schema, table, "website", db, schema, table, "website"),
+                    ColumnRef.of(db, schema, table, "status", db, schema, table, "status"));
+        }
+        return null;
+    };
+
+    @Test
+    void testStatementBudgetRollsBackCte() {
+        // CTE 与外部表同名：登记后语句超出节点上限，后续语句应仍读到外部表
+        String sql = "INSERT INTO t_out (a, b) WITH t_ipaddress AS (SELECT website, status FROM t_system_menu_catalog) "
+                + "SELECT " + wideConcat("website", 300) + ", status FROM t_ipaddress;\n"
+                + "INSERT INTO t_out2 (x, y) SELECT * FROM t_ipaddress";
+        DefaultSqlLineageParser parser = DefaultSqlLineageParser.builder()
+                .budget(new ParseBudget(0, 0, 200)).build();
+
+        ParseResult result = parser.parse(sql, DbType.mysql, metadata);
+
+        assertEquals(1, result.getSkippedFragments());
+        assertTrue(categories(result).contains("STATEMENT_BUDGET_EXCEEDED"));
+        // 超出预算的语句不留下半条血缘
+        assertTrue(result.getGraph().getToEdges().stream().noneMatch(e -> "t_out".equals(e.getFrom().getTable())));
+        assertEquals(new HashSet<>(Arrays.asList("t_ipaddress.ip->x", "t_ipaddress.city->y")), edges(result));
+    }
+
+    @Test
+    void testScriptBudgetSkipsRemainingStatements() {
+        String sql = "INSERT INTO t_out (a, b) WITH t_ipaddress AS (SELECT website, status FROM t_system_menu_catalog) "
+                + "SELECT " + wideConcat("website", 20000) + ", status FROM t_ipaddress;\n"
+                + "INSERT INTO t_out2 (x, y) SELECT * FROM t_ipaddress";
+        DefaultSqlLineageParser parser = DefaultSqlLineageParser.builder()
+                .budget(new ParseBudget(0, 1, 0)).build();
+
+        ParseResult result = parser.parse(sql, DbType.mysql, metadata);
+
+        // 第一条语句在开始前或处理中超时，第二条语句必然因脚本超时跳过
+        assertEquals(2, result.getSkippedFragments());
+        assertTrue(categories(result).contains("SCRIPT_BUDGET_EXCEEDED"));
+        assertTrue(result.getGraph().getToEdges().isEmpty());
+    }
+
+    @Test
+    void testConstantSubtreesCostNoNodes() {
+        // 数千个常量元组与常量表达式：只含字面量的子树不遍历、不计入节点预算
+        StringBuilder tuples = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) {
+                tuples.append(", ");
+                values.append(", ");
+            }
+            tuples.append("('10.0.0.").append(i).append("', concat('c', '").append(i).append("'))");
+            values.append(i % 3 == 0 ? "-" + i : i % 3 == 1 ? "date('2020-01-01')" : "CAST('x" + i + "' AS CHAR)");
+        }
+        String sql = "INSERT INTO t_out (a, b) SELECT (ip, city) IN (" + tuples + ") AS a, city IN (" + values
+                + ") AS b FROM t_ipaddress";
+        DefaultSqlLineageParser parser = DefaultSqlLineageParser.builder()
+                .budget(new ParseBudget(0, 0, 100)).build();
+
+        ParseResult result = parser.parse(sql, DbType.mysql, metadata);
+
+        assertFalse(categories(result).contains("STATEMENT_BUDGET_EXCEEDED"));
+        assertEquals(new HashSet<>(Arrays.asList("t_ipaddress.ip->a", "t_ipaddress.city->a", "t_ipaddress.city->b")),
+                edges(result));
+    }
+
+    @Test
+    void testMetadataOverlay() {
+        DynamicMetadataProvider script = new DynamicMetadataProvider(metadata);
+        script.registerTempTable(null, null, "tmp_a", Collections.singletonList(
+                ColumnRef.of(null, null, "tmp_a", "a", null, null, "tmp_a", "a")));
+
+        DynamicMetadataProvider overlay = script.overlay();
+        overlay.dropTempTable(null, null, "tmp_a");
+        overlay.registerTempTable(null, null, "t_ipaddress", Collections.singletonList(
+                ColumnRef.of(null, null, "t_ipaddress", "x", null, null, "t_ipaddress", "x")));
+
+        // 覆盖层内可见自身的删除与注册，上层不受影响
+        assertFalse(overlay.isTempTable(null, null, "tmp_a"));
+        assertEquals("x", overlay.getTable(null, null, "T_IPADDRESS").getColumns().get(0).getColumn());
+        assertTrue(script.isTempTable(null, null, "tmp_a"));
+        assertEquals(2, script.getTable(null, null, "t_ipaddress").size());
+
+        overlay.commit();
+        assertFalse(script.isTempTable(null, null, "tmp_a"));
+        assertTrue(script.isTempTable(null, null, "t_ipaddress"));
+    }
+
+    private static String wideConcat(String column, int n) {
+        return "concat(" + String.join(", ", Collections.nCopies(n, column)) + ")";
+    }
+
+    private static List<String> categories(ParseResult result) {
+        return result.getWarnings().stream().map(LineageWarning::getCategory).collect(Collectors.toList());
+    }
+
+    private static Set<String> edges(ParseResult result) {
+        return result.getGraph().getToEdges().stream()
+                .map(e -> e.getTo().getTable() + "." + e.getTo().getColumn() + "->" + e.getFrom().getColumn())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,99 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.LineageGraph;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.cache.ParseResultCache;
+import com.afsun.lineage.core.metrics.ParseMetrics;
+import com.afsun.lineage.graph.TableNode;
+import com.alibaba.druid.DbType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 解析结果缓存测试
+ */
+class ParseResultCacheTest {
+
+    private final ParseResultCache cache = new ParseResultCache(10_000, 60, ParseMetrics.NONE);
+
+    @Test
+    void testKeyIgnoresCommentsAndWhitespace() {
+        // 语句起始位置不变时，语句后的注释与空白不影响键
+        String a = cache.key("select a from t;\ninsert into x select 1", DbType.mysql, LineageMode.COLUMN, 1);
+        String b = cache.key("select a from t ; -- c\ninsert into x select 1;\n\n/* tail */", DbType.mysql, LineageMode.COLUMN, 1);
+        assertEquals(a, b);
+
+        assertNotEquals(a, cache.key("select a from t; insert into x select 1", DbType.mysql, LineageMode.COLUMN, 2));
+        assertNotEquals(a, cache.key("select a from t; insert into x select 1", null, LineageMode.COLUMN, 1));
+        // 表级模式不依赖元数据版本
+        assertEquals(cache.key("select a from t", DbType.mysql, LineageMode.TABLE_ONLY, 1),
+                cache.key("select a from t", DbType.mysql, LineageMode.TABLE_ONLY, 2));
+    }
+
+    @Test
+    void testKeyIncludesStatementPositions() {
+        // 只差开头注释与缩进：语句位置不同，缓存的告警位置不能复用
+        String plain = "INSERT INTO x SELECT a FROM t;";
+        String headed = "-- header\n-- more\n\n   INSERT INTO x SELECT a FROM t;";
+        assertEquals("第1行第1列", SqlScriptLexer.split(plain).get(0).position());
+        assertEquals("第4行第4列", SqlScriptLexer.split(headed).get(0).position());
+        assertNotEquals(cache.key(plain, DbType.mysql, LineageMode.COLUMN, 1),
+                cache.key(headed, DbType.mysql, LineageMode.COLUMN, 1));
+    }
+
+    @Test
+    void testHitIsIsolatedFromCallers() {
+        ParseResult result = result("t1");
+        String key = cache.key("select a from t1", DbType.mysql, LineageMode.COLUMN, 1);
+        cache.put(key, result);
+
+        // 写入后修改原结果不影响缓存
+        result.getGraph().getTables().add(TableNode.of(null, null, "t_after_put", null, null, "t_after_put"));
+        result.getWarnings().clear();
+
+        ParseResult hit = cache.get(key);
+        assertNotSame(result, hit);
+        assertEquals(1, hit.getGraph().getTables().size());
+        assertEquals(1, hit.getWarnings().size());
+
+        // 修改命中结果不影响后续命中
+        hit.getGraph().getTables().clear();
+        hit.getWarnings().add(LineageWarning.of("X", "x", "", ""));
+        hit.setTraceId("changed");
+
+        ParseResult again = cache.get(key);
+        assertEquals(1, again.getGraph().getTables().size());
+        assertEquals(1, again.getWarnings().size());
+        assertEquals("LN-1", again.getTraceId());
+    }
+
+    @Test
+    void testMissAndInvalidate() {
+        String key = cache.key("select 1", DbType.mysql, LineageMode.COLUMN, 1);
+        assertNull(cache.get(key));
+
+        cache.put(key, result("t1"));
+        assertNotNull(cache.get(key));
+
+        cache.invalidateAll();
+        assertNull(cache.get(key));
+        assertEquals(2L, cache.getStatistics().get("misses"));
+    }
+
+    private static ParseResult result(String table) {
+        LineageGraph graph = new LineageGraph();
+        graph.getTables().add(TableNode.of(null, null, table, null, null, table));
+        ParseResult result = new ParseResult();
+        result.setGraph(graph);
+        result.setWarnings(new ArrayList<>());
+        result.getWarnings().add(LineageWarning.of("W", "w", "", ""));
+        result.setTraceId("LN-1");
+        result.setMode(LineageMode.COLUMN);
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package com.afsun.lineage.core.util;
+
+import com.alibaba.druid.DbType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 方言检测器测试
+ */
+class SqlDialectDetectorTest {
+
+    @Test
+    void testSingleStatementFeatures() {
+        assertEquals(DbType.odps, SqlDialectDetector.detect("INSERT OVERWRITE TABLE t SELECT * FROM s DISTRIBUTE BY a"));
+        assertEquals(DbType.clickhouse, SqlDialectDetector.detect("CREATE TABLE t (a Int32) ENGINE  = MergeTree ORDER BY a"));
+        assertEquals(DbType.postgresql, SqlDialectDetector.detect("SELECT a::int FROM t"));
+        assertEquals(DbType.oracle, SqlDialectDetector.detect("select sysdate from DUAL"));
+        assertEquals(DbType.sqlserver, SqlDialectDetector.detect("SELECT TOP 10 * FROM [dbo].t WITH (NOLOCK)"));
+    }
+
+    @Test
+    void testClickHouseCastNotPostgres() {
+        // ClickHouse 同样支持 :: 类型转换，专有函数/类型名与 FINAL 应胜出
+        assertEquals(DbType.clickhouse, SqlDialectDetector.detect("SELECT toDate(ts)::Date AS d FROM db.t FINAL"));
+        assertEquals(DbType.clickhouse, SqlDialectDetector.detect("INSERT INTO db.t SELECT a::String FROM db.s FINAL"));
+        assertEquals(DbType.postgresql, SqlDialectDetector.detect("SELECT a::text FROM t WHERE b ILIKE 'x%' RETURNING a"));
+    }
+
+    @Test
+    void testWordBoundary() {
+        // "individual" 不应命中 Oracle 的 "dual"，无特征时回退默认方言
+        assertEquals(SqlDialectDetector.DEFAULT_DB_TYPE, SqlDialectDetector.detect("select individual, finally from t"));
+    }
+
+    @Test
+    void testScriptSamplingSkipsComments() {
+        String script = "-- select sysdate from dual\nINSERT INTO t SELECT a FROM s PREWHERE b = 1;\n"
+                + "/* connect by */ SELECT c FROM t FINAL;";
+        List<StatementSpan> spans = SqlScriptLexer.split(script);
+        SqlDialectDetector.Detection detection = SqlDialectDetector.detect(script, spans);
+        assertEquals(DbType.clickhouse, detection.getDbType());
+        assertEquals(1.0, detection.getConfidence(), 1e-9);
+    }
+
+    @Test
+    void testMixedScriptConfidence() {
+        SqlDialectDetector.Detection detection = SqlDialectDetector.detect(Arrays.asList(
+                "select sysdate from dual", "select a::int from t", "select rownum from t"));
+        assertEquals(DbType.oracle, detection.getDbType());
+        assertTrue(detection.getConfidence() > 0.5 && detection.getConfidence() < 1.0);
+    }
+}
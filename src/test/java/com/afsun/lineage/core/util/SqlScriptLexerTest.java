@@ -0,0 +1,154 @@
+package com.afsun.lineage.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL脚本词法扫描器测试
+ */
+class SqlScriptLexerTest {
+
+    @Test
+    void testSemicolonInsideQuotesAndComments() {
+        String sql = "-- head;\n" +
+                "select 'a;b', \"x;\" from t; /* c; */ insert into `a;b` select $$ x;y $$ -- tail;\n" +
+                " from u # c2;\n" +
+                " where x=1;;\n" +
+                "\n" +
+                "  select 1";
+
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+
+        assertEquals(3, spans.size());
+        assertEquals("select 'a;b', \"x;\" from t", spans.get(0).text(sql));
+        assertEquals("insert into `a;b` select $$ x;y $$  \n from u  \n where x=1", spans.get(1).text(sql));
+        assertEquals("select 1", spans.get(2).text(sql));
+    }
+
+    @Test
+    void testDollarInsideIdentifier() {
+        String sql = "SELECT a$b$c FROM t;\nINSERT INTO x SELECT * FROM y;\nSELECT 1;";
+
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+
+        assertEquals(3, spans.size());
+        assertEquals("SELECT a$b$c FROM t", spans.get(0).text(sql));
+        // 位置参数不是美元引用
+        assertEquals(2, SqlScriptLexer.split("select $1, x$ from t where a = $2;select 2").size());
+        // 标识符之外的美元引用仍然生效
+        assertEquals(2, SqlScriptLexer.split("select $fn$ a;b $fn$, 1;select 2").size());
+    }
+
+    @Test
+    void testSpanPositions() {
+        String sql = "select 1;\n  select 2;";
+
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+
+        assertEquals(1, spans.get(0).getLine());
+        assertEquals(1, spans.get(0).getColumn());
+        assertEquals(2, spans.get(1).getLine());
+        assertEquals(3, spans.get(1).getColumn());
+        // 无注释时不复制文本，偏移直接指向原文
+        assertEquals(sql.indexOf("select 2"), spans.get(1).getStart());
+    }
+
+    @Test
+    void testEscapedQuotes() {
+        String sql = "select 'it''s;', 'a\\';b' from t;select 2";
+
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+
+        assertEquals(2, spans.size());
+        assertEquals("select 'it''s;', 'a\\';b' from t", spans.get(0).text(sql));
+    }
+
+    @Test
+    void testIncrementalScan() {
+        String sql = "select 'a;b' from t;/* x */select 2 -- y\n;select 3";
+        StringBuilder buffer = new StringBuilder();
+        SqlScriptLexer lexer = new SqlScriptLexer(buffer);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < sql.length(); i += 2) {
+            buffer.append(sql, i, Math.min(i + 2, sql.length()));
+            StatementSpan span;
+            while ((span = lexer.next(false)) != null) {
+                out.append(span.text(buffer)).append('|');
+            }
+        }
+        StatementSpan span;
+        while ((span = lexer.next(true)) != null) {
+            out.append(span.text(buffer)).append('|');
+        }
+        assertEquals("select 'a;b' from t|select 2|select 3|", out.toString());
+    }
+
+    @Test
+    void testStreamingReaderManyStatements() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            sql.append("insert into t").append(i).append(" select 'x;' from s; -- c;\n");
+        }
+        int count = 0;
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(sql.toString()))) {
+            String stmt;
+            while ((stmt = reader.next()) != null) {
+                assertEquals("insert into t" + count + " select 'x;' from s", stmt);
+                count++;
+            }
+        }
+        assertEquals(50000, count);
+    }
+
+    @Test
+    void testPrefilterByLeadingKeyword() {
+        String sql = "SET max_threads = 8;\n-- note\nuse db1;insert into t select a from s;"
+                + "ALTER TABLE t MODIFY SETTING ttl_only_drop_parts = 1;settings_tbl";
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+        SqlStatementPrefilter prefilter = SqlStatementPrefilter.DEFAULT;
+
+        assertEquals(5, spans.size());
+        assertTrue(prefilter.shouldSkip(sql, spans.get(0).getStart(), spans.get(0).getEnd()));
+        assertTrue(prefilter.shouldSkip(sql, spans.get(1).getStart(), spans.get(1).getEnd()));
+        assertFalse(prefilter.shouldSkip(sql, spans.get(2).getStart(), spans.get(2).getEnd()));
+        assertTrue(prefilter.shouldSkip(sql, spans.get(3).getStart(), spans.get(3).getEnd()));
+        // 以关键字开头的标识符不应命中
+        assertFalse(prefilter.shouldSkip(sql, spans.get(4).getStart(), spans.get(4).getEnd()));
+
+        SqlStatementPrefilter keepAlter = new SqlStatementPrefilter(
+                SqlStatementPrefilter.DEFAULT_SKIP_KEYWORDS, Collections.singletonList("alter"));
+        assertFalse(keepAlter.shouldSkip("ALTER TABLE t ADD COLUMN c Int32"));
+        assertTrue(keepAlter.shouldSkip("optimize table t final"));
+    }
+
+    @Test
+    void testInsertValuesHeaderScan() {
+        String sql = "insert into db1.`t a` (id, `name`) values (1, 'x;'), (2, 'y');"
+                + "INSERT INTO TABLE t VALUES(1);insert into t(a) select a from s;"
+                + "insert into t partition (dt='1') values (1)";
+        List<StatementSpan> spans = SqlScriptLexer.split(sql);
+        assertEquals(4, spans.size());
+
+        SqlInsertValuesScanner.Header h = SqlInsertValuesScanner.scan(sql, spans.get(0).getStart(), spans.get(0).getEnd());
+        assertNotNull(h);
+        assertEquals("db1.`t a`", h.getTable());
+        assertEquals(Arrays.asList("id", "`name`"), h.getColumns());
+
+        h = SqlInsertValuesScanner.scan(sql, spans.get(1).getStart(), spans.get(1).getEnd());
+        assertNotNull(h);
+        assertEquals("t", h.getTable());
+        assertTrue(h.getColumns().isEmpty());
+
+        // INSERT ... SELECT 与带 PARTITION 的语句交给Druid
+        assertNull(SqlInsertValuesScanner.scan(sql, spans.get(2).getStart(), spans.get(2).getEnd()));
+        assertNull(SqlInsertValuesScanner.scan(sql, spans.get(3).getStart(), spans.get(3).getEnd()));
+        assertNull(SqlInsertValuesScanner.scan("insert into values_log select 1"));
+    }
+}
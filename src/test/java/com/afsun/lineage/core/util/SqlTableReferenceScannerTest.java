@@ -0,0 +1,85 @@
+package com.afsun.lineage.core.util;
+
+import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.DefaultSqlLineageParser;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.ParseMonitor;
+import com.afsun.lineage.core.TableName;
+import com.afsun.lineage.core.meta.MetadataProvider;
+import com.alibaba.druid.DbType;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表引用扫描器测试
+ */
+class SqlTableReferenceScannerTest {
+
+    @Test
+    void testCollectsExternalTableReferences() {
+        String sql = "create temporary table tmp as select a from db1.src;\n" +
+                "with c as (select * from db1.t1 x join `db2`.`t2` on x.id = t2.id) -- from db9.comment\n" +
+                "insert into db3.dst (a, b) select a, b from c, db1.t3 as y left join numbers(10) n on 1 = 1 " +
+                "array join arr as v where a in (select id from db1.t4) and s = 'from db9.literal';\n" +
+                "select * from tmp";
+
+        SqlTableReferenceScanner.References refs = SqlTableReferenceScanner.scan(sql);
+
+        assertEquals(Arrays.asList("db1.src", "db1.t1", "db2.t2", "db3.dst", "db1.t3", "db1.t4"), refs.external());
+        assertTrue(refs.getCreated().contains("tmp"));
+        assertTrue(refs.getCteNames().contains("c"));
+    }
+
+    @Test
+    void testIncrementalScan() {
+        SqlTableReferenceScanner.References refs = new SqlTableReferenceScanner.References();
+        SqlTableReferenceScanner.scanInto("create table tmp as select a from db1.src", refs);
+        int from = refs.getTables().size();
+        SqlTableReferenceScanner.scanInto("insert into db1.dst select a from tmp join db1.src s on 1 = 1", refs);
+
+        // 只返回新出现的外部表：已扫描过的 db1.src 与脚本内创建的 tmp 不计入
+        assertEquals(Collections.singletonList("db1.dst"), refs.externalSince(from));
+        assertEquals(Arrays.asList("db1.src", "db1.dst"), refs.external());
+    }
+
+    @Test
+    void testStreamingParsePrefetchesNewTables() {
+        List<List<String>> batches = new ArrayList<>();
+        MetadataProvider metadata = new MetadataProvider() {
+            @Override
+            public List<ColumnRef> getColumns(String db, String schema, String table) {
+                return Collections.singletonList(ColumnRef.of(db, schema, table, "a", db, schema, table, "a"));
+            }
+
+            @Override
+            public boolean supportsPrefetch() {
+                return true;
+            }
+
+            @Override
+            public void prefetch(Collection<TableName> tables) {
+                List<String> names = new ArrayList<>();
+                tables.forEach(t -> names.add(t.getDb() + "." + t.getTable()));
+                batches.add(names);
+            }
+        };
+        String sql = "insert into db1.t1 select a from db1.s1;\n" +
+                "insert into db1.t2 select a from db1.s1;\n" +
+                "insert into db1.t3 select a from db1.s2";
+
+        new DefaultSqlLineageParser().parse(new StringReader(sql), DbType.mysql, metadata, LineageMode.COLUMN,
+                ParseMonitor.NONE);
+
+        // 样本语句先预取，之后每条语句只预取新出现的表
+        assertEquals(Arrays.asList(Arrays.asList("db1.t1", "db1.s1"), Collections.singletonList("db1.t2"),
+                Arrays.asList("db1.t3", "db1.s2")), batches);
+    }
+}
@@ -1,16 +1,31 @@
 package com.afsun.lineage.core.util;
 
 import com.afsun.lineage.core.ColumnRef;
+import com.afsun.lineage.core.DefaultExpressionResolver;
 import com.afsun.lineage.core.DefaultSqlLineageParser;
+import com.afsun.lineage.core.LineageMode;
+import com.afsun.lineage.core.LineageWarning;
+import com.afsun.lineage.core.ParseMonitor;
 import com.afsun.lineage.core.ParseResult;
+import com.afsun.lineage.core.ResolutionProfile;
+import com.afsun.lineage.core.Scope;
+import com.afsun.lineage.core.meta.DynamicMetadataProvider;
 import com.afsun.lineage.core.meta.MetadataProvider;
+import com.afsun.lineage.core.meta.TableHandle;
+import com.afsun.lineage.core.parser.DefaultSqlStatementHandler;
+import com.afsun.lineage.graph.IndirectEdge;
 import com.afsun.lineage.graph.TableNode;
 import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -187,4 +202,220 @@ class WithClauseTest {
                              " -> " + edge.getTo().getTable() + "." + edge.getTo().getColumn());
         });
     }
+
+    @Test
+    void testTableOnlyModeWithoutMetadata() {
+        String sql = "INSERT INTO dw.t_target SELECT b.id, b.name FROM ods.t_a a JOIN ods.t_b b ON a.id = b.id\n" +
+                "WHERE a.id IN (SELECT id FROM ods.t_filter);\n" +
+                "WITH base AS (SELECT id FROM ods.t_c) SELECT * FROM base";
+
+        // 表级模式不访问元数据
+        ParseResult result = parser.parse(sql, DbType.clickhouse, null, LineageMode.TABLE_ONLY, ParseMonitor.NONE);
+
+        assertEquals(LineageMode.TABLE_ONLY, result.getMode());
+        assertTrue(result.getGraph().getColumns().isEmpty());
+        Set<String> edges = new HashSet<>();
+        result.getGraph().getTableEdges().forEach(e -> edges.add(e.getFrom().getTable() + "->" + e.getTo().getTable()));
+        assertEquals(new HashSet<>(Arrays.asList("t_a->t_target", "t_b->t_target", "t_filter->t_target")), edges);
+        Set<TableNode> tables = result.getGraph().getTables();
+        assertTrue(tables.stream().anyMatch(t -> "t_c".equals(t.getTable())));
+        // CTE 名称不作为表节点
+        assertFalse(tables.stream().anyMatch(t -> "base".equals(t.getTable())));
+    }
+
+    @Test
+    void testResolutionProfileIndirectEdges() {
+        String sql = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (website, city)\n" +
+                "SELECT c.website, i.city FROM t_system_menu_catalog c JOIN t_ipaddress i ON c.website = i.ip\n" +
+                "WHERE c.status = 1 GROUP BY c.website, i.city";
+
+        ParseResult full = parser.parse(sql, DbType.clickhouse, mockMetadata);
+        Set<String> indirect = new HashSet<>();
+        full.getGraph().getIndirectEdges().forEach(e -> indirect.add(e.getKind() + ":" + e.getFrom().getColumn()));
+        assertTrue(indirect.containsAll(Arrays.asList("JOIN:website", "JOIN:ip", "FILTER:status", "GROUP:city")));
+        // 非投影子句的列不进入列级血缘
+        assertTrue(full.getGraph().getToEdges().stream().noneMatch(e -> "status".equals(e.getTo().getColumn())));
+
+        DefaultSqlLineageParser joinOnly = DefaultSqlLineageParser.builder()
+                .statementHandler(new DefaultSqlStatementHandler(ResolutionProfile.PROJECTION_JOIN)).build();
+        assertTrue(joinOnly.parse(sql, DbType.clickhouse, mockMetadata).getGraph().getIndirectEdges().stream()
+                .allMatch(e -> e.getKind() == IndirectEdge.Kind.JOIN));
+
+        DefaultSqlLineageParser projection = DefaultSqlLineageParser.builder()
+                .statementHandler(new DefaultSqlStatementHandler(ResolutionProfile.PROJECTION)).build();
+        ParseResult projected = projection.parse(sql, DbType.clickhouse, mockMetadata);
+        assertTrue(projected.getGraph().getIndirectEdges().isEmpty());
+        assertEquals(full.getGraph().getToEdges(), projected.getGraph().getToEdges());
+    }
+
+    @Test
+    void testCorrelatedScalarSubquery() {
+        String sql = "INSERT INTO t_out (c1, c2) SELECT i.ip, (SELECT concat(c.website, i.ip) FROM t_system_menu_catalog c " +
+                "WHERE c.status = i.isstatistic LIMIT 1) FROM t_ipaddress i";
+
+        ParseResult result = parser.parse(sql, DbType.mysql, mockMetadata);
+        Set<String> edges = new HashSet<>();
+        result.getGraph().getToEdges().forEach(e -> edges.add(
+                e.getTo().getTable() + "." + e.getTo().getColumn() + "->" + e.getFrom().getColumn()));
+        // 子查询中的外层别名 i 沿作用域链解析
+        assertEquals(new HashSet<>(Arrays.asList("t_ipaddress.ip->c1", "t_ipaddress.ip->c2",
+                "t_system_menu_catalog.website->c2")), edges);
+        assertTrue(result.getWarnings().stream().noneMatch(w -> "TABLE_NOT_FOUND".equals(w.getCategory())));
+    }
+
+    @Test
+    void testUnionOfSubqueriesResolvesPhysicalSources() {
+        String sql = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city)\n" +
+                "SELECT ip, city FROM (SELECT ip, city FROM t_ipaddress)\n" +
+                "UNION ALL\n" +
+                "SELECT x.website, x.status FROM (SELECT website, status FROM t_system_menu_catalog) x";
+
+        ParseResult result = parser.parse(sql, DbType.mysql, mockMetadata);
+        Set<String> edges = new HashSet<>();
+        result.getGraph().getToEdges().forEach(e -> edges.add(e.getTo().getTable() + "." + e.getTo().getColumn()
+                + "->" + e.getFrom().getColumn()));
+        // 分支内子查询的列追溯到物理表，不出现子查询虚拟表
+        assertEquals(new HashSet<>(Arrays.asList(
+                "t_ipaddress.ip->url", "t_system_menu_catalog.website->url",
+                "t_ipaddress.city->city", "t_system_menu_catalog.status->city")), edges);
+    }
+
+    @Test
+    void testUnionBranchIndirectEdges() {
+        String sql = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (website, city)\n" +
+                "SELECT c.website, i.city FROM t_system_menu_catalog c JOIN t_ipaddress i ON c.website = i.ip\n" +
+                "UNION ALL\n" +
+                "SELECT i.ip, i.city FROM t_ipaddress i WHERE i.isstatistic = 1";
+
+        ParseResult result = parser.parse(sql, DbType.clickhouse, mockMetadata);
+        Set<String> indirect = new HashSet<>();
+        result.getGraph().getIndirectEdges().forEach(e -> indirect.add(
+                e.getKind() + ":" + e.getFrom().getTable() + "." + e.getFrom().getColumn()));
+        // 每个分支的 JOIN/WHERE 在各自的别名绑定下解析
+        assertEquals(new HashSet<>(Arrays.asList("JOIN:t_system_menu_catalog.website", "JOIN:t_ipaddress.ip",
+                "FILTER:t_ipaddress.isstatistic")), indirect);
+    }
+
+    @Test
+    void testUnionBranchIndirectEdgesReuseBoundScopes() {
+        String sql = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city)\n" +
+                "SELECT ip, city FROM (SELECT ip, city, isstatistic FROM t_ipaddress) WHERE isstatistic = 1\n" +
+                "UNION ALL\n" +
+                "SELECT website, status FROM (SELECT website, status, refered FROM t_system_menu_catalog) WHERE refered = 1";
+
+        ParseResult result = parser.parse(sql, DbType.mysql, mockMetadata);
+        Set<String> indirect = new HashSet<>();
+        result.getGraph().getIndirectEdges().forEach(e -> indirect.add(
+                e.getKind() + ":" + e.getFrom().getTable() + "." + e.getFrom().getColumn()));
+        assertEquals(new HashSet<>(Arrays.asList("FILTER:t_ipaddress.isstatistic",
+                "FILTER:t_system_menu_catalog.refered")), indirect);
+        // 分支的 WHERE 在计算输出列时的作用域中解析，不重新绑定 FROM，每个子查询只生成一个别名
+        List<String> aliases = new ArrayList<>();
+        result.getWarnings().stream().filter(w -> "SUBQUERY_NO_ALIAS".equals(w.getCategory()))
+                .forEach(w -> aliases.add(w.getSummary().substring(w.getSummary().indexOf("__subquery_"))));
+        assertEquals(Arrays.asList("__subquery_1_u0_1", "__subquery_1_u1_1"), aliases);
+    }
+
+    @Test
+    void testEachQueryBlockResolvedOnce() {
+        Map<SQLExpr, Integer> resolveCounts = new IdentityHashMap<>();
+        DefaultExpressionResolver countingResolver = new DefaultExpressionResolver() {
+            @Override
+            public List<ColumnRef> resolve(SQLExpr expr, Scope scope,
+                                           MetadataProvider metadata, List<LineageWarning> warns) {
+                resolveCounts.merge(expr, 1, Integer::sum);
+                return super.resolve(expr, scope, metadata, warns);
+            }
+        };
+        DefaultSqlLineageParser countingParser = DefaultSqlLineageParser.builder()
+                .statementHandler(new DefaultSqlStatementHandler(countingResolver)).build();
+        String insert = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city)\n" +
+                "WITH c AS (SELECT s.ip, s.city FROM (SELECT ip, city FROM t_ipaddress) s)\n" +
+                "SELECT c.ip, c.city FROM c";
+        String ctas = "CREATE TABLE t_city_copy AS SELECT s.ip, s.city FROM (SELECT ip, city FROM t_ipaddress) s";
+
+        assertFalse(countingParser.parse(insert, DbType.clickhouse, mockMetadata).getGraph().getToEdges().isEmpty());
+        assertFalse(countingParser.parse(ctas, DbType.mysql, mockMetadata).getGraph().getToEdges().isEmpty());
+
+        // CTE、FROM 子查询与主查询的每个表达式只解析一次
+        assertFalse(resolveCounts.isEmpty());
+        resolveCounts.forEach((expr, count) -> assertEquals(1, count.intValue(), "重复解析: " + expr));
+    }
+
+    @Test
+    void testDeepCteChainResolvesPhysicalSources() {
+        // 20 层 CTE，每列依赖上一层的两列；逐条展开为 2^20 条路径，按列缓存后与列数线性相关
+        StringBuilder sql = new StringBuilder("INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city)\nWITH c0 AS (SELECT ip AS a, city AS b FROM t_ipaddress)");
+        for (int i = 1; i <= 20; i++) {
+            sql.append(",\nc").append(i).append(" AS (SELECT concat(a, b) AS a, concat(b, a) AS b FROM c").append(i - 1).append(")");
+        }
+        sql.append("\nSELECT a, b FROM c20");
+
+        ParseResult result = parser.parse(sql.toString(), DbType.clickhouse, mockMetadata);
+
+        Set<String> edges = new HashSet<>();
+        // to 边方向为 目标列 -> 源列
+        result.getGraph().getToEdges().forEach(e -> edges.add(e.getTo().getTable() + "." + e.getTo().getColumn()
+                + "->" + e.getFrom().getColumn()));
+        assertEquals(new HashSet<>(Arrays.asList(
+                "t_ipaddress.ip->url", "t_ipaddress.city->url",
+                "t_ipaddress.ip->city", "t_ipaddress.city->city")), edges);
+    }
+
+    @Test
+    void testWideUnionAllChain() {
+        // 分支数超过并行阈值，按位置合并所有分支的源列
+        StringBuilder sql = new StringBuilder("INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city)\n");
+        for (int i = 0; i < 300; i++) {
+            if (i > 0) {
+                sql.append("\nUNION ALL\n");
+            }
+            sql.append(i % 2 == 0 ? "SELECT ip, city FROM t_ipaddress" : "SELECT website, status FROM t_system_menu_catalog");
+        }
+
+        ParseResult result = parser.parse(sql.toString(), DbType.clickhouse, mockMetadata);
+
+        Set<String> edges = new HashSet<>();
+        result.getGraph().getToEdges().forEach(e -> edges.add(e.getTo().getTable() + "." + e.getTo().getColumn()
+                + "->" + e.getFrom().getColumn()));
+        assertEquals(new HashSet<>(Arrays.asList(
+                "t_ipaddress.ip->url", "t_system_menu_catalog.website->url",
+                "t_ipaddress.city->city", "t_system_menu_catalog.status->city")), edges);
+        assertTrue(result.getWarnings().stream().noneMatch(w -> "UNION_MISMATCH".equals(w.getCategory())));
+    }
+
+    @Test
+    void testIdentifiersSharedAcrossParses() {
+        String sql = "INSERT INTO t_menu_url_statistic_kafka_city_tmp (url, city) SELECT ip, city FROM t_ipaddress";
+        ParseResult first = parser.parse(sql, DbType.clickhouse, mockMetadata);
+        ParseResult second = parser.parse(sql, DbType.clickhouse, mockMetadata);
+
+        // 两次解析的列节点为同一享元实例
+        Map<Object, Object> firstNodes = new IdentityHashMap<>();
+        first.getGraph().getColumns().forEach(c -> firstNodes.put(c, c));
+        assertFalse(firstNodes.isEmpty());
+        second.getGraph().getColumns().forEach(c -> assertSame(c, firstNodes.get(c)));
+
+        ColumnRef upper = ColumnRef.of(null, "ODS", "T_IpAddress", "City", null, "ODS", "T_IpAddress", "City");
+        ColumnRef lower = ColumnRef.of(null, "ods", "t_ipaddress", "city", null, "ods", "t_ipaddress", "city");
+        assertEquals(upper, lower);
+        assertNotSame(upper, lower);
+        assertSame(upper.getColumn(), lower.getColumn());
+        assertSame(upper, ColumnRef.of(null, "ODS", "T_IpAddress", "City", null, "ODS", "T_IpAddress", "City"));
+    }
+
+    @Test
+    void testIndexedColumnLookup() {
+        DynamicMetadataProvider metadata = new DynamicMetadataProvider(mockMetadata);
+        metadata.registerTempTable(null, null, "Tmp_Cte", Arrays.asList(
+                ColumnRef.of(null, null, "tmp_cte", "a", null, null, "Tmp_Cte", "A"),
+                ColumnRef.of(null, null, "tmp_cte", "b", null, null, "Tmp_Cte", "b")));
+
+        assertEquals("a", metadata.findColumn(null, null, "TMP_CTE", "A").getColumn());
+        assertNull(metadata.findColumn(null, null, "tmp_cte", "c"));
+        // 临时表未命中时回退到基础元数据
+        TableHandle base = metadata.getTable(null, "ods", "t_ipaddress");
+        assertNotNull(base);
+        assertSame(base.findColumn("city"), base.findColumn("CITY"));
+    }
 }